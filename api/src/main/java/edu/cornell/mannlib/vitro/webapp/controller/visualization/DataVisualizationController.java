@@ -3,7 +3,9 @@
 package edu.cornell.mannlib.vitro.webapp.controller.visualization;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -22,6 +24,8 @@ import edu.cornell.mannlib.vitro.webapp.controller.VitroHttpServlet;
 import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.visualization.constants.VisConstants;
 import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.StreamingDataResponse;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.StreamingVisualizationRequestHandler;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UtilityFunctions;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.VisualizationRequestHandler;
 
@@ -74,6 +78,16 @@ public class DataVisualizationController extends VitroHttpServlet {
         	 * */
             try {
 
+            	if (visRequestHandler instanceof StreamingVisualizationRequestHandler) {
+            		StreamingDataResponse streamingResponse = renderStreamingVisualization(vreq,
+            				(StreamingVisualizationRequestHandler) visRequestHandler);
+
+            		if (streamingResponse != null) {
+            			writeStreamingResponse(request, response, streamingResponse);
+            			return;
+            		}
+            	}
+
             	Map<String, String> dataResponse = renderVisualization(vreq, visRequestHandler);
 
                 response.setContentType(dataResponse.get(FILE_CONTENT_TYPE_KEY));
@@ -107,24 +121,99 @@ public class DataVisualizationController extends VitroHttpServlet {
     }
 
 
-	private Map<String, String> renderVisualization(
+	/**
+	 * Write a streamed response, compressing it if the client accepts gzip.
+	 */
+	private void writeStreamingResponse(HttpServletRequest request,
+										HttpServletResponse response,
+										StreamingDataResponse streamingResponse) throws IOException {
+
+		response.setContentType(streamingResponse.getContentType());
+		response.setCharacterEncoding("UTF-8");
+
+		if (streamingResponse.getFileName() != null) {
+			response.setHeader("Content-Disposition",
+							   "attachment;filename=" + streamingResponse.getFileName());
+		}
+
+		response.addHeader("Vary", "Accept-Encoding");
+
+		if (acceptsGzip(request.getHeader("Accept-Encoding"))) {
+			response.setHeader("Content-Encoding", "gzip");
+
+			GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), 8192);
+			streamingResponse.writeTo(out);
+			out.finish();
+			out.flush();
+		} else {
+			OutputStream out = response.getOutputStream();
+			streamingResponse.writeTo(out);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Determine if an Accept-Encoding header allows gzip: gzip (or x-gzip) with a non-zero quality, or
+	 * a non-zero quality for * when gzip is not listed. A q-value of 0 refuses the encoding.
+	 */
+	private static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+
+		float gzipQuality = -1;
+		float anyQuality = -1;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.split(";");
+			String name = parts[0].trim().toLowerCase();
+
+			float quality = 1;
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].replace(" ", "").toLowerCase();
+				if (parameter.startsWith("q=")) {
+					try {
+						quality = Float.parseFloat(parameter.substring(2));
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+
+			if ("gzip".equals(name) || "x-gzip".equals(name)) {
+				gzipQuality = Math.max(gzipQuality, quality);
+			} else if ("*".equals(name)) {
+				anyQuality = quality;
+			}
+		}
+
+		return gzipQuality < 0 ? anyQuality > 0 : gzipQuality > 0;
+	}
+
+	private StreamingDataResponse renderStreamingVisualization(
 			VitroRequest vitroRequest,
-			VisualizationRequestHandler visRequestHandler)
+			StreamingVisualizationRequestHandler visRequestHandler)
 			throws MalformedQueryParametersException {
 
-		Model model = vitroRequest.getJenaOntModel(); // getModel()
-        if (model == null) {
+		Dataset dataset = getDataset(vitroRequest);
 
-            String errorMessage = "This service is not supporeted by the current "
-            			+ "webapp configuration. A jena model is required in the "
-            			+ "servlet context.";
+		if (dataset != null) {
+			return visRequestHandler.generateStreamingDataVisualization(vitroRequest,
+					log,
+					dataset);
+		}
 
-            log.error(errorMessage);
+		String errorMessage = "Data Model Empty &/or Inappropriate "
+									+ "query parameters were submitted. ";
 
-            throw new MalformedQueryParametersException(errorMessage);
-        }
+		throw new MalformedQueryParametersException(errorMessage);
+	}
 
-		Dataset dataset = setupJENADataSource(vitroRequest);
+	private Map<String, String> renderVisualization(
+			VitroRequest vitroRequest,
+			VisualizationRequestHandler visRequestHandler)
+			throws MalformedQueryParametersException {
+
+		Dataset dataset = getDataset(vitroRequest);
 
 		if (dataset != null && visRequestHandler != null) {
 			try {
@@ -141,6 +230,24 @@ public class DataVisualizationController extends VitroHttpServlet {
 		throw new MalformedQueryParametersException(errorMessage);
 	}
 
+	private Dataset getDataset(VitroRequest vitroRequest)
+			throws MalformedQueryParametersException {
+
+		Model model = vitroRequest.getJenaOntModel(); // getModel()
+        if (model == null) {
+
+            String errorMessage = "This service is not supporeted by the current "
+            			+ "webapp configuration. A jena model is required in the "
+            			+ "servlet context.";
+
+            log.error(errorMessage);
+
+            throw new MalformedQueryParametersException(errorMessage);
+        }
+
+		return setupJENADataSource(vitroRequest);
+	}
+
 	private VisualizationRequestHandler getVisualizationRequestHandler(
 				VitroRequest vitroRequest) {
 
@@ -79,6 +79,7 @@ public class VisualizationFrameworkConstants {
 	public static final String COAUTHORS_LIST_VIS_MODE = "coauthors";
 	public static final String COAUTHOR_NETWORK_STREAM_VIS_MODE = "coauthor_network_stream";
 	public static final String COAUTHOR_NETWORK_DOWNLOAD_VIS_MODE = "coauthor_network_download";
+	public static final String COAUTHOR_NETWORK_JSON_VIS_MODE = "coauthor_network_json";
 
 	/*
 	 * Vis modes for CoPIRequest Handler
@@ -87,6 +88,7 @@ public class VisualizationFrameworkConstants {
 	public static final String COPIS_LIST_VIS_MODE = "copis";
 	public static final String COPI_NETWORK_STREAM_VIS_MODE = "copi_network_stream";
 	public static final String COPI_NETWORK_DOWNLOAD_VIS_MODE = "copi_network_download";
+	public static final String COPI_NETWORK_JSON_VIS_MODE = "copi_network_json";
 
 
 	/*
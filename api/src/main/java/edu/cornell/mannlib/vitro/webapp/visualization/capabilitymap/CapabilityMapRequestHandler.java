@@ -24,19 +24,28 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.visualization.constants.QueryConstants;
 import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptIndex;
 import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptLabelMap;
 import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptPeopleMap;
 import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationPeopleMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.Person;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.PersonDirectory;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CacheUpdateUtils;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.VisualizationRequestHandler;
 import org.apache.commons.logging.Log;
 
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
 public class CapabilityMapRequestHandler implements VisualizationRequestHandler {
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    private static final int MAX_SUGGESTIONS = 100;
+
     @Override
     public AuthorizationRequest getRequiredPrivileges() {
         return null;
@@ -55,56 +64,81 @@ public class CapabilityMapRequestHandler implements VisualizationRequestHandler
     @Override
     public Object generateAjaxVisualization(VitroRequest vitroRequest, Log log, Dataset dataSource) throws MalformedQueryParametersException, JsonProcessingException {
     	RDFService rdfService = vitroRequest.getRDFService();
-    	rdfService.setVitroRequest(vitroRequest);
- //   	VisualizationCaches.rebuildAll(rdfService);
- //   	VisualizationCaches.conceptToLabel.build(rdfService);
-//        ConceptLabelMap       conceptLabelMap = VisualizationCaches.conceptToLabel.getNoWait(rdfService);
-    	// UQAM-Bug-Correction Refresh all memory models with appropriate liguistic labels
-        ConceptLabelMap       conceptLabelMap = VisualizationCaches.conceptToLabel.get(rdfService, true, true);
+
+        // Labels are cached separately for each language, so use the ones for the language of the request
+        ConceptLabelMap       conceptLabelMap = VisualizationCaches.conceptToLabel.getNoWait(vitroRequest);
         ConceptPeopleMap      conceptPeopleMap = VisualizationCaches.conceptToPeopleMap.getNoWait(rdfService);
         OrganizationPeopleMap organizationPeopleMap = VisualizationCaches.organisationToPeopleMap.getNoWait(rdfService);
-        Map<String, String>   organizationLabels = VisualizationCaches.organizationLabels.getNoWait(rdfService);
+        Map<String, String>   organizationLabels = VisualizationCaches.organizationLabels.getNoWait(vitroRequest);
 
         String data = vitroRequest.getParameter("data");
         if (!StringUtils.isEmpty(data)) {
             if ("concepts".equalsIgnoreCase(data)) {
-                Set<String> concepts = new HashSet<String>();
+                ObjectMapper mapper = new ObjectMapper();
+                return mapper.writeValueAsString(ConceptIndex.of(conceptLabelMap, conceptPeopleMap).getLabels());
+            }
 
-                for (String conceptKey : conceptPeopleMap.conceptToPeople.keySet()) {
-                    String label = conceptLabelMap.conceptToLabel.get(conceptKey);
-                    if (!StringUtils.isEmpty(label)) {
-                        concepts.add(conceptLabelMap.conceptToLabel.get(conceptKey));
+            // Labels matching what has been typed so far, for autocomplete
+            if ("suggest".equalsIgnoreCase(data)) {
+                int limit = DEFAULT_SUGGESTIONS;
+                try {
+                    String limitParam = vitroRequest.getParameter("limit");
+                    if (!StringUtils.isEmpty(limitParam)) {
+                        limit = Math.min(Math.max(Integer.parseInt(limitParam), 1), MAX_SUGGESTIONS);
                     }
+                } catch (NumberFormatException e) {
+                    limit = DEFAULT_SUGGESTIONS;
                 }
 
                 ObjectMapper mapper = new ObjectMapper();
-                return mapper.writeValueAsString(concepts);
+                return mapper.writeValueAsString(ConceptIndex.of(conceptLabelMap, conceptPeopleMap)
+                        .suggest(vitroRequest.getParameter("term"), limit));
             }
             return "";
         }
 
-        String personParam = vitroRequest.getParameter("person");
-        if (!StringUtils.isEmpty(personParam)) {
+        String[] personParams = vitroRequest.getParameterValues("person");
+        if (personParams != null && personParams.length > 0) {
             CapabilityMapResponse response = new CapabilityMapResponse();
-            CapabilityMapResult result = new CapabilityMapResult();
-            fillPersonDetails(vitroRequest.getRDFService(), personParam, result);
-            if (StringUtils.isEmpty(result.firstName) && StringUtils.isEmpty(result.lastName)) {
-                result.lastName = "Missing Name";
-            }
-            Set<String> concepts = conceptPeopleMap.personToConcepts.get(personParam);
-            if (concepts != null) {
-                result.subjectArea = concepts.toArray(new String[concepts.size()]);
+
+            // Resolve the details of all of the requested people together, rather than one query per person
+            Set<String> personUris = new LinkedHashSet<String>();
+            for (String personParam : personParams) {
+                if (!StringUtils.isEmpty(personParam)) {
+                    personUris.add(personParam);
+                }
             }
-            Set<String> organizations = organizationPeopleMap.organizationToPeople.get(personParam);
-            if (organizations != null) {
-                for (String org : organizations) {
-                    result.department = organizationLabels.get(org);
-                    if (!StringUtils.isEmpty(result.department)) {
-                        break;
+            Map<String, Person> people = getPersonDetails(vitroRequest.getRDFService(), personUris);
+
+            for (String personUri : personUris) {
+                CapabilityMapResult result = new CapabilityMapResult();
+                result.profileId = personUri;
+
+                Person person = people.get(personUri);
+                if (person != null) {
+                    result.firstName = person.firstName;
+                    result.lastName = person.lastName;
+                    result.preferredTitle = person.preferredTitle;
+                    result.thumbNail = person.thumbnailUrl;
+                }
+                if (StringUtils.isEmpty(result.firstName) && StringUtils.isEmpty(result.lastName)) {
+                    result.lastName = "Missing Name";
+                }
+                Set<String> concepts = conceptPeopleMap.personToConcepts.get(personUri);
+                if (concepts != null) {
+                    result.subjectArea = concepts.toArray(new String[concepts.size()]);
+                }
+                Set<String> organizations = organizationPeopleMap.personToOrganizations.get(personUri);
+                if (organizations != null) {
+                    for (String org : organizations) {
+                        result.department = organizationLabels.get(org);
+                        if (!StringUtils.isEmpty(result.department)) {
+                            break;
+                        }
                     }
                 }
+                response.results.add(result);
             }
-            response.results.add(result);
 
             ObjectMapper mapper = new ObjectMapper();
 
@@ -119,47 +153,22 @@ public class CapabilityMapRequestHandler implements VisualizationRequestHandler
         if (!StringUtils.isEmpty(query)) {
             CapabilityMapResponse response = new CapabilityMapResponse();
 
-            Set<String> matchedConcepts = conceptLabelMap.lowerLabelToConcepts.get(query.toLowerCase());
+            ConceptIndex conceptIndex = ConceptIndex.of(conceptLabelMap, conceptPeopleMap);
+            int label = conceptIndex.indexOf(query);
 
-            Set<String> people = new HashSet<String>();
-            if (matchedConcepts != null) {
-                for (String uri : matchedConcepts) {
-                    Set<String> peopleSet = conceptPeopleMap.conceptToPeople.get(uri);
-                    if (peopleSet != null) {
-                        people.addAll(peopleSet);
-                    }
-                }
-            }
+            if (label > -1) {
+                String[] clusters = conceptIndex.getClusters(label);
 
-            Set<String> clusterConcepts = new HashSet<String>();
-            for (String person : people) {
-                if (conceptPeopleMap.personToConcepts.containsKey(person)) {
-                    clusterConcepts.addAll(conceptPeopleMap.personToConcepts.get(person));
+                UriDictionary dictionary = UriDictionary.getInstance();
+                for (int person : conceptIndex.getPeople(label)) {
+                    CapabilityMapResult result = new CapabilityMapResult();
+                    result.profileId = dictionary.getUri(person);
+                    result.query = query;
+                    result.clusters = clusters;
+                    response.results.add(result);
                 }
             }
 
-            if (matchedConcepts != null) {
-                clusterConcepts.removeAll(matchedConcepts);
-            }
-
-            Set<String> clusterLabels = new HashSet<String>();
-            for (String clusterConcept : clusterConcepts) {
-                String label = conceptLabelMap.conceptToLabel.get(clusterConcept);
-                if (!StringUtils.isEmpty(label)) {
-                    clusterLabels.add(label);
-                }
-            }
-
-            String[] clusters = clusterLabels.toArray(new String[clusterLabels.size()]);
-
-            for (String person : people) {
-                CapabilityMapResult result = new CapabilityMapResult();
-                result.profileId = person;
-                result.query = query;
-                result.clusters = clusters;
-                response.results.add(result);
-            }
-
             ObjectMapper mapper = new ObjectMapper();
             String callback = vitroRequest.getParameter("callback");
             if (!StringUtils.isEmpty(callback)) {
@@ -185,67 +194,106 @@ public class CapabilityMapRequestHandler implements VisualizationRequestHandler
         return new TemplateResponseValues(standaloneTemplate, body);
     }
 
-    private void fillPersonDetails(final RDFService rdfService, final String personUri, final CapabilityMapResult result) {
-        try {
-            String construct = QueryConstants.getSparqlPrefixQuery() +
-                    "CONSTRUCT {\n" +
-                    "  <" + personUri + "> a foaf:Person .\n" +
-                    "  <" + personUri + "> foaf:lastName ?lastName .\n" +
-                    "  <" + personUri + "> foaf:firstName ?firstName .\n" +
-                    "  <" + personUri + "> obo:ARG_2000028 ?contactInfo .\n" +
-                    "  ?contactInfo vcard:hasName ?contactName .\n" +
-                    "  ?contactName vcard:familyName ?familyName .\n" +
-                    "  ?contactName vcard:givenName ?givenName .\n" +
-                    "  ?contactInfo vcard:hasTitle ?contactTitle .\n" +
-                    "  ?contactTitle vcard:title ?contactTitleLabel  .\n" +
-                    "  <" + personUri + "> public:thumbnailImage ?directDownloadUrl .\n" +
-                    "} WHERE {\n" +
-                    "  { \n" +
-                    "    <" + personUri + "> foaf:lastName ?lastName .\n" +
-                    "  } UNION { \n" +
-                    "    <" + personUri + "> foaf:firstName ?firstName .\n" +
-                    "  } UNION { \n" +
-                    "    <" + personUri + "> obo:ARG_2000028 ?contactInfo .\n" +
-                    "    ?contactInfo vcard:hasName ?contactName .\n" +
-                    "    ?contactName vcard:familyName ?familyName .\n" +
-                    "  } UNION { \n" +
-                    "    <" + personUri + "> obo:ARG_2000028 ?contactInfo .\n" +
-                    "    ?contactInfo vcard:hasName ?contactName .\n" +
-                    "    ?contactName vcard:givenName ?givenName .\n" +
-                    "  } UNION { \n" +
-                    "    <" + personUri + "> obo:ARG_2000028 ?contactInfo .\n" +
-                    "    ?contactInfo vcard:hasTitle ?contactTitle .\n" +
-                    "    ?contactTitle vcard:title ?contactTitleLabel .\n" +
-                    "  } UNION { \n" +
-                    "    <" + personUri + "> public:mainImage ?mainImage .\n" +
-                    "    ?mainImage public:thumbnailImage ?thumbnailImage .\n" +
-                    "    ?thumbnailImage public:downloadLocation ?downloadLocation .\n" +
-                    "    ?downloadLocation public:directDownloadUrl ?directDownloadUrl .\n" +
-                    "  } \n" +
-                    "}\n";
+    /**
+     * Get the names, titles and thumbnails of people - from the cached directory of people if it is available,
+     * otherwise by querying for them
+     *
+     * @param rdfService RDF service to query
+     * @param personUris people to find
+     * @return details of the people that were found, by uri
+     */
+    private Map<String, Person> getPersonDetails(final RDFService rdfService, final Collection<String> personUris) {
+        if (VisualizationCaches.people.isCached()) {
+            PersonDirectory directory = VisualizationCaches.people.getNoWait(rdfService);
+
+            Map<String, Person> people = new HashMap<String, Person>();
+            for (String personUri : personUris) {
+                Person person = directory.get(personUri);
+                if (person != null) {
+                    people.put(personUri, person);
+                }
+            }
+            return people;
+        }
+
+        Map<String, Person> people = queryPersonDetails(rdfService, personUris);
+
+        // So that the next request can use the directory
+        VisualizationCaches.buildMissing();
+
+        return people;
+    }
+
+    /**
+     * Query for the names, titles and thumbnails of people, binding the people to the queries in batches
+     */
+    private Map<String, Person> queryPersonDetails(final RDFService rdfService, final Collection<String> personUris) {
+        final Map<String, Person> people = new HashMap<String, Person>();
 
+        try {
             Model constructedModel = ModelFactory.createDefaultModel();
-            rdfService.sparqlConstructQuery(construct, constructedModel);
+            for (String values : CacheUpdateUtils.valuesClauses("person", personUris)) {
+                String construct = QueryConstants.getSparqlPrefixQuery() +
+                        "CONSTRUCT {\n" +
+                        "  ?person a foaf:Person .\n" +
+                        "  ?person foaf:lastName ?lastName .\n" +
+                        "  ?person foaf:firstName ?firstName .\n" +
+                        "  ?person obo:ARG_2000028 ?contactInfo .\n" +
+                        "  ?contactInfo vcard:hasName ?contactName .\n" +
+                        "  ?contactName vcard:familyName ?familyName .\n" +
+                        "  ?contactName vcard:givenName ?givenName .\n" +
+                        "  ?contactInfo vcard:hasTitle ?contactTitle .\n" +
+                        "  ?contactTitle vcard:title ?contactTitleLabel  .\n" +
+                        "  ?person public:thumbnailImage ?directDownloadUrl .\n" +
+                        "} WHERE {\n" +
+                        values +
+                        "  { \n" +
+                        "    ?person foaf:lastName ?lastName .\n" +
+                        "  } UNION { \n" +
+                        "    ?person foaf:firstName ?firstName .\n" +
+                        "  } UNION { \n" +
+                        "    ?person obo:ARG_2000028 ?contactInfo .\n" +
+                        "    ?contactInfo vcard:hasName ?contactName .\n" +
+                        "    ?contactName vcard:familyName ?familyName .\n" +
+                        "  } UNION { \n" +
+                        "    ?person obo:ARG_2000028 ?contactInfo .\n" +
+                        "    ?contactInfo vcard:hasName ?contactName .\n" +
+                        "    ?contactName vcard:givenName ?givenName .\n" +
+                        "  } UNION { \n" +
+                        "    ?person obo:ARG_2000028 ?contactInfo .\n" +
+                        "    ?contactInfo vcard:hasTitle ?contactTitle .\n" +
+                        "    ?contactTitle vcard:title ?contactTitleLabel .\n" +
+                        "  } UNION { \n" +
+                        "    ?person public:mainImage ?mainImage .\n" +
+                        "    ?mainImage public:thumbnailImage ?thumbnailImage .\n" +
+                        "    ?thumbnailImage public:downloadLocation ?downloadLocation .\n" +
+                        "    ?downloadLocation public:directDownloadUrl ?directDownloadUrl .\n" +
+                        "  } \n" +
+                        "}\n";
+
+                rdfService.sparqlConstructQuery(construct, constructedModel);
+            }
 
+            // The constructed model only holds the requested people, so can be queried as a whole
             String nameQuery = QueryConstants.getSparqlPrefixQuery() +
-                    "SELECT ?familyName ?givenName ?lastName ?firstName ?title ?thumbnailUrl\n" +
+                    "SELECT ?person ?familyName ?givenName ?lastName ?firstName ?title ?thumbnailUrl\n" +
                     "WHERE\n" +
                     "{\n" +
-                    "  <" + personUri + "> a foaf:Person .\n" + // ?person
+                    "  ?person a foaf:Person .\n" +
                     "  OPTIONAL {\n" +
-                    "    <" + personUri + ">  obo:ARG_2000028 ?contactInfo .\n" +
+                    "    ?person obo:ARG_2000028 ?contactInfo .\n" +
                     "    ?contactInfo vcard:hasName ?contactName .\n" +
                     "    OPTIONAL { ?contactName vcard:familyName ?familyName . }\n" +
                     "    OPTIONAL { ?contactName vcard:givenName  ?givenName . }\n" +
                     "  }\n" +
                     "  OPTIONAL {\n" +
-                    "    <" + personUri + ">  obo:ARG_2000028 ?contactInfo .\n" +
+                    "    ?person obo:ARG_2000028 ?contactInfo .\n" +
                     "    ?contactInfo vcard:hasTitle ?contactTitle .\n" +
                     "    ?contactTitle vcard:title ?title .\n" +
                     "  }\n" +
-                    "  OPTIONAL { <" + personUri + ">  foaf:lastName ?lastName . }\n" +
-                    "  OPTIONAL { <" + personUri + ">  foaf:firstName  ?firstName . }\n" +
-                    "  OPTIONAL { <" + personUri + ">  public:thumbnailImage ?thumbnailUrl . }\n" +
+                    "  OPTIONAL { ?person foaf:lastName ?lastName . }\n" +
+                    "  OPTIONAL { ?person foaf:firstName  ?firstName . }\n" +
+                    "  OPTIONAL { ?person public:thumbnailImage ?thumbnailUrl . }\n" +
                     "}\n";
 
             QueryExecution qe = QueryExecutionFactory.create(nameQuery, constructedModel);
@@ -254,33 +302,36 @@ public class CapabilityMapRequestHandler implements VisualizationRequestHandler
                 new ResultSetConsumer() {
                     @Override
                     protected void processQuerySolution(QuerySolution qs) {
-                        result.profileId = personUri;
-                        result.firstName = null;
-                        result.lastName = null;
-                        result.thumbNail = null;
-                        result.preferredTitle = null;
+                        String personUri = qs.getResource("person").getURI();
+
+                        Person person = people.get(personUri);
+                        if (person == null) {
+                            person = new Person();
+                            person.uri = personUri;
+                            people.put(personUri, person);
+                        }
 
                         Literal familyNameNode = qs.getLiteral("familyName");
                         if (familyNameNode != null) {
-                            result.lastName = familyNameNode.getString();
+                            person.lastName = familyNameNode.getString();
                         } else {
                             Literal lastNameNode = qs.getLiteral("lastName");
-                            result.lastName = lastNameNode == null ? null : lastNameNode.getString();
+                            person.lastName = lastNameNode == null ? null : lastNameNode.getString();
                         }
 
                         Literal givenNameNode = qs.getLiteral("givenName");
                         if (givenNameNode != null) {
-                            result.firstName = givenNameNode.getString();
+                            person.firstName = givenNameNode.getString();
                         } else {
                             Literal firstNameNode = qs.getLiteral("firstName");
-                            result.firstName = firstNameNode == null ? null : firstNameNode.getString();
+                            person.firstName = firstNameNode == null ? null : firstNameNode.getString();
                         }
 
                         Literal thumbnailUrlNode = qs.getLiteral("thumbnailUrl");
-                        result.thumbNail = thumbnailUrlNode == null ? null : thumbnailUrlNode.getString();
+                        person.thumbnailUrl = thumbnailUrlNode == null ? null : thumbnailUrlNode.getString();
 
                         Literal titleNode = qs.getLiteral("title");
-                        result.preferredTitle = titleNode == null ? null : titleNode.getString();
+                        person.preferredTitle = titleNode == null ? null : titleNode.getString();
                     }
                 }.processResultSet(qe.execSelect());
             } finally {
@@ -289,5 +340,7 @@ public class CapabilityMapRequestHandler implements VisualizationRequestHandler
         } catch (RDFServiceException e) {
 
         }
+
+        return people;
     }
 }
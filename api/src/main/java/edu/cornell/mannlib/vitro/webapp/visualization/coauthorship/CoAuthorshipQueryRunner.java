@@ -2,15 +2,9 @@
 
 package edu.cornell.mannlib.vitro.webapp.visualization.coauthorship;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryExecutionFactory;
@@ -20,6 +14,7 @@ import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.PersonPublicationMaps;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UtilityFunctions;
 import org.apache.commons.lang3.StringUtils;
@@ -33,12 +28,12 @@ import org.apache.jena.query.Syntax;
 import org.apache.jena.rdf.model.RDFNode;
 
 import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CoAuthorshipData;
-import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaboratorComparator;
+import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaborationDataCache;
+import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaborationNetworkBuilder;
 import edu.cornell.mannlib.vitro.webapp.visualization.constants.QueryConstants;
 import edu.cornell.mannlib.vitro.webapp.visualization.constants.QueryFieldLabels;
 import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
-import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Activity;
-import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaboration;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.CollaborationGraph;
 import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.QueryRunner;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UniqueIDGenerator;
@@ -56,7 +51,9 @@ public class CoAuthorshipQueryRunner implements QueryRunner<CoAuthorshipData> {
 
 	protected static final Syntax SYNTAX = Syntax.syntaxARQ;
 
-	private static boolean preferCaches = false;
+	private static volatile boolean preferCaches = false;
+
+	private static volatile int maxCollaborators = 0;
 
 	private String egoURI;
 
@@ -75,20 +72,19 @@ public class CoAuthorshipQueryRunner implements QueryRunner<CoAuthorshipData> {
 
 	}
 
-	private static class QueryResultConsumer extends ResultSetConsumer {
-		Set<Collaborator> nodes = new HashSet<Collaborator>();
-
-		Map<String, Activity> biboDocumentURLToVO = new HashMap<String, Activity>();
-		Map<String, Set<Collaborator>> biboDocumentURLToCoAuthors = new HashMap<String, Set<Collaborator>>();
-		Map<String, Collaborator> nodeURLToVO = new HashMap<String, Collaborator>();
-		Map<String, Collaboration> edgeUniqueIdentifierToVO = new HashMap<String, Collaboration>();
-
-		Collaborator egoNode = null;
-
-		Set<Collaboration> edges = new HashSet<Collaboration>();
+	/**
+	 * Limit co-author networks to the co-authors who share the most publications with the person, so that edges
+	 * are only created between them, or 0 to keep every co-author. Cached networks are dropped, so that they are
+	 * built again with the new limit.
+	 */
+	public static void setMaxCollaborators(int max) {
+		maxCollaborators = Math.max(0, max);
+		collaborationDataCache.clear();
+	}
 
-		private UniqueIDGenerator nodeIDGenerator = new UniqueIDGenerator();
-		private UniqueIDGenerator edgeIDGenerator = new UniqueIDGenerator();
+	private static class QueryResultConsumer extends ResultSetConsumer {
+		final CollaborationNetworkBuilder builder =
+				new CollaborationNetworkBuilder(MAX_AUTHORS_PER_PAPER_ALLOWED, maxCollaborators);
 
 		@Override
 		protected void processQuerySolution(QuerySolution qs) {
@@ -110,272 +106,21 @@ public class CoAuthorshipQueryRunner implements QueryRunner<CoAuthorshipData> {
 		}
 
 		public void processEntry(String authorURI, String authorName, String documentURI, String documentDate, String coAuthorURI, String coAuthorName) {
-			/*
-			 * We only want to create only ONE ego node.
-			 * */
-			if (nodeURLToVO.containsKey(authorURI)) {
-				egoNode = nodeURLToVO.get(authorURI);
-			} else {
-				egoNode = new Collaborator(authorURI, nodeIDGenerator);
-				nodes.add(egoNode);
-				nodeURLToVO.put(authorURI, egoNode);
-
-				if (authorName != null) {
-					egoNode.setCollaboratorName(authorName);
-				}
-			}
-
-			Activity biboDocument;
-
-			if (biboDocumentURLToVO.containsKey(documentURI)) {
-				biboDocument = biboDocumentURLToVO.get(documentURI);
-			} else {
-				biboDocument = createDocumentVO(documentURI, documentDate);
-				biboDocumentURLToVO.put(documentURI, biboDocument);
-			}
-
-			egoNode.addActivity(biboDocument);
-
-			/*
-			 * After some discussion we concluded that for the purpose of this visualization
-			 * we do not want a co-author node or Collaboration if the publication has only one
-			 * author and that happens to be the ego.
-			 * */
-			if (authorURI.equalsIgnoreCase(coAuthorURI)) {
-				return;
-			}
-
-			Collaborator coAuthorNode;
-
-			if (nodeURLToVO.containsKey(coAuthorURI)) {
-				coAuthorNode = nodeURLToVO.get(coAuthorURI);
-			} else {
-				coAuthorNode = new Collaborator(coAuthorURI, nodeIDGenerator);
-				nodes.add(coAuthorNode);
-				nodeURLToVO.put(coAuthorURI, coAuthorNode);
-
-				if (coAuthorName != null) {
-					coAuthorNode.setCollaboratorName(coAuthorName);
-				}
-			}
-
-			coAuthorNode.addActivity(biboDocument);
-
-			Set<Collaborator> coAuthorsForCurrentBiboDocument;
-
-			if (biboDocumentURLToCoAuthors.containsKey(biboDocument.getActivityURI())) {
-				coAuthorsForCurrentBiboDocument = biboDocumentURLToCoAuthors
-						.get(biboDocument.getActivityURI());
-			} else {
-				coAuthorsForCurrentBiboDocument = new HashSet<Collaborator>();
-				biboDocumentURLToCoAuthors.put(biboDocument.getActivityURI(),
-						coAuthorsForCurrentBiboDocument);
-			}
-
-			coAuthorsForCurrentBiboDocument.add(coAuthorNode);
-
-			Collaboration egoCoAuthorEdge =
-					getExistingEdge(egoNode, coAuthorNode, edgeUniqueIdentifierToVO);
-
-			/*
-			 * If "egoCoAuthorEdge" is null it means that no Collaboration exists in between the
-			 * egoNode & current coAuthorNode. Else create a new Collaboration, add it to the edges
-			 * set & add the collaborator document to it.
-			 * */
-			if (egoCoAuthorEdge != null) {
-				egoCoAuthorEdge.addActivity(biboDocument);
-			} else {
-				egoCoAuthorEdge =
-						new Collaboration(egoNode, coAuthorNode, biboDocument, edgeIDGenerator);
-				edges.add(egoCoAuthorEdge);
-				edgeUniqueIdentifierToVO.put(
-						getEdgeUniqueIdentifier(egoNode.getCollaboratorID(),
-								coAuthorNode.getCollaboratorID()),
-						egoCoAuthorEdge);
-			}
+			builder.addEntry(authorURI, authorName, documentURI, documentDate, coAuthorURI, coAuthorName);
 		}
 
 		@Override
 		protected void endProcessing() {
-				/*
-                 * This method takes out all the authors & edges between authors that belong to documents
-                 * that have more than 100 authors. We conjecture that these papers do not provide much
-                 * insight. However, we have left the documents be.
-                 *
-                 * This method side-effects "nodes" & "edges".
-                 * */
-			removeLowQualityNodesAndEdges(nodes,
-					biboDocumentURLToVO,
-					biboDocumentURLToCoAuthors,
-					edges);
-
-				/*
-				 * We need to create edges between 2 co-authors. E.g. On a paper there were 3 authors
-				 * ego, A & B then we have already created edges like,
-				 * 		ego - A
-				 * 		ego - B
-				 * The below sub-routine will take care of,
-				 * 		A - B
-				 *
-				 * We are side-effecting "edges" here. The only reason to do this is because we are adding
-				 * edges en masse for all the co-authors on all the publications considered so far. The
-				 * other reason being we dont want to compare against 2 sets of edges (edges created before
-				 * & co-author edges created during the course of this method) when we are creating a new
-				 * Collaboration.
-				 * */
-			createCoAuthorEdges(biboDocumentURLToVO,
-					biboDocumentURLToCoAuthors,
-					edges,
-					edgeUniqueIdentifierToVO);
-		}
-
-		public CoAuthorshipData getCollaborationData() {
-			return new CoAuthorshipData(egoNode, nodes, edges, biboDocumentURLToVO);
-		}
-
-		private Activity createDocumentVO(String documentURL, String documentDate) {
-
-			Activity biboDocument = new Activity(documentURL);
-
-			if (documentDate != null) {
-				biboDocument.setActivityDate(documentDate);
-			}
-
-			return biboDocument;
-		}
-
-		private String getEdgeUniqueIdentifier(int nodeID1, int nodeID2) {
-			String separator = "*";
-
-			if (nodeID1 < nodeID2) {
-				return nodeID1 + separator + nodeID2;
-			} else {
-				return nodeID2 + separator + nodeID1;
-			}
-
-		}
-
-		private void createCoAuthorEdges(
-				Map<String, Activity> biboDocumentURLToVO,
-				Map<String, Set<Collaborator>> biboDocumentURLToCoAuthors, Set<Collaboration> edges,
-				Map<String, Collaboration> edgeUniqueIdentifierToVO) {
-
-			for (Map.Entry<String, Set<Collaborator>> currentBiboDocumentEntry
-					: biboDocumentURLToCoAuthors.entrySet()) {
-
 			/*
-			 * If there was only one co-author (other than ego) then we dont have to create any
-			 * edges. so the below condition will take care of that.
-			 *
-			 * We are restricting edges between co-author if a particular document has more than
-			 * 100 co-authors. Our conjecture is that such edges do not provide any good insight
-			 * & causes unnecessary computations causing the server to time-out.
+			 * Drops the co-authors of documents that have more than 100 authors, keeps only the top co-authors
+			 * (if limited) and creates the edges between the co-authors.
 			 * */
-				if (currentBiboDocumentEntry.getValue().size() > 1
-						&& currentBiboDocumentEntry.getValue().size()
-						<= MAX_AUTHORS_PER_PAPER_ALLOWED) {
-
-
-					Set<Collaboration> newlyAddedEdges = new HashSet<Collaboration>();
-
-				/*
-				 * In order to leverage the nested "for loop" for making edges between all the
-				 * co-authors we need to create a list out of the set first.
-				 * */
-					List<Collaborator> coAuthorNodes =
-							new ArrayList<Collaborator>(currentBiboDocumentEntry.getValue());
-
-					coAuthorNodes.sort(new CollaboratorComparator());
-
-					int numOfCoAuthors = coAuthorNodes.size();
-
-					for (int ii = 0; ii < numOfCoAuthors - 1; ii++) {
-						for (int jj = ii + 1; jj < numOfCoAuthors; jj++) {
-
-							Collaborator coAuthor1 = coAuthorNodes.get(ii);
-							Collaborator coAuthor2 = coAuthorNodes.get(jj);
-
-							Collaboration coAuthor1_2Edge = getExistingEdge(coAuthor1,
-									coAuthor2,
-									edgeUniqueIdentifierToVO);
-
-							Activity currentBiboDocument = biboDocumentURLToVO
-									.get(currentBiboDocumentEntry
-											.getKey());
-
-							if (coAuthor1_2Edge != null) {
-								coAuthor1_2Edge.addActivity(currentBiboDocument);
-							} else {
-								coAuthor1_2Edge = new Collaboration(coAuthor1,
-										coAuthor2,
-										currentBiboDocument,
-										edgeIDGenerator);
-								newlyAddedEdges.add(coAuthor1_2Edge);
-								edgeUniqueIdentifierToVO.put(
-										getEdgeUniqueIdentifier(coAuthor1.getCollaboratorID(),
-												coAuthor2.getCollaboratorID()),
-										coAuthor1_2Edge);
-							}
-						}
-					}
-					edges.addAll(newlyAddedEdges);
-				}
-			}
-		}
-
-		private Collaboration getExistingEdge(
-				Collaborator collaboratingNode1,
-				Collaborator collaboratingNode2,
-				Map<String, Collaboration> edgeUniqueIdentifierToVO) {
-
-			String edgeUniqueIdentifier = getEdgeUniqueIdentifier(
-					collaboratingNode1.getCollaboratorID(),
-					collaboratingNode2.getCollaboratorID());
-
-			return edgeUniqueIdentifierToVO.get(edgeUniqueIdentifier);
-
+			builder.build();
 		}
 
-		private void removeLowQualityNodesAndEdges(
-				Set<Collaborator> nodes,
-				Map<String, Activity> biboDocumentURLToVO,
-				Map<String, Set<Collaborator>> biboDocumentURLToCoAuthors,
-				Set<Collaboration> edges) {
-
-			Set<Collaborator> nodesToBeRemoved = new HashSet<Collaborator>();
-			for (Map.Entry<String, Set<Collaborator>> currentBiboDocumentEntry
-					: biboDocumentURLToCoAuthors.entrySet()) {
-
-				if (currentBiboDocumentEntry.getValue().size() > MAX_AUTHORS_PER_PAPER_ALLOWED) {
-
-					Activity currentBiboDocument = biboDocumentURLToVO
-							.get(currentBiboDocumentEntry.getKey());
-
-					Set<Collaboration> edgesToBeRemoved = new HashSet<Collaboration>();
-
-					for (Collaboration currentEdge : edges) {
-						Set<Activity> currentCollaboratorDocuments =
-								currentEdge.getCollaborationActivities();
-
-						if (currentCollaboratorDocuments.contains(currentBiboDocument)) {
-							currentCollaboratorDocuments.remove(currentBiboDocument);
-							if (currentCollaboratorDocuments.isEmpty()) {
-								edgesToBeRemoved.add(currentEdge);
-							}
-						}
-					}
-
-					edges.removeAll(edgesToBeRemoved);
-
-					for (Collaborator currentCoAuthor : currentBiboDocumentEntry.getValue()) {
-						currentCoAuthor.getCollaboratorActivities().remove(currentBiboDocument);
-						if (currentCoAuthor.getCollaboratorActivities().isEmpty()) {
-							nodesToBeRemoved.add(currentCoAuthor);
-						}
-					}
-				}
-			}
-			nodes.removeAll(nodesToBeRemoved);
+		public CoAuthorshipData getCollaborationData() {
+			return builder.setTruncation(new CoAuthorshipData(builder.getEgoCollaborator(),
+					builder.getCollaborators(), builder.getCollaborations(), builder.getActivities()));
 		}
 
 		/* END QUERY RUNNER */
@@ -451,33 +196,18 @@ public class CoAuthorshipQueryRunner implements QueryRunner<CoAuthorshipData> {
 	public CoAuthorshipData getQueryResult()
 		throws MalformedQueryParametersException {
 
-		CoAuthorshipData data = getCachedData(this.egoURI);
-		if (data != null) {
-			return data;
-		}
-
-		return getQueryResultAndCache();
-	}
-
-	private CoAuthorshipData getCachedData(String egoURI) {
-		CollaborationDataCacheEntry entry = collaborationDataCache.get(egoURI);
-		if (entry != null && !entry.hasExpired()) {
-			entry.accessTime = new Date().getTime();
-			expireCache();
-			return entry.data;
-		}
-
-		return null;
+		// Concurrent requests for the same person share one computation, different people are computed in parallel
+		return collaborationDataCache.get(this.egoURI, new CollaborationDataCache.Loader<CoAuthorshipData>() {
+			@Override
+			public CoAuthorshipData load() throws MalformedQueryParametersException {
+				return computeQueryResult();
+			}
+		});
 	}
 
-	private synchronized CoAuthorshipData getQueryResultAndCache()
+	private CoAuthorshipData computeQueryResult()
 			throws MalformedQueryParametersException {
 
-		CoAuthorshipData data = getCachedData(this.egoURI);
-		if (data != null) {
-			return data;
-		}
-
 		if (StringUtils.isNotBlank(this.egoURI)) {
 			/*
         	 * To test for the validity of the URI submitted.
@@ -501,19 +231,32 @@ public class CoAuthorshipQueryRunner implements QueryRunner<CoAuthorshipData> {
 		if (preferCaches && VisualizationCaches.personToPublication.isCached()) {
 			cacheTime = VisualizationCaches.personToPublication.cachedWhen();
 
-			Map<String, String>      personLabelsMap         = VisualizationCaches.personLabels.get(rdfService);
-			Map<String, Set<String>> personToPublicationMap  = VisualizationCaches.personToPublication.get(rdfService).personToPublication;
-			Map<String, Set<String>> publicationToPersonMap  = VisualizationCaches.personToPublication.get(rdfService).publicationToPerson;
-			Map<String, String>      publicationToYearMap    = VisualizationCaches.publicationToYear.get(rdfService);
-
-			String authorURI = this.egoURI;
-			String authorName = personLabelsMap.get(authorURI);
-			for (String documentURI : personToPublicationMap.get(authorURI)) {
-				String documentDate = publicationToYearMap.get(documentURI);
-				for (String coAuthorURI : publicationToPersonMap.get(documentURI)) {
-					String coAuthorName = personLabelsMap.get(coAuthorURI);
-					consumer.processEntry(authorURI, authorName, documentURI, documentDate, coAuthorURI, coAuthorName);
-				}
+			PersonPublicationMaps personPublicationMaps = VisualizationCaches.personToPublication.get(rdfService);
+
+			Map<String, String> personLabels = VisualizationCaches.personLabels.get(vitroRequest);
+			Map<String, String> publicationToYear = VisualizationCaches.publicationToYear.get(rdfService);
+
+			// For a limited network, find the top co-authors in the institution's co-authorship graph,
+			// rather than adding every co-author only to drop most of them
+			CollaborationGraph graph = maxCollaborators > 0 ? VisualizationCaches.coAuthorshipGraph(rdfService) : null;
+			int collaboratorCount = graph == null ? 0 : graph.getCollaboratorCount(this.egoURI);
+			if (collaboratorCount > maxCollaborators) {
+				int[] topCollaborators = graph.getTopCollaboratorIds(this.egoURI, maxCollaborators);
+				Arrays.sort(topCollaborators);
+
+				consumer.builder.addTopCollaboratorsFromCaches(this.egoURI,
+						personLabels,
+						personPublicationMaps.getPersonToPublicationIds(),
+						personPublicationMaps.getPublicationToPersonIds(),
+						topCollaborators,
+						collaboratorCount,
+						publicationToYear);
+			} else {
+				consumer.builder.addFromCaches(this.egoURI,
+						personLabels,
+						personPublicationMaps.getPersonToPublicationIds(),
+						personPublicationMaps.getPublicationToPersonIds(),
+						publicationToYear);
 			}
 			consumer.endProcessing();
 		} else {
@@ -545,27 +288,15 @@ public class CoAuthorshipQueryRunner implements QueryRunner<CoAuthorshipData> {
 			}
 		}
 
-		if (consumer.egoNode == null) {
-			consumer.egoNode = makeEgoNode();
+		if (consumer.builder.getEgoCollaborator() == null) {
+			consumer.builder.setEgoCollaborator(makeEgoNode());
 		}
 
-		data = consumer.getCollaborationData();
+		CoAuthorshipData data = consumer.getCollaborationData();
 		if (cacheTime != null) {
 			data.setBuiltFromCacheTime(cacheTime);
 		}
 
-		CollaborationDataCacheEntry newEntry = new CollaborationDataCacheEntry();
-
-		newEntry.uri = this.egoURI;
-		newEntry.data = data;
-		newEntry.creationTime = newEntry.accessTime = new Date().getTime();
-
-		// Remove dead entries
-		expireCache();
-
-		// Cache the new entry
-		collaborationDataCache.put(this.egoURI, newEntry);
-
 		return data;
 	}
 
@@ -576,33 +307,5 @@ public class CoAuthorshipQueryRunner implements QueryRunner<CoAuthorshipData> {
 		return collab;
 	}
 
-	private synchronized void expireCache() {
-		for (String key : collaborationDataCache.keySet()) {
-			CollaborationDataCacheEntry entry = collaborationDataCache.get(key);
-			if (entry != null && entry.hasExpired()) {
-				collaborationDataCache.remove(key);
-			}
-		}
-	}
-
-	private static final Map<String, CollaborationDataCacheEntry> collaborationDataCache = new ConcurrentHashMap<String, CollaborationDataCacheEntry>();
-
-	private static class CollaborationDataCacheEntry {
-		String uri;
-		CoAuthorshipData data;
-		long creationTime;
-		long accessTime;
-
-		boolean hasExpired() {
-			long now = new Date().getTime();
-
-			// If it's older than five minutes, and it hasn't *just* been accessed, it's expired
-			if (creationTime < (now - 300000L) && accessTime < (now - 3000L)) {
-				return true;
-			}
-
-			// Otherwise, if it is more than 30 seconds old, expire it
-			return accessTime < (now - 30000L);
-		}
-	}
+	private static final CollaborationDataCache<CoAuthorshipData> collaborationDataCache = new CollaborationDataCache<CoAuthorshipData>("coAuthorship");
 }
@@ -2,6 +2,8 @@
 
 package edu.cornell.mannlib.vitro.webapp.visualization.coauthorship;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -20,10 +22,12 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.Res
 import edu.cornell.mannlib.vitro.webapp.controller.visualization.DataVisualizationController;
 import edu.cornell.mannlib.vitro.webapp.controller.visualization.VisualizationFrameworkConstants;
 import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaborationData;
+import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaborationJSONWriter;
 import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
 import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.StreamingDataResponse;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.StreamingVisualizationRequestHandler;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UtilityFunctions;
-import edu.cornell.mannlib.vitro.webapp.visualization.visutils.VisualizationRequestHandler;
 
 /**
  * This request handler is used when information related to co-authorship network
@@ -34,7 +38,7 @@ import edu.cornell.mannlib.vitro.webapp.visualization.visutils.VisualizationRequ
  *
  * @author cdtank
  */
-public class CoAuthorshipRequestHandler implements VisualizationRequestHandler {
+public class CoAuthorshipRequestHandler implements StreamingVisualizationRequestHandler {
 
 	@Override
 	public Object generateAjaxVisualization(VitroRequest vitroRequest, Log log,
@@ -98,6 +102,13 @@ public class CoAuthorshipRequestHandler implements VisualizationRequestHandler {
 			 * */
 				return prepareNetworkDownloadDataResponse(authorNodesAndEdges);
 
+		} else if (VisualizationFrameworkConstants.COAUTHOR_NETWORK_JSON_VIS_MODE
+				.equalsIgnoreCase(visMode)) {
+			/*
+			 * When the compact (columnar json) network is required.
+			 * */
+				return prepareNetworkJSONDataResponse(authorNodesAndEdges);
+
 		} else {
     			/*
     			 * When the graphML file is required - based on which coauthorship network
@@ -108,6 +119,64 @@ public class CoAuthorshipRequestHandler implements VisualizationRequestHandler {
 
 	}
 
+	/**
+	 * The graphML and json networks are written straight to the response. The csv files for the
+	 * sparklines are small, so are left to generateDataVisualization.
+	 */
+	@Override
+	public StreamingDataResponse generateStreamingDataVisualization(
+			VitroRequest vitroRequest, Log log, Dataset dataset)
+			throws MalformedQueryParametersException {
+
+		String visMode = vitroRequest.getParameter(
+						VisualizationFrameworkConstants
+								.VIS_MODE_KEY);
+
+		if (VisualizationFrameworkConstants.COAUTHORS_COUNT_PER_YEAR_VIS_MODE.equalsIgnoreCase(visMode)
+				|| VisualizationFrameworkConstants.COAUTHORS_LIST_VIS_MODE.equalsIgnoreCase(visMode)) {
+			return null;
+		}
+
+		String egoURI = vitroRequest.getParameter(
+				VisualizationFrameworkConstants
+						.INDIVIDUAL_URI_KEY);
+
+		CoAuthorshipQueryRunner queryManager =
+		new CoAuthorshipQueryRunner(egoURI, vitroRequest, log);
+
+		CollaborationData authorNodesAndEdges =
+		queryManager.getQueryResult();
+
+		if (VisualizationFrameworkConstants.COAUTHOR_NETWORK_JSON_VIS_MODE
+				.equalsIgnoreCase(visMode)) {
+			final CollaborationJSONWriter jsonWriter =
+					new CollaborationJSONWriter(authorNodesAndEdges);
+
+			return new StreamingDataResponse("application/json", null) {
+				@Override
+				public void writeTo(OutputStream out) throws IOException {
+					jsonWriter.writeTo(out);
+				}
+			};
+		}
+
+		String outputFileName = null;
+		if (VisualizationFrameworkConstants.COAUTHOR_NETWORK_DOWNLOAD_VIS_MODE
+				.equalsIgnoreCase(visMode)) {
+			outputFileName = getNetworkDownloadFileName(authorNodesAndEdges);
+		}
+
+		final CoAuthorshipGraphMLWriter coAuthorshipGraphMLWriter =
+				new CoAuthorshipGraphMLWriter(authorNodesAndEdges);
+
+		return new StreamingDataResponse("text/xml", outputFileName) {
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				coAuthorshipGraphMLWriter.writeTo(out);
+			}
+		};
+	}
+
 	public ResponseValues generateStandardVisualization(VitroRequest vitroRequest,
 											  	Log log,
 											    Dataset dataset)
@@ -264,18 +333,7 @@ public class CoAuthorshipRequestHandler implements VisualizationRequestHandler {
 	private Map<String, String> prepareNetworkDownloadDataResponse(
 									CollaborationData authorNodesAndEdges) {
 
-		String outputFileName = "";
-
-		if (authorNodesAndEdges.getCollaborators() != null
-					&& authorNodesAndEdges.getCollaborators().size() > 0) {
-
-			outputFileName = UtilityFunctions.slugify(authorNodesAndEdges
-									.getEgoCollaborator().getCollaboratorName())
-									+ "_co-author-network.graphml" + ".xml";
-
-		} else {
-			outputFileName = "no_co-author-network.graphml" + ".xml";
-		}
+		String outputFileName = getNetworkDownloadFileName(authorNodesAndEdges);
 
 		CoAuthorshipGraphMLWriter coAuthorshipGraphMLWriter =
 				new CoAuthorshipGraphMLWriter(authorNodesAndEdges);
@@ -291,6 +349,36 @@ public class CoAuthorshipRequestHandler implements VisualizationRequestHandler {
 		return fileData;
 	}
 
+	/**
+	 * Provides a response when the co-authorship network is requested as columnar json.
+	 * @param authorNodesAndEdges Author nodes and edges
+	 */
+	private Map<String, String> prepareNetworkJSONDataResponse(
+									CollaborationData authorNodesAndEdges) {
+
+        Map<String, String> fileData = new HashMap<String, String>();
+		fileData.put(DataVisualizationController.FILE_CONTENT_TYPE_KEY,
+					 "application/json");
+		fileData.put(DataVisualizationController.FILE_CONTENT_KEY,
+					 new CollaborationJSONWriter(authorNodesAndEdges).getJSONContent());
+
+		return fileData;
+	}
+
+	private String getNetworkDownloadFileName(CollaborationData authorNodesAndEdges) {
+
+		if (authorNodesAndEdges.getCollaborators() != null
+					&& authorNodesAndEdges.getCollaborators().size() > 0) {
+
+			return UtilityFunctions.slugify(authorNodesAndEdges
+									.getEgoCollaborator().getCollaboratorName())
+									+ "_co-author-network.graphml" + ".xml";
+
+		} else {
+			return "no_co-author-network.graphml" + ".xml";
+		}
+	}
+
 	@Override
 	public AuthorizationRequest getRequiredPrivileges() {
 		return null;
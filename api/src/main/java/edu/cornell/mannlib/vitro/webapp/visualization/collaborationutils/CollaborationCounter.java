@@ -0,0 +1,148 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.model.LongIntHashMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Activity;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaboration;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UniqueIDGenerator;
+
+/**
+ * Counts the activities shared by pairs of collaborators, by year, for the collaborations between the
+ * collaborators of an ego (e.g. co-author to co-author).
+ *
+ * Pairs are found by their collaborator ids packed into a long, and the counts are kept in int arrays, so that
+ * dense networks can be counted without creating a key, a set of activities or a year map for each pair.
+ * The Collaboration objects are only created once everything has been counted.
+ */
+public class CollaborationCounter {
+
+	private final LongIntHashMap pairs = new LongIntHashMap(1024);
+
+	/*
+	 * The collaborators of each pair, in the order they were first counted.
+	 * */
+	private final List<Collaborator> sources = new ArrayList<Collaborator>();
+	private final List<Collaborator> targets = new ArrayList<Collaborator>();
+
+	/*
+	 * Counts of each pair by year, as linked lists in int arrays - the first entry of each pair, and for each
+	 * entry its year, count and the next entry of the same pair (or -1).
+	 * */
+	private int[] firstEntries = new int[256];
+	private int[] entryYears = new int[256];
+	private int[] entryCounts = new int[256];
+	private int[] nextEntries = new int[256];
+	private int entryCount = 0;
+
+	/**
+	 * Count an activity shared by two collaborators
+	 *
+	 * @param year year of the activity, as returned by getYear
+	 */
+	public void add(Collaborator source, Collaborator target, int year) {
+		int pair = sources.size();
+		int existing = pairs.putIfAbsent(
+				LongIntHashMap.pairKey(source.getCollaboratorID(), target.getCollaboratorID()), pair);
+
+		if (existing > -1) {
+			pair = existing;
+		} else {
+			sources.add(source);
+			targets.add(target);
+			if (pair == firstEntries.length) {
+				firstEntries = Arrays.copyOf(firstEntries, pair * 2);
+			}
+			firstEntries[pair] = -1;
+		}
+
+		// A pair usually has few years, so they are found by walking its list
+		int last = -1;
+		for (int entry = firstEntries[pair]; entry > -1; entry = nextEntries[entry]) {
+			if (entryYears[entry] == year) {
+				entryCounts[entry]++;
+				return;
+			}
+			last = entry;
+		}
+
+		int entry = addEntry(year);
+		if (last > -1) {
+			nextEntries[last] = entry;
+		} else {
+			firstEntries[pair] = entry;
+		}
+	}
+
+	/**
+	 * Number of pairs counted
+	 */
+	public int size() {
+		return sources.size();
+	}
+
+	/**
+	 * Create the collaborations, in the order that the pairs were first counted
+	 */
+	public List<Collaboration> getCollaborations(UniqueIDGenerator edgeIDGenerator) {
+		List<Collaboration> collaborations = new ArrayList<Collaboration>(sources.size());
+
+		for (int pair = 0; pair < sources.size(); pair++) {
+			int years = 0;
+			for (int entry = firstEntries[pair]; entry > -1; entry = nextEntries[entry]) {
+				years++;
+			}
+
+			int[] activityYears = new int[years];
+			int[] activityYearCounts = new int[years];
+			int i = 0;
+			for (int entry = firstEntries[pair]; entry > -1; entry = nextEntries[entry]) {
+				// Insertion sort, as there are few years
+				int j = i++;
+				while (j > 0 && activityYears[j - 1] > entryYears[entry]) {
+					activityYears[j] = activityYears[j - 1];
+					activityYearCounts[j] = activityYearCounts[j - 1];
+					j--;
+				}
+				activityYears[j] = entryYears[entry];
+				activityYearCounts[j] = entryCounts[entry];
+			}
+
+			collaborations.add(new Collaboration(sources.get(pair), targets.get(pair),
+					activityYears, activityYearCounts, edgeIDGenerator));
+		}
+
+		return collaborations;
+	}
+
+	/**
+	 * The year of an activity, or Collaboration.UNKNOWN_YEAR if it doesn't have one
+	 */
+	public static int getYear(Activity activity) {
+		try {
+			return Integer.parseInt(activity.getParsedActivityYear());
+		} catch (NumberFormatException e) {
+			return Collaboration.UNKNOWN_YEAR;
+		}
+	}
+
+	private int addEntry(int year) {
+		if (entryCount == entryYears.length) {
+			int capacity = entryCount * 2;
+			entryYears = Arrays.copyOf(entryYears, capacity);
+			entryCounts = Arrays.copyOf(entryCounts, capacity);
+			nextEntries = Arrays.copyOf(nextEntries, capacity);
+		}
+
+		int entry = entryCount++;
+		entryYears[entry] = year;
+		entryCounts[entry] = 1;
+		nextEntries[entry] = -1;
+		return entry;
+	}
+}
@@ -19,6 +19,9 @@ public abstract class CollaborationData {
 
 	private Date builtFromCacheTime = null;
 
+	private boolean truncated = false;
+	private int collaboratorCount = 0;
+
 	public CollaborationData(Collaborator egoCollaborator,
 							Set<Collaborator> collaborators,
 							Set<Collaboration> collaborations) {
@@ -67,6 +70,30 @@ public abstract class CollaborationData {
 
 	public void setBuiltFromCacheTime(Date time) { this.builtFromCacheTime = time; }
 
+	/**
+	 * Whether only the top collaborators of the ego have been kept
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Number of collaborators of the ego before the network was truncated
+	 */
+	public int getCollaboratorCount() {
+		return collaboratorCount;
+	}
+
+	/**
+	 * Record that only the top collaborators have been kept
+	 *
+	 * @param collaboratorCount number of collaborators of the ego before the network was truncated
+	 */
+	public void setTruncated(int collaboratorCount) {
+		this.truncated = true;
+		this.collaboratorCount = collaboratorCount;
+	}
+
 	abstract Set<Map<String, String>> initializeEdgeSchema();
 
 	abstract Set<Map<String, String>> initializeNodeSchema();
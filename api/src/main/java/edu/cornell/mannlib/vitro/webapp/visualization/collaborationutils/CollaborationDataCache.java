@@ -0,0 +1,423 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdSets;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Activity;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
+
+/**
+ * Cache of ego networks (co-authors, co-investigators), shared by all requests.
+ *
+ * The cache is bounded both by the number of networks and by their total weight (nodes plus edges), evicting the
+ * least recently used networks first, so that popular profiles stay cached without the cache growing unbounded.
+ *
+ * A network is dropped when any of the people or activities in it change in the triple store, as well as when it
+ * expires. The limits and expiry times are shared by all of the caches, and can be set in runtime.properties.
+ *
+ * When several requests want the same uncached network, only one of them builds it, and the others wait for
+ * its result. Networks for different people are built in parallel.
+ */
+public class CollaborationDataCache<D extends CollaborationData> {
+	private static final Log log = LogFactory.getLog(CollaborationDataCache.class);
+
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+	public static final long DEFAULT_MAX_WEIGHT = 2000000L;
+	public static final long DEFAULT_EXPIRE_AFTER_WRITE = 30 * 60 * 1000L;
+	public static final long DEFAULT_EXPIRE_AFTER_ACCESS = 5 * 60 * 1000L;
+
+	private static volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+	private static volatile long maxWeight = DEFAULT_MAX_WEIGHT;
+	private static volatile long expireAfterWrite = DEFAULT_EXPIRE_AFTER_WRITE;
+	private static volatile long expireAfterAccess = DEFAULT_EXPIRE_AFTER_ACCESS;
+
+	private static final List<CollaborationDataCache<?>> caches = new CopyOnWriteArrayList<CollaborationDataCache<?>>();
+
+	private final String name;
+
+	/**
+	 * Networks in access order - least recently used first
+	 */
+	private final LinkedHashMap<String, Entry<D>> entries = new LinkedHashMap<String, Entry<D>>(16, 0.75f, true);
+
+	/**
+	 * Ids of every resource that a cached network may depend on, so that most changes can be ignored without
+	 * looking at the entries. Bits are not cleared on eviction, only when the filter is rebuilt.
+	 */
+	private BitSet dependencyFilter = new BitSet();
+	private int evictionsSinceFilterBuilt = 0;
+
+	private long totalWeight = 0;
+
+	/**
+	 * Networks being built, so that concurrent requests for the same person share the result
+	 */
+	private final ConcurrentMap<String, FutureTask<D>> loading = new ConcurrentHashMap<String, FutureTask<D>>();
+
+	/**
+	 * Count of changes that may have affected a network, to detect networks that changed while being built
+	 */
+	private volatile long changeCount = 0;
+
+	public CollaborationDataCache(String name) {
+		this.name = name;
+		caches.add(this);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Set the limits for all of the caches
+	 *
+	 * @param entries maximum number of networks in each cache
+	 * @param weight maximum total of nodes and edges in each cache
+	 */
+	public static void setLimits(int entries, long weight) {
+		maxEntries = Math.max(0, entries);
+		maxWeight = Math.max(0, weight);
+		for (CollaborationDataCache<?> cache : caches) {
+			cache.evict();
+		}
+	}
+
+	/**
+	 * Set the expiry times for all of the caches
+	 *
+	 * @param afterWrite time in milliseconds that a network is kept after it is created
+	 * @param afterAccess time in milliseconds that a network is kept after it is last used
+	 */
+	public static void setExpiry(long afterWrite, long afterAccess) {
+		expireAfterWrite = afterWrite;
+		expireAfterAccess = afterAccess;
+	}
+
+	/**
+	 * Drop the networks that depend on resources that have changed in the triple store
+	 *
+	 * @param uris URIs of the changed resources
+	 */
+	public static void notifyChanges(Collection<String> uris) {
+		if (caches.isEmpty()) {
+			return;
+		}
+
+		// Networks being built may include the changed resources, but their dependencies aren't known yet
+		for (CollaborationDataCache<?> cache : caches) {
+			if (!cache.loading.isEmpty()) {
+				cache.changeCount++;
+			}
+		}
+
+		// Only resources already known to the dictionary can be in a cached network
+		UriDictionary dictionary = UriDictionary.getInstance();
+		int[] ids = new int[uris.size()];
+		int count = 0;
+		for (String uri : uris) {
+			int id = dictionary.lookup(uri);
+			if (id > -1) {
+				ids[count++] = id;
+			}
+		}
+
+		if (count > 0) {
+			int[] changed = IdSets.sortedUnique(ids, count);
+			for (CollaborationDataCache<?> cache : caches) {
+				cache.invalidate(changed);
+			}
+		}
+	}
+
+	/**
+	 * Drop all of the networks in all of the caches
+	 */
+	public static void clearAll() {
+		for (CollaborationDataCache<?> cache : caches) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Get the network for a person, or null if it isn't cached (or has expired)
+	 */
+	public synchronized D get(String egoURI) {
+		Entry<D> entry = entries.get(egoURI);
+		if (entry == null) {
+			return null;
+		}
+
+		long now = System.currentTimeMillis();
+		if (entry.hasExpired(now)) {
+			remove(egoURI);
+			return null;
+		}
+
+		entry.accessTime = now;
+		return entry.data;
+	}
+
+	/**
+	 * Get the network for a person, building it if it isn't cached.
+	 * If another request is already building the network, wait for it rather than building it again.
+	 *
+	 * @param egoURI the person
+	 * @param loader builds the network
+	 */
+	public D get(final String egoURI, final Loader<D> loader) throws MalformedQueryParametersException {
+		D data = get(egoURI);
+		if (data != null) {
+			return data;
+		}
+
+		FutureTask<D> task = new FutureTask<D>(new Callable<D>() {
+			@Override
+			public D call() throws Exception {
+				// It may have been cached between the first check and this task being registered
+				D cached = get(egoURI);
+				if (cached != null) {
+					return cached;
+				}
+
+				long changesAtStart = changeCount;
+				D loaded = loader.load();
+
+				// Don't keep a network that may already be out of date
+				if (loaded != null && changeCount == changesAtStart) {
+					put(egoURI, loaded);
+				}
+
+				return loaded;
+			}
+		});
+
+		FutureTask<D> existing = loading.putIfAbsent(egoURI, task);
+		if (existing == null) {
+			try {
+				task.run();
+			} finally {
+				loading.remove(egoURI, task);
+			}
+		} else {
+			task = existing;
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted waiting for the network of " + egoURI, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof MalformedQueryParametersException) {
+				throw (MalformedQueryParametersException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Cache the network for a person
+	 */
+	public void put(String egoURI, D data) {
+		// Work out what the network depends on before taking the lock
+		int[] dependencies = dependenciesOf(egoURI, data);
+		long weight = weigh(data);
+
+		synchronized (this) {
+			remove(egoURI);
+
+			// A network that would fill the cache on its own is not worth keeping
+			if (weight > maxWeight) {
+				if (log.isDebugEnabled()) {
+					log.debug(name + ": not caching network of " + egoURI + ", weight " + weight);
+				}
+				return;
+			}
+
+			Entry<D> entry = new Entry<D>(data, dependencies, weight);
+			entries.put(egoURI, entry);
+			totalWeight += weight;
+			for (int id : dependencies) {
+				dependencyFilter.set(id);
+			}
+
+			evict();
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getTotalWeight() {
+		return totalWeight;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		totalWeight = 0;
+		dependencyFilter = new BitSet();
+		evictionsSinceFilterBuilt = 0;
+	}
+
+	private synchronized void invalidate(int[] changed) {
+		boolean possible = false;
+		for (int id : changed) {
+			if (dependencyFilter.get(id)) {
+				possible = true;
+				break;
+			}
+		}
+
+		if (!possible) {
+			return;
+		}
+
+		Iterator<Map.Entry<String, Entry<D>>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry<D> entry = iterator.next().getValue();
+			if (entry.dependsOn(changed)) {
+				iterator.remove();
+				removed(entry);
+			}
+		}
+	}
+
+	/**
+	 * Remove expired networks, then the least recently used until the cache is within its limits
+	 */
+	private synchronized void evict() {
+		long now = System.currentTimeMillis();
+
+		Iterator<Map.Entry<String, Entry<D>>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry<D> entry = iterator.next().getValue();
+			if (entry.hasExpired(now) || entries.size() > maxEntries || totalWeight > maxWeight) {
+				iterator.remove();
+				removed(entry);
+			} else if (now - entry.accessTime < expireAfterAccess) {
+				// Everything after this has been used more recently, so can only have expired since it was written
+				break;
+			}
+		}
+
+		// Rebuild the filter once enough has been evicted that it is mostly stale
+		if (evictionsSinceFilterBuilt > entries.size() + 100) {
+			BitSet filter = new BitSet();
+			for (Entry<D> entry : entries.values()) {
+				for (int id : entry.dependencies) {
+					filter.set(id);
+				}
+			}
+			dependencyFilter = filter;
+			evictionsSinceFilterBuilt = 0;
+		}
+	}
+
+	private void remove(String egoURI) {
+		Entry<D> entry = entries.remove(egoURI);
+		if (entry != null) {
+			removed(entry);
+		}
+	}
+
+	private void removed(Entry<D> entry) {
+		totalWeight -= entry.weight;
+		evictionsSinceFilterBuilt++;
+	}
+
+	private static long weigh(CollaborationData data) {
+		return 1L + sizeOf(data.getCollaborators()) + sizeOf(data.getCollaborations());
+	}
+
+	private static int sizeOf(Collection<?> collection) {
+		return collection == null ? 0 : collection.size();
+	}
+
+	/**
+	 * The people and activities in a network, as a sorted id array
+	 */
+	private static int[] dependenciesOf(String egoURI, CollaborationData data) {
+		UriDictionary dictionary = UriDictionary.getInstance();
+		List<String> uris = new ArrayList<String>();
+		uris.add(egoURI);
+
+		if (data.getCollaborators() != null) {
+			for (Collaborator collaborator : data.getCollaborators()) {
+				uris.add(collaborator.getCollaboratorURI());
+				for (Activity activity : collaborator.getCollaboratorActivities()) {
+					uris.add(activity.getActivityURI());
+				}
+			}
+		}
+
+		int[] ids = new int[uris.size()];
+		int count = 0;
+		for (String uri : uris) {
+			if (uri != null) {
+				ids[count++] = dictionary.getId(uri);
+			}
+		}
+
+		return IdSets.sortedUnique(ids, count);
+	}
+
+	/**
+	 * Builds the network for a person
+	 */
+	public interface Loader<D> {
+		D load() throws MalformedQueryParametersException;
+	}
+
+	private static class Entry<D> {
+		final D data;
+		final int[] dependencies;
+		final long weight;
+		final long creationTime;
+		long accessTime;
+
+		Entry(D data, int[] dependencies, long weight) {
+			this.data = data;
+			this.dependencies = dependencies;
+			this.weight = weight;
+			this.creationTime = this.accessTime = System.currentTimeMillis();
+		}
+
+		boolean hasExpired(long now) {
+			return now - creationTime > expireAfterWrite || now - accessTime > expireAfterAccess;
+		}
+
+		boolean dependsOn(int[] changed) {
+			for (int id : changed) {
+				if (IdSets.contains(dependencies, id)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
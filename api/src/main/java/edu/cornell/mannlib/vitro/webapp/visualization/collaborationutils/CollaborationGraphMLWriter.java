@@ -0,0 +1,340 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import edu.cornell.mannlib.vitro.webapp.controller.freemarker.UrlBuilder;
+import edu.cornell.mannlib.vitro.webapp.controller.freemarker.UrlBuilder.ParamMap;
+import edu.cornell.mannlib.vitro.webapp.controller.visualization.VisualizationFrameworkConstants;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaboration;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
+
+/**
+ * Writes a collaboration network as GraphML.
+ *
+ * The elements are written as they are generated (StAX), so the network can be sent straight to the response
+ * without building a document, or the whole text, in memory first.
+ *
+ * When only the top collaborators of the ego have been kept, the graph has truncated and collaborator_count data.
+ */
+public class CollaborationGraphMLWriter {
+
+	private static final String GRAPHML_NS = "http://graphml.graphdrawing.org/xmlns";
+
+	/**
+	 * XMLOutputFactory implementations are not guaranteed to be thread safe, so each thread has its own
+	 */
+	private static final ThreadLocal<XMLOutputFactory> outputFactory = new ThreadLocal<XMLOutputFactory>() {
+		@Override
+		protected XMLOutputFactory initialValue() {
+			return XMLOutputFactory.newInstance();
+		}
+	};
+
+	private final CollaborationData collaborationData;
+
+	private final String activityKey;
+	private final String collaborationKey;
+	private final String activityType;
+
+	private StringBuilder graphMLContent;
+
+	/**
+	 * @param collaborationData the network
+	 * @param activityKey key of the number of activities of a node, e.g. number_of_authored_works
+	 * @param collaborationKey key of the number of shared activities of an edge, e.g. number_of_coauthored_works
+	 * @param activityType suffix of the node year keys, e.g. publication for earliest_publication
+	 */
+	public CollaborationGraphMLWriter(CollaborationData collaborationData,
+									  String activityKey,
+									  String collaborationKey,
+									  String activityType) {
+		this.collaborationData = collaborationData;
+		this.activityKey = activityKey;
+		this.collaborationKey = collaborationKey;
+		this.activityType = activityType;
+	}
+
+	/**
+	 * The GraphML as text. Only use this where the content is needed as a String - otherwise, use writeTo.
+	 */
+	public StringBuilder getGraphMLContent() {
+		if (graphMLContent == null) {
+			StringWriter writer = new StringWriter();
+			try {
+				writeTo(writer);
+			} catch (IOException e) {
+				throw new IllegalStateException("XML error generating GraphML", e);
+			}
+
+			graphMLContent = new StringBuilder(writer.getBuffer());
+		}
+
+		return graphMLContent;
+	}
+
+	/**
+	 * Write the GraphML to a stream, encoded as UTF-8. The stream is not closed.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		try {
+			XMLStreamWriter xml = outputFactory.get().createXMLStreamWriter(out, "UTF-8");
+			write(xml, "UTF-8");
+		} catch (XMLStreamException e) {
+			throw asIOException(e);
+		}
+	}
+
+	/**
+	 * Write the GraphML to a character stream. The writer is not closed.
+	 */
+	public void writeTo(Writer out) throws IOException {
+		try {
+			XMLStreamWriter xml = outputFactory.get().createXMLStreamWriter(out);
+			write(xml, "UTF-8");
+		} catch (XMLStreamException e) {
+			throw asIOException(e);
+		}
+	}
+
+	private void write(XMLStreamWriter xml, String encoding) throws XMLStreamException {
+		xml.writeStartDocument(encoding, "1.0");
+		newLine(xml, 0);
+
+		xml.setDefaultNamespace(GRAPHML_NS);
+		xml.writeStartElement(GRAPHML_NS, "graphml");
+		xml.writeDefaultNamespace(GRAPHML_NS);
+
+		/*
+		 * Key definitions for the nodes, then for the edges.
+		 * */
+		writeKeyDefinitions(xml, collaborationData.getNodeSchema());
+		writeKeyDefinitions(xml, collaborationData.getEdgeSchema());
+
+		if (collaborationData.isTruncated()) {
+			writeGraphKeyDefinition(xml, "truncated", "boolean");
+			writeGraphKeyDefinition(xml, "collaborator_count", "int");
+		}
+
+		newLine(xml, 1);
+		xml.writeStartElement(GRAPHML_NS, "graph");
+		xml.writeAttribute("edgedefault", "undirected");
+
+		if (collaborationData.isTruncated()) {
+			writeGraphData(xml, "truncated", "true");
+			writeGraphData(xml, "collaborator_count", String.valueOf(collaborationData.getCollaboratorCount()));
+		}
+
+		if (collaborationData.getCollaborators() != null && collaborationData.getCollaborators().size() > 0) {
+			writeNodes(xml);
+		}
+
+		if (collaborationData.getCollaborations() != null && collaborationData.getCollaborations().size() > 0) {
+			writeEdges(xml);
+		}
+
+		newLine(xml, 1);
+		xml.writeEndElement();
+
+		newLine(xml, 0);
+		xml.writeEndElement();
+		newLine(xml, 0);
+
+		xml.writeEndDocument();
+		xml.flush();
+	}
+
+	private void writeKeyDefinitions(XMLStreamWriter xml, Set<Map<String, String>> schema) throws XMLStreamException {
+		for (Map<String, String> currentSchemaAttribute : schema) {
+			newLine(xml, 1);
+			xml.writeStartElement(GRAPHML_NS, "key");
+
+			for (Map.Entry<String, String> currentAttributeKey : currentSchemaAttribute.entrySet()) {
+				xml.writeAttribute(currentAttributeKey.getKey(), currentAttributeKey.getValue());
+			}
+
+			if (currentSchemaAttribute.containsKey("default")) {
+				newLine(xml, 2);
+				writeElement(xml, "default", null, currentSchemaAttribute.get("default"));
+				newLine(xml, 1);
+			}
+
+			xml.writeEndElement();
+		}
+	}
+
+	private void writeGraphKeyDefinition(XMLStreamWriter xml, String name, String type) throws XMLStreamException {
+		newLine(xml, 1);
+		xml.writeStartElement(GRAPHML_NS, "key");
+		xml.writeAttribute("id", name);
+		xml.writeAttribute("for", "graph");
+		xml.writeAttribute("attr.name", name);
+		xml.writeAttribute("attr.type", type);
+		xml.writeEndElement();
+	}
+
+	private void writeGraphData(XMLStreamWriter xml, String key, String value) throws XMLStreamException {
+		newLine(xml, 2);
+		writeElement(xml, "data", key, value);
+	}
+
+	private void writeNodes(XMLStreamWriter xml) throws XMLStreamException {
+		newLine(xml, 2);
+		xml.writeComment("nodes");
+
+		/*
+		 * The ego is written first, because this is the "requirement" of the network vis.
+		 * */
+		Collaborator egoNode = collaborationData.getEgoCollaborator();
+		writeNode(xml, egoNode);
+
+		List<Collaborator> orderedNodes = new ArrayList<Collaborator>(collaborationData.getCollaborators());
+		orderedNodes.remove(egoNode);
+		orderedNodes.sort(new CollaboratorComparator());
+
+		for (Collaborator currNode : orderedNodes) {
+			if (currNode != egoNode) {
+				writeNode(xml, currNode);
+			}
+		}
+	}
+
+	private void writeNode(XMLStreamWriter xml, Collaborator collaborator) throws XMLStreamException {
+		ParamMap individualProfileURLParams =
+					new ParamMap(VisualizationFrameworkConstants.INDIVIDUAL_URI_KEY, collaborator.getCollaboratorURI());
+
+		String profileURL = UrlBuilder.getUrl(VisualizationFrameworkConstants.INDIVIDUAL_URL_PREFIX, individualProfileURLParams);
+
+		newLine(xml, 2);
+		xml.writeStartElement(GRAPHML_NS, "node");
+		xml.writeAttribute("id", String.valueOf(collaborator.getCollaboratorID()));
+
+		writeData(xml, "url", collaborator.getCollaboratorURI());
+		writeData(xml, "label", collaborator.getCollaboratorName());
+
+		if (profileURL != null) {
+			writeData(xml, "profile_url", profileURL);
+		}
+
+		writeData(xml, activityKey, String.valueOf(collaborator.getNumOfActivities()));
+
+		if (collaborator.getEarliestActivityYearCount() != null) {
+			for (Map.Entry<String, Integer> activityInfo : collaborator.getEarliestActivityYearCount().entrySet()) {
+				writeData(xml, "earliest_" + activityType, activityInfo.getKey());
+				writeData(xml, "num_earliest_" + activityType, activityInfo.getValue().toString());
+			}
+		}
+
+		if (collaborator.getLatestActivityYearCount() != null) {
+			for (Map.Entry<String, Integer> activityInfo : collaborator.getLatestActivityYearCount().entrySet()) {
+				writeData(xml, "latest_" + activityType, activityInfo.getKey());
+				writeData(xml, "num_latest_" + activityType, activityInfo.getValue().toString());
+			}
+		}
+
+		if (collaborator.getUnknownActivityYearCount() != null) {
+			writeData(xml, "num_unknown_" + activityType, String.valueOf(collaborator.getUnknownActivityYearCount()));
+		}
+
+		newLine(xml, 2);
+		xml.writeEndElement();
+	}
+
+	private void writeEdges(XMLStreamWriter xml) throws XMLStreamException {
+		newLine(xml, 2);
+		xml.writeComment("edges");
+
+		List<Collaboration> orderedEdges = new ArrayList<Collaboration>(collaborationData.getCollaborations());
+		orderedEdges.sort(new CollaborationComparator());
+
+		for (Collaboration currentEdge : orderedEdges) {
+			writeEdge(xml, currentEdge);
+		}
+	}
+
+	private void writeEdge(XMLStreamWriter xml, Collaboration currentEdge) throws XMLStreamException {
+		newLine(xml, 2);
+		xml.writeStartElement(GRAPHML_NS, "edge");
+		xml.writeAttribute("id", String.valueOf(currentEdge.getCollaborationID()));
+		xml.writeAttribute("source", String.valueOf(currentEdge.getSourceCollaborator().getCollaboratorID()));
+		xml.writeAttribute("target", String.valueOf(currentEdge.getTargetCollaborator().getCollaboratorID()));
+
+		writeData(xml, "collaborator1", currentEdge.getSourceCollaborator().getCollaboratorName());
+		writeData(xml, "collaborator2", currentEdge.getTargetCollaborator().getCollaboratorName());
+		writeData(xml, collaborationKey, String.valueOf(currentEdge.getNumOfCollaborations()));
+
+		if (currentEdge.getEarliestCollaborationYearCount() != null) {
+			for (Map.Entry<String, Integer> collaborationInfo : currentEdge.getEarliestCollaborationYearCount().entrySet()) {
+				writeData(xml, "earliest_collaboration", collaborationInfo.getKey());
+				writeData(xml, "num_earliest_collaboration", collaborationInfo.getValue().toString());
+			}
+		}
+
+		if (currentEdge.getLatestCollaborationYearCount() != null) {
+			for (Map.Entry<String, Integer> collaborationInfo : currentEdge.getLatestCollaborationYearCount().entrySet()) {
+				writeData(xml, "latest_collaboration", collaborationInfo.getKey());
+				writeData(xml, "num_latest_collaboration", collaborationInfo.getValue().toString());
+			}
+		}
+
+		if (currentEdge.getUnknownCollaborationYearCount() != null) {
+			writeData(xml, "num_unknown_collaboration", String.valueOf(currentEdge.getUnknownCollaborationYearCount()));
+		}
+
+		newLine(xml, 2);
+		xml.writeEndElement();
+	}
+
+	private void writeData(XMLStreamWriter xml, String key, String value) throws XMLStreamException {
+		newLine(xml, 3);
+		writeElement(xml, "data", key, value);
+	}
+
+	private void writeElement(XMLStreamWriter xml, String name, String key, String value) throws XMLStreamException {
+		xml.writeStartElement(GRAPHML_NS, name);
+		if (key != null) {
+			xml.writeAttribute("key", key);
+		}
+
+		// As with the DOM, a missing value is written as an empty element
+		if (value != null) {
+			xml.writeCharacters(value);
+		}
+
+		xml.writeEndElement();
+	}
+
+	private void newLine(XMLStreamWriter xml, int depth) throws XMLStreamException {
+		xml.writeCharacters("\n");
+		for (int i = 0; i < depth; i++) {
+			xml.writeCharacters("    ");
+		}
+	}
+
+	/**
+	 * Failures writing to the stream are reported as they were thrown, rather than as XML errors
+	 */
+	private static IOException asIOException(XMLStreamException e) {
+		if (e.getNestedException() instanceof IOException) {
+			return (IOException) e.getNestedException();
+		}
+
+		if (e.getCause() instanceof IOException) {
+			return (IOException) e.getCause();
+		}
+
+		return new IOException("XML error generating GraphML", e);
+	}
+}
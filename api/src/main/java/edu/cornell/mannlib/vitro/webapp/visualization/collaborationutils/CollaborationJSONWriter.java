@@ -0,0 +1,264 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import edu.cornell.mannlib.vitro.webapp.controller.freemarker.UrlBuilder;
+import edu.cornell.mannlib.vitro.webapp.controller.visualization.VisualizationFrameworkConstants;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaboration;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
+
+/**
+ * Writes a collaboration network as columnar JSON - one array per property, rather than one object per node or
+ * edge - so that the property names are not repeated, and the numeric columns can be loaded into typed arrays.
+ *
+ * <pre>
+ * {
+ *   "version": 1,
+ *   "profileUrlPrefix": "/individual?uri=",
+ *   "truncated": false,
+ *   "nodes": {
+ *     "id": [...], "uri": [...], "label": [...], "activities": [...],
+ *     "earliestYear": [...], "earliestCount": [...], "latestYear": [...], "latestCount": [...], "unknownCount": [...]
+ *   },
+ *   "edges": {
+ *     "id": [...], "source": [...], "target": [...], "collaborations": [...],
+ *     "earliestYear": [...], "earliestCount": [...], "latestYear": [...], "latestCount": [...], "unknownCount": [...]
+ *   }
+ * }
+ * </pre>
+ *
+ * The ego is the first node, and edge sources and targets are positions in the node arrays. A year of 0 means that
+ * there is no known year. The profile URL of a node is the prefix followed by its encoded URI.
+ *
+ * When only the top collaborators of the ego have been kept, truncated is true, and collaboratorCount is the number
+ * of collaborators before the network was truncated.
+ */
+public class CollaborationJSONWriter {
+
+	private static final int VERSION = 1;
+
+	private static final JsonFactory jsonFactory = new JsonFactory();
+
+	private final CollaborationData collaborationData;
+
+	public CollaborationJSONWriter(CollaborationData collaborationData) {
+		this.collaborationData = collaborationData;
+	}
+
+	/**
+	 * The JSON as text. Only use this where the content is needed as a String - otherwise, use writeTo.
+	 */
+	public String getJSONContent() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			writeTo(out);
+		} catch (IOException e) {
+			throw new IllegalStateException("Error generating network JSON", e);
+		}
+
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write the JSON to a stream, encoded as UTF-8. The stream is not closed.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		JsonGenerator json = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+		json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+		List<Collaborator> nodes = getOrderedNodes();
+		List<Collaboration> edges = getOrderedEdges();
+
+		json.writeStartObject();
+		json.writeNumberField("version", VERSION);
+		json.writeStringField("profileUrlPrefix", UrlBuilder.getUrl(VisualizationFrameworkConstants.INDIVIDUAL_URL_PREFIX)
+				+ "?" + VisualizationFrameworkConstants.INDIVIDUAL_URI_KEY + "=");
+
+		json.writeBooleanField("truncated", collaborationData.isTruncated());
+		if (collaborationData.isTruncated()) {
+			json.writeNumberField("collaboratorCount", collaborationData.getCollaboratorCount());
+		}
+
+		writeNodes(json, nodes);
+		writeEdges(json, nodes, edges);
+
+		json.writeEndObject();
+		json.flush();
+	}
+
+	private void writeNodes(JsonGenerator json, List<Collaborator> nodes) throws IOException {
+		int count = nodes.size();
+		int[] ids = new int[count];
+		int[] activities = new int[count];
+		YearCounts years = new YearCounts(count);
+
+		json.writeObjectFieldStart("nodes");
+
+		json.writeArrayFieldStart("uri");
+		for (int i = 0; i < count; i++) {
+			Collaborator node = nodes.get(i);
+			ids[i] = node.getCollaboratorID();
+			activities[i] = node.getNumOfActivities();
+			years.set(i, node.getEarliestActivityYearCount(), node.getLatestActivityYearCount(),
+					node.getUnknownActivityYearCount());
+
+			json.writeString(node.getCollaboratorURI());
+		}
+		json.writeEndArray();
+
+		json.writeArrayFieldStart("label");
+		for (Collaborator node : nodes) {
+			json.writeString(node.getCollaboratorName());
+		}
+		json.writeEndArray();
+
+		writeColumn(json, "id", ids);
+		writeColumn(json, "activities", activities);
+		years.write(json);
+
+		json.writeEndObject();
+	}
+
+	private void writeEdges(JsonGenerator json, List<Collaborator> nodes, List<Collaboration> edges) throws IOException {
+		// Position of each node, by collaborator id
+		Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+		for (int i = 0; i < nodes.size(); i++) {
+			positions.put(nodes.get(i).getCollaboratorID(), i);
+		}
+
+		int count = edges.size();
+		int[] ids = new int[count];
+		int[] sources = new int[count];
+		int[] targets = new int[count];
+		int[] collaborations = new int[count];
+		YearCounts years = new YearCounts(count);
+
+		for (int i = 0; i < count; i++) {
+			Collaboration edge = edges.get(i);
+			ids[i] = edge.getCollaborationID();
+			sources[i] = positionOf(positions, edge.getSourceCollaborator());
+			targets[i] = positionOf(positions, edge.getTargetCollaborator());
+			collaborations[i] = edge.getNumOfCollaborations();
+			years.set(i, edge.getEarliestCollaborationYearCount(), edge.getLatestCollaborationYearCount(),
+					edge.getUnknownCollaborationYearCount());
+		}
+
+		json.writeObjectFieldStart("edges");
+		writeColumn(json, "id", ids);
+		writeColumn(json, "source", sources);
+		writeColumn(json, "target", targets);
+		writeColumn(json, "collaborations", collaborations);
+		years.write(json);
+		json.writeEndObject();
+	}
+
+	private int positionOf(Map<Integer, Integer> positions, Collaborator collaborator) {
+		Integer position = positions.get(collaborator.getCollaboratorID());
+		return position == null ? -1 : position;
+	}
+
+	/**
+	 * The ego first, then the other collaborators in id order, as in the GraphML
+	 */
+	private List<Collaborator> getOrderedNodes() {
+		List<Collaborator> orderedNodes = new ArrayList<Collaborator>();
+		if (collaborationData.getCollaborators() == null || collaborationData.getCollaborators().isEmpty()) {
+			return orderedNodes;
+		}
+
+		Collaborator egoNode = collaborationData.getEgoCollaborator();
+		orderedNodes.addAll(collaborationData.getCollaborators());
+		orderedNodes.remove(egoNode);
+		orderedNodes.sort(new CollaboratorComparator());
+		orderedNodes.add(0, egoNode);
+
+		return orderedNodes;
+	}
+
+	private List<Collaboration> getOrderedEdges() {
+		List<Collaboration> orderedEdges = new ArrayList<Collaboration>();
+		if (collaborationData.getCollaborations() != null) {
+			orderedEdges.addAll(collaborationData.getCollaborations());
+			orderedEdges.sort(new CollaborationComparator());
+		}
+
+		return orderedEdges;
+	}
+
+	private static void writeColumn(JsonGenerator json, String name, int[] values) throws IOException {
+		json.writeArrayFieldStart(name);
+		for (int value : values) {
+			json.writeNumber(value);
+		}
+		json.writeEndArray();
+	}
+
+	/**
+	 * The earliest, latest and unknown year columns of the nodes or edges
+	 */
+	private static final class YearCounts {
+		final int[] earliestYear;
+		final int[] earliestCount;
+		final int[] latestYear;
+		final int[] latestCount;
+		final int[] unknownCount;
+
+		YearCounts(int count) {
+			earliestYear = new int[count];
+			earliestCount = new int[count];
+			latestYear = new int[count];
+			latestCount = new int[count];
+			unknownCount = new int[count];
+		}
+
+		void set(int i, Map<String, Integer> earliest, Map<String, Integer> latest, Integer unknown) {
+			// There is only ever one entry in the earliest and latest maps
+			if (earliest != null) {
+				for (Map.Entry<String, Integer> entry : earliest.entrySet()) {
+					earliestYear[i] = parseYear(entry.getKey());
+					earliestCount[i] = entry.getValue();
+				}
+			}
+
+			if (latest != null) {
+				for (Map.Entry<String, Integer> entry : latest.entrySet()) {
+					latestYear[i] = parseYear(entry.getKey());
+					latestCount[i] = entry.getValue();
+				}
+			}
+
+			if (unknown != null) {
+				unknownCount[i] = unknown;
+			}
+		}
+
+		void write(JsonGenerator json) throws IOException {
+			writeColumn(json, "earliestYear", earliestYear);
+			writeColumn(json, "earliestCount", earliestCount);
+			writeColumn(json, "latestYear", latestYear);
+			writeColumn(json, "latestCount", latestCount);
+			writeColumn(json, "unknownCount", unknownCount);
+		}
+
+		private static int parseYear(String year) {
+			try {
+				return Integer.parseInt(year);
+			} catch (NumberFormatException e) {
+				return 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,449 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdSets;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.LongIntHashMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Activity;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaboration;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UniqueIDGenerator;
+
+/**
+ * Builds the collaboration network of an ego (co-authors, co-investigators) from the people on each of the ego's
+ * activities (publications, grants) - i.e. the projection of the person to activity relationship onto the people.
+ *
+ * Entries are added one at a time, either from the rows of a query, or from the cached maps with addFromCaches
+ * (or addTopCollaboratorsFromCaches, where the top collaborators are already known).
+ *
+ * Once they have all been added, build removes the activities that have too many people. It then keeps only the
+ * top collaborators, if a limit was given, and creates the edges between the collaborators.
+ */
+public class CollaborationNetworkBuilder {
+
+	private final int maxPeoplePerActivity;
+	private final int maxCollaborators;
+
+	private final Set<Collaborator> nodes = new HashSet<Collaborator>();
+
+	private final Map<String, Activity> activityURLToVO = new HashMap<String, Activity>();
+	private final Map<String, Set<Collaborator>> activityURLToCollaborators = new HashMap<String, Set<Collaborator>>();
+	private final Map<String, Collaborator> nodeURLToVO = new HashMap<String, Collaborator>();
+
+	/*
+	 * Edges between the ego and each collaborator, by the packed ids of the pair (see LongIntHashMap.pairKey)
+	 * */
+	private final LongIntHashMap egoEdgeIndex = new LongIntHashMap();
+	private final List<Collaboration> egoEdges = new ArrayList<Collaboration>();
+
+	private final Set<Collaboration> edges = new HashSet<Collaboration>();
+
+	private Collaborator egoNode = null;
+
+	private boolean truncated = false;
+	private int collaboratorCount = 0;
+
+	private final UniqueIDGenerator nodeIDGenerator = new UniqueIDGenerator();
+	private final UniqueIDGenerator edgeIDGenerator = new UniqueIDGenerator();
+
+	/**
+	 * @param maxPeoplePerActivity activities with more people than this are left out of the network
+	 * @param maxCollaborators number of collaborators to keep, or 0 to keep them all
+	 */
+	public CollaborationNetworkBuilder(int maxPeoplePerActivity, int maxCollaborators) {
+		this.maxPeoplePerActivity = maxPeoplePerActivity;
+		this.maxCollaborators = maxCollaborators;
+	}
+
+	/**
+	 * Add a person on an activity of the ego
+	 *
+	 * @param activityDate date (or year) of the activity, or null if it doesn't have one
+	 * @param collaboratorURI a person on the activity - possibly the ego
+	 */
+	public void addEntry(String egoURI, String egoName, String activityURI, String activityDate,
+						 String collaboratorURI, String collaboratorName) {
+		/*
+		 * We only want to create only ONE ego node.
+		 * */
+		if (nodeURLToVO.containsKey(egoURI)) {
+			egoNode = nodeURLToVO.get(egoURI);
+		} else {
+			egoNode = new Collaborator(egoURI, nodeIDGenerator);
+			nodes.add(egoNode);
+			nodeURLToVO.put(egoURI, egoNode);
+
+			if (egoName != null) {
+				egoNode.setCollaboratorName(egoName);
+			}
+		}
+
+		Activity activity;
+
+		if (activityURLToVO.containsKey(activityURI)) {
+			activity = activityURLToVO.get(activityURI);
+		} else {
+			activity = new Activity(activityURI);
+			if (activityDate != null) {
+				activity.setActivityDate(activityDate);
+			}
+			activityURLToVO.put(activityURI, activity);
+		}
+
+		egoNode.addActivity(activity);
+
+		/*
+		 * After some discussion we concluded that for the purpose of this visualization
+		 * we do not want a collaborator node or Collaboration if the activity has only one
+		 * person and that happens to be the ego.
+		 * */
+		if (egoURI.equalsIgnoreCase(collaboratorURI)) {
+			return;
+		}
+
+		Collaborator collaboratorNode;
+
+		if (nodeURLToVO.containsKey(collaboratorURI)) {
+			collaboratorNode = nodeURLToVO.get(collaboratorURI);
+		} else {
+			collaboratorNode = new Collaborator(collaboratorURI, nodeIDGenerator);
+			nodes.add(collaboratorNode);
+			nodeURLToVO.put(collaboratorURI, collaboratorNode);
+
+			if (collaboratorName != null) {
+				collaboratorNode.setCollaboratorName(collaboratorName);
+			}
+		}
+
+		collaboratorNode.addActivity(activity);
+
+		Set<Collaborator> collaboratorsForCurrentActivity = activityURLToCollaborators.get(activityURI);
+		if (collaboratorsForCurrentActivity == null) {
+			collaboratorsForCurrentActivity = new HashSet<Collaborator>();
+			activityURLToCollaborators.put(activityURI, collaboratorsForCurrentActivity);
+		}
+
+		collaboratorsForCurrentActivity.add(collaboratorNode);
+
+		long edgeKey = LongIntHashMap.pairKey(egoNode.getCollaboratorID(), collaboratorNode.getCollaboratorID());
+		int egoEdge = egoEdgeIndex.get(edgeKey);
+
+		/*
+		 * If there is no Collaboration between the egoNode & current collaboratorNode yet, create one.
+		 * Else add the activity to it.
+		 * */
+		if (egoEdge > -1) {
+			egoEdges.get(egoEdge).addActivity(activity);
+		} else {
+			Collaboration egoCollaboratorEdge =
+					new Collaboration(egoNode, collaboratorNode, activity, edgeIDGenerator);
+			edges.add(egoCollaboratorEdge);
+			egoEdgeIndex.putIfAbsent(edgeKey, egoEdges.size());
+			egoEdges.add(egoCollaboratorEdge);
+		}
+	}
+
+	/**
+	 * Add the activities of the ego, and the people on them, from the cached maps
+	 *
+	 * @param personLabels person to label
+	 * @param personToActivities person to activities
+	 * @param activityToPeople activity to people
+	 * @param activityToYearMaps activity to year - the first map with a year for an activity is used
+	 */
+	@SafeVarargs
+	public final void addFromCaches(String egoURI,
+									Map<String, String> personLabels,
+									IdAdjacency personToActivities,
+									IdAdjacency activityToPeople,
+									Map<String, String>... activityToYearMaps) {
+		UriDictionary dictionary = UriDictionary.getInstance();
+
+		String egoName = personLabels.get(egoURI);
+		for (int activityId : personToActivities.get(egoURI)) {
+			String activityURI = dictionary.getUri(activityId);
+
+			String activityDate = null;
+			for (Map<String, String> activityToYear : activityToYearMaps) {
+				activityDate = activityToYear.get(activityURI);
+				if (activityDate != null) {
+					break;
+				}
+			}
+
+			for (int personId : activityToPeople.get(activityId)) {
+				String personURI = dictionary.getUri(personId);
+				addEntry(egoURI, egoName, activityURI, activityDate, personURI, personLabels.get(personURI));
+			}
+		}
+	}
+
+	/**
+	 * Add the activities of the ego from the cached maps, as addFromCaches, but only with the given collaborators -
+	 * the top collaborators of the ego, e.g. from a CollaborationGraph. The other collaborators are never added,
+	 * and the network is recorded as truncated to them.
+	 *
+	 * @param collaboratorIds the collaborators to keep, as a sorted id array
+	 * @param collaboratorCount the number of collaborators of the ego, before keeping only the top collaborators
+	 */
+	@SafeVarargs
+	public final void addTopCollaboratorsFromCaches(String egoURI,
+													Map<String, String> personLabels,
+													IdAdjacency personToActivities,
+													IdAdjacency activityToPeople,
+													int[] collaboratorIds,
+													int collaboratorCount,
+													Map<String, String>... activityToYearMaps) {
+		UriDictionary dictionary = UriDictionary.getInstance();
+
+		String egoName = personLabels.get(egoURI);
+		for (int activityId : personToActivities.get(egoURI)) {
+			String activityURI = dictionary.getUri(activityId);
+
+			String activityDate = null;
+			for (Map<String, String> activityToYear : activityToYearMaps) {
+				activityDate = activityToYear.get(activityURI);
+				if (activityDate != null) {
+					break;
+				}
+			}
+
+			// The ego keeps activities with too many people, but no collaborators are linked by them
+			addEntry(egoURI, egoName, activityURI, activityDate, egoURI, egoName);
+
+			int[] people = activityToPeople.get(activityId);
+			if (people.length - 1 > maxPeoplePerActivity) {
+				continue;
+			}
+
+			for (int personId : people) {
+				if (IdSets.contains(collaboratorIds, personId)) {
+					String personURI = dictionary.getUri(personId);
+					addEntry(egoURI, egoName, activityURI, activityDate, personURI, personLabels.get(personURI));
+				}
+			}
+		}
+
+		if (collaboratorCount > collaboratorIds.length) {
+			this.collaboratorCount = collaboratorCount;
+			truncated = true;
+		}
+	}
+
+	/**
+	 * Complete the network, once all of the entries have been added
+	 */
+	public void build() {
+		/*
+		 * This method takes out all the collaborators & edges between collaborators that belong to activities
+		 * that have more than the maximum number of people. We conjecture that these activities do not provide
+		 * much insight. However, we have left the activities be.
+		 *
+		 * This method side-effects "nodes" & "edges".
+		 * */
+		removeLowQualityNodesAndEdges();
+
+		/*
+		 * For very prolific people, keep only the top collaborators, before creating the edges between them.
+		 * */
+		if (maxCollaborators > 0 && !truncated) {
+			retainTopCollaborators(maxCollaborators);
+		}
+
+		/*
+		 * We need to create edges between 2 collaborators. E.g. On an activity there were 3 people
+		 * ego, A & B then we have already created edges like,
+		 * 		ego - A
+		 * 		ego - B
+		 * The below sub-routine will take care of,
+		 * 		A - B
+		 * */
+		createCollaboratorEdges();
+	}
+
+	public Collaborator getEgoCollaborator() {
+		return egoNode;
+	}
+
+	/**
+	 * Set the ego, where there were no entries for it
+	 */
+	public void setEgoCollaborator(Collaborator egoNode) {
+		this.egoNode = egoNode;
+	}
+
+	public Set<Collaborator> getCollaborators() {
+		return nodes;
+	}
+
+	public Set<Collaboration> getCollaborations() {
+		return edges;
+	}
+
+	public Map<String, Activity> getActivities() {
+		return activityURLToVO;
+	}
+
+	/**
+	 * Record whether the network was truncated on the data created from it
+	 */
+	public <D extends CollaborationData> D setTruncation(D data) {
+		if (truncated) {
+			data.setTruncated(collaboratorCount);
+		}
+		return data;
+	}
+
+	private void removeLowQualityNodesAndEdges() {
+		Set<Collaborator> nodesToBeRemoved = new HashSet<Collaborator>();
+		for (Map.Entry<String, Set<Collaborator>> currentActivityEntry
+				: activityURLToCollaborators.entrySet()) {
+
+			if (currentActivityEntry.getValue().size() > maxPeoplePerActivity) {
+
+				Activity currentActivity = activityURLToVO.get(currentActivityEntry.getKey());
+
+				Set<Collaboration> edgesToBeRemoved = new HashSet<Collaboration>();
+
+				for (Collaboration currentEdge : edges) {
+					Set<Activity> currentCollaborationActivities = currentEdge.getCollaborationActivities();
+
+					if (currentCollaborationActivities.contains(currentActivity)) {
+						currentCollaborationActivities.remove(currentActivity);
+						if (currentCollaborationActivities.isEmpty()) {
+							edgesToBeRemoved.add(currentEdge);
+						}
+					}
+				}
+
+				edges.removeAll(edgesToBeRemoved);
+
+				for (Collaborator currentCollaborator : currentActivityEntry.getValue()) {
+					currentCollaborator.getCollaboratorActivities().remove(currentActivity);
+					if (currentCollaborator.getCollaboratorActivities().isEmpty()) {
+						nodesToBeRemoved.add(currentCollaborator);
+					}
+				}
+			}
+		}
+		nodes.removeAll(nodesToBeRemoved);
+	}
+
+	/**
+	 * Keep the collaborators who share the most activities with the ego (the most recent first, where they
+	 * share the same number, then the first found), dropping the others and their edges with the ego.
+	 */
+	private void retainTopCollaborators(int limit) {
+		// So far, the only edges are between the ego and each of the collaborators
+		collaboratorCount = edges.size();
+		if (collaboratorCount <= limit) {
+			return;
+		}
+
+		final Map<Collaboration, Integer> latestYears = new HashMap<Collaboration, Integer>();
+		for (Collaboration edge : edges) {
+			latestYears.put(edge, getLatestYear(edge));
+		}
+
+		List<Collaboration> sortedEgoEdges = new ArrayList<Collaboration>(edges);
+		sortedEgoEdges.sort(new Comparator<Collaboration>() {
+			@Override
+			public int compare(Collaboration edge1, Collaboration edge2) {
+				if (edge1.getNumOfCollaborations() != edge2.getNumOfCollaborations()) {
+					return edge2.getNumOfCollaborations() - edge1.getNumOfCollaborations();
+				}
+
+				int latestYear1 = latestYears.get(edge1);
+				int latestYear2 = latestYears.get(edge2);
+				if (latestYear1 != latestYear2) {
+					return latestYear2 - latestYear1;
+				}
+
+				return edge1.getTargetCollaborator().getCollaboratorID() - edge2.getTargetCollaborator().getCollaboratorID();
+			}
+		});
+
+		Set<Collaborator> nodesToBeRemoved = new HashSet<Collaborator>();
+		for (Collaboration edge : sortedEgoEdges.subList(limit, sortedEgoEdges.size())) {
+			nodesToBeRemoved.add(edge.getTargetCollaborator());
+			edges.remove(edge);
+		}
+
+		nodes.removeAll(nodesToBeRemoved);
+		truncated = true;
+	}
+
+	private int getLatestYear(Collaboration edge) {
+		Map<String, Integer> latest = edge.getLatestCollaborationYearCount();
+		if (latest != null) {
+			for (String year : latest.keySet()) {
+				try {
+					return Integer.parseInt(year);
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+
+		return 0;
+	}
+
+	private void createCollaboratorEdges() {
+		/*
+		 * The activities shared by each pair of collaborators are counted by year, and the edges are only
+		 * created once all of the activities have been counted.
+		 * */
+		CollaborationCounter collaboratorCounter = new CollaborationCounter();
+
+		for (Map.Entry<String, Set<Collaborator>> currentActivityEntry
+				: activityURLToCollaborators.entrySet()) {
+
+			/*
+			 * If there was only one collaborator (other than ego) then we dont have to create any
+			 * edges. so the below condition will take care of that.
+			 *
+			 * We are restricting edges between collaborators if a particular activity has more than
+			 * the maximum number of people. Our conjecture is that such edges do not provide any good
+			 * insight & causes unnecessary computations causing the server to time-out.
+			 * */
+			if (currentActivityEntry.getValue().size() > 1
+					&& currentActivityEntry.getValue().size() <= maxPeoplePerActivity) {
+
+				/*
+				 * In order to leverage the nested "for loop" for making edges between all the
+				 * collaborators we need to create a list out of the set first.
+				 * */
+				List<Collaborator> collaboratorNodes = new ArrayList<Collaborator>(currentActivityEntry.getValue());
+
+				// Only the collaborators that were kept, if the network has been truncated
+				if (truncated) {
+					collaboratorNodes.retainAll(nodes);
+				}
+
+				collaboratorNodes.sort(new CollaboratorComparator());
+
+				int numOfCollaborators = collaboratorNodes.size();
+
+				int activityYear = CollaborationCounter.getYear(activityURLToVO.get(currentActivityEntry.getKey()));
+
+				for (int ii = 0; ii < numOfCollaborators - 1; ii++) {
+					for (int jj = ii + 1; jj < numOfCollaborators; jj++) {
+						collaboratorCounter.add(collaboratorNodes.get(ii), collaboratorNodes.get(jj), activityYear);
+					}
+				}
+			}
+		}
+
+		edges.addAll(collaboratorCounter.getCollaborations(edgeIDGenerator));
+	}
+}
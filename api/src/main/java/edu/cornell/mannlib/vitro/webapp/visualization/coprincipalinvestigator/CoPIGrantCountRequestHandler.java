@@ -1,6 +1,8 @@
 /* $This file is distributed under the terms of the license in LICENSE$ */
 package edu.cornell.mannlib.vitro.webapp.visualization.coprincipalinvestigator;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -19,14 +21,16 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.Res
 import edu.cornell.mannlib.vitro.webapp.controller.visualization.DataVisualizationController;
 import edu.cornell.mannlib.vitro.webapp.controller.visualization.VisualizationFrameworkConstants;
 import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaborationData;
+import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaborationJSONWriter;
 import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
 import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.ModelConstructor;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.QueryRunner;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.StreamingDataResponse;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.StreamingVisualizationRequestHandler;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UtilityFunctions;
-import edu.cornell.mannlib.vitro.webapp.visualization.visutils.VisualizationRequestHandler;
 
-public class CoPIGrantCountRequestHandler implements VisualizationRequestHandler {
+public class CoPIGrantCountRequestHandler implements StreamingVisualizationRequestHandler {
 
 
 	@Override
@@ -53,14 +57,7 @@ public class CoPIGrantCountRequestHandler implements VisualizationRequestHandler
 														.INDIVIDUAL_URI_KEY);
 		String visMode = vitroRequest.getParameter(VisualizationFrameworkConstants.VIS_MODE_KEY);
 
-		ModelConstructor constructQueryRunner =
-				new CoPIGrantCountConstructQueryRunner(egoURI, vitroRequest.getRDFService(), log);
-		Model constructedModel = constructQueryRunner.getConstructedModel();
-
-		QueryRunner<CollaborationData> queryManager =
-				new CoPIGrantCountQueryRunner(egoURI, vitroRequest, log);
-
-		CollaborationData investigatorNodesAndEdges = queryManager.getQueryResult();
+		CollaborationData investigatorNodesAndEdges = getInvestigatorNodesAndEdges(egoURI, vitroRequest, log);
 
     	/*
     	 * We will be using the same visualization package for both sparkline & co-pi
@@ -91,6 +88,13 @@ public class CoPIGrantCountRequestHandler implements VisualizationRequestHandler
 			 * */
 				return prepareNetworkDownloadDataResponse(investigatorNodesAndEdges);
 
+		} else if (VisualizationFrameworkConstants.COPI_NETWORK_JSON_VIS_MODE
+				.equalsIgnoreCase(visMode)) {
+			/*
+			 * When the compact (columnar json) network is required.
+			 * */
+				return prepareNetworkJSONDataResponse(investigatorNodesAndEdges);
+
 		} else {
     			/*
     			 * When the graphML file is required - based on which co-pi network
@@ -101,6 +105,70 @@ public class CoPIGrantCountRequestHandler implements VisualizationRequestHandler
 
 	}
 
+	/**
+	 * The graphML and json networks are written straight to the response. The csv files for the
+	 * sparklines are small, so are left to generateDataVisualization.
+	 */
+	@Override
+	public StreamingDataResponse generateStreamingDataVisualization(
+			VitroRequest vitroRequest, Log log, Dataset dataset)
+			throws MalformedQueryParametersException {
+
+		String visMode = vitroRequest.getParameter(VisualizationFrameworkConstants.VIS_MODE_KEY);
+
+		if (VisualizationFrameworkConstants.COPIS_COUNT_PER_YEAR_VIS_MODE.equalsIgnoreCase(visMode)
+				|| VisualizationFrameworkConstants.COPIS_LIST_VIS_MODE.equalsIgnoreCase(visMode)) {
+			return null;
+		}
+
+		String egoURI = vitroRequest.getParameter(VisualizationFrameworkConstants
+														.INDIVIDUAL_URI_KEY);
+
+		CollaborationData investigatorNodesAndEdges = getInvestigatorNodesAndEdges(egoURI, vitroRequest, log);
+
+		if (VisualizationFrameworkConstants.COPI_NETWORK_JSON_VIS_MODE
+				.equalsIgnoreCase(visMode)) {
+			final CollaborationJSONWriter jsonWriter =
+					new CollaborationJSONWriter(investigatorNodesAndEdges);
+
+			return new StreamingDataResponse("application/json", null) {
+				@Override
+				public void writeTo(OutputStream out) throws IOException {
+					jsonWriter.writeTo(out);
+				}
+			};
+		}
+
+		String outputFileName = null;
+		if (VisualizationFrameworkConstants.COPI_NETWORK_DOWNLOAD_VIS_MODE
+				.equalsIgnoreCase(visMode)) {
+			outputFileName = getNetworkDownloadFileName(investigatorNodesAndEdges);
+		}
+
+		final CoPIGraphMLWriter coPIGraphMLWriter =
+				new CoPIGraphMLWriter(investigatorNodesAndEdges);
+
+		return new StreamingDataResponse("text/xml", outputFileName) {
+			@Override
+			public void writeTo(OutputStream out) throws IOException {
+				coPIGraphMLWriter.writeTo(out);
+			}
+		};
+	}
+
+	private CollaborationData getInvestigatorNodesAndEdges(String egoURI, VitroRequest vitroRequest, Log log)
+			throws MalformedQueryParametersException {
+
+		ModelConstructor constructQueryRunner =
+				new CoPIGrantCountConstructQueryRunner(egoURI, vitroRequest.getRDFService(), log);
+		Model constructedModel = constructQueryRunner.getConstructedModel();
+
+		QueryRunner<CollaborationData> queryManager =
+				new CoPIGrantCountQueryRunner(egoURI, vitroRequest, log);
+
+		return queryManager.getQueryResult();
+	}
+
 	@Override
 	public ResponseValues generateStandardVisualization(
 			VitroRequest vitroRequest, Log log, Dataset dataset)
@@ -259,17 +327,7 @@ public class CoPIGrantCountRequestHandler implements VisualizationRequestHandler
 
 	private Map<String, String> prepareNetworkDownloadDataResponse(CollaborationData coPIData) {
 
-		String outputFileName = "";
-
-		if (coPIData.getCollaborators() != null && coPIData.getCollaborators().size() > 0) {
-
-			outputFileName = UtilityFunctions.slugify(coPIData.getEgoCollaborator()
-															.getCollaboratorName())
-									+ "_co-investigator-network.graphml" + ".xml";
-
-		} else {
-			outputFileName = "no_co-investigator-network.graphml" + ".xml";
-		}
+		String outputFileName = getNetworkDownloadFileName(coPIData);
 
 		CoPIGraphMLWriter coPIGraphMLWriter =
 				new CoPIGraphMLWriter(coPIData);
@@ -286,6 +344,34 @@ public class CoPIGrantCountRequestHandler implements VisualizationRequestHandler
 
 	}
 
+	/**
+	 * Provides a response when the co-pi network is requested as columnar json.
+	 * @param coPIData Co Investigator data
+	 */
+	private Map<String, String> prepareNetworkJSONDataResponse(CollaborationData coPIData) {
+
+        Map<String, String> fileData = new HashMap<String, String>();
+		fileData.put(DataVisualizationController.FILE_CONTENT_TYPE_KEY,
+					 "application/json");
+		fileData.put(DataVisualizationController.FILE_CONTENT_KEY,
+					 new CollaborationJSONWriter(coPIData).getJSONContent());
+
+		return fileData;
+	}
+
+	private String getNetworkDownloadFileName(CollaborationData coPIData) {
+
+		if (coPIData.getCollaborators() != null && coPIData.getCollaborators().size() > 0) {
+
+			return UtilityFunctions.slugify(coPIData.getEgoCollaborator()
+															.getCollaboratorName())
+									+ "_co-investigator-network.graphml" + ".xml";
+
+		} else {
+			return "no_co-investigator-network.graphml" + ".xml";
+		}
+	}
+
 	@Override
 	public AuthorizationRequest getRequiredPrivileges() {
 		return AuthorizationRequest.AUTHORIZED;
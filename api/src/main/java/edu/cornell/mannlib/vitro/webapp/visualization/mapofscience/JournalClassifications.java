@@ -0,0 +1,228 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.mapofscience;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mapping.ScienceMapping;
+import mapping.ScienceMappingResult;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.ParallelUtils;
+
+/**
+ * The subdisciplines of each journal in the map of science, found once for each distinct journal name and kept,
+ * so that the map of science for a person or organization is a weighted sum of the journals' subdisciplines,
+ * rather than a run of the science mapping over all of their journals.
+ *
+ * The science mapping distributes the publications of each journal over its subdisciplines independently of the
+ * other journals, so mapping a journal with a single publication gives the weights to multiply by its count.
+ */
+final class JournalClassifications {
+	private static final Log log = LogFactory.getLog(JournalClassifications.class);
+
+	/**
+	 * Fewest journals worth giving to a separate task
+	 */
+	private static final int MIN_JOURNALS_PER_TASK = 1000;
+
+	/**
+	 * Classification of each journal, by normalized name
+	 */
+	private static final ConcurrentHashMap<String, Classification> classifications = new ConcurrentHashMap<String, Classification>();
+
+	private JournalClassifications() { }
+
+	/**
+	 * Map publication counts by journal to activity by subdiscipline. Large numbers of journals are shared between
+	 * the available processors, each summing its share into its own result, and the results are then combined.
+	 *
+	 * @param journalToPublicationCount number of publications in each journal
+	 */
+	static Result map(Map<String, Integer> journalToPublicationCount) {
+		return map(journalToPublicationCount, MIN_JOURNALS_PER_TASK);
+	}
+
+	/**
+	 * Map publication counts by journal to activity by subdiscipline, sharing the journals between the available
+	 * processors when there are at least minJournalsPerTask for each
+	 */
+	static Result map(Map<String, Integer> journalToPublicationCount, int minJournalsPerTask) {
+		final List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(journalToPublicationCount.entrySet());
+
+		int parts = ParallelUtils.partsFor(entries.size(), minJournalsPerTask);
+		if (parts < 2) {
+			return map(entries);
+		}
+
+		List<Callable<Result>> tasks = new ArrayList<Callable<Result>>(parts);
+		for (int part = 0; part < parts; part++) {
+			final int from = (int) ((long) entries.size() * part / parts);
+			final int to = (int) ((long) entries.size() * (part + 1) / parts);
+			tasks.add(new Callable<Result>() {
+				@Override
+				public Result call() {
+					return map(entries.subList(from, to));
+				}
+			});
+		}
+
+		Result result = new Result();
+		for (Result partResult : ParallelUtils.invokeAll(tasks, "mapping journals to the map of science")) {
+			result.add(partResult);
+		}
+		return result;
+	}
+
+	private static Result map(List<Map.Entry<String, Integer>> entries) {
+		Result result = new Result();
+
+		for (Map.Entry<String, Integer> entry : entries) {
+			Classification classification = get(entry.getKey());
+			float count = entry.getValue();
+
+			result.mappedPublications += count * classification.mappedPublications;
+			result.unmappedPublications += count * classification.unmappedPublications;
+
+			for (int i = 0; i < classification.subdisciplines.length; i++) {
+				result.addActivity(classification.subdisciplines[i], count * classification.weights[i]);
+			}
+
+			if (classification.unmappedPublications > 0) {
+				result.unmappedResult.put(entry.getKey(), count * classification.unmappedPublications);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the classification of a journal, mapping it the first time the (normalized) name is seen
+	 */
+	static Classification get(String journalName) {
+		String key = normalize(journalName);
+
+		Classification classification = classifications.get(key);
+		if (classification == null) {
+			classification = classify(journalName);
+			if (classification == null) {
+				// Don't keep a failure, so that the journal is mapped again next time
+				return Classification.UNMAPPED;
+			}
+
+			Classification existing = classifications.putIfAbsent(key, classification);
+			if (existing != null) {
+				classification = existing;
+			}
+		}
+
+		return classification;
+	}
+
+	/**
+	 * Key for a journal name - ignoring case, and differences in white space
+	 */
+	static String normalize(String journalName) {
+		return StringUtils.normalizeSpace(journalName).toLowerCase();
+	}
+
+	private static Classification classify(String journalName) {
+		ScienceMappingResult result;
+		try {
+			result = new ScienceMapping().generateScienceMappingResult(Collections.singletonMap(journalName, 1));
+		} catch (NumberFormatException | IOException e) {
+			log.error("Unable to map journal to the map of science: " + journalName, e);
+			return null;
+		}
+
+		if (result == null) {
+			return null;
+		}
+
+		Map<Integer, Float> mappedResult = result.getMappedResult();
+		int[] subdisciplines = new int[mappedResult == null ? 0 : mappedResult.size()];
+		float[] weights = new float[subdisciplines.length];
+		if (mappedResult != null) {
+			int i = 0;
+			for (Map.Entry<Integer, Float> entry : mappedResult.entrySet()) {
+				subdisciplines[i] = entry.getKey();
+				weights[i++] = entry.getValue();
+			}
+		}
+
+		return new Classification(subdisciplines, weights, result.getMappedPublications(), result.getUnMappedPublications());
+	}
+
+	/**
+	 * The weight of each subdiscipline for a single publication in a journal
+	 */
+	static final class Classification {
+		static final Classification UNMAPPED = new Classification(new int[0], new float[0], 0, 1);
+
+		final int[] subdisciplines;
+		final float[] weights;
+		final float mappedPublications;
+		final float unmappedPublications;
+
+		Classification(int[] subdisciplines, float[] weights, float mappedPublications, float unmappedPublications) {
+			this.subdisciplines = subdisciplines;
+			this.weights = weights;
+			this.mappedPublications = mappedPublications;
+			this.unmappedPublications = unmappedPublications;
+		}
+	}
+
+	/**
+	 * Activity by subdiscipline for a set of publications, as given by a ScienceMappingResult
+	 */
+	static final class Result {
+		private final Map<Integer, Float> mappedResult = new HashMap<Integer, Float>();
+		private final Map<String, Float> unmappedResult = new HashMap<String, Float>();
+		private float mappedPublications = 0;
+		private float unmappedPublications = 0;
+
+		private void addActivity(Integer subdiscipline, float activity) {
+			Float current = mappedResult.get(subdiscipline);
+			mappedResult.put(subdiscipline, current == null ? activity : current + activity);
+		}
+
+		/**
+		 * Add the activity of another set of publications (that doesn't share any journals with this one)
+		 */
+		private void add(Result other) {
+			for (Map.Entry<Integer, Float> entry : other.mappedResult.entrySet()) {
+				addActivity(entry.getKey(), entry.getValue());
+			}
+
+			unmappedResult.putAll(other.unmappedResult);
+			mappedPublications += other.mappedPublications;
+			unmappedPublications += other.unmappedPublications;
+		}
+
+		Map<Integer, Float> getMappedResult() {
+			return mappedResult;
+		}
+
+		Map<String, Float> getUnmappedResult() {
+			return unmappedResult;
+		}
+
+		float getMappedPublications() {
+			return mappedPublications;
+		}
+
+		float getUnMappedPublications() {
+			return unmappedPublications;
+		}
+	}
+}
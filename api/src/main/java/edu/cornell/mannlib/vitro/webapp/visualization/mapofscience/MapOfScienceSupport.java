@@ -0,0 +1,34 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.mapofscience;
+
+import java.util.Map;
+
+/**
+ * Public entry points to the journal counting and mapping done by MapOfScienceVisualizationRequestHandler,
+ * for benchmarks and tests that run outside of a request.
+ */
+public final class MapOfScienceSupport {
+	private MapOfScienceSupport() { }
+
+	/**
+	 * Count the publications in each journal, as done for an organization
+	 *
+	 * @param publications publication ids, from the UriDictionary
+	 * @param publicationToJournalMap map of publication to journal label
+	 * @return number of publications for each journal label
+	 */
+	public static Map<String, Integer> countJournals(int[] publications, Map<String, String> publicationToJournalMap) {
+		return MapOfScienceVisualizationRequestHandler.countJournals(publications, publicationToJournalMap).map;
+	}
+
+	/**
+	 * Map publication counts by journal to activity by subdiscipline, using the kept journal classifications
+	 *
+	 * @param journalToPublicationCount number of publications in each journal
+	 * @return activity for each subdiscipline id
+	 */
+	public static Map<Integer, Float> mapJournals(Map<String, Integer> journalToPublicationCount) {
+		return JournalClassifications.map(journalToPublicationCount).getMappedResult();
+	}
+}
@@ -2,12 +2,14 @@
 
 package edu.cornell.mannlib.vitro.webapp.visualization.mapofscience;
 
-import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -21,11 +23,10 @@ import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.visualization.constants.QueryConstants;
-import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationPeopleMap;
-import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrgUtils;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrganizationRollups;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.ParallelUtils;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
-import mapping.ScienceMapping;
-import mapping.ScienceMappingResult;
 
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -49,6 +50,10 @@ import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UtilityFunctions;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.VisualizationRequestHandler;
 
 public class MapOfScienceVisualizationRequestHandler implements VisualizationRequestHandler {
+	/**
+	 * Fewest publications worth giving to a separate task, when counting journals
+	 */
+	private static final int MIN_PUBLICATIONS_PER_TASK = 20000;
 
 	@Override
 	public ResponseValues generateStandardVisualization(
@@ -191,7 +196,7 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 					journalCounts.increment(publicationToJournalMap.get(publication));
 				}
 
-				ScienceMappingResult result = getScienceMappingResult(journalCounts.map);
+				JournalClassifications.Result result = JournalClassifications.map(journalCounts.map);
 
 				Map<String, String> fileData = new HashMap<String, String>();
 				if (VisConstants.DataVisMode.JSON.equals(dataOuputFormat)) {
@@ -248,7 +253,7 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 
 		RDFService rdfService = vitroRequest.getRDFService();
 
-		Map<String, String> orgLabelMap = VisualizationCaches.organizationLabels.get(rdfService);
+		Map<String, String> orgLabelMap = VisualizationCaches.organizationLabels.get(vitroRequest);
 
 		if (orgLabelMap.get(subjectEntityURI) == null) {
 			if (VisConstants.DataVisMode.JSON.equals(dataOuputFormat)) {
@@ -258,40 +263,34 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 			}
 		}
 
-		Map<String, Set<String>> subOrgMap = VisualizationCaches.organizationSubOrgs.get(rdfService);
-		OrganizationPeopleMap organisationToPeopleMap = VisualizationCaches.organisationToPeopleMap.get(rdfService);
-		Map<String, Set<String>> personToPublicationMap = VisualizationCaches.personToPublication.get(rdfService).personToPublication;
-		Map<String, String> publicationToJournalMap = VisualizationCaches.publicationToJournal.get(rdfService);
+		final Map<String, String> publicationToJournalMap = VisualizationCaches.publicationToJournal.get(rdfService);
 
-		Set<String> orgPublications       = new HashSet<String>();
-		Set<String> orgPublicationsPeople = new HashSet<String>();
+		OrganizationRollups publicationRollups = VisualizationCaches.publicationRollups(rdfService);
+		OrganizationRollups.Rollup orgRollup = publicationRollups.get(subjectEntityURI);
 
-		Map<String, Set<String>> subOrgPublicationsMap = new HashMap<String, Set<String>>();
-
-		OrgUtils.getObjectMappingsForOrgAndSubOrgs(
-				subjectEntityURI,
-				orgPublications,
-				orgPublicationsPeople,
-				subOrgPublicationsMap,
-				subOrgMap,
-				organisationToPeopleMap.organizationToPeople,
-				personToPublicationMap
-		);
-
-		if (orgPublications.isEmpty()) {
+		if (orgRollup.isEmpty()) {
 			if (VisConstants.DataVisMode.JSON.equals(dataOuputFormat)) {
 				return prepareStandaloneDataErrorResponse();
 			} else {
 				return prepareDataErrorResponse();
 			}
 		} else {
-			JournalPublicationCounts journalCounts = new JournalPublicationCounts();
-
-			for (String publication : orgPublications) {
-				journalCounts.increment(publicationToJournalMap.get(publication));
-			}
-
-			ScienceMappingResult result = getScienceMappingResult(journalCounts.map);
+			// The journal counts and the mapping to subdisciplines are kept with the rollup, until the caches change
+			final JournalPublicationCounts journalCounts = orgRollup.derive("journalCounts", publicationToJournalMap,
+					new OrganizationRollups.Derivation<JournalPublicationCounts>() {
+						@Override
+						public JournalPublicationCounts derive(OrganizationRollups.Rollup rollup) {
+							return countJournals(rollup.getObjectIds(), publicationToJournalMap);
+						}
+					});
+
+			JournalClassifications.Result result = orgRollup.derive("scienceMapping", publicationToJournalMap,
+					new OrganizationRollups.Derivation<JournalClassifications.Result>() {
+						@Override
+						public JournalClassifications.Result derive(OrganizationRollups.Rollup rollup) {
+							return JournalClassifications.map(journalCounts.map);
+						}
+					});
 
 			Map<String, String> fileData = new HashMap<String, String>();
 			if (VisConstants.DataVisMode.JSON.equals(dataOuputFormat)) {
@@ -301,14 +300,11 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 				entityJson.setLabel(entityLabel);
 				entityJson.setType("ORGANIZATION");
 
-				if (subOrgMap.containsKey(subjectEntityURI)) {
-					for (String subOrg : subOrgMap.get(subjectEntityURI)) {
-						Set<String> publications = subOrgPublicationsMap.get(subOrg);
-						entityJson.addSubEntity(subOrg,
-								orgLabelMap.get(subOrg),
-								"ORGANIZATION",
-								publications == null ? 0 : publications.size());
-					}
+				for (Map.Entry<String, OrganizationRollups.Rollup> subOrg : publicationRollups.getSubOrgRollups(subjectEntityURI).entrySet()) {
+					entityJson.addSubEntity(subOrg.getKey(),
+							orgLabelMap.get(subOrg.getKey()),
+							"ORGANIZATION",
+							subOrg.getValue().size());
 				}
 
 				entityJson.setPubsWithNoJournals(journalCounts.noJournalCount);
@@ -348,6 +344,48 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 		}
 	}
 
+	/**
+	 * Count the publications in each journal. Large numbers of publications are shared between the available
+	 * processors, each counting its share, and the counts are then combined.
+	 *
+	 * @param publications publication ids, from the UriDictionary
+	 * @param publicationToJournalMap the cached map of publication to journal label
+	 */
+	static JournalPublicationCounts countJournals(final int[] publications, final Map<String, String> publicationToJournalMap) {
+		int parts = ParallelUtils.partsFor(publications.length, MIN_PUBLICATIONS_PER_TASK);
+		if (parts < 2) {
+			return countJournals(publications, 0, publications.length, publicationToJournalMap);
+		}
+
+		List<Callable<JournalPublicationCounts>> tasks = new ArrayList<Callable<JournalPublicationCounts>>(parts);
+		for (int part = 0; part < parts; part++) {
+			final int from = (int) ((long) publications.length * part / parts);
+			final int to = (int) ((long) publications.length * (part + 1) / parts);
+			tasks.add(new Callable<JournalPublicationCounts>() {
+				@Override
+				public JournalPublicationCounts call() {
+					return countJournals(publications, from, to, publicationToJournalMap);
+				}
+			});
+		}
+
+		JournalPublicationCounts counts = new JournalPublicationCounts();
+		for (JournalPublicationCounts partCounts : ParallelUtils.invokeAll(tasks, "counting publications by journal")) {
+			counts.add(partCounts);
+		}
+		return counts;
+	}
+
+	private static JournalPublicationCounts countJournals(int[] publications, int from, int to, Map<String, String> publicationToJournalMap) {
+		UriDictionary dictionary = UriDictionary.getInstance();
+
+		JournalPublicationCounts counts = new JournalPublicationCounts();
+		for (int i = from; i < to; i++) {
+			counts.increment(publicationToJournalMap.get(dictionary.getUri(publications[i])));
+		}
+		return counts;
+	}
+
 	private Map<String, String> prepareDataErrorResponse() {
 
 		String outputFileName = "no-organization_publications-per-year.csv";
@@ -468,7 +506,7 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
         return new TemplateResponseValues(standaloneTemplate, body);
 	}
 
-	private void updateEntityMapOfScienceInformation(MapOfScience entityJson, ScienceMappingResult result) {
+	private void updateEntityMapOfScienceInformation(MapOfScience entityJson, JournalClassifications.Result result) {
 		int mappedPublicationCount = 0;
 		int publicationsWithInvalidJournalCount = 0;
 		Map<Integer, Float> subdisciplineToActivity = new HashMap<Integer, Float>();
@@ -484,22 +522,7 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 		entityJson.setSubdisciplineActivity(subdisciplineToActivity);
 	}
 
-	private ScienceMappingResult getScienceMappingResult(
-			Map<String, Integer> journalToPublicationCount) {
-		ScienceMappingResult result = null;
-		try {
-			result = (new ScienceMapping()).generateScienceMappingResult(journalToPublicationCount);
-		} catch (NumberFormatException e) {
-			System.err.println("NumberFormatException coming from Map Of Science Vis");
-			e.printStackTrace();
-		} catch (IOException e) {
-			System.err.println("IOException coming from Map Of Science Vis");
-			e.printStackTrace();
-		}
-		return result;
-	}
-
-	private String getDisciplineToPublicationsCSVContent(ScienceMappingResult result) {
+	private String getDisciplineToPublicationsCSVContent(JournalClassifications.Result result) {
 		StringBuilder csvFileContent = new StringBuilder();
 
 		csvFileContent.append("Discipline, Publication Count, % Activity\n");
@@ -558,7 +581,7 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 		return csvFileContent.toString();
 	}
 
-	private String getUnlocatedJournalsCSVContent(ScienceMappingResult result, int noJournalCount) {
+	private String getUnlocatedJournalsCSVContent(JournalClassifications.Result result, int noJournalCount) {
 		StringBuilder csvFileContent = new StringBuilder();
 
 		csvFileContent.append("Publication Venue, Publication Count\n");
@@ -586,7 +609,7 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 		return csvFileContent.toString();
 	}
 
-	private String getSubDisciplineToPublicationsCSVContent(ScienceMappingResult result) {
+	private String getSubDisciplineToPublicationsCSVContent(JournalClassifications.Result result) {
 		StringBuilder csvFileContent = new StringBuilder();
 
 		csvFileContent.append("Sub-Discipline, Publication Count, % Activity\n");
@@ -636,7 +659,7 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 		return null;
 	}
 
-	private static class JournalPublicationCounts {
+	static class JournalPublicationCounts {
 		Map<String, Integer> map = new HashMap<String, Integer>();
 		int noJournalCount = 0;
 		int total = 0;
@@ -656,6 +679,19 @@ public class MapOfScienceVisualizationRequestHandler implements VisualizationReq
 			total++;
 		}
 
+		/**
+		 * Add the counts for another set of publications
+		 */
+		void add(JournalPublicationCounts other) {
+			for (Map.Entry<String, Integer> entry : other.map.entrySet()) {
+				Integer count = map.get(entry.getKey());
+				map.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+			}
+
+			noJournalCount += other.noJournalCount;
+			total += other.total;
+		}
+
 		boolean isEmpty() {
 			return total == 0;
 		}
@@ -0,0 +1,320 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.constants.VOConstants;
+
+/**
+ * The number of activities (e.g. publications) of each person by year, built once from the cached map of person to
+ * activities and activity to year, so that sparklines and counts for a person are lookups rather than queries.
+ *
+ * The counts are held in parallel arrays: the years of each person, sorted, with the number of activities in each
+ * year, and the number of activities without a known year.
+ *
+ * Where the year belongs to the person's part in an activity (e.g. the start of their role on a grant), the summaries
+ * are built from PersonGrantRoles, and the activity's own year is used only where the person's is not known.
+ */
+public final class ActivitySummaries {
+    /**
+     * The current summaries for each kind of activity. Each is built by the first request that needs it, outside the
+     * lock, and other requests for the same maps wait for it.
+     */
+    private static final Map<String, SummariesTask> current = new ConcurrentHashMap<>();
+
+    private static final int UNKNOWN_YEAR = 0;
+
+    /**
+     * Person ids, sorted - the position of an id gives the index used by the arrays below
+     */
+    private final int[] people;
+
+    /**
+     * Number of activities of each person, and of those, the number without a known year
+     */
+    private final int[] activityCounts;
+    private final int[] unknownCounts;
+
+    /**
+     * Start of each person's years in the arrays below
+     */
+    private final int[] offsets;
+
+    /**
+     * Year of each entry, sorted for each person, and the number of activities in that year
+     */
+    private final int[] years;
+    private final int[] yearCounts;
+
+    private ActivitySummaries(IdAdjacency personToActivities, PersonGrantRoles roleYears, Map<String, String>[] activityToYears) {
+        this.people = personToActivities.keys();
+
+        // Year of each activity, found once
+        UriDictionary dictionary = UriDictionary.getInstance();
+        int[] activities = personToActivities.inverse().keys();
+        int[] activityYears = new int[activities.length];
+        for (int activity = 0; activity < activities.length; activity++) {
+            activityYears[activity] = getYear(dictionary.getUri(activities[activity]), activityToYears);
+        }
+
+        int count = people.length;
+        activityCounts = new int[count];
+        unknownCounts = new int[count];
+        offsets = new int[count + 1];
+
+        int capacity = Math.max(16, count * 4);
+        int[] entryYears = new int[capacity];
+        int[] entryCounts = new int[capacity];
+        int size = 0;
+
+        int[] personYears = new int[16];
+        for (int person = 0; person < count; person++) {
+            int[] personActivities = personToActivities.get(people[person]);
+            activityCounts[person] = personActivities.length;
+
+            if (personYears.length < personActivities.length) {
+                personYears = new int[personActivities.length];
+            }
+
+            int known = 0;
+            for (int personActivity : personActivities) {
+                int year = roleYears == null ? UNKNOWN_YEAR : roleYears.getYear(people[person], personActivity);
+                if (year == UNKNOWN_YEAR) {
+                    year = activityYears[Arrays.binarySearch(activities, personActivity)];
+                }
+                if (year == UNKNOWN_YEAR) {
+                    unknownCounts[person]++;
+                } else {
+                    personYears[known++] = year;
+                }
+            }
+            Arrays.sort(personYears, 0, known);
+
+            if (size + known > capacity) {
+                capacity = Math.max(size + known, capacity + (capacity >> 1));
+                entryYears = Arrays.copyOf(entryYears, capacity);
+                entryCounts = Arrays.copyOf(entryCounts, capacity);
+            }
+
+            for (int i = 0; i < known; i++) {
+                if (i > 0 && personYears[i] == personYears[i - 1]) {
+                    entryCounts[size - 1]++;
+                } else {
+                    entryYears[size] = personYears[i];
+                    entryCounts[size] = 1;
+                    size++;
+                }
+            }
+            offsets[person + 1] = size;
+        }
+
+        years = Arrays.copyOf(entryYears, size);
+        yearCounts = Arrays.copyOf(entryCounts, size);
+    }
+
+    /**
+     * Get the summaries for a kind of activity, reusing the current summaries if they were built from the same maps
+     *
+     * @param name the kind of activity, e.g. publications
+     * @param personToActivities person to activities
+     * @param activityToYears activity to year - the first map with a year for an activity is used
+     */
+    @SafeVarargs
+    public static ActivitySummaries of(String name, IdAdjacency personToActivities, Map<String, String>... activityToYears) {
+        return of(name, personToActivities, null, activityToYears);
+    }
+
+    /**
+     * Get the summaries for a kind of activity dated by each person's role, reusing the current summaries if they
+     * were built from the same maps
+     *
+     * @param name the kind of activity, e.g. grants
+     * @param personToActivities person to activities, with the year of each person's role
+     * @param activityToYears activity to year, for the roles without a known year - the first map with a year for an
+     *                        activity is used
+     */
+    @SafeVarargs
+    public static ActivitySummaries of(String name, PersonGrantRoles personToActivities, Map<String, String>... activityToYears) {
+        return of(name, personToActivities.getPersonToGrantIds(), personToActivities, activityToYears);
+    }
+
+    private static ActivitySummaries of(String name, final IdAdjacency personToActivities, final PersonGrantRoles roleYears,
+                                        final Map<String, String>[] activityToYears) {
+        SummariesTask task = current.get(name);
+        if (task == null || !task.isFor(personToActivities, roleYears, activityToYears)) {
+            synchronized (current) {
+                task = current.get(name);
+                if (task == null || !task.isFor(personToActivities, roleYears, activityToYears)) {
+                    task = new SummariesTask(personToActivities, roleYears, activityToYears, new Callable<ActivitySummaries>() {
+                        @Override
+                        public ActivitySummaries call() {
+                            return new ActivitySummaries(personToActivities, roleYears, activityToYears);
+                        }
+                    });
+                    current.put(name, task);
+                }
+            }
+        }
+
+        // Does nothing if the summaries are already built, or being built by another request
+        task.run();
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for the " + name + " summaries", e);
+        } catch (ExecutionException e) {
+            // Don't keep the failure, so that the next request tries again
+            synchronized (current) {
+                if (current.get(name) == task) {
+                    current.remove(name);
+                }
+            }
+
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException("Error building the " + name + " summaries", e.getCause());
+        }
+    }
+
+    /**
+     * Get the summary of a person's activities - empty if the person has none
+     */
+    public Summary get(String personUri) {
+        int id = UriDictionary.getInstance().lookup(personUri);
+        int person = id < 0 ? -1 : Arrays.binarySearch(people, id);
+        if (person < 0) {
+            return new Summary(0, 0, 0, 0);
+        }
+
+        return new Summary(activityCounts[person], unknownCounts[person], offsets[person], offsets[person + 1]);
+    }
+
+    private static int getYear(String activityUri, Map<String, String>[] activityToYears) {
+        for (Map<String, String> activityToYear : activityToYears) {
+            String year = activityToYear.get(activityUri);
+            if (year != null) {
+                try {
+                    return Integer.parseInt(year);
+                } catch (NumberFormatException e) {
+                    return UNKNOWN_YEAR;
+                }
+            }
+        }
+
+        return UNKNOWN_YEAR;
+    }
+
+    /**
+     * The activities of one person
+     */
+    public final class Summary {
+        private final int count;
+        private final int unknownCount;
+        private final int from;
+        private final int to;
+
+        private Summary(int count, int unknownCount, int from, int to) {
+            this.count = count;
+            this.unknownCount = unknownCount;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Number of activities
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Number of activities without a known year
+         */
+        public int getUnknownCount() {
+            return unknownCount;
+        }
+
+        /**
+         * Year of the earliest activity, or 0 if none have a known year
+         */
+        public int getFirstYear() {
+            return from < to ? years[from] : UNKNOWN_YEAR;
+        }
+
+        /**
+         * Year of the latest activity, or 0 if none have a known year
+         */
+        public int getLastYear() {
+            return from < to ? years[to - 1] : UNKNOWN_YEAR;
+        }
+
+        /**
+         * Number of activities in a year
+         */
+        public int getCount(int year) {
+            int index = Arrays.binarySearch(years, from, to, year);
+            return index < 0 ? 0 : yearCounts[index];
+        }
+
+        /**
+         * Number of activities in each year, with those without a known year under "Unknown" - as the sparklines
+         * expect, from UtilityFunctions.getYearToActivityCount
+         */
+        public Map<String, Integer> getYearToActivityCount() {
+            Map<String, Integer> yearToActivityCount = new TreeMap<String, Integer>();
+            for (int index = from; index < to; index++) {
+                yearToActivityCount.put(String.valueOf(years[index]), yearCounts[index]);
+            }
+
+            if (unknownCount > 0) {
+                yearToActivityCount.put(VOConstants.DEFAULT_ACTIVITY_YEAR, unknownCount);
+            }
+
+            return yearToActivityCount;
+        }
+    }
+
+    /**
+     * Builds the summaries, remembering the maps they are built from
+     */
+    private static final class SummariesTask extends FutureTask<ActivitySummaries> {
+        private final IdAdjacency personToActivities;
+        private final PersonGrantRoles roleYears;
+        private final Map<String, String>[] activityToYears;
+
+        SummariesTask(IdAdjacency personToActivities, PersonGrantRoles roleYears, Map<String, String>[] activityToYears,
+                      Callable<ActivitySummaries> build) {
+            super(build);
+            this.personToActivities = personToActivities;
+            this.roleYears = roleYears;
+            this.activityToYears = activityToYears;
+        }
+
+        boolean isFor(IdAdjacency personToActivities, PersonGrantRoles roleYears, Map<String, String>[] activityToYears) {
+            if (this.personToActivities != personToActivities || this.roleYears != roleYears
+                    || this.activityToYears.length != activityToYears.length) {
+                return false;
+            }
+
+            for (int i = 0; i < activityToYears.length; i++) {
+                if (this.activityToYears[i] != activityToYears[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,719 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The collaborations of everyone in the institution (e.g. co-authorship), built once from the cached map of person to
+ * activities (e.g. publications) and activity to year.
+ *
+ * Each pair of people who share an activity are linked, with the number of activities they share and the first and
+ * last years of those activities. The links are held in compressed sparse rows: the collaborators of each person,
+ * sorted, with the weights and years in parallel arrays. Ego networks, two hop networks, top collaborators and
+ * collaboration matrices between groups of people are then read from the rows, without walking any maps.
+ *
+ * As in the ego networks built by the query runners, activities where each person has more than
+ * MAX_PEOPLE_PER_ACTIVITY others do not link them.
+ */
+public final class CollaborationGraph {
+    public static final int MAX_PEOPLE_PER_ACTIVITY = 100;
+
+    /**
+     * The current graph for each kind of activity. Each is built by the first request that needs it, outside the
+     * lock, and other requests for the same maps wait for it.
+     */
+    private static final Map<String, GraphTask> current = new ConcurrentHashMap<>();
+
+    /**
+     * Person ids, sorted - the position of an id gives the index used by the arrays below
+     */
+    private final int[] people;
+
+    /**
+     * Number of activities of each person (including those with too many people to link them)
+     */
+    private final int[] activityCounts;
+
+    /**
+     * Start of each person's collaborators in the arrays below
+     */
+    private final int[] offsets;
+
+    /**
+     * Collaborator (index) of each link, sorted for each person
+     */
+    private final int[] collaborators;
+
+    /**
+     * Number of shared activities of each link
+     */
+    private final int[] weights;
+
+    /**
+     * First and last year of the shared activities of each link, or 0 if none have a known year
+     */
+    private final int[] firstYears;
+    private final int[] lastYears;
+
+    private CollaborationGraph(IdAdjacency personToActivities, Map<String, String> activityToYear) {
+        this.people = personToActivities.keys();
+
+        int count = people.length;
+        activityCounts = new int[count];
+        for (int person = 0; person < count; person++) {
+            activityCounts[person] = personToActivities.count(people[person]);
+        }
+
+        // People (by index) and year of each activity
+        IdAdjacency activityToPeople = personToActivities.inverse();
+        int[] activities = activityToPeople.keys();
+        int[] activityOffsets = new int[activities.length + 1];
+        int[] activityPeople = new int[activityToPeople.linkCount()];
+        int[] activityYears = new int[activities.length];
+
+        UriDictionary dictionary = UriDictionary.getInstance();
+        int link = 0;
+        for (int activity = 0; activity < activities.length; activity++) {
+            int[] members = activityToPeople.get(activities[activity]);
+            if (members.length - 1 <= MAX_PEOPLE_PER_ACTIVITY) {
+                for (int member : members) {
+                    activityPeople[link++] = indexOf(member);
+                }
+            }
+            activityOffsets[activity + 1] = link;
+
+            if (activityToYear != null) {
+                activityYears[activity] = parseYear(activityToYear.get(dictionary.getUri(activities[activity])));
+            }
+        }
+
+        // Activities (by index) of each person
+        int[] personOffsets = new int[count + 1];
+        for (int i = 0; i < link; i++) {
+            personOffsets[activityPeople[i] + 1]++;
+        }
+        for (int person = 0; person < count; person++) {
+            personOffsets[person + 1] += personOffsets[person];
+        }
+        int[] personActivities = new int[link];
+        int[] fill = Arrays.copyOf(personOffsets, count);
+        for (int activity = 0; activity < activities.length; activity++) {
+            for (int i = activityOffsets[activity]; i < activityOffsets[activity + 1]; i++) {
+                personActivities[fill[activityPeople[i]]++] = activity;
+            }
+        }
+
+        // Accumulate the collaborators of each person in turn
+        int[] weight = new int[count];
+        int[] first = new int[count];
+        int[] last = new int[count];
+        int[] touched = new int[count];
+
+        int capacity = Math.max(16, link);
+        int[] rowCollaborators = new int[capacity];
+        int[] rowWeights = new int[capacity];
+        int[] rowFirstYears = new int[capacity];
+        int[] rowLastYears = new int[capacity];
+        int size = 0;
+
+        offsets = new int[count + 1];
+        for (int person = 0; person < count; person++) {
+            int touchedCount = 0;
+            for (int i = personOffsets[person]; i < personOffsets[person + 1]; i++) {
+                int activity = personActivities[i];
+                int year = activityYears[activity];
+
+                for (int m = activityOffsets[activity]; m < activityOffsets[activity + 1]; m++) {
+                    int other = activityPeople[m];
+                    if (other == person) {
+                        continue;
+                    }
+
+                    if (weight[other] == 0) {
+                        touched[touchedCount++] = other;
+                        first[other] = year;
+                        last[other] = year;
+                    } else if (year != 0) {
+                        first[other] = first[other] == 0 ? year : Math.min(first[other], year);
+                        last[other] = Math.max(last[other], year);
+                    }
+                    weight[other]++;
+                }
+            }
+
+            if (size + touchedCount > capacity) {
+                capacity = Math.max(size + touchedCount, capacity + (capacity >> 1));
+                rowCollaborators = Arrays.copyOf(rowCollaborators, capacity);
+                rowWeights = Arrays.copyOf(rowWeights, capacity);
+                rowFirstYears = Arrays.copyOf(rowFirstYears, capacity);
+                rowLastYears = Arrays.copyOf(rowLastYears, capacity);
+            }
+
+            Arrays.sort(touched, 0, touchedCount);
+            for (int t = 0; t < touchedCount; t++) {
+                int other = touched[t];
+                rowCollaborators[size] = other;
+                rowWeights[size] = weight[other];
+                rowFirstYears[size] = first[other];
+                rowLastYears[size] = last[other];
+                size++;
+
+                weight[other] = 0;
+            }
+            offsets[person + 1] = size;
+        }
+
+        collaborators = Arrays.copyOf(rowCollaborators, size);
+        weights = Arrays.copyOf(rowWeights, size);
+        firstYears = Arrays.copyOf(rowFirstYears, size);
+        lastYears = Arrays.copyOf(rowLastYears, size);
+    }
+
+    /**
+     * Get the graph for a kind of activity, reusing the current graph if it was built from the same maps
+     *
+     * @param name the kind of activity, e.g. coAuthorship
+     * @param personToActivities person to activities
+     * @param activityToYear activity to year (may be null)
+     */
+    public static CollaborationGraph of(String name, final IdAdjacency personToActivities, final Map<String, String> activityToYear) {
+        GraphTask task = current.get(name);
+        if (task == null || !task.isFor(personToActivities, activityToYear)) {
+            synchronized (current) {
+                task = current.get(name);
+                if (task == null || !task.isFor(personToActivities, activityToYear)) {
+                    task = new GraphTask(personToActivities, activityToYear, new Callable<CollaborationGraph>() {
+                        @Override
+                        public CollaborationGraph call() {
+                            return new CollaborationGraph(personToActivities, activityToYear);
+                        }
+                    });
+                    current.put(name, task);
+                }
+            }
+        }
+
+        // Does nothing if the graph is already built, or being built by another request
+        task.run();
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for the " + name + " graph", e);
+        } catch (ExecutionException e) {
+            // Don't keep the failure, so that the next request tries again
+            synchronized (current) {
+                if (current.get(name) == task) {
+                    current.remove(name);
+                }
+            }
+
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException("Error building the " + name + " graph", e.getCause());
+        }
+    }
+
+    /**
+     * Number of people with at least one activity
+     */
+    public int size() {
+        return people.length;
+    }
+
+    /**
+     * Number of pairs of people who share an activity
+     */
+    public int collaborationCount() {
+        return collaborators.length / 2;
+    }
+
+    /**
+     * Approximate memory used by the graph, in bytes
+     */
+    public long estimateSize() {
+        return 64 + 8 * 16 + 4L * (2 * people.length + offsets.length + 4 * collaborators.length);
+    }
+
+    /**
+     * Number of activities of a person
+     */
+    public int getActivityCount(String person) {
+        int index = indexOf(person);
+        return index < 0 ? 0 : activityCounts[index];
+    }
+
+    /**
+     * The people who share an activity with a person, as a sorted id array
+     */
+    public int[] getCollaboratorIds(String person) {
+        int index = indexOf(person);
+        if (index < 0) {
+            return IdSets.EMPTY;
+        }
+
+        int[] ids = new int[offsets[index + 1] - offsets[index]];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = people[collaborators[offsets[index] + i]];
+        }
+
+        return ids;
+    }
+
+    /**
+     * Number of people who share an activity with a person
+     */
+    public int getCollaboratorCount(String person) {
+        int index = indexOf(person);
+        return index < 0 ? 0 : offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Number of activities that two people share
+     */
+    public int getCollaborationCount(String person, String collaborator) {
+        int link = findLink(indexOf(person), indexOf(collaborator));
+        return link < 0 ? 0 : weights[link];
+    }
+
+    /**
+     * The collaborators of a person who share the most activities with them (the most recent first, where they
+     * share the same number), as an id array in that order
+     */
+    public int[] getTopCollaboratorIds(String person, int limit) {
+        int index = indexOf(person);
+        if (index < 0 || limit < 1) {
+            return IdSets.EMPTY;
+        }
+
+        // Keep the best links in a heap, with the worst of them at the top
+        int start = offsets[index];
+        int end = offsets[index + 1];
+        int[] heap = new int[Math.min(limit, end - start)];
+        int heapSize = 0;
+        for (int link = start; link < end; link++) {
+            if (heapSize < heap.length) {
+                heap[heapSize] = link;
+                siftUp(heap, heapSize++);
+            } else if (isBetter(link, heap[0])) {
+                heap[0] = link;
+                siftDown(heap, 0, heapSize);
+            }
+        }
+
+        // Removing the worst each time fills the result from the end
+        int[] ids = new int[heapSize];
+        while (heapSize > 0) {
+            ids[heapSize - 1] = people[collaborators[heap[0]]];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, 0, heapSize);
+        }
+
+        return ids;
+    }
+
+    /**
+     * A person, their collaborators, and the collaborations between all of them
+     */
+    public Network getEgoNetwork(String person) {
+        int ego = indexOf(person);
+        if (ego < 0) {
+            return new Network();
+        }
+
+        int[] nodes = withNode(ego, rowOf(ego));
+        return new Network(ego, nodes, nodes);
+    }
+
+    /**
+     * A person, their collaborators, and the collaborators of their collaborators, with the collaborations of the
+     * person and of their collaborators (but not those between the people two steps away)
+     */
+    public Network getTwoHopNetwork(String person) {
+        int ego = indexOf(person);
+        if (ego < 0) {
+            return new Network();
+        }
+
+        int[] inner = withNode(ego, rowOf(ego));
+
+        int total = 0;
+        for (int node : inner) {
+            total += offsets[node + 1] - offsets[node];
+        }
+        int[] outer = new int[total + inner.length];
+        int count = 0;
+        for (int node : inner) {
+            outer[count++] = node;
+            for (int link = offsets[node]; link < offsets[node + 1]; link++) {
+                outer[count++] = collaborators[link];
+            }
+        }
+
+        return new Network(ego, inner, IdSets.sortedUnique(outer, count));
+    }
+
+    /**
+     * Number of collaborations between each pair of groups of people. Each cell is the sum, over the pairs of people
+     * with one in each group, of the activities they share; on the diagonal, each pair within the group is
+     * counted once.
+     *
+     * @param groups the people in each group, as sorted id arrays
+     */
+    public long[][] getCollaborationMatrix(List<int[]> groups) {
+        int groupCount = groups.size();
+        long[][] matrix = new long[groupCount][groupCount];
+
+        // The group of each person, or -1 if they are in none (-2 while counting those in more than one)
+        int[] personGroup = new int[people.length];
+        Arrays.fill(personGroup, -1);
+        int multiple = 0;
+        for (int g = 0; g < groupCount; g++) {
+            for (int id : groups.get(g)) {
+                int index = indexOf(id);
+                if (index > -1 && personGroup[index] != g) {
+                    if (personGroup[index] == -1) {
+                        personGroup[index] = g;
+                    } else {
+                        if (personGroup[index] != -2) {
+                            multiple++;
+                        }
+                        personGroup[index] = -2;
+                    }
+                }
+            }
+        }
+
+        // The groups of the people who are in more than one. Their entry becomes -2 - their position in these.
+        int[] multipleOffsets = new int[multiple + 1];
+        int[] multipleGroups = IdSets.EMPTY;
+        if (multiple > 0) {
+            int position = 0;
+            for (int person = 0; person < people.length; person++) {
+                if (personGroup[person] == -2) {
+                    personGroup[person] = -2 - position++;
+                }
+            }
+
+            for (int g = 0; g < groupCount; g++) {
+                for (int id : groups.get(g)) {
+                    int index = indexOf(id);
+                    if (index > -1 && personGroup[index] < -1) {
+                        multipleOffsets[-1 - personGroup[index]]++;
+                    }
+                }
+            }
+            for (int i = 0; i < multiple; i++) {
+                multipleOffsets[i + 1] += multipleOffsets[i];
+            }
+
+            multipleGroups = new int[multipleOffsets[multiple]];
+            int[] fill = Arrays.copyOf(multipleOffsets, multiple);
+            for (int g = 0; g < groupCount; g++) {
+                for (int id : groups.get(g)) {
+                    int index = indexOf(id);
+                    if (index > -1 && personGroup[index] < -1) {
+                        multipleGroups[fill[-2 - personGroup[index]]++] = g;
+                    }
+                }
+            }
+        }
+
+        for (int g = 0; g < groupCount; g++) {
+            long[] row = matrix[g];
+            for (int id : groups.get(g)) {
+                int person = indexOf(id);
+                if (person < 0) {
+                    continue;
+                }
+
+                for (int link = offsets[person]; link < offsets[person + 1]; link++) {
+                    int other = collaborators[link];
+                    int h = personGroup[other];
+                    if (h > -1) {
+                        if (h != g || person < other) {
+                            row[h] += weights[link];
+                        }
+                    } else if (h < -1) {
+                        for (int i = multipleOffsets[-2 - h]; i < multipleOffsets[-1 - h]; i++) {
+                            if (multipleGroups[i] != g || person < other) {
+                                row[multipleGroups[i]] += weights[link];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    /**
+     * Number of collaborations between each pair of organizations, including the people in their sub-organizations
+     *
+     * @param orgs the organizations
+     * @param hierarchy the sub-organizations of each organization
+     * @param orgToPeople organization to the people directly in it
+     */
+    public long[][] getOrganizationMatrix(List<String> orgs, OrganizationHierarchy hierarchy, IdAdjacency orgToPeople) {
+        int[][] groups = new int[orgs.size()][];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = orgToPeople.getAll(hierarchy.getOrgAndAllSubOrgIds(orgs.get(i)));
+        }
+
+        return getCollaborationMatrix(Arrays.asList(groups));
+    }
+
+    private int indexOf(int id) {
+        int index = Arrays.binarySearch(people, id);
+        return index < 0 ? -1 : index;
+    }
+
+    private int indexOf(String uri) {
+        int id = UriDictionary.getInstance().lookup(uri);
+        return id < 0 ? -1 : indexOf(id);
+    }
+
+    /**
+     * Position of the link between two people, or -1 if they have not collaborated
+     */
+    private int findLink(int person, int other) {
+        if (person < 0 || other < 0) {
+            return -1;
+        }
+
+        int link = Arrays.binarySearch(collaborators, offsets[person], offsets[person + 1], other);
+        return link < 0 ? -1 : link;
+    }
+
+    private int[] rowOf(int person) {
+        return Arrays.copyOfRange(collaborators, offsets[person], offsets[person + 1]);
+    }
+
+    /**
+     * Add a node to a sorted array of nodes that doesn't contain it
+     */
+    private static int[] withNode(int node, int[] nodes) {
+        int position = -Arrays.binarySearch(nodes, node) - 1;
+        int[] result = new int[nodes.length + 1];
+        System.arraycopy(nodes, 0, result, 0, position);
+        result[position] = node;
+        System.arraycopy(nodes, position, result, position + 1, nodes.length - position);
+        return result;
+    }
+
+    private boolean isBetter(int link, int other) {
+        if (weights[link] != weights[other]) {
+            return weights[link] > weights[other];
+        }
+        if (lastYears[link] != lastYears[other]) {
+            return lastYears[link] > lastYears[other];
+        }
+        return collaborators[link] < collaborators[other];
+    }
+
+    private void siftUp(int[] heap, int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isBetter(heap[parent], heap[position])) {
+                break;
+            }
+            swap(heap, parent, position);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int position, int size) {
+        while (true) {
+            int worst = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && isBetter(heap[worst], heap[left])) {
+                worst = left;
+            }
+            if (right < size && isBetter(heap[worst], heap[right])) {
+                worst = right;
+            }
+            if (worst == position) {
+                return;
+            }
+            swap(heap, worst, position);
+            position = worst;
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int swap = array[i];
+        array[i] = array[j];
+        array[j] = swap;
+    }
+
+    private static int parseYear(String year) {
+        if (year == null) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(year);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A part of the graph: the people, with the ego first and the others in id order, and the collaborations
+     * between them. Sources and targets are positions in the people.
+     */
+    public final class Network {
+        private final int[] nodes;
+        private final int[] sources;
+        private final int[] targets;
+        private final int[] links;
+
+        /**
+         * @param ego the person at the centre
+         * @param inner people whose collaborations with all the nodes are included (sorted indices)
+         * @param outer all the nodes (sorted indices)
+         */
+        private Network(int ego, int[] inner, int[] outer) {
+            int edgeCount = 0;
+            for (int node : inner) {
+                edgeCount += offsets[node + 1] - offsets[node];
+            }
+
+            // Ego first, so the position of the other nodes is one more than in outer before the ego
+            int egoPosition = Arrays.binarySearch(outer, ego);
+            nodes = new int[outer.length];
+            nodes[0] = people[ego];
+            for (int i = 0, n = 1; i < outer.length; i++) {
+                if (i != egoPosition) {
+                    nodes[n++] = people[outer[i]];
+                }
+            }
+
+            int[] edgeSources = new int[edgeCount];
+            int[] edgeTargets = new int[edgeCount];
+            int[] edgeLinks = new int[edgeCount];
+            int count = 0;
+            for (int node : inner) {
+                for (int link = offsets[node]; link < offsets[node + 1]; link++) {
+                    int other = collaborators[link];
+
+                    // Each collaboration between two inner nodes appears in both of their rows
+                    if (other < node && Arrays.binarySearch(inner, other) > -1) {
+                        continue;
+                    }
+
+                    int target = Arrays.binarySearch(outer, other);
+                    if (target < 0) {
+                        continue;
+                    }
+
+                    edgeSources[count] = position(Arrays.binarySearch(outer, node), egoPosition);
+                    edgeTargets[count] = position(target, egoPosition);
+                    edgeLinks[count] = link;
+                    count++;
+                }
+            }
+
+            sources = Arrays.copyOf(edgeSources, count);
+            targets = Arrays.copyOf(edgeTargets, count);
+            links = Arrays.copyOf(edgeLinks, count);
+        }
+
+        private Network() {
+            nodes = IdSets.EMPTY;
+            sources = IdSets.EMPTY;
+            targets = IdSets.EMPTY;
+            links = IdSets.EMPTY;
+        }
+
+        private int position(int outerPosition, int egoPosition) {
+            if (outerPosition == egoPosition) {
+                return 0;
+            }
+            return outerPosition < egoPosition ? outerPosition + 1 : outerPosition;
+        }
+
+        public int getNodeCount() {
+            return nodes.length;
+        }
+
+        /**
+         * Id of the person at a position (the ego is at 0)
+         */
+        public int getNodeId(int node) {
+            return nodes[node];
+        }
+
+        public String getNodeUri(int node) {
+            return UriDictionary.getInstance().getUri(nodes[node]);
+        }
+
+        public int getNodeActivityCount(int node) {
+            return activityCounts[indexOf(nodes[node])];
+        }
+
+        public int getEdgeCount() {
+            return links.length;
+        }
+
+        public int getSource(int edge) {
+            return sources[edge];
+        }
+
+        public int getTarget(int edge) {
+            return targets[edge];
+        }
+
+        /**
+         * Number of activities shared by the source and target
+         */
+        public int getWeight(int edge) {
+            return weights[links[edge]];
+        }
+
+        /**
+         * First year of the shared activities, or 0 if none have a known year
+         */
+        public int getFirstYear(int edge) {
+            return firstYears[links[edge]];
+        }
+
+        /**
+         * Last year of the shared activities, or 0 if none have a known year
+         */
+        public int getLastYear(int edge) {
+            return lastYears[links[edge]];
+        }
+    }
+
+    /**
+     * Builds the graph, remembering the maps it is built from
+     */
+    private static final class GraphTask extends FutureTask<CollaborationGraph> {
+        private final IdAdjacency personToActivities;
+        private final Map<String, String> activityToYear;
+
+        GraphTask(IdAdjacency personToActivities, Map<String, String> activityToYear, Callable<CollaborationGraph> build) {
+            super(build);
+            this.personToActivities = personToActivities;
+            this.activityToYear = activityToYear;
+        }
+
+        boolean isFor(IdAdjacency personToActivities, Map<String, String> activityToYear) {
+            return this.personToActivities == personToActivities && this.activityToYear == activityToYear;
+        }
+    }
+}
@@ -0,0 +1,475 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Index of the concept (research area) labels for one language, for finding concepts by label, and the people with
+ * those concepts, without walking the cached maps.
+ *
+ * Each distinct (lower case) label is held in a sorted array, with the concepts that have that label and the people
+ * with any of those concepts. Labels can be found by the whole label, by the start of the label or of any of its
+ * words, or by any part of the label (through the three character sequences of the labels).
+ *
+ * Only the labels of concepts that people have are included.
+ */
+public final class ConceptIndex {
+    /**
+     * The index for each cached map of labels - kept for as long as that map is cached. Each is built by the first
+     * request that needs it, outside the lock, and other requests for the same maps wait for it.
+     */
+    private static final Map<ConceptLabelMap, IndexTask> current = new WeakHashMap<>();
+
+    private static final int NGRAM = 3;
+
+    private final ConceptPeopleMap conceptPeopleMap;
+
+    /**
+     * Distinct lower case labels, sorted - the position of a label gives the index used by the arrays below
+     */
+    private final String[] labels;
+
+    /**
+     * A label to show for each lower case label (as given to one of its concepts)
+     */
+    private final String[] displayLabels;
+
+    /**
+     * Concepts with each label, and people with any of those concepts, as sorted ids
+     */
+    private final int[][] labelConcepts;
+    private final int[][] labelPeople;
+
+    /**
+     * Ids of the concepts with labels, sorted, with the label (by index) of each
+     */
+    private final int[] conceptIds;
+    private final int[] conceptLabels;
+
+    /**
+     * Distinct words of the labels, sorted, with the labels (by index) that contain each word
+     */
+    private final String[] words;
+    private final int[][] wordLabels;
+
+    /**
+     * Labels (by index) that contain each three character sequence
+     */
+    private final Map<String, int[]> ngramLabels;
+
+    /**
+     * Labels of the other concepts of the people with each label, created the first time they are needed
+     */
+    private final AtomicReferenceArray<String[]> clusters;
+
+    private ConceptIndex(ConceptLabelMap conceptLabelMap, ConceptPeopleMap conceptPeopleMap) {
+        this.conceptPeopleMap = conceptPeopleMap;
+
+        UriDictionary dictionary = UriDictionary.getInstance();
+        IdAdjacency conceptToPeople = conceptPeopleMap.getConceptToPeopleIds();
+
+        // Lower case labels of the concepts that people have
+        TreeMap<String, List<Integer>> labelToConcepts = new TreeMap<>();
+        Map<String, String> labelToDisplay = new HashMap<>();
+        for (int concept : conceptToPeople.keys()) {
+            String label = conceptLabelMap.conceptToLabel.get(dictionary.getUri(concept));
+            if (label == null || label.isEmpty()) {
+                continue;
+            }
+
+            String lower = label.toLowerCase();
+            List<Integer> concepts = labelToConcepts.get(lower);
+            if (concepts == null) {
+                concepts = new ArrayList<>();
+                labelToConcepts.put(lower, concepts);
+                labelToDisplay.put(lower, label);
+            }
+            concepts.add(concept);
+        }
+
+        int count = labelToConcepts.size();
+        labels = new String[count];
+        displayLabels = new String[count];
+        labelConcepts = new int[count][];
+        labelPeople = new int[count][];
+
+        TreeMap<String, List<Integer>> wordToLabels = new TreeMap<>();
+        Map<String, List<Integer>> ngramToLabels = new HashMap<>();
+
+        int label = 0;
+        for (Map.Entry<String, List<Integer>> entry : labelToConcepts.entrySet()) {
+            labels[label] = entry.getKey();
+            displayLabels[label] = labelToDisplay.get(entry.getKey());
+
+            int[] concepts = new int[entry.getValue().size()];
+            for (int i = 0; i < concepts.length; i++) {
+                concepts[i] = entry.getValue().get(i);
+            }
+            labelConcepts[label] = IdSets.sortedUnique(concepts, concepts.length);
+            labelPeople[label] = conceptToPeople.getAll(labelConcepts[label]);
+
+            for (String word : tokenize(entry.getKey())) {
+                addPosting(wordToLabels, word, label);
+            }
+
+            String lower = entry.getKey();
+            for (int start = 0; start + NGRAM <= lower.length(); start++) {
+                addPosting(ngramToLabels, lower.substring(start, start + NGRAM), label);
+            }
+
+            label++;
+        }
+
+        conceptIds = new int[countConcepts(labelConcepts)];
+        conceptLabels = new int[conceptIds.length];
+        int concept = 0;
+        for (label = 0; label < count; label++) {
+            for (int id : labelConcepts[label]) {
+                conceptIds[concept] = id;
+                conceptLabels[concept++] = label;
+            }
+        }
+        sortByConcept(conceptIds, conceptLabels);
+
+        words = wordToLabels.keySet().toArray(new String[wordToLabels.size()]);
+        wordLabels = new int[words.length][];
+        for (int word = 0; word < words.length; word++) {
+            wordLabels[word] = toArray(wordToLabels.get(words[word]));
+        }
+
+        ngramLabels = new HashMap<>(ngramToLabels.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : ngramToLabels.entrySet()) {
+            ngramLabels.put(entry.getKey(), toArray(entry.getValue()));
+        }
+
+        clusters = new AtomicReferenceArray<>(count);
+    }
+
+    /**
+     * Get the index for the cached maps, reusing the current index if it was built from the same maps
+     */
+    public static ConceptIndex of(final ConceptLabelMap conceptLabelMap, final ConceptPeopleMap conceptPeopleMap) {
+        IndexTask task;
+        synchronized (current) {
+            task = current.get(conceptLabelMap);
+            if (task == null || task.conceptPeopleMap != conceptPeopleMap) {
+                task = new IndexTask(conceptPeopleMap, new Callable<ConceptIndex>() {
+                    @Override
+                    public ConceptIndex call() {
+                        return new ConceptIndex(conceptLabelMap, conceptPeopleMap);
+                    }
+                });
+                current.put(conceptLabelMap, task);
+            }
+        }
+
+        // Does nothing if the index is already built, or being built by another request
+        task.run();
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for the concept index", e);
+        } catch (ExecutionException e) {
+            // Don't keep the failure, so that the next request tries again
+            synchronized (current) {
+                if (current.get(conceptLabelMap) == task) {
+                    current.remove(conceptLabelMap);
+                }
+            }
+
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException("Error building the concept index", e.getCause());
+        }
+    }
+
+    /**
+     * Number of distinct labels
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Find a label by the whole label, ignoring case
+     *
+     * @return the index of the label, or -1 if there is no such label
+     */
+    public int indexOf(String term) {
+        if (term == null) {
+            return -1;
+        }
+
+        int label = Arrays.binarySearch(labels, term.toLowerCase());
+        return label < 0 ? -1 : label;
+    }
+
+    /**
+     * The label to show for a label index
+     */
+    public String getLabel(int label) {
+        return displayLabels[label];
+    }
+
+    /**
+     * All of the labels to show
+     */
+    public List<String> getLabels() {
+        return Collections.unmodifiableList(Arrays.asList(displayLabels));
+    }
+
+    /**
+     * The concepts with a label, as sorted ids
+     */
+    public int[] getConcepts(int label) {
+        return labelConcepts[label];
+    }
+
+    /**
+     * The people with any of the concepts with a label, as sorted ids
+     */
+    public int[] getPeople(int label) {
+        return labelPeople[label];
+    }
+
+    /**
+     * The labels of the other concepts of the people with a label, for expanding a search
+     */
+    public String[] getClusters(int label) {
+        String[] result = clusters.get(label);
+        if (result == null) {
+            int[] others = IdSets.difference(
+                    conceptPeopleMap.getPersonToConceptsIds().getAll(labelPeople[label]),
+                    labelConcepts[label]);
+
+            // The other concepts can share a label, so keep each label once
+            List<String> clusterLabels = new ArrayList<>();
+            boolean[] seen = new boolean[labels.length];
+            for (int concept : others) {
+                int other = labelOf(concept);
+                if (other > -1 && !seen[other]) {
+                    seen[other] = true;
+                    clusterLabels.add(displayLabels[other]);
+                }
+            }
+
+            result = clusterLabels.toArray(new String[clusterLabels.size()]);
+            clusters.set(label, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Find the labels that match a term, for completing a search: those that start with the term first, then
+     * those with words that start with each of the words of the term, then those that contain the term. Each of
+     * these is ordered by the number of people, most first.
+     *
+     * @param limit the maximum number of labels to return
+     * @return the matching labels (as shown)
+     */
+    public List<String> suggest(String term, int limit) {
+        List<String> suggestions = new ArrayList<>();
+        if (term == null || limit < 1) {
+            return suggestions;
+        }
+
+        String lower = term.trim().toLowerCase();
+        if (lower.isEmpty()) {
+            return suggestions;
+        }
+
+        boolean[] added = new boolean[labels.length];
+
+        // Labels starting with the term
+        int from = prefixStart(labels, lower);
+        int to = prefixEnd(labels, lower, from);
+        addByPeople(rangeOf(from, to), added, suggestions, limit);
+
+        // Labels with words starting with each word of the term
+        if (suggestions.size() < limit) {
+            int[] matches = null;
+            for (String word : tokenize(lower)) {
+                int wordFrom = prefixStart(words, word);
+                int wordTo = prefixEnd(words, word, wordFrom);
+
+                List<int[]> postings = new ArrayList<>();
+                for (int w = wordFrom; w < wordTo; w++) {
+                    postings.add(wordLabels[w]);
+                }
+
+                int[] wordMatches = IdSets.union(postings);
+                matches = matches == null ? wordMatches : IdSets.intersect(matches, wordMatches);
+            }
+
+            if (matches != null) {
+                addByPeople(matches, added, suggestions, limit);
+            }
+        }
+
+        // Labels containing the term
+        if (suggestions.size() < limit && lower.length() >= NGRAM) {
+            int[] candidates = null;
+            for (int start = 0; start + NGRAM <= lower.length() && (candidates == null || candidates.length > 0); start++) {
+                int[] postings = ngramLabels.get(lower.substring(start, start + NGRAM));
+                candidates = postings == null ? IdSets.EMPTY
+                        : candidates == null ? postings : IdSets.intersect(candidates, postings);
+            }
+
+            List<Integer> matches = new ArrayList<>();
+            for (int candidate : candidates) {
+                if (labels[candidate].contains(lower)) {
+                    matches.add(candidate);
+                }
+            }
+
+            addByPeople(toArray(matches), added, suggestions, limit);
+        }
+
+        return suggestions;
+    }
+
+    private int labelOf(int concept) {
+        int index = Arrays.binarySearch(conceptIds, concept);
+        return index < 0 ? -1 : conceptLabels[index];
+    }
+
+    private void addByPeople(int[] matches, boolean[] added, List<String> suggestions, int limit) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int label : matches) {
+            if (!added[label]) {
+                candidates.add(label);
+            }
+        }
+
+        Collections.sort(candidates, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer label1, Integer label2) {
+                int people1 = labelPeople[label1].length;
+                int people2 = labelPeople[label2].length;
+                return people1 != people2 ? people2 - people1 : label1 - label2;
+            }
+        });
+
+        for (int label : candidates) {
+            if (suggestions.size() >= limit) {
+                return;
+            }
+
+            added[label] = true;
+            suggestions.add(displayLabels[label]);
+        }
+    }
+
+    /**
+     * Words of a lower case label or term - sequences of letters and digits
+     */
+    static List<String> tokenize(String lower) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : lower.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+
+        return tokens;
+    }
+
+    private static int countConcepts(int[][] labelConcepts) {
+        int count = 0;
+        for (int[] concepts : labelConcepts) {
+            count += concepts.length;
+        }
+
+        return count;
+    }
+
+    /**
+     * Sort concept ids (each of which is only given once), keeping the labels in step
+     */
+    private static void sortByConcept(int[] conceptIds, int[] conceptLabels) {
+        long[] packed = new long[conceptIds.length];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = ((long) conceptIds[i] << 32) | (conceptLabels[i] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(packed);
+
+        for (int i = 0; i < packed.length; i++) {
+            conceptIds[i] = (int) (packed[i] >>> 32);
+            conceptLabels[i] = (int) packed[i];
+        }
+    }
+
+    private static int prefixStart(String[] sorted, String prefix) {
+        int index = Arrays.binarySearch(sorted, prefix);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private static int prefixEnd(String[] sorted, String prefix, int from) {
+        // Everything starting with the prefix sorts before the prefix followed by the highest character
+        int index = Arrays.binarySearch(sorted, from, sorted.length, prefix + Character.MAX_VALUE);
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private static int[] rangeOf(int from, int to) {
+        int[] range = new int[to - from];
+        for (int i = 0; i < range.length; i++) {
+            range[i] = from + i;
+        }
+
+        return range;
+    }
+
+    private static <K> void addPosting(Map<K, List<Integer>> postings, K key, int label) {
+        List<Integer> labels = postings.get(key);
+        if (labels == null) {
+            labels = new ArrayList<>();
+            postings.put(key, labels);
+        }
+
+        // Labels are added in order, so only the last needs to be checked for a repeat
+        if (labels.isEmpty() || labels.get(labels.size() - 1) != label) {
+            labels.add(label);
+        }
+    }
+
+    /**
+     * Builds the index for a map of labels, and records the map of people it is for. The task lets go of the map of
+     * labels once it has run, so that it doesn't keep its own key in the weak map.
+     */
+    private static final class IndexTask extends FutureTask<ConceptIndex> {
+        private final ConceptPeopleMap conceptPeopleMap;
+
+        IndexTask(ConceptPeopleMap conceptPeopleMap, Callable<ConceptIndex> build) {
+            super(build);
+            this.conceptPeopleMap = conceptPeopleMap;
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+
+        return array;
+    }
+}
@@ -7,6 +7,15 @@ import java.util.Map;
 import java.util.Set;
 
 public class ConceptLabelMap {
-    public final Map<String, String> conceptToLabel = new HashMap<String, String>();
-    public final Map<String, Set<String>> lowerLabelToConcepts = new HashMap<String, Set<String>>();
+    public final Map<String, String> conceptToLabel;
+    public final Map<String, Set<String>> lowerLabelToConcepts;
+
+    public ConceptLabelMap() {
+        this(new HashMap<String, String>(), new HashMap<String, Set<String>>());
+    }
+
+    public ConceptLabelMap(Map<String, String> conceptToLabel, Map<String, Set<String>> lowerLabelToConcepts) {
+        this.conceptToLabel = conceptToLabel;
+        this.lowerLabelToConcepts = lowerLabelToConcepts;
+    }
 }
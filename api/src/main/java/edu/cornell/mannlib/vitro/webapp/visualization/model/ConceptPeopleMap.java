@@ -2,11 +2,32 @@
 
 package edu.cornell.mannlib.vitro.webapp.visualization.model;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
 public class ConceptPeopleMap {
-    public final Map<String, Set<String>> conceptToPeople = new HashMap<String, Set<String>>();
-    public final Map<String, Set<String>> personToConcepts = new HashMap<String, Set<String>>();
+    public final Map<String, Set<String>> conceptToPeople;
+    public final Map<String, Set<String>> personToConcepts;
+
+    private final IdAdjacency conceptToPeopleIds;
+    private final IdAdjacency personToConceptsIds;
+
+    public ConceptPeopleMap() {
+        this(IdAdjacency.empty());
+    }
+
+    public ConceptPeopleMap(IdAdjacency conceptToPeopleIds) {
+        this.conceptToPeopleIds = conceptToPeopleIds;
+        this.personToConceptsIds = conceptToPeopleIds.inverse();
+        this.conceptToPeople = this.conceptToPeopleIds.asMap();
+        this.personToConcepts = this.personToConceptsIds.asMap();
+    }
+
+    public IdAdjacency getConceptToPeopleIds() {
+        return conceptToPeopleIds;
+    }
+
+    public IdAdjacency getPersonToConceptsIds() {
+        return personToConceptsIds;
+    }
 }
@@ -0,0 +1,527 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact, immutable representation of a one-to-many relationship between URIs (e.g. person to publications).
+ *
+ * URIs are replaced by ids from the shared UriDictionary, and the relationship is held in three int arrays:
+ * the sorted source ids, the offset of each source's targets, and the targets themselves (sorted for each source).
+ * This costs a few bytes per link, rather than the hash map and hash set entries of a Map&lt;String, Set&lt;String&gt;&gt;.
+ *
+ * For existing code, asMap() presents the relationship as a read only map of URIs.
+ */
+public final class IdAdjacency {
+    private static final IdAdjacency EMPTY = new IdAdjacency(IdSets.EMPTY, new int[] { 0 }, IdSets.EMPTY);
+
+    private final int[] keys;
+    private final int[] offsets;
+    private final int[] values;
+
+    private final Map<String, Set<String>> map = new AdjacencyMap();
+
+    private volatile IdAdjacency inverse;
+
+    private IdAdjacency(int[] keys, int[] offsets, int[] values) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.values = values;
+    }
+
+    public static IdAdjacency empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Number of sources that have at least one target
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Total number of links
+     */
+    public int linkCount() {
+        return values.length;
+    }
+
+    /**
+     * Approximate memory used by the relationship, in bytes (not counting the URIs, which are held by the dictionary)
+     */
+    public long estimateSize() {
+        return 48 + 3 * 16 + 4L * (keys.length + offsets.length + values.length);
+    }
+
+    /**
+     * The ids of all the sources, sorted
+     */
+    public int[] keys() {
+        return keys.clone();
+    }
+
+    /**
+     * The targets of a source, as a sorted id array
+     */
+    public int[] get(int key) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            return IdSets.EMPTY;
+        }
+
+        return Arrays.copyOfRange(values, offsets[index], offsets[index + 1]);
+    }
+
+    /**
+     * The targets of a source URI, as a sorted id array
+     */
+    public int[] get(String uri) {
+        int id = UriDictionary.getInstance().lookup(uri);
+        return id < 0 ? IdSets.EMPTY : get(id);
+    }
+
+    /**
+     * Number of targets of a source
+     */
+    public int count(int key) {
+        int index = Arrays.binarySearch(keys, key);
+        return index < 0 ? 0 : offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * Determine if a link exists
+     */
+    public boolean contains(int key, int value) {
+        return linkIndex(key, value) > -1;
+    }
+
+    /**
+     * Position of a link among all of the links, in order of source and then target, or -1 if it doesn't exist -
+     * so that a value for each link can be held in an array alongside the relationship
+     */
+    public int linkIndex(int key, int value) {
+        int index = Arrays.binarySearch(keys, key);
+        if (index < 0) {
+            return -1;
+        }
+
+        int link = Arrays.binarySearch(values, offsets[index], offsets[index + 1], value);
+        return link < 0 ? -1 : link;
+    }
+
+    /**
+     * Union of the targets of all the given sources
+     */
+    public int[] getAll(int[] keys) {
+        int total = 0;
+        for (int key : keys) {
+            total += count(key);
+        }
+
+        int[] all = new int[total];
+        int pos = 0;
+        for (int key : keys) {
+            int index = Arrays.binarySearch(this.keys, key);
+            if (index > -1) {
+                int length = offsets[index + 1] - offsets[index];
+                System.arraycopy(values, offsets[index], all, pos, length);
+                pos += length;
+            }
+        }
+
+        return IdSets.sortedUnique(all, total);
+    }
+
+    /**
+     * The reverse relationship (target to sources), created the first time it is needed
+     */
+    public IdAdjacency inverse() {
+        IdAdjacency result = inverse;
+        if (result == null) {
+            result = createInverse();
+            if (result != EMPTY) {
+                result.inverse = this;
+            }
+            inverse = result;
+        }
+
+        return result;
+    }
+
+    private IdAdjacency createInverse() {
+        long[] links = new long[values.length];
+        int pos = 0;
+        for (int index = 0; index < keys.length; index++) {
+            for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+                links[pos++] = pack(values[i], keys[index]);
+            }
+        }
+
+        return fromLinks(links, pos);
+    }
+
+    /**
+     * Create a new relationship with links removed and added.
+     *
+     * The existing links are already in order, so only the (usually few) changes are sorted, and they are merged with
+     * the existing links in a single pass. If the reverse relationship has been created, it is updated in the same way,
+     * rather than being left to be created again from scratch.
+     *
+     * @param removals links to remove, from source URI to target URIs
+     * @param additions links to add, from source URI to target URIs
+     */
+    public IdAdjacency update(Map<String, Set<String>> removals, Map<String, Set<String>> additions) {
+        UriDictionary dictionary = UriDictionary.getInstance();
+        IdAdjacency currentInverse = inverse;
+
+        Builder removed = new Builder();
+        Builder removedInverse = new Builder();
+        for (Map.Entry<String, Set<String>> entry : removals.entrySet()) {
+            int key = dictionary.lookup(entry.getKey());
+            if (key > -1) {
+                for (String value : entry.getValue()) {
+                    int id = dictionary.lookup(value);
+                    if (id > -1) {
+                        removed.add(key, id);
+                        removedInverse.add(id, key);
+                    }
+                }
+            }
+        }
+
+        Builder added = new Builder();
+        Builder addedInverse = new Builder();
+        for (Map.Entry<String, Set<String>> entry : additions.entrySet()) {
+            int key = dictionary.getId(entry.getKey());
+            for (String value : entry.getValue()) {
+                int id = dictionary.getId(value);
+                added.add(key, id);
+                addedInverse.add(id, key);
+            }
+        }
+
+        IdAdjacency result = merge(removed.sortedLinks(), added.sortedLinks());
+        if (currentInverse != null && result != EMPTY) {
+            IdAdjacency resultInverse = currentInverse.merge(removedInverse.sortedLinks(), addedInverse.sortedLinks());
+            if (resultInverse != EMPTY) {
+                resultInverse.inverse = result;
+                result.inverse = resultInverse;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Merge the links of this relationship, less the removed links, with the added links
+     *
+     * @param removed sorted links to remove
+     * @param added sorted links to add (may contain duplicates, or links that already exist)
+     */
+    private IdAdjacency merge(long[] removed, long[] added) {
+        if (removed.length == 0 && added.length == 0) {
+            return this;
+        }
+
+        int[] newKeys = new int[keys.length + added.length];
+        int[] newOffsets = new int[keys.length + added.length + 1];
+        int[] newValues = new int[values.length + added.length];
+        int k = 0;
+        int v = 0;
+
+        int index = 0;
+        int i = 0, r = 0, a = 0;
+        while (i < values.length || a < added.length) {
+            long link;
+            if (i < values.length) {
+                while (offsets[index + 1] <= i) {
+                    index++;
+                }
+                link = pack(keys[index], values[i]);
+            } else {
+                link = Long.MAX_VALUE;
+            }
+
+            if (a >= added.length || (i < values.length && link <= added[a])) {
+                i++;
+                while (r < removed.length && removed[r] < link) {
+                    r++;
+                }
+                if (r < removed.length && removed[r] == link) {
+                    continue;
+                }
+            } else {
+                link = added[a++];
+            }
+
+            int key = (int) (link >>> 32);
+            int value = (int) link;
+            if (k == 0 || newKeys[k - 1] != key) {
+                newKeys[k] = key;
+                newOffsets[k] = v;
+                k++;
+            } else if (newValues[v - 1] == value) {
+                continue;
+            }
+            newValues[v++] = value;
+        }
+
+        if (k == 0) {
+            return EMPTY;
+        }
+
+        newOffsets[k] = v;
+        return new IdAdjacency(
+                k == newKeys.length ? newKeys : Arrays.copyOf(newKeys, k),
+                k + 1 == newOffsets.length ? newOffsets : Arrays.copyOf(newOffsets, k + 1),
+                v == newValues.length ? newValues : Arrays.copyOf(newValues, v));
+    }
+
+    /**
+     * The sources whose targets differ between this relationship and another, as a sorted id array
+     */
+    public int[] changedKeys(IdAdjacency other) {
+        if (other == this) {
+            return IdSets.EMPTY;
+        }
+
+        int[] changed = new int[16];
+        int count = 0;
+
+        int i = 0, j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            int key;
+            if (j >= other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                key = keys[i++];
+            } else if (i >= keys.length || keys[i] > other.keys[j]) {
+                key = other.keys[j++];
+            } else {
+                key = keys[i];
+                boolean same = sameTargets(other, i, j);
+                i++;
+                j++;
+                if (same) {
+                    continue;
+                }
+            }
+
+            if (count == changed.length) {
+                changed = Arrays.copyOf(changed, count * 2);
+            }
+            changed[count++] = key;
+        }
+
+        return Arrays.copyOf(changed, count);
+    }
+
+    private boolean sameTargets(IdAdjacency other, int index, int otherIndex) {
+        int length = offsets[index + 1] - offsets[index];
+        if (length != other.offsets[otherIndex + 1] - other.offsets[otherIndex]) {
+            return false;
+        }
+
+        for (int k = 0; k < length; k++) {
+            if (values[offsets[index] + k] != other.values[other.offsets[otherIndex] + k]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Present the relationship as a read only map of URIs
+     */
+    public Map<String, Set<String>> asMap() {
+        return map;
+    }
+
+    /**
+     * Get the relationship backing a map of URIs, or null if the map is not a view of one
+     */
+    public static IdAdjacency backing(Map<?, ?> map) {
+        return map instanceof AdjacencyMap ? ((AdjacencyMap) map).adjacency() : null;
+    }
+
+    /**
+     * Get a compact relationship from a map of URIs - directly, if the map is backed by one, otherwise by converting it
+     */
+    public static IdAdjacency of(Map<String, Set<String>> map) {
+        if (map instanceof AdjacencyMap) {
+            return ((AdjacencyMap) map).adjacency();
+        }
+
+        Builder builder = new Builder();
+        for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+            for (String value : entry.getValue()) {
+                builder.add(entry.getKey(), value);
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static long pack(int key, int value) {
+        return ((long) key << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private static IdAdjacency fromLinks(long[] links, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+
+        long[] sorted = Arrays.copyOf(links, count);
+        Arrays.sort(sorted);
+
+        // Count the distinct links and sources
+        int linkCount = 1;
+        int keyCount = 1;
+        for (int i = 1; i < count; i++) {
+            if (sorted[i] != sorted[i - 1]) {
+                linkCount++;
+                if ((int) (sorted[i] >>> 32) != (int) (sorted[i - 1] >>> 32)) {
+                    keyCount++;
+                }
+            }
+        }
+
+        int[] keys = new int[keyCount];
+        int[] offsets = new int[keyCount + 1];
+        int[] values = new int[linkCount];
+
+        int k = -1;
+        int v = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                continue;
+            }
+
+            int key = (int) (sorted[i] >>> 32);
+            if (k < 0 || keys[k] != key) {
+                keys[++k] = key;
+                offsets[k] = v;
+            }
+
+            values[v++] = (int) sorted[i];
+        }
+        offsets[keyCount] = v;
+
+        return new IdAdjacency(keys, offsets, values);
+    }
+
+    /**
+     * Accumulates links, without the overhead of hash sets, before building the compact relationship
+     */
+    public static final class Builder {
+        private long[] links = new long[1024];
+        private int count = 0;
+
+        public void add(String key, String value) {
+            UriDictionary dictionary = UriDictionary.getInstance();
+            add(dictionary.getId(key), dictionary.getId(value));
+        }
+
+        public void add(int key, int value) {
+            add(pack(key, value));
+        }
+
+        private void add(long link) {
+            if (count == links.length) {
+                links = Arrays.copyOf(links, count * 2);
+            }
+
+            links[count++] = link;
+        }
+
+        private long[] sortedLinks() {
+            long[] sorted = Arrays.copyOf(links, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        public IdAdjacency build() {
+            IdAdjacency adjacency = fromLinks(links, count);
+            links = null;
+            return adjacency;
+        }
+    }
+
+    /**
+     * Read only map view of the relationship
+     */
+    private final class AdjacencyMap extends AbstractMap<String, Set<String>> {
+        IdAdjacency adjacency() {
+            return IdAdjacency.this;
+        }
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) > -1;
+        }
+
+        @Override
+        public Set<String> get(Object key) {
+            int index = indexOf(key);
+            return index < 0 ? null : new IdSets.UriSet(values, offsets[index], offsets[index + 1]);
+        }
+
+        private int indexOf(Object key) {
+            if (!(key instanceof String)) {
+                return -1;
+            }
+
+            int id = UriDictionary.getInstance().lookup((String) key);
+            return id < 0 ? -1 : Arrays.binarySearch(keys, id);
+        }
+
+        @Override
+        public Set<Entry<String, Set<String>>> entrySet() {
+            return new AbstractSet<Entry<String, Set<String>>>() {
+                @Override
+                public int size() {
+                    return keys.length;
+                }
+
+                @Override
+                public Iterator<Entry<String, Set<String>>> iterator() {
+                    return new Iterator<Entry<String, Set<String>>>() {
+                        private int index = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < keys.length;
+                        }
+
+                        @Override
+                        public Entry<String, Set<String>> next() {
+                            if (index >= keys.length) {
+                                throw new NoSuchElementException();
+                            }
+
+                            Entry<String, Set<String>> entry = new SimpleImmutableEntry<String, Set<String>>(
+                                    UriDictionary.getInstance().getUri(keys[index]),
+                                    new IdSets.UriSet(values, offsets[index], offsets[index + 1])
+                            );
+
+                            index++;
+                            return entry;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
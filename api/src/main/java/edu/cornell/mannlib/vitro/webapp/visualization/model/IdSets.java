@@ -0,0 +1,239 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Set operations over sorted arrays of ids (as assigned by the UriDictionary)
+ */
+public class IdSets {
+    public static final int[] EMPTY = new int[0];
+
+    /**
+     * Union of two sorted id arrays
+     */
+    public static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+
+        if (b.length == 0) {
+            return a;
+        }
+
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[k++] = b[j++];
+            } else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+
+        while (i < a.length) {
+            result[k++] = a[i++];
+        }
+
+        while (j < b.length) {
+            result[k++] = b[j++];
+        }
+
+        return k == result.length ? result : Arrays.copyOf(result, k);
+    }
+
+    /**
+     * Union of many sorted id arrays
+     */
+    public static int[] union(Collection<int[]> arrays) {
+        int total = 0;
+        for (int[] array : arrays) {
+            total += array.length;
+        }
+
+        int[] all = new int[total];
+        int pos = 0;
+        for (int[] array : arrays) {
+            System.arraycopy(array, 0, all, pos, array.length);
+            pos += array.length;
+        }
+
+        return sortedUnique(all, total);
+    }
+
+    /**
+     * Intersection of two sorted id arrays
+     */
+    public static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+
+        return k == result.length ? result : Arrays.copyOf(result, k);
+    }
+
+    /**
+     * Number of ids in both of two sorted id arrays, without creating the intersection
+     */
+    public static int intersectionSize(int[] a, int[] b) {
+        int i = 0, j = 0, count = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Ids in the first sorted array that are not in the second
+     */
+    public static int[] difference(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length) {
+            if (j >= b.length || a[i] < b[j]) {
+                result[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+
+        return k == result.length ? result : Arrays.copyOf(result, k);
+    }
+
+    /**
+     * Determine if a sorted id array contains an id
+     */
+    public static boolean contains(int[] ids, int id) {
+        return Arrays.binarySearch(ids, id) > -1;
+    }
+
+    /**
+     * Sort the first count elements of an array and remove duplicates
+     */
+    public static int[] sortedUnique(int[] ids, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+
+        int[] sorted = Arrays.copyOf(ids, count);
+        Arrays.sort(sorted);
+
+        int k = 1;
+        for (int i = 1; i < count; i++) {
+            if (sorted[i] != sorted[k - 1]) {
+                sorted[k++] = sorted[i];
+            }
+        }
+
+        return k == count ? sorted : Arrays.copyOf(sorted, k);
+    }
+
+    /**
+     * Present a sorted id array as a read only set of URIs
+     */
+    public static Set<String> asUriSet(int[] ids) {
+        return new UriSet(ids, 0, ids.length);
+    }
+
+    /**
+     * Read only set of URIs, backed by a range of a sorted id array
+     */
+    static final class UriSet extends AbstractSet<String> {
+        private final int[] ids;
+        private final int from;
+        private final int to;
+
+        UriSet(int[] ids, int from, int to) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * The ids in this set, as a sorted array
+         */
+        int[] ids() {
+            return Arrays.copyOfRange(ids, from, to);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+
+            int id = UriDictionary.getInstance().lookup((String) o);
+            return id > -1 && Arrays.binarySearch(ids, from, to, id) > -1;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int pos = from;
+
+                @Override
+                public boolean hasNext() {
+                    return pos < to;
+                }
+
+                @Override
+                public String next() {
+                    if (pos >= to) {
+                        throw new NoSuchElementException();
+                    }
+                    return UriDictionary.getInstance().getUri(ids[pos++]);
+                }
+            };
+        }
+    }
+
+    /**
+     * Get the ids of a set of URIs - directly, if the set is backed by ids, otherwise through the dictionary
+     */
+    public static int[] idsOf(Set<String> uris) {
+        if (uris == null) {
+            return EMPTY;
+        }
+
+        if (uris instanceof UriSet) {
+            return ((UriSet) uris).ids();
+        }
+
+        return UriDictionary.getInstance().lookupAll(uris);
+    }
+}
@@ -0,0 +1,154 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.Arrays;
+
+/**
+ * Map of long keys to non-negative int values (e.g. a pair of ids, packed into a long, to a position in some
+ * arrays), without boxing the keys or values, or creating an entry object for each mapping.
+ *
+ * Not thread safe.
+ */
+public final class LongIntHashMap {
+    /**
+     * Open addressing hash table of keys, and (value + 1), with zero marking an empty slot
+     */
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of mappings that can be added before the table has to grow
+     */
+    public LongIntHashMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        keys = new long[capacity];
+        values = new int[capacity];
+    }
+
+    /**
+     * Pack a pair of ids into a key - the same for either order of the ids
+     */
+    public static long pairKey(int id1, int id2) {
+        return id1 < id2
+                ? ((long) id1 << 32) | (id2 & 0xFFFFFFFFL)
+                : ((long) id2 << 32) | (id1 & 0xFFFFFFFFL);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the value for a key
+     *
+     * @return the value, or -1 if the key is not in the map
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Add a value for a key, unless the key is already in the map
+     *
+     * @param value the value (not negative)
+     * @return the existing value, or -1 if the value was added
+     */
+    public int putIfAbsent(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        for (; values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+        }
+
+        keys[slot] = key;
+        values[slot] = value + 1;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Set the value for a key, replacing any existing value
+     *
+     * @param value the value (not negative)
+     * @return the previous value, or -1 if the key was not in the map
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        for (; values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                int previous = values[slot] - 1;
+                values[slot] = value + 1;
+                return previous;
+            }
+        }
+
+        keys[slot] = key;
+        values[slot] = value + 1;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+
+        return -1;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
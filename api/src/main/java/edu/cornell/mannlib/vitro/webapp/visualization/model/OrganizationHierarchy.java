@@ -0,0 +1,418 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the transitive sub-organizations of every organization, built once from the map of organization
+ * to direct sub-organizations.
+ *
+ * The organizations are numbered in a depth first walk of the hierarchy, so that the sub-organizations of an
+ * organization in a tree are a single interval of the numbering (an Euler tour labelling). Where an organization
+ * has more than one parent, the sub-organizations reached through the other parents add further intervals.
+ * Cycles (an organization that is, by mistake, its own sub-organization) are collapsed first: every organization
+ * in a cycle has the same sub-organizations.
+ *
+ * The walks are iterative, so deep hierarchies can't overflow the stack.
+ */
+public final class OrganizationHierarchy {
+    private static volatile OrganizationHierarchy latest;
+
+    private final IdAdjacency subOrgs;
+    private final IdAdjacency parents;
+
+    /**
+     * Organization ids, sorted - the position of an id gives the index used by the arrays below
+     */
+    private final int[] nodes;
+
+    /**
+     * Position of each organization in the numbering
+     */
+    private final int[] position;
+
+    /**
+     * Organization id at each position in the numbering
+     */
+    private final int[] order;
+
+    /**
+     * Component (cycle, or single organization) of each organization
+     */
+    private final int[] component;
+
+    /**
+     * Sub-organizations of each component, as pairs of [start, end) positions
+     */
+    private final int[][] intervals;
+
+    private OrganizationHierarchy(IdAdjacency subOrgs) {
+        this.subOrgs = subOrgs;
+        this.parents = subOrgs.inverse();
+        this.nodes = IdSets.union(subOrgs.keys(), parents.keys());
+
+        int count = nodes.length;
+
+        // Children of each organization, by index
+        int[] childOffsets = new int[count + 1];
+        int[] children = new int[subOrgs.linkCount()];
+        int link = 0;
+        for (int node = 0; node < count; node++) {
+            for (int child : subOrgs.get(nodes[node])) {
+                children[link++] = indexOf(child);
+            }
+            childOffsets[node + 1] = link;
+        }
+
+        component = new int[count];
+        int componentCount = findComponents(childOffsets, children);
+
+        // Members and children of each component
+        int[] memberOffsets = new int[componentCount + 1];
+        for (int node = 0; node < count; node++) {
+            memberOffsets[component[node] + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            memberOffsets[c + 1] += memberOffsets[c];
+        }
+        int[] members = new int[count];
+        int[] fill = Arrays.copyOf(memberOffsets, componentCount);
+        for (int node = 0; node < count; node++) {
+            members[fill[component[node]]++] = node;
+        }
+
+        int[][] componentChildren = new int[componentCount][];
+        boolean[] hasParent = new boolean[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            int links = 0;
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                links += childOffsets[members[m] + 1] - childOffsets[members[m]];
+            }
+
+            int[] targets = new int[links];
+            int targetCount = 0;
+            for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+                int node = members[m];
+                for (int i = childOffsets[node]; i < childOffsets[node + 1]; i++) {
+                    if (component[children[i]] != c) {
+                        targets[targetCount++] = component[children[i]];
+                    }
+                }
+            }
+
+            componentChildren[c] = IdSets.sortedUnique(targets, targetCount);
+            for (int child : componentChildren[c]) {
+                hasParent[child] = true;
+            }
+        }
+
+        // Number the organizations depth first from the top level organizations.
+        // Components complete in reverse topological order, so the highest numbers are at the top.
+        position = new int[count];
+        order = new int[count];
+        int[] start = new int[componentCount];
+        int[] end = new int[componentCount];
+        boolean[] visited = new boolean[componentCount];
+
+        int[] stack = new int[componentCount];
+        int[] next = new int[componentCount];
+        int pos = 0;
+        for (int root = componentCount - 1; root >= 0; root--) {
+            if (hasParent[root] || visited[root]) {
+                continue;
+            }
+
+            int depth = 0;
+            stack[0] = root;
+            next[0] = 0;
+            visited[root] = true;
+            pos = place(root, pos, start, memberOffsets, members);
+
+            while (depth >= 0) {
+                int c = stack[depth];
+                if (next[depth] < componentChildren[c].length) {
+                    int child = componentChildren[c][next[depth]++];
+                    if (!visited[child]) {
+                        visited[child] = true;
+                        pos = place(child, pos, start, memberOffsets, members);
+                        stack[++depth] = child;
+                        next[depth] = 0;
+                    }
+                } else {
+                    end[c] = pos;
+                    depth--;
+                }
+            }
+        }
+
+        // Children complete before their parents, so their intervals are available to add to the parent's
+        intervals = new int[componentCount][];
+        for (int c = 0; c < componentCount; c++) {
+            int[][] parts = new int[componentChildren[c].length + 1][];
+            parts[0] = new int[] { start[c], end[c] };
+            for (int i = 0; i < componentChildren[c].length; i++) {
+                parts[i + 1] = intervals[componentChildren[c][i]];
+            }
+            intervals[c] = merge(parts);
+        }
+    }
+
+    /**
+     * Get the hierarchy for a map of organization to direct sub-organizations, reusing the last one built if
+     * it was built from the same map
+     */
+    public static OrganizationHierarchy of(Map<String, Set<String>> subOrgMap) {
+        IdAdjacency subOrgs = IdAdjacency.of(subOrgMap);
+
+        OrganizationHierarchy hierarchy = latest;
+        if (hierarchy == null || hierarchy.subOrgs != subOrgs) {
+            hierarchy = new OrganizationHierarchy(subOrgs);
+            latest = hierarchy;
+        }
+
+        return hierarchy;
+    }
+
+    /**
+     * The organization and all of its sub-organizations (at any depth), as a sorted id array
+     */
+    public int[] getOrgAndAllSubOrgIds(String org) {
+        int id = UriDictionary.getInstance().lookup(org);
+        if (id < 0) {
+            return IdSets.EMPTY;
+        }
+
+        int node = Arrays.binarySearch(nodes, id);
+        if (node < 0) {
+            return new int[] { id };
+        }
+
+        int[] ranges = intervals[component[node]];
+        int total = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            total += ranges[i + 1] - ranges[i];
+        }
+
+        int[] ids = new int[total];
+        int count = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            System.arraycopy(order, ranges[i], ids, count, ranges[i + 1] - ranges[i]);
+            count += ranges[i + 1] - ranges[i];
+        }
+
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * The organization and all of its sub-organizations (at any depth)
+     */
+    public Set<String> getOrgAndAllSubOrgs(String org) {
+        return IdSets.asUriSet(getOrgAndAllSubOrgIds(org));
+    }
+
+    /**
+     * Determine if an organization is the same as, or below, another
+     */
+    public boolean isSubOrgOf(String org, String ancestor) {
+        UriDictionary dictionary = UriDictionary.getInstance();
+        int id = dictionary.lookup(org);
+        int ancestorId = dictionary.lookup(ancestor);
+        if (id < 0 || ancestorId < 0) {
+            return false;
+        }
+
+        if (id == ancestorId) {
+            return true;
+        }
+
+        int node = Arrays.binarySearch(nodes, id);
+        int ancestorNode = Arrays.binarySearch(nodes, ancestorId);
+        if (node < 0 || ancestorNode < 0) {
+            return false;
+        }
+
+        // Find the last interval starting at or before the position
+        int[] ranges = intervals[component[ancestorNode]];
+        int target = position[node];
+        int low = 0;
+        int high = ranges.length / 2 - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (ranges[2 * mid] <= target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return high >= 0 && target < ranges[2 * high + 1];
+    }
+
+    /**
+     * The direct parents of an organization, as a sorted id array
+     */
+    public int[] getParentIds(String org) {
+        return parents.get(org);
+    }
+
+    /**
+     * The organizations and all of the organizations above them (at any height), as a sorted id array
+     */
+    public int[] getOrgsAndAllParentIds(int[] orgIds) {
+        boolean[] seen = new boolean[nodes.length];
+        int[] pending = new int[nodes.length];
+        int pendingCount = 0;
+
+        int[] found = new int[orgIds.length + nodes.length];
+        int foundCount = 0;
+        for (int id : orgIds) {
+            found[foundCount++] = id;
+            int node = Arrays.binarySearch(nodes, id);
+            if (node > -1 && !seen[node]) {
+                seen[node] = true;
+                pending[pendingCount++] = node;
+            }
+        }
+
+        while (pendingCount > 0) {
+            int node = pending[--pendingCount];
+            for (int parent : parents.get(nodes[node])) {
+                int parentNode = indexOf(parent);
+                if (!seen[parentNode]) {
+                    seen[parentNode] = true;
+                    pending[pendingCount++] = parentNode;
+                    found[foundCount++] = parent;
+                }
+            }
+        }
+
+        return IdSets.sortedUnique(found, foundCount);
+    }
+
+    private int indexOf(int id) {
+        return Arrays.binarySearch(nodes, id);
+    }
+
+    /**
+     * Give the members of a component the next positions in the numbering
+     */
+    private int place(int c, int pos, int[] start, int[] memberOffsets, int[] members) {
+        start[c] = pos;
+        for (int m = memberOffsets[c]; m < memberOffsets[c + 1]; m++) {
+            position[members[m]] = pos;
+            order[pos++] = nodes[members[m]];
+        }
+        return pos;
+    }
+
+    /**
+     * Find the strongly connected components (Tarjan), without recursion.
+     * Components are numbered in the order they complete, so a component's children have lower numbers.
+     *
+     * @return the number of components
+     */
+    private int findComponents(int[] childOffsets, int[] children) {
+        int count = nodes.length;
+        int[] index = new int[count];
+        int[] low = new int[count];
+        boolean[] onStack = new boolean[count];
+        Arrays.fill(index, -1);
+
+        int[] stack = new int[count];
+        int stackSize = 0;
+        int[] callStack = new int[count];
+        int[] nextChild = new int[count];
+
+        int nextIndex = 0;
+        int componentCount = 0;
+
+        for (int root = 0; root < count; root++) {
+            if (index[root] > -1) {
+                continue;
+            }
+
+            int depth = 0;
+            callStack[0] = root;
+            nextChild[0] = childOffsets[root];
+            index[root] = low[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int node = callStack[depth];
+                if (nextChild[depth] < childOffsets[node + 1]) {
+                    int child = children[nextChild[depth]++];
+                    if (index[child] < 0) {
+                        index[child] = low[child] = nextIndex++;
+                        stack[stackSize++] = child;
+                        onStack[child] = true;
+                        callStack[++depth] = child;
+                        nextChild[depth] = childOffsets[child];
+                    } else if (onStack[child]) {
+                        low[node] = Math.min(low[node], index[child]);
+                    }
+                } else {
+                    if (low[node] == index[node]) {
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            component[member] = componentCount;
+                        } while (member != node);
+                        componentCount++;
+                    }
+
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callStack[depth];
+                        low[parent] = Math.min(low[parent], low[node]);
+                    }
+                }
+            }
+        }
+
+        return componentCount;
+    }
+
+    /**
+     * Merge lists of [start, end) intervals into a sorted list with no overlaps
+     */
+    private static int[] merge(int[][] parts) {
+        if (parts.length == 1) {
+            return parts[0];
+        }
+
+        int total = 0;
+        for (int[] part : parts) {
+            total += part.length / 2;
+        }
+
+        long[] packed = new long[total];
+        int count = 0;
+        for (int[] part : parts) {
+            for (int i = 0; i < part.length; i += 2) {
+                packed[count++] = ((long) part[i] << 32) | part[i + 1];
+            }
+        }
+        Arrays.sort(packed);
+
+        int[] merged = new int[2 * total];
+        int size = 0;
+        for (long interval : packed) {
+            int start = (int) (interval >>> 32);
+            int end = (int) interval;
+            if (size > 0 && start <= merged[size - 1]) {
+                merged[size - 1] = Math.max(merged[size - 1], end);
+            } else {
+                merged[size++] = start;
+                merged[size++] = end;
+            }
+        }
+
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+}
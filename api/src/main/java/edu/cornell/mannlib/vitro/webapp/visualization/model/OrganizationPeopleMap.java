@@ -2,11 +2,32 @@
 
 package edu.cornell.mannlib.vitro.webapp.visualization.model;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
 public class OrganizationPeopleMap {
-    public final Map<String, Set<String>> organizationToPeople = new HashMap<String, Set<String>>();
-    public final Map<String, Set<String>> personToOrganizations = new HashMap<String, Set<String>>();
+    public final Map<String, Set<String>> organizationToPeople;
+    public final Map<String, Set<String>> personToOrganizations;
+
+    private final IdAdjacency organizationToPeopleIds;
+    private final IdAdjacency personToOrganizationsIds;
+
+    public OrganizationPeopleMap() {
+        this(IdAdjacency.empty());
+    }
+
+    public OrganizationPeopleMap(IdAdjacency organizationToPeopleIds) {
+        this.organizationToPeopleIds = organizationToPeopleIds;
+        this.personToOrganizationsIds = organizationToPeopleIds.inverse();
+        this.organizationToPeople = this.organizationToPeopleIds.asMap();
+        this.personToOrganizations = this.personToOrganizationsIds.asMap();
+    }
+
+    public IdAdjacency getOrganizationToPeopleIds() {
+        return organizationToPeopleIds;
+    }
+
+    public IdAdjacency getPersonToOrganizationsIds() {
+        return personToOrganizationsIds;
+    }
 }
@@ -0,0 +1,234 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact, immutable directory of the names, titles and thumbnails of people.
+ *
+ * People are held by their id in the shared UriDictionary, in a sorted int array, with a parallel array for each
+ * of the details. This avoids an object and a hash map entry per person; Person objects are only created when
+ * a person is looked up.
+ */
+public final class PersonDirectory {
+    private static final PersonDirectory EMPTY = new PersonDirectory(IdSets.EMPTY, new String[0], new String[0], new String[0], new String[0]);
+
+    private final int[] people;
+    private final String[] firstNames;
+    private final String[] lastNames;
+    private final String[] preferredTitles;
+    private final String[] thumbnailUrls;
+
+    private PersonDirectory(int[] people, String[] firstNames, String[] lastNames, String[] preferredTitles, String[] thumbnailUrls) {
+        this.people = people;
+        this.firstNames = firstNames;
+        this.lastNames = lastNames;
+        this.preferredTitles = preferredTitles;
+        this.thumbnailUrls = thumbnailUrls;
+    }
+
+    public static PersonDirectory empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Number of people
+     */
+    public int size() {
+        return people.length;
+    }
+
+    /**
+     * Approximate memory used by the directory, in bytes (not counting the URIs, which are held by the dictionary)
+     */
+    public long estimateSize() {
+        long bytes = 48 + 5 * 16 + 4L * people.length * 5;
+
+        // Names and titles are interned, so are largely shared - count the thumbnails, which are not
+        for (String thumbnailUrl : thumbnailUrls) {
+            if (thumbnailUrl != null) {
+                bytes += 40 + 2L * thumbnailUrl.length();
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * The ids of all the people, sorted
+     */
+    public int[] keys() {
+        return people.clone();
+    }
+
+    /**
+     * Determine if a person is in the directory
+     */
+    public boolean contains(String personUri) {
+        return indexOf(personUri) > -1;
+    }
+
+    /**
+     * Get the details of a person
+     *
+     * @return a new Person holding the details, or null if the person is not in the directory
+     */
+    public Person get(String personUri) {
+        int index = indexOf(personUri);
+        if (index < 0) {
+            return null;
+        }
+
+        Person person = new Person();
+        person.uri = UriDictionary.getInstance().getUri(people[index]);
+        person.firstName = firstNames[index];
+        person.lastName = lastNames[index];
+        person.preferredTitle = preferredTitles[index];
+        person.thumbnailUrl = thumbnailUrls[index];
+        return person;
+    }
+
+    private int indexOf(String personUri) {
+        int id = UriDictionary.getInstance().lookup(personUri);
+        return id < 0 ? -1 : Arrays.binarySearch(people, id);
+    }
+
+    /**
+     * Create a copy of the directory, replacing the entries for the changed people
+     *
+     * @param changedUris people to remove from the copy
+     * @param changes the current details of the changed people that still exist
+     * @return the updated copy
+     */
+    public PersonDirectory update(Collection<String> changedUris, PersonDirectory changes) {
+        int[] removed = UriDictionary.getInstance().lookupAll(changedUris);
+
+        int size = people.length + changes.people.length;
+        int[] mergedPeople = new int[size];
+        String[] mergedFirstNames = new String[size];
+        String[] mergedLastNames = new String[size];
+        String[] mergedPreferredTitles = new String[size];
+        String[] mergedThumbnailUrls = new String[size];
+
+        // Merge the two sorted directories, preferring the changes for anyone in both
+        int i = 0;
+        int j = 0;
+        int merged = 0;
+        while (i < people.length || j < changes.people.length) {
+            if (i < people.length && IdSets.contains(removed, people[i]) && (j >= changes.people.length || people[i] != changes.people[j])) {
+                i++;
+                continue;
+            }
+
+            PersonDirectory from;
+            int index;
+            if (j >= changes.people.length || (i < people.length && people[i] < changes.people[j])) {
+                from = this;
+                index = i++;
+            } else {
+                if (i < people.length && people[i] == changes.people[j]) {
+                    i++;
+                }
+                from = changes;
+                index = j++;
+            }
+
+            mergedPeople[merged] = from.people[index];
+            mergedFirstNames[merged] = from.firstNames[index];
+            mergedLastNames[merged] = from.lastNames[index];
+            mergedPreferredTitles[merged] = from.preferredTitles[index];
+            mergedThumbnailUrls[merged] = from.thumbnailUrls[index];
+            merged++;
+        }
+
+        return new PersonDirectory(
+                Arrays.copyOf(mergedPeople, merged),
+                Arrays.copyOf(mergedFirstNames, merged),
+                Arrays.copyOf(mergedLastNames, merged),
+                Arrays.copyOf(mergedPreferredTitles, merged),
+                Arrays.copyOf(mergedThumbnailUrls, merged)
+        );
+    }
+
+    /**
+     * Accumulates the details of people from query results, which may give each detail in a separate row
+     */
+    public static final class Builder {
+        private static final int FAMILY_NAME = 0;
+        private static final int LAST_NAME = 1;
+        private static final int GIVEN_NAME = 2;
+        private static final int FIRST_NAME = 3;
+        private static final int TITLE = 4;
+        private static final int THUMBNAIL_URL = 5;
+
+        private final Map<Integer, String[]> details = new HashMap<>();
+
+        /**
+         * Add a person, with any of their details that are known (null otherwise). A detail that has already been
+         * given for the person is kept.
+         *
+         * @param familyName vcard family name, used in preference to the foaf last name
+         * @param lastName foaf last name
+         * @param givenName vcard given name, used in preference to the foaf first name
+         * @param firstName foaf first name
+         * @param title vcard title
+         * @param thumbnailUrl download URL of the thumbnail image
+         */
+        public void add(String personUri, String familyName, String lastName, String givenName, String firstName,
+                        String title, String thumbnailUrl) {
+            int id = UriDictionary.getInstance().getId(personUri);
+
+            String[] person = details.get(id);
+            if (person == null) {
+                person = new String[6];
+                details.put(id, person);
+            }
+
+            set(person, FAMILY_NAME, familyName);
+            set(person, LAST_NAME, lastName);
+            set(person, GIVEN_NAME, givenName);
+            set(person, FIRST_NAME, firstName);
+            set(person, TITLE, title);
+            set(person, THUMBNAIL_URL, thumbnailUrl);
+        }
+
+        private static void set(String[] person, int detail, String value) {
+            if (person[detail] == null && value != null) {
+                person[detail] = value;
+            }
+        }
+
+        public PersonDirectory build() {
+            int[] people = new int[details.size()];
+            int count = 0;
+            for (Integer id : details.keySet()) {
+                people[count++] = id;
+            }
+            Arrays.sort(people);
+
+            String[] firstNames = new String[count];
+            String[] lastNames = new String[count];
+            String[] preferredTitles = new String[count];
+            String[] thumbnailUrls = new String[count];
+
+            for (int index = 0; index < count; index++) {
+                String[] person = details.get(people[index]);
+                lastNames[index] = intern(person[FAMILY_NAME] != null ? person[FAMILY_NAME] : person[LAST_NAME]);
+                firstNames[index] = intern(person[GIVEN_NAME] != null ? person[GIVEN_NAME] : person[FIRST_NAME]);
+                preferredTitles[index] = intern(person[TITLE]);
+                thumbnailUrls[index] = person[THUMBNAIL_URL];
+            }
+
+            details.clear();
+            return new PersonDirectory(people, firstNames, lastNames, preferredTitles, thumbnailUrls);
+        }
+
+        private static String intern(String value) {
+            return value == null ? null : value.intern();
+        }
+    }
+}
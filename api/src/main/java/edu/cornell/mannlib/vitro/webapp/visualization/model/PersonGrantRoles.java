@@ -0,0 +1,149 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact, immutable record of the grants each person has a role on, with the year the person's role started.
+ *
+ * The grant visualizations date a grant by the start of the person's role, or else by the start of the grant, so
+ * the year belongs to the person and grant together, rather than to the grant. The years are held in an array
+ * alongside the links of the person to grant relationship (see IdAdjacency.linkIndex), with 0 where the role has
+ * no known start.
+ */
+public final class PersonGrantRoles {
+    private static final PersonGrantRoles EMPTY = new PersonGrantRoles(IdAdjacency.empty(), IdSets.EMPTY);
+
+    public static final int UNKNOWN_YEAR = 0;
+
+    private final IdAdjacency personToGrants;
+    private final int[] years;
+
+    private PersonGrantRoles(IdAdjacency personToGrants, int[] years) {
+        this.personToGrants = personToGrants;
+        this.years = years;
+    }
+
+    public static PersonGrantRoles empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Approximate memory used, in bytes (not counting the URIs, which are held by the dictionary)
+     */
+    public long estimateSize() {
+        return 16 + personToGrants.estimateSize() + 16 + 4L * years.length;
+    }
+
+    public IdAdjacency getPersonToGrantIds() {
+        return personToGrants;
+    }
+
+    public IdAdjacency getGrantToPersonIds() {
+        return personToGrants.inverse();
+    }
+
+    /**
+     * Year the person's role on the grant started, or 0 if it is not known, or the person has no role on the grant
+     */
+    public int getYear(int person, int grant) {
+        int link = personToGrants.linkIndex(person, grant);
+        return link < 0 ? UNKNOWN_YEAR : years[link];
+    }
+
+    /**
+     * Years the person's roles started, for the grants where it is known (grant uri -> year)
+     */
+    public Map<String, String> getGrantYears(String personUri) {
+        UriDictionary dictionary = UriDictionary.getInstance();
+        int person = dictionary.lookup(personUri);
+
+        Map<String, String> grantYears = new HashMap<>();
+        if (person > -1) {
+            for (int grant : personToGrants.get(person)) {
+                int year = getYear(person, grant);
+                if (year != UNKNOWN_YEAR) {
+                    grantYears.put(dictionary.getUri(grant), String.valueOf(year));
+                }
+            }
+        }
+
+        return grantYears;
+    }
+
+    /**
+     * Create a copy with roles removed and added
+     *
+     * @param removals links to remove, from person URI to grant URIs
+     * @param additions the roles to add, whose years replace any already held for the same person and grant
+     */
+    public PersonGrantRoles update(Map<String, Set<String>> removals, PersonGrantRoles additions) {
+        IdAdjacency updated = personToGrants.update(removals, additions.personToGrants.asMap());
+
+        int[] updatedYears = new int[updated.linkCount()];
+        int link = 0;
+        for (int person : updated.keys()) {
+            for (int grant : updated.get(person)) {
+                int added = additions.personToGrants.linkIndex(person, grant);
+                updatedYears[link++] = added > -1 ? additions.years[added] : getYear(person, grant);
+            }
+        }
+
+        return new PersonGrantRoles(updated, updatedYears);
+    }
+
+    /**
+     * Accumulates roles from query results, which may give a person more than one role on a grant
+     */
+    public static final class Builder {
+        private final IdAdjacency.Builder links = new IdAdjacency.Builder();
+
+        /**
+         * Earliest known year of each person and grant, by (person id, grant id) packed into a long
+         */
+        private final LongIntHashMap years = new LongIntHashMap();
+
+        /**
+         * Add a role, keeping the earliest year where the person has more than one role on the grant
+         *
+         * @param year year the role started, or 0 if it is not known
+         */
+        public void add(String personUri, String grantUri, int year) {
+            UriDictionary dictionary = UriDictionary.getInstance();
+            int person = dictionary.getId(personUri);
+            int grant = dictionary.getId(grantUri);
+            links.add(person, grant);
+
+            if (year != UNKNOWN_YEAR) {
+                long key = key(person, grant);
+                int existing = years.get(key);
+                if (existing < 0 || year < existing) {
+                    years.put(key, year);
+                }
+            }
+        }
+
+        public PersonGrantRoles build() {
+            IdAdjacency personToGrants = links.build();
+
+            int[] linkYears = new int[personToGrants.linkCount()];
+            int link = 0;
+            for (int person : personToGrants.keys()) {
+                for (int grant : personToGrants.get(person)) {
+                    int year = years.get(key(person, grant));
+                    linkYears[link++] = year < 0 ? UNKNOWN_YEAR : year;
+                }
+            }
+
+            years.clear();
+            return new PersonGrantRoles(personToGrants, linkYears);
+        }
+
+        private static long key(int person, int grant) {
+            return ((long) person << 32) | (grant & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary that assigns a compact int id to each URI held in the visualization caches.
+ *
+ * A single dictionary is shared by all of the caches, so that ids can be compared across them
+ * (e.g. the people in an organization can be intersected with the people associated with a concept).
+ *
+ * Lookups do not take a lock; only assigning a new id is synchronized.
+ *
+ * URIs that are no longer in any cache (e.g. deleted people) are removed by compact(). Each id records the generation
+ * in which it was last obtained through getId, and every full rebuild of a cache obtains the ids of all of its URIs,
+ * so once every cache holding ids has been rebuilt in the current generation, ids that were not obtained in it are no
+ * longer referenced. Compacting releases their URIs, and the ids are reused after the following compaction, so that
+ * any request still holding results from before the first compaction can complete. The dictionary therefore holds
+ * the URIs in the caches, plus at most those that have been removed from them since the previous compaction.
+ */
+public final class UriDictionary {
+    private static final UriDictionary instance = new UriDictionary();
+
+    public static UriDictionary getInstance() {
+        return instance;
+    }
+
+    /**
+     * Open addressing hash table of (id + 1), with zero marking an empty slot, and the URIs and generations indexed by id.
+     * Replaced as a whole when it needs to grow or is compacted, so that readers always see a consistent table.
+     */
+    private static final class Table {
+        final int[] slots;
+        final String[] uris;
+        final int[] generations;
+
+        Table(int capacity) {
+            slots = new int[capacity * 2];
+            uris = new String[capacity];
+            generations = new int[capacity];
+        }
+    }
+
+    /**
+     * Generation of an id that has been released by a compaction, but not yet made available for reuse
+     */
+    private static final int RELEASED = -1;
+
+    private volatile Table table = new Table(1024);
+    private volatile int generation = 0;
+
+    // Number of URIs, and the highest id assigned (plus one)
+    private int size = 0;
+    private int limit = 0;
+
+    // Released ids that can be assigned again
+    private int[] free = IdSets.EMPTY;
+    private int freeCount = 0;
+
+    // Number of ids assigned since the last compaction
+    private int assigned = 0;
+
+    private UriDictionary() { }
+
+    /**
+     * Number of URIs in the dictionary
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Approximate memory used by the dictionary and its URIs, in bytes
+     */
+    public long estimateSize() {
+        Table current = table;
+        long bytes = 16 + 4L * current.slots.length + 2 * (16 + 4L * current.uris.length);
+
+        for (int id = 0; id < current.uris.length; id++) {
+            String uri = current.uris[id];
+            if (uri != null) {
+                bytes += 40 + 2L * uri.length();
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Get the id for a URI, without assigning one
+     *
+     * @param uri URI to look up
+     * @return the id, or -1 if the URI is not in the dictionary
+     */
+    public int lookup(String uri) {
+        if (uri == null) {
+            return -1;
+        }
+
+        Table current = table;
+        int mask = current.slots.length - 1;
+        for (int slot = hash(uri) & mask; ; slot = (slot + 1) & mask) {
+            int entry = current.slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+
+            String existing = current.uris[entry - 1];
+            if (existing == null) {
+                // Seen an id that is still being published, so check again holding the lock
+                synchronized (this) {
+                    return find(table, uri);
+                }
+            }
+
+            if (existing.equals(uri)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Get the id for a URI, assigning a new one if it is not already in the dictionary
+     *
+     * @param uri URI to look up
+     * @return the id
+     */
+    public int getId(String uri) {
+        // Only the first use in a generation has to take the lock, to record it
+        int id = lookup(uri);
+        if (id > -1 && table.generations[id] == generation) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = find(table, uri);
+            if (id > -1) {
+                table.generations[id] = generation;
+                return id;
+            }
+
+            if (freeCount > 0) {
+                id = free[--freeCount];
+            } else {
+                if (limit == table.uris.length) {
+                    grow();
+                }
+                id = limit++;
+            }
+
+            table.uris[id] = uri.intern();
+            table.generations[id] = generation;
+            insert(table, uri, id);
+            size++;
+            assigned++;
+            return id;
+        }
+    }
+
+    /**
+     * The current generation - ids obtained through getId from now on are recorded against it
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Number of ids assigned since the last compaction
+     */
+    public synchronized int getAssignedSinceCompaction() {
+        return assigned;
+    }
+
+    /**
+     * Release the ids that have not been obtained through getId in the current generation, and start a new one.
+     *
+     * Only call this when every cached result holding ids has been built in full in the current generation (or
+     * later), otherwise ids that are still in use would be released. The ids released by the previous compaction
+     * become available for reuse.
+     *
+     * @return the number of ids released
+     */
+    public synchronized int compact() {
+        Table current = table;
+        Table compacted = new Table(current.uris.length);
+        System.arraycopy(current.uris, 0, compacted.uris, 0, limit);
+        System.arraycopy(current.generations, 0, compacted.generations, 0, limit);
+
+        int[] reusable = new int[16];
+        int reusableCount = 0;
+        int released = 0;
+        for (int id = 0; id < limit; id++) {
+            if (compacted.uris[id] == null) {
+                // Already free
+                reusable = add(reusable, reusableCount++, id);
+            } else if (compacted.generations[id] == RELEASED) {
+                // Released by the previous compaction, so no longer held by anything
+                compacted.uris[id] = null;
+                reusable = add(reusable, reusableCount++, id);
+            } else if (compacted.generations[id] < generation) {
+                // Keep the URI until the next compaction, but it can no longer be looked up
+                compacted.generations[id] = RELEASED;
+                released++;
+            } else {
+                insert(compacted, compacted.uris[id], id);
+            }
+        }
+
+        // Assign the lowest ids first
+        free = new int[reusableCount];
+        for (int i = 0; i < reusableCount; i++) {
+            free[i] = reusable[reusableCount - 1 - i];
+        }
+        freeCount = reusableCount;
+
+        size = limit - reusableCount - released;
+        assigned = 0;
+        table = compacted;
+        generation++;
+
+        return released;
+    }
+
+    private static int[] add(int[] ids, int count, int id) {
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+        }
+        ids[count] = id;
+        return ids;
+    }
+
+    /**
+     * Get the URI for an id
+     *
+     * @param id an id previously returned by the dictionary
+     * @return the URI
+     */
+    public String getUri(int id) {
+        return table.uris[id];
+    }
+
+    private static int find(Table current, String uri) {
+        int mask = current.slots.length - 1;
+        for (int slot = hash(uri) & mask; ; slot = (slot + 1) & mask) {
+            int entry = current.slots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+
+            if (current.uris[entry - 1].equals(uri)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private static void insert(Table current, String uri, int id) {
+        int mask = current.slots.length - 1;
+        int slot = hash(uri) & mask;
+        while (current.slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        current.slots[slot] = id + 1;
+    }
+
+    private void grow() {
+        Table grown = new Table(table.uris.length * 2);
+        System.arraycopy(table.uris, 0, grown.uris, 0, limit);
+        System.arraycopy(table.generations, 0, grown.generations, 0, limit);
+        for (int id = 0; id < limit; id++) {
+            if (grown.uris[id] != null && grown.generations[id] != RELEASED) {
+                insert(grown, grown.uris[id], id);
+            }
+        }
+
+        table = grown;
+    }
+
+    private static int hash(String uri) {
+        // Spread the bits, as URIs often share long prefixes
+        int h = uri.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Convert URIs to a sorted array of ids, ignoring any that are not in the dictionary
+     */
+    public int[] lookupAll(Iterable<String> uris) {
+        int[] ids = new int[16];
+        int count = 0;
+        for (String uri : uris) {
+            int id = lookup(uri);
+            if (id > -1) {
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = id;
+            }
+        }
+
+        return IdSets.sortedUnique(ids, count);
+    }
+}
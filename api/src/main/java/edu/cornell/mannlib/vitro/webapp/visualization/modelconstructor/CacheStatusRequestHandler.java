@@ -0,0 +1,100 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.modelconstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.logging.Log;
+
+import org.apache.jena.query.Dataset;
+
+import edu.cornell.mannlib.vitro.webapp.auth.requestedAction.AuthorizationRequest;
+import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.ResponseValues;
+import edu.cornell.mannlib.vitro.webapp.controller.visualization.DataVisualizationController;
+import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CacheRefreshScheduler;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CacheStatistics;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CachingRDFServiceExecutor;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.VisualizationRequestHandler;
+
+/**
+ * Reports the state of the visualization caches as JSON - when each was built, how long it took, how much
+ * memory it uses, how often it has been used, and the background tasks that are running or queued.
+ *
+ * The same figures are available through JMX (see VisualizationCacheMonitor).
+ */
+public class CacheStatusRequestHandler implements VisualizationRequestHandler {
+
+	@Override
+	public Object generateAjaxVisualization(VitroRequest vitroRequest, Log log,
+			Dataset dataSource) throws MalformedQueryParametersException, JsonProcessingException {
+		return new ObjectMapper().writeValueAsString(getCacheStatus());
+	}
+
+	@Override
+	public Map<String, String> generateDataVisualization(
+			VitroRequest vitroRequest, Log log, Dataset dataset)
+			throws MalformedQueryParametersException, JsonProcessingException {
+
+		Map<String, String> fileData = new HashMap<String, String>();
+
+		fileData.put(DataVisualizationController.FILE_CONTENT_TYPE_KEY,
+				"application/octet-stream");
+
+		ObjectMapper mapper = new ObjectMapper();
+		fileData.put(DataVisualizationController.FILE_CONTENT_KEY,
+				mapper.writeValueAsString(getCacheStatus()));
+
+		return fileData;
+	}
+
+	private Map<String, Object> getCacheStatus() {
+		List<CacheStatistics> caches = new ArrayList<CacheStatistics>();
+		for (CachingRDFServiceExecutor<?> cache : VisualizationCaches.getCaches()) {
+			caches.add(cache.getStatistics());
+		}
+
+		UriDictionary dictionary = UriDictionary.getInstance();
+
+		Map<String, Object> status = new LinkedHashMap<String, Object>();
+		status.put("time", System.currentTimeMillis());
+		status.put("maxThreads", CacheRefreshScheduler.getMaxThreads());
+		status.put("uriDictionarySize", dictionary.size());
+		status.put("uriDictionaryEstimatedSize", dictionary.estimateSize());
+		status.put("caches", caches);
+		status.put("tasks", CacheRefreshScheduler.getTasks());
+
+		return status;
+	}
+
+	@Override
+	public ResponseValues generateStandardVisualization(
+			VitroRequest vitroRequest, Log log, Dataset dataSource)
+			throws MalformedQueryParametersException {
+		throw new UnsupportedOperationException(
+				"Cache status is only provided as a Data Response.");
+	}
+
+	@Override
+	public ResponseValues generateVisualizationForShortURLRequests(
+			Map<String, String> parameters, VitroRequest vitroRequest, Log log,
+			Dataset dataSource) throws MalformedQueryParametersException {
+		throw new UnsupportedOperationException(
+				"Cache status is only provided as a Data Response.");
+	}
+
+	@Override
+	public AuthorizationRequest getRequiredPrivileges() {
+		return ModelConstructorRequestHandler.REQUIRED_ACTIONS;
+	}
+
+}
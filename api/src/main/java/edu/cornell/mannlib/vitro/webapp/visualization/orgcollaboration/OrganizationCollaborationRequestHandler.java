@@ -0,0 +1,194 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.orgcollaboration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+
+import org.apache.jena.query.Dataset;
+
+import edu.cornell.mannlib.vitro.webapp.auth.requestedAction.AuthorizationRequest;
+import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.ResponseValues;
+import edu.cornell.mannlib.vitro.webapp.controller.visualization.DataVisualizationController;
+import edu.cornell.mannlib.vitro.webapp.controller.visualization.VisualizationFrameworkConstants;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
+import edu.cornell.mannlib.vitro.webapp.visualization.temporalgraph.OrganizationUtilityFunctions;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrganizationRollups;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UtilityFunctions;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.VisualizationRequestHandler;
+
+/**
+ * Which sub-organizations of an organization co-publish with which - the number of publications shared by each
+ * pair of direct sub-organizations (including their own sub-organizations), from the cached publications of
+ * their people.
+ *
+ * Provided as JSON, or as CSV when the output parameter is csv. The diagonal of the matrix is the number of
+ * publications of each sub-organization.
+ */
+public class OrganizationCollaborationRequestHandler implements VisualizationRequestHandler {
+
+	@Override
+	public Map<String, String> generateDataVisualization(VitroRequest vitroRequest, Log log, Dataset dataset)
+			throws MalformedQueryParametersException, JsonProcessingException {
+
+		String entityURI = vitroRequest.getParameter(VisualizationFrameworkConstants.INDIVIDUAL_URI_KEY);
+
+		if (StringUtils.isBlank(entityURI)) {
+			entityURI = OrganizationUtilityFunctions
+							.getStaffProvidedOrComputedHighestLevelOrganization(
+									log,
+									dataset,
+									vitroRequest);
+		}
+
+		boolean csv = VisualizationFrameworkConstants.CSV_OUTPUT_FORMAT
+				.equalsIgnoreCase(vitroRequest.getParameter(VisualizationFrameworkConstants.OUTPUT_FORMAT_KEY));
+
+		try {
+			return getSubjectEntityAndGenerateDataResponse(vitroRequest, entityURI, csv);
+		} finally {
+			VisualizationCaches.buildMissing();
+		}
+	}
+
+	private Map<String, String> getSubjectEntityAndGenerateDataResponse(VitroRequest vitroRequest,
+																		String subjectEntityURI,
+																		boolean csv) throws JsonProcessingException {
+		RDFService rdfService = vitroRequest.getRDFService();
+
+		Map<String, String> orgLabelMap = VisualizationCaches.organizationLabels.get(vitroRequest);
+		if (subjectEntityURI == null || orgLabelMap.get(subjectEntityURI) == null) {
+			return prepareDataErrorResponse(csv, "No Organization found in VIVO.");
+		}
+
+		OrganizationRollups.SubOrgOverlaps overlaps =
+				VisualizationCaches.publicationRollups(rdfService).getSubOrgOverlaps(subjectEntityURI);
+
+		if (overlaps.getSubOrgs().isEmpty()) {
+			return prepareDataErrorResponse(csv, "No Sub-Organizations for this Organization found in VIVO.");
+		}
+
+		Map<String, String> fileData = new HashMap<String, String>();
+		fileData.put(DataVisualizationController.FILE_CONTENT_TYPE_KEY, "application/octet-stream");
+
+		if (csv) {
+			String outputFileName = UtilityFunctions.slugify(orgLabelMap.get(subjectEntityURI))
+					+ "_co-publications" + ".csv";
+
+			fileData.put(DataVisualizationController.FILE_NAME_KEY, outputFileName);
+			fileData.put(DataVisualizationController.FILE_CONTENT_KEY, getCSVContent(overlaps, orgLabelMap));
+		} else {
+			ObjectMapper mapper = new ObjectMapper();
+			fileData.put(DataVisualizationController.FILE_CONTENT_KEY,
+					mapper.writeValueAsString(getJSONContent(subjectEntityURI, overlaps, orgLabelMap)));
+		}
+
+		return fileData;
+	}
+
+	private Map<String, Object> getJSONContent(String subjectEntityURI,
+											   OrganizationRollups.SubOrgOverlaps overlaps,
+											   Map<String, String> orgLabelMap) {
+		List<String> subOrgs = overlaps.getSubOrgs();
+
+		List<Map<String, String>> organizations = new ArrayList<Map<String, String>>();
+		List<int[]> matrix = new ArrayList<int[]>();
+		for (int row = 0; row < subOrgs.size(); row++) {
+			Map<String, String> organization = new LinkedHashMap<String, String>();
+			organization.put("uri", subOrgs.get(row));
+			organization.put("label", orgLabelMap.get(subOrgs.get(row)));
+			organizations.add(organization);
+
+			int[] counts = new int[subOrgs.size()];
+			for (int column = 0; column < counts.length; column++) {
+				counts[column] = overlaps.getCount(row, column);
+			}
+			matrix.add(counts);
+		}
+
+		Map<String, Object> content = new LinkedHashMap<String, Object>();
+		content.put("uri", subjectEntityURI);
+		content.put("label", orgLabelMap.get(subjectEntityURI));
+		if (VisualizationCaches.personToPublication.isCached()) {
+			content.put("builtFromCacheTime", VisualizationCaches.personToPublication.cachedWhen());
+		}
+		content.put("organizations", organizations);
+		content.put("matrix", matrix);
+
+		return content;
+	}
+
+	private String getCSVContent(OrganizationRollups.SubOrgOverlaps overlaps, Map<String, String> orgLabelMap) {
+		List<String> subOrgs = overlaps.getSubOrgs();
+
+		StringBuilder csvFileContent = new StringBuilder();
+
+		csvFileContent.append("Organization");
+		for (String subOrg : subOrgs) {
+			csvFileContent.append(", ");
+			csvFileContent.append(StringEscapeUtils.escapeCsv(orgLabelMap.get(subOrg)));
+		}
+		csvFileContent.append("\n");
+
+		for (int row = 0; row < subOrgs.size(); row++) {
+			csvFileContent.append(StringEscapeUtils.escapeCsv(orgLabelMap.get(subOrgs.get(row))));
+			for (int column = 0; column < subOrgs.size(); column++) {
+				csvFileContent.append(", ");
+				csvFileContent.append(overlaps.getCount(row, column));
+			}
+			csvFileContent.append("\n");
+		}
+
+		return csvFileContent.toString();
+	}
+
+	private Map<String, String> prepareDataErrorResponse(boolean csv, String message) {
+		Map<String, String> fileData = new HashMap<String, String>();
+		fileData.put(DataVisualizationController.FILE_CONTENT_TYPE_KEY, "application/octet-stream");
+
+		if (csv) {
+			fileData.put(DataVisualizationController.FILE_NAME_KEY, "no-organization_co-publications.csv");
+			fileData.put(DataVisualizationController.FILE_CONTENT_KEY, "");
+		} else {
+			fileData.put(DataVisualizationController.FILE_CONTENT_KEY, "{\"error\" : \"" + message + "\"}");
+		}
+
+		return fileData;
+	}
+
+	@Override
+	public Object generateAjaxVisualization(VitroRequest vitroRequest, Log log, Dataset dataset)
+			throws MalformedQueryParametersException {
+		throw new UnsupportedOperationException("Organization Collaboration does not provide Ajax Response.");
+	}
+
+	@Override
+	public ResponseValues generateStandardVisualization(VitroRequest vitroRequest, Log log, Dataset dataset)
+			throws MalformedQueryParametersException {
+		throw new UnsupportedOperationException("Organization Collaboration is only provided as a Data Response.");
+	}
+
+	@Override
+	public ResponseValues generateVisualizationForShortURLRequests(
+			Map<String, String> parameters, VitroRequest vitroRequest, Log log,
+			Dataset dataset) throws MalformedQueryParametersException {
+		throw new UnsupportedOperationException("Organization Collaboration is only provided as a Data Response.");
+	}
+
+	@Override
+	public AuthorizationRequest getRequiredPrivileges() {
+		return null;
+	}
+}
@@ -9,6 +9,7 @@ import java.util.Set;
 
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.QueryRunner;
 import org.apache.commons.lang3.StringEscapeUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 
 import org.apache.jena.query.Dataset;
@@ -20,6 +21,7 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.Tem
 import edu.cornell.mannlib.vitro.webapp.controller.visualization.DataVisualizationController;
 import edu.cornell.mannlib.vitro.webapp.controller.visualization.VisualizationFrameworkConstants;
 import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
 import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Activity;
 import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.SparklineData;
 import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.SubEntity;
@@ -56,19 +58,8 @@ public class PersonGrantCountRequestHandler implements VisualizationRequestHandl
 									personURI,
 									UtilityFunctions.getIndividualLabelFromDAO(vitroRequest, personURI));
 
-		QueryRunner<Set<Activity>> queryManager = new PersonGrantCountQueryRunner(
-				personURI,
-				vitroRequest.getRDFService(),
-				log);
-
-		Set<Activity> authorGrants = queryManager.getQueryResult();
-
-		/*
-		 * Create a map from the year to number of publications. Use the
-		 * BiboDocument's parsedPublicationYear to populate the data.
-		 */
 		Map<String, Integer> yearToGrantCount =
-				UtilityFunctions.getYearToActivityCount(authorGrants);
+				getYearToGrantCount(vitroRequest, personURI, log);
 
     	return prepareDataResponse(person,
 				yearToGrantCount);
@@ -97,19 +88,8 @@ public class PersonGrantCountRequestHandler implements VisualizationRequestHandl
 		String visContainer = vitroRequest
 				.getParameter(VisualizationFrameworkConstants.VIS_CONTAINER_KEY);
 
-		QueryRunner<Set<Activity>> queryManager = new PersonGrantCountQueryRunner(
-				personURI,
-				vitroRequest.getRDFService(),
-				log);
-
-		Set<Activity> authorGrants = queryManager.getQueryResult();
-
-		/*
-		 * Create a map from the year to number of publications. Use the
-		 * BiboDocument's parsedPublicationYear to populate the data.
-		 */
 		Map<String, Integer> yearToGrantCount =
-				UtilityFunctions.getYearToActivityCount(authorGrants);
+				getYearToGrantCount(vitroRequest, personURI, log);
 
 
 		boolean shouldVIVOrenderVis = (yearToGrantCount.size() > 0);
@@ -149,19 +129,8 @@ public class PersonGrantCountRequestHandler implements VisualizationRequestHandl
 		String visContainer = vitroRequest
 				.getParameter(VisualizationFrameworkConstants.VIS_CONTAINER_KEY);
 
-		QueryRunner<Set<Activity>> queryManager = new PersonGrantCountQueryRunner(
-				personURI,
-				vitroRequest.getRDFService(),
-				log);
-
-		Set<Activity> authorGrants = queryManager.getQueryResult();
-
-		/*
-		 * Create a map from the year to number of publications. Use the
-		 * BiboDocument's parsedPublicationYear to populate the data.
-		 */
 		Map<String, Integer> yearToGrantCount =
-				UtilityFunctions.getYearToActivityCount(authorGrants);
+				getYearToGrantCount(vitroRequest, personURI, log);
 
     	/*
     	 * Computations required to generate HTML for the sparkline & related context.
@@ -180,6 +149,33 @@ public class PersonGrantCountRequestHandler implements VisualizationRequestHandl
     							  sparklineData);
 	}
 
+	/**
+	 * Create a map from the year to number of grants - looked up in the summaries of the cached grants if
+	 * they are available, otherwise from the grants found by a query.
+	 */
+	private Map<String, Integer> getYearToGrantCount(VitroRequest vitroRequest, String personURI, Log log)
+			throws MalformedQueryParametersException {
+
+		if (VisualizationCaches.grantSummariesCached()) {
+			if (StringUtils.isBlank(personURI)) {
+				throw new MalformedQueryParametersException("URL parameter is either null or empty.");
+			}
+
+			return VisualizationCaches.grantSummaries(vitroRequest.getRDFService())
+					.get(personURI).getYearToActivityCount();
+		}
+
+		QueryRunner<Set<Activity>> queryManager = new PersonGrantCountQueryRunner(
+				personURI,
+				vitroRequest.getRDFService(),
+				log);
+
+		Map<String, Integer> yearToGrantCount =
+				UtilityFunctions.getYearToActivityCount(queryManager.getQueryResult());
+
+		return yearToGrantCount;
+	}
+
 	private String getGrantsOverTimeCSVContent(Map<String, Integer> yearToGrantCount) {
 
 		StringBuilder csvFileContent = new StringBuilder();
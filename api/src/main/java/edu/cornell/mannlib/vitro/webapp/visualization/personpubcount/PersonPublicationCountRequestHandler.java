@@ -20,6 +20,7 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.responsevalues.Tem
 import edu.cornell.mannlib.vitro.webapp.controller.visualization.DataVisualizationController;
 import edu.cornell.mannlib.vitro.webapp.controller.visualization.VisualizationFrameworkConstants;
 import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
 import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Activity;
 import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.SparklineData;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.QueryRunner;
@@ -65,19 +66,8 @@ VisualizationRequestHandler {
             					.getParameter(
 										VisualizationFrameworkConstants.REQUESTING_TEMPLATE_KEY);
 
-		QueryRunner<Set<Activity>> queryManager = new PersonPublicationCountQueryRunner(
-															personURI,
-															vitroRequest.getRDFService(),
-															log);
-
-		Set<Activity> authorDocuments = queryManager.getQueryResult();
-
-		/*
-		 * Create a map from the year to number of publications. Use the
-		 * BiboDocument's parsedPublicationYear to populate the data.
-		 */
 		Map<String, Integer> yearToPublicationCount =
-				UtilityFunctions.getYearToActivityCount(authorDocuments);
+				getYearToPublicationCount(vitroRequest, personURI, log);
 
 		boolean shouldVIVOrenderVis = false;
 
@@ -125,21 +115,24 @@ VisualizationRequestHandler {
 		String personURI = vitroRequest
 		.getParameter(VisualizationFrameworkConstants.INDIVIDUAL_URI_KEY);
 
-		QueryRunner<Set<Activity>> queryManager = new PersonPublicationCountQueryRunner(
-																personURI,
-																vitroRequest.getRDFService(),
-																log);
-
-		Set<Activity> authorDocuments = queryManager.getQueryResult();
+		String authorName;
+		Map<String, Integer> yearToPublicationCount;
 
-		/*
-		 * Create a map from the year to number of publications. Use the
-		 * BiboDocument's parsedPublicationYear to populate the data.
-		 */
-		Map<String, Integer> yearToPublicationCount =
-				UtilityFunctions.getYearToActivityCount(authorDocuments);
+		if (VisualizationCaches.publicationSummariesCached()) {
+			yearToPublicationCount = getYearToPublicationCount(vitroRequest, personURI, log);
+			authorName = VisualizationCaches.personLabels.get(vitroRequest).get(personURI);
+			if (authorName == null) {
+				authorName = UtilityFunctions.getIndividualLabelFromDAO(vitroRequest, personURI);
+			}
+		} else {
+			PersonPublicationCountQueryRunner queryManager = new PersonPublicationCountQueryRunner(
+																	personURI,
+																	vitroRequest.getRDFService(),
+																	log);
 
-		String authorName = ((PersonPublicationCountQueryRunner) queryManager).getAuthorName();
+			yearToPublicationCount = UtilityFunctions.getYearToActivityCount(queryManager.getQueryResult());
+			authorName = queryManager.getAuthorName();
+		}
 
 
 		return prepareDataResponse(authorName,
@@ -161,19 +154,8 @@ VisualizationRequestHandler {
 		String visContainer = vitroRequest.getParameter(
 									VisualizationFrameworkConstants.VIS_CONTAINER_KEY);
 
-		QueryRunner<Set<Activity>> queryManager = new PersonPublicationCountQueryRunner(
-																personURI,
-																vitroRequest.getRDFService(),
-																log);
-
-		Set<Activity> authorDocuments = queryManager.getQueryResult();
-
-		/*
-		 * Create a map from the year to number of publications. Use the
-		 * BiboDocument's parsedPublicationYear to populate the data.
-		 */
 		Map<String, Integer> yearToPublicationCount =
-				UtilityFunctions.getYearToActivityCount(authorDocuments);
+				getYearToPublicationCount(vitroRequest, personURI, log);
 
 		/*
 		 * Computations required to generate HTML for the sparkline & related
@@ -193,6 +175,33 @@ VisualizationRequestHandler {
 		return prepareStandaloneResponse(vitroRequest, sparklineData);
 	}
 
+	/**
+	 * Create a map from the year to number of publications - looked up in the summaries of the cached
+	 * publications if they are available, otherwise from the publications found by a query.
+	 */
+	private Map<String, Integer> getYearToPublicationCount(VitroRequest vitroRequest, String personURI, Log log)
+			throws MalformedQueryParametersException {
+
+		if (VisualizationCaches.publicationSummariesCached()) {
+			if (StringUtils.isBlank(personURI)) {
+				throw new MalformedQueryParametersException("URL parameter is either null or empty.");
+			}
+
+			return VisualizationCaches.publicationSummaries(vitroRequest.getRDFService())
+					.get(personURI).getYearToActivityCount();
+		}
+
+		QueryRunner<Set<Activity>> queryManager = new PersonPublicationCountQueryRunner(
+															personURI,
+															vitroRequest.getRDFService(),
+															log);
+
+		Map<String, Integer> yearToPublicationCount =
+				UtilityFunctions.getYearToActivityCount(queryManager.getQueryResult());
+
+		return yearToPublicationCount;
+	}
+
 	private String getPublicationsOverTimeCSVContent(
 			Map<String, Integer> yearToPublicationCount) {
 
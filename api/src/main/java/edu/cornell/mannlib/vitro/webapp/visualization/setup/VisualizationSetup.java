@@ -2,13 +2,25 @@
 
 package edu.cornell.mannlib.vitro.webapp.visualization.setup;
 
+import edu.cornell.mannlib.vitro.webapp.application.ApplicationUtils;
+import edu.cornell.mannlib.vitro.webapp.config.ConfigurationProperties;
 import edu.cornell.mannlib.vitro.webapp.modelaccess.ModelAccess;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
+import edu.cornell.mannlib.vitro.webapp.visualization.coauthorship.CoAuthorshipQueryRunner;
+import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaborationDataCache;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CacheRefreshScheduler;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CachingRDFServiceExecutor;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCacheChangeListener;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCacheMonitor;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCacheStore;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
+import java.nio.file.Path;
 
 /**
  * Setup class for Visualizations, in order to record a context-referenced RDFService
@@ -16,14 +28,63 @@ import javax.servlet.ServletContextListener;
  * If this class is missing, caches can not be refreshed in the background
  */
 public class VisualizationSetup implements ServletContextListener {
+    private static final Log log = LogFactory.getLog(VisualizationSetup.class);
+
+    private RDFService rdfService;
+    private VisualizationCacheChangeListener changeListener;
+    private Path snapshotFile;
+
     @Override
     public void contextInitialized(ServletContextEvent sce) {
         ServletContext ctx = sce.getServletContext();
 
-        RDFService rdfService = ModelAccess.on(ctx).getRDFService();
+        rdfService = ModelAccess.on(ctx).getRDFService();
 
         CachingRDFServiceExecutor.setBackgroundRDFService(rdfService);
 
+        ConfigurationProperties properties = ConfigurationProperties.getBean(ctx);
+
+        // Number of caches that may be built at the same time
+        String threads = properties.getProperty("visualization.cacheThreads");
+        if (threads != null) {
+            try {
+                CacheRefreshScheduler.setMaxThreads(Integer.parseInt(threads.trim()));
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value for visualization.cacheThreads: " + threads);
+            }
+        }
+
+        // Size and expiry of the co-author and co-investigator network caches (expiry in seconds)
+        CollaborationDataCache.setLimits(
+                (int) getLongProperty(properties, "visualization.networkCache.maxEntries", CollaborationDataCache.DEFAULT_MAX_ENTRIES),
+                getLongProperty(properties, "visualization.networkCache.maxWeight", CollaborationDataCache.DEFAULT_MAX_WEIGHT));
+        CollaborationDataCache.setExpiry(
+                1000L * getLongProperty(properties, "visualization.networkCache.expireAfterWrite", CollaborationDataCache.DEFAULT_EXPIRE_AFTER_WRITE / 1000),
+                1000L * getLongProperty(properties, "visualization.networkCache.expireAfterAccess", CollaborationDataCache.DEFAULT_EXPIRE_AFTER_ACCESS / 1000));
+
+        // Number of co-authors kept in a co-author network (0 keeps them all)
+        CoAuthorshipQueryRunner.setMaxCollaborators(
+                (int) getLongProperty(properties, "visualization.coAuthorNetwork.maxCollaborators", 0));
+
+        // Listen for changes to the triple store, so that the caches can be updated incrementally
+        changeListener = new VisualizationCacheChangeListener();
+        try {
+            rdfService.registerJenaModelChangedListener(changeListener);
+        } catch (RDFServiceException e) {
+            log.warn("Unable to register for changes - visualization caches will only refresh when they expire", e);
+            changeListener = null;
+        }
+
+        // Restore the caches saved at the last shutdown, so that visualizations don't wait for them to be rebuilt
+        // (loaded in the background, and saved again as the caches are rebuilt)
+        snapshotFile = getSnapshotFile();
+        if (snapshotFile != null) {
+            VisualizationCacheStore.setSnapshotFile(snapshotFile);
+        }
+
+        // Publish the cache statistics through JMX
+        VisualizationCacheMonitor.register();
+
         /**
          * Currently disabled, but if  you want the Visualization caches to be "warmed" during startup,
          * uncomment the line below.
@@ -37,6 +98,44 @@ public class VisualizationSetup implements ServletContextListener {
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        VisualizationCacheMonitor.unregister();
+        CacheRefreshScheduler.shutdown();
+
+        if (changeListener != null) {
+            try {
+                rdfService.unregisterJenaModelChangedListener(changeListener);
+            } catch (RDFServiceException e) {
+                log.warn("Unable to unregister the visualization cache listener", e);
+            }
+        }
+
+        if (snapshotFile != null) {
+            VisualizationCacheStore.save(snapshotFile);
+        }
+    }
+
+    private static long getLongProperty(ConfigurationProperties properties, String name, long defaultValue) {
+        String value = properties.getProperty(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                log.warn("Invalid value for " + name + ": " + value);
+            }
+        }
+
+        return defaultValue;
+    }
 
+    /**
+     * Location of the cache snapshot, within the VIVO home directory
+     */
+    private static Path getSnapshotFile() {
+        try {
+            return ApplicationUtils.instance().getHomeDirectory().getPath().resolve("visualization").resolve("caches.snapshot");
+        } catch (RuntimeException e) {
+            log.warn("Unable to locate the home directory - visualization caches will not be saved", e);
+            return null;
+        }
     }
 }
@@ -16,9 +16,9 @@ import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
-import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationPeopleMap;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CounterUtils;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrgUtils;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrganizationRollups;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -145,8 +145,8 @@ public class TemporalGrantVisualizationRequestHandler implements
 
 		RDFService rdfService = vitroRequest.getRDFService();
 
-		Map<String, String> orgLabelMap = VisualizationCaches.organizationLabels.get(rdfService);
-		Map<String, String> personLabelMap = VisualizationCaches.personLabels.get(rdfService);
+		Map<String, String> orgLabelMap = VisualizationCaches.organizationLabels.get(vitroRequest);
+		Map<String, String> personLabelMap = VisualizationCaches.personLabels.get(vitroRequest);
 
 		if (orgLabelMap.get(subjectEntityURI) == null) {
 			if (VisConstants.DataVisMode.JSON.equals(visMode)) {
@@ -157,28 +157,17 @@ public class TemporalGrantVisualizationRequestHandler implements
 		}
 
 		Map<String, Set<String>> subOrgMap               = VisualizationCaches.organizationSubOrgs.get(rdfService);
-		OrganizationPeopleMap organisationToPeopleMap = VisualizationCaches.organisationToPeopleMap.get(rdfService);
-		Map<String, String> orgMostSpecificLabelMap      = VisualizationCaches.organizationToMostSpecificLabel.get(rdfService);
-		Map<String, String> personMostSpecificLabelMap   = VisualizationCaches.personToMostSpecificLabel.get(rdfService);
+		Map<String, String> orgMostSpecificLabelMap      = VisualizationCaches.organizationToMostSpecificLabel.get(vitroRequest);
+		Map<String, String> personMostSpecificLabelMap   = VisualizationCaches.personToMostSpecificLabel.get(vitroRequest);
 		Map<String, Set<String>> personToGrantMap        = VisualizationCaches.personToGrant.get(rdfService);
 		Map<String, String>      grantToYearMap          = VisualizationCaches.grantToYear.get(rdfService);
 
-		Set<String> orgGrants       = new HashSet<String>();
-		Set<String> orgGrantsPeople = new HashSet<String>();
+		OrganizationRollups grantRollups = VisualizationCaches.grantRollups(rdfService);
+		OrganizationRollups.Rollup orgRollup = grantRollups.get(subjectEntityURI);
 
-		Map<String, Set<String>> subOrgGrantsMap = new HashMap<String, Set<String>>();
+		Set<String> orgGrantsPeople = orgRollup.getPeople();
 
-		OrgUtils.getObjectMappingsForOrgAndSubOrgs(
-				subjectEntityURI,
-				orgGrants,
-				orgGrantsPeople,
-				subOrgGrantsMap,
-				subOrgMap,
-				organisationToPeopleMap.organizationToPeople,
-				personToGrantMap
-		);
-
-		if (orgGrants.isEmpty()) {
+		if (orgRollup.isEmpty()) {
 			if (VisConstants.DataVisMode.JSON.equals(visMode)) {
 				return prepareStandaloneDataErrorResponse();
 			} else {
@@ -191,15 +180,10 @@ public class TemporalGrantVisualizationRequestHandler implements
 				Set subEntitiesJson = new HashSet();
 
 				// For each suborganisation
-				for (String subOrg : subOrgGrantsMap.keySet()) {
+				for (String subOrg : grantRollups.getSubOrgs(subjectEntityURI)) {
 					JsonObject entityJson = new JsonObject(orgLabelMap.get(subOrg));
 
-					if (subOrgGrantsMap.containsKey(subOrg)) {
-						List<List<Integer>> yearPubCounts = CounterUtils.getObjectCountByYear(subOrgGrantsMap.get(subOrg), grantToYearMap);
-						entityJson.setYearToActivityCount(yearPubCounts);
-					} else {
-						entityJson.setYearToActivityCount(new ArrayList<List<Integer>>());
-					}
+					entityJson.setYearToActivityCount(grantRollups.get(subOrg).getCountByYear(grantToYearMap));
 
 					String type = orgMostSpecificLabelMap.get(subOrg);
 					entityJson.setOrganizationTypes(Arrays.asList(type == null ? "Organization" : type));
@@ -252,11 +236,11 @@ public class TemporalGrantVisualizationRequestHandler implements
 
 				csvFileContent.append("Entity Name, Grant Count, Entity Type\n");
 
-				for (String subOrg : subOrgGrantsMap.keySet()) {
+				for (String subOrg : grantRollups.getSubOrgs(subjectEntityURI)) {
 					csvFileContent.append(StringEscapeUtils.escapeCsv(orgLabelMap.get(subOrg)));
 					csvFileContent.append(", ");
 
-					csvFileContent.append(subOrgGrantsMap.get(subOrg).size());
+					csvFileContent.append(grantRollups.get(subOrg).size());
 					csvFileContent.append(", ");
 
 					csvFileContent.append("Organization");
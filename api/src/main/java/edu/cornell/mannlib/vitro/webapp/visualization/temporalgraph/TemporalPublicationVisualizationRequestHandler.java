@@ -16,9 +16,9 @@ import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
-import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationPeopleMap;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CounterUtils;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrgUtils;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrganizationRollups;
 import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -82,8 +82,8 @@ public class TemporalPublicationVisualizationRequestHandler implements
 
 		RDFService rdfService = vitroRequest.getRDFService();
 
-		Map<String, String> orgLabelMap = VisualizationCaches.organizationLabels.get(rdfService);
-		Map<String, String> personLabelMap = VisualizationCaches.personLabels.get(rdfService);
+		Map<String, String> orgLabelMap = VisualizationCaches.organizationLabels.get(vitroRequest);
+		Map<String, String> personLabelMap = VisualizationCaches.personLabels.get(vitroRequest);
 
 		if (orgLabelMap.get(subjectEntityURI) == null) {
 			if (VisConstants.DataVisMode.JSON.equals(visMode)) {
@@ -94,28 +94,17 @@ public class TemporalPublicationVisualizationRequestHandler implements
 		}
 
 		Map<String, Set<String>> subOrgMap               = VisualizationCaches.organizationSubOrgs.get(rdfService);
-		Map<String, String> orgMostSpecificLabelMap      = VisualizationCaches.organizationToMostSpecificLabel.get(rdfService);
-		Map<String, String> personMostSpecificLabelMap   = VisualizationCaches.personToMostSpecificLabel.get(rdfService);
-		OrganizationPeopleMap organisationToPeopleMap = VisualizationCaches.organisationToPeopleMap.get(rdfService);
+		Map<String, String> orgMostSpecificLabelMap      = VisualizationCaches.organizationToMostSpecificLabel.get(vitroRequest);
+		Map<String, String> personMostSpecificLabelMap   = VisualizationCaches.personToMostSpecificLabel.get(vitroRequest);
 		Map<String, Set<String>> personToPublicationMap  = VisualizationCaches.personToPublication.get(rdfService).personToPublication;
 		Map<String, String>      publicationToYearMap    = VisualizationCaches.publicationToYear.get(rdfService);
 
-		Set<String> orgPublications       = new HashSet<String>();
-		Set<String> orgPublicationsPeople = new HashSet<String>();
+		OrganizationRollups publicationRollups = VisualizationCaches.publicationRollups(rdfService);
+		OrganizationRollups.Rollup orgRollup = publicationRollups.get(subjectEntityURI);
 
-		Map<String, Set<String>> subOrgPublicationsMap = new HashMap<String, Set<String>>();
+		Set<String> orgPublicationsPeople = orgRollup.getPeople();
 
-		OrgUtils.getObjectMappingsForOrgAndSubOrgs(
-				subjectEntityURI,
-				orgPublications,
-				orgPublicationsPeople,
-				subOrgPublicationsMap,
-				subOrgMap,
-				organisationToPeopleMap.organizationToPeople,
-				personToPublicationMap
-		);
-
-		if (orgPublications.isEmpty()) {
+		if (orgRollup.isEmpty()) {
 			if (VisConstants.DataVisMode.JSON.equals(visMode)) {
 				return prepareStandaloneDataErrorResponse();
 			} else {
@@ -128,15 +117,10 @@ public class TemporalPublicationVisualizationRequestHandler implements
 				Set subEntitiesJson = new HashSet();
 
 				// For each suborganisation
-				for (String subOrg : subOrgPublicationsMap.keySet()) {
+				for (String subOrg : publicationRollups.getSubOrgs(subjectEntityURI)) {
 					JsonObject entityJson = new JsonObject(orgLabelMap.get(subOrg));
 
-					if (subOrgPublicationsMap.containsKey(subOrg)) {
-						List<List<Integer>> yearPubCounts = CounterUtils.getObjectCountByYear(subOrgPublicationsMap.get(subOrg), publicationToYearMap);
-						entityJson.setYearToActivityCount(yearPubCounts);
-					} else {
-						entityJson.setYearToActivityCount(new ArrayList<List<Integer>>());
-					}
+					entityJson.setYearToActivityCount(publicationRollups.get(subOrg).getCountByYear(publicationToYearMap));
 
 					String type = orgMostSpecificLabelMap.get(subOrg);
 					entityJson.setOrganizationTypes(Arrays.asList(type == null ? "Organization" : type));
@@ -189,11 +173,11 @@ public class TemporalPublicationVisualizationRequestHandler implements
 
 				csvFileContent.append("Entity Name, Publication Count, Entity Type\n");
 
-				for (String subOrg : subOrgPublicationsMap.keySet()) {
+				for (String subOrg : publicationRollups.getSubOrgs(subjectEntityURI)) {
 					csvFileContent.append(StringEscapeUtils.escapeCsv(orgLabelMap.get(subOrg)));
 					csvFileContent.append(", ");
 
-					csvFileContent.append(subOrgPublicationsMap.get(subOrg).size());
+					csvFileContent.append(publicationRollups.get(subOrg).size());
 					csvFileContent.append(", ");
 
 					csvFileContent.append("Organization");
@@ -0,0 +1,278 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared pool of threads for building and refreshing caches in the background.
+ *
+ * Rather than each refresh starting its own thread, tasks are queued and run by a fixed number of threads,
+ * so that refreshing all of the caches at once doesn't overload the triple store.
+ * Tasks are run in priority order - a request that is waiting for results is served before background refreshes,
+ * which in turn are served before bulk rebuilds - and in the order they were submitted for the same priority.
+ */
+public final class CacheRefreshScheduler {
+    private static final Log log = LogFactory.getLog(CacheRefreshScheduler.class);
+
+    /**
+     * Number of threads used if not configured
+     */
+    public static final int DEFAULT_THREADS = 1;
+
+    /**
+     * Priority of a task, most urgent first
+     */
+    public enum Priority {
+        /** A request is waiting for the results */
+        WAITING,
+        /** Refreshing results that are already available */
+        REFRESH,
+        /** Building caches ahead of their use */
+        REBUILD
+    }
+
+    /**
+     * State of a task
+     */
+    public enum State { RUNNING, QUEUED }
+
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final Set<RefreshTask<?>> tasks = Collections.newSetFromMap(new ConcurrentHashMap<RefreshTask<?>, Boolean>());
+
+    private static int maxThreads = DEFAULT_THREADS;
+    private static ThreadPoolExecutor pool = null;
+
+    private CacheRefreshScheduler() { }
+
+    /**
+     * Set the number of threads that may run tasks at the same time
+     *
+     * @param threads number of threads (at least one)
+     */
+    public static synchronized void setMaxThreads(int threads) {
+        maxThreads = Math.max(1, threads);
+        if (pool != null) {
+            if (maxThreads > pool.getMaximumPoolSize()) {
+                pool.setMaximumPoolSize(maxThreads);
+                pool.setCorePoolSize(maxThreads);
+            } else {
+                pool.setCorePoolSize(maxThreads);
+                pool.setMaximumPoolSize(maxThreads);
+            }
+        }
+    }
+
+    public static synchronized int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Queue a task
+     *
+     * @param name name of the task, for reporting
+     * @param callable the work to do
+     * @param priority priority of the task
+     * @param listener called (on the pool thread) when the task has completed, failed or been cancelled; may be null
+     * @return the queued task
+     */
+    static <T> RefreshTask<T> submit(String name, Callable<T> callable, Priority priority, CompletionListener<T> listener) {
+        RefreshTask<T> task = new RefreshTask<T>(name, callable, priority, listener);
+        tasks.add(task);
+        getPool().execute(task);
+        return task;
+    }
+
+    /**
+     * Raise the priority of a task that has not yet started
+     */
+    static void prioritize(RefreshTask<?> task, Priority priority) {
+        if (task.priority.compareTo(priority) > 0) {
+            ThreadPoolExecutor current = getPool();
+
+            // Tasks are ordered when they are queued, so it has to be taken out of the queue to change its priority.
+            // It is resubmitted, rather than put back in the queue directly, so that a thread is started if needed.
+            if (current.remove(task)) {
+                task.priority = priority;
+                current.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Cancel a task, interrupting it if it is running
+     */
+    static void cancel(RefreshTask<?> task) {
+        task.cancel(true);
+
+        ThreadPoolExecutor current = pool;
+        if (current != null) {
+            current.remove(task);
+        }
+    }
+
+    /**
+     * Get the tasks that are currently running or queued, in the order they will be run
+     */
+    public static List<TaskInfo> getTasks() {
+        List<TaskInfo> info = new ArrayList<>();
+        for (RefreshTask<?> task : tasks) {
+            if (!task.isDone()) {
+                info.add(new TaskInfo(task));
+            }
+        }
+
+        Collections.sort(info);
+        return info;
+    }
+
+    /**
+     * Get the state of a task, or null if it has finished
+     */
+    static TaskInfo describe(RefreshTask<?> task) {
+        return task.isDone() ? null : new TaskInfo(task);
+    }
+
+    /**
+     * Stop the pool, cancelling any queued or running tasks
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            for (Runnable queued : pool.shutdownNow()) {
+                ((RefreshTask<?>) queued).cancel(false);
+            }
+            pool = null;
+        }
+    }
+
+    private static synchronized ThreadPoolExecutor getPool() {
+        if (pool == null) {
+            pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            // Use a background thread, so that it can be terminated by the host
+                            Thread thread = new VitroBackgroundThread(runnable, "VisualizationCacheRefresh-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+
+            // Don't keep threads around when the caches are idle
+            pool.allowCoreThreadTimeOut(true);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Notified when a task finishes
+     */
+    interface CompletionListener<T> {
+        void done(RefreshTask<T> task);
+    }
+
+    /**
+     * A queued cache refresh
+     */
+    static final class RefreshTask<T> extends FutureTask<T> implements Comparable<RefreshTask<?>> {
+        private final String name;
+        private final long order = sequence.incrementAndGet();
+        private final long queuedAt = System.currentTimeMillis();
+        private final CompletionListener<T> listener;
+
+        private volatile Priority priority;
+        private volatile long startedAt = -1;
+
+        RefreshTask(String name, Callable<T> callable, Priority priority, CompletionListener<T> listener) {
+            super(callable);
+            this.name = name;
+            this.priority = priority;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            startedAt = System.currentTimeMillis();
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            tasks.remove(this);
+
+            if (listener != null) {
+                try {
+                    listener.done(this);
+                } catch (RuntimeException e) {
+                    log.error("Error completing cache refresh " + name, e);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(RefreshTask<?> other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * Snapshot of the state of a task, for reporting
+     */
+    public static final class TaskInfo implements Comparable<TaskInfo> {
+        private final String name;
+        private final Priority priority;
+        private final State state;
+        private final long queuedAt;
+        private final long startedAt;
+        private final long order;
+
+        private TaskInfo(RefreshTask<?> task) {
+            this.name = task.name;
+            this.priority = task.priority;
+            this.startedAt = task.startedAt;
+            this.state = startedAt > -1 ? State.RUNNING : State.QUEUED;
+            this.queuedAt = task.queuedAt;
+            this.order = task.order;
+        }
+
+        public String getName() { return name; }
+
+        public Priority getPriority() { return priority; }
+
+        public State getState() { return state; }
+
+        public long getQueuedAt() { return queuedAt; }
+
+        public long getStartedAt() { return startedAt; }
+
+        @Override
+        public int compareTo(TaskInfo other) {
+            // Running tasks first, then in the order that they will be run
+            int result = state.compareTo(other.state);
+            if (result == 0) {
+                result = priority.compareTo(other.priority);
+            }
+            return result != 0 ? result : Long.compare(order, other.order);
+        }
+    }
+}
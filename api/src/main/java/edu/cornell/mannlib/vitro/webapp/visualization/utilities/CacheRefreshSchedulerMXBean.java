@@ -0,0 +1,22 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import java.util.List;
+
+/**
+ * Management interface for the threads that build and refresh the visualization caches
+ */
+public interface CacheRefreshSchedulerMXBean {
+    /** Number of threads that may run tasks at the same time */
+    int getMaxThreads();
+
+    void setMaxThreads(int threads);
+
+    int getRunningTasks();
+
+    int getQueuedTasks();
+
+    /** Tasks that are running or queued, in the order they will be run */
+    List<CacheRefreshScheduler.TaskInfo> getTasks();
+}
@@ -0,0 +1,142 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptLabelMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptPeopleMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationPeopleMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.PersonDirectory;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.PersonGrantRoles;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Rough estimate of the memory used by cached results, for reporting.
+ *
+ * Large maps and collections are estimated from a sample of their entries, so that the cost of estimating
+ * doesn't grow with the size of the cache. Objects shared between caches (e.g. the URIs held by the UriDictionary)
+ * are not counted.
+ */
+final class CacheSizeEstimator {
+    /**
+     * Number of entries of a map or collection to measure
+     */
+    private static final int SAMPLE_SIZE = 256;
+
+    // Approximate sizes of the JVM structures, assuming compressed references
+    private static final long OBJECT = 16;
+    private static final long REFERENCE = 4;
+    private static final long HASH_ENTRY = 32;
+    private static final long HASH_MAP = 48;
+
+    private CacheSizeEstimator() { }
+
+    static long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+
+        if (value instanceof IdAdjacency) {
+            return ((IdAdjacency) value).estimateSize();
+        }
+
+        if (value instanceof OrganizationPeopleMap) {
+            OrganizationPeopleMap map = (OrganizationPeopleMap) value;
+            return OBJECT + map.getOrganizationToPeopleIds().estimateSize() + map.getPersonToOrganizationsIds().estimateSize();
+        }
+
+        if (value instanceof ConceptPeopleMap) {
+            ConceptPeopleMap map = (ConceptPeopleMap) value;
+            return OBJECT + map.getConceptToPeopleIds().estimateSize() + map.getPersonToConceptsIds().estimateSize();
+        }
+
+        if (value instanceof PersonPublicationMaps) {
+            PersonPublicationMaps maps = (PersonPublicationMaps) value;
+            return OBJECT + maps.getPersonToPublicationIds().estimateSize() + maps.getPublicationToPersonIds().estimateSize();
+        }
+
+        if (value instanceof ConceptLabelMap) {
+            ConceptLabelMap map = (ConceptLabelMap) value;
+            return OBJECT + estimate(map.conceptToLabel) + estimate(map.lowerLabelToConcepts);
+        }
+
+        if (value instanceof PersonDirectory) {
+            return ((PersonDirectory) value).estimateSize();
+        }
+
+        if (value instanceof PersonGrantRoles) {
+            return ((PersonGrantRoles) value).estimateSize();
+        }
+
+        if (value instanceof Map) {
+            return estimateMap((Map<?, ?>) value);
+        }
+
+        if (value instanceof Collection) {
+            return estimateCollection((Collection<?>) value);
+        }
+
+        return OBJECT;
+    }
+
+    private static long estimateMap(Map<?, ?> map) {
+        IdAdjacency adjacency = IdAdjacency.backing(map);
+        if (adjacency != null) {
+            return adjacency.estimateSize();
+        }
+
+        int size = map.size();
+        long bytes = HASH_MAP + table(size) + HASH_ENTRY * size;
+
+        int sampled = 0;
+        long sampledBytes = 0;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (sampled == SAMPLE_SIZE) {
+                break;
+            }
+
+            sampledBytes += estimate(entry.getKey()) + estimate(entry.getValue());
+            sampled++;
+        }
+
+        return bytes + extrapolate(sampledBytes, sampled, size);
+    }
+
+    private static long estimateCollection(Collection<?> collection) {
+        int size = collection.size();
+
+        // Assume a hash set (backed by a map), as that is how the caches hold collections
+        long bytes = OBJECT + HASH_MAP + table(size) + HASH_ENTRY * size;
+
+        int sampled = 0;
+        long sampledBytes = 0;
+        for (Object item : collection) {
+            if (sampled == SAMPLE_SIZE) {
+                break;
+            }
+
+            sampledBytes += estimate(item);
+            sampled++;
+        }
+
+        return bytes + extrapolate(sampledBytes, sampled, size);
+    }
+
+    /**
+     * Size of the hash table array for the number of entries, at the default load factor
+     */
+    private static long table(int size) {
+        long capacity = Long.highestOneBit(Math.max(1, (size * 4L / 3) - 1)) << 1;
+        return OBJECT + REFERENCE * capacity;
+    }
+
+    private static long extrapolate(long sampledBytes, int sampled, int size) {
+        return sampled == 0 ? 0 : (long) ((double) sampledBytes / sampled * size);
+    }
+}
@@ -0,0 +1,188 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CacheRefreshScheduler.TaskInfo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics for a CachingRDFServiceExecutor.
+ *
+ * Counts are recorded by the cache as it is used; everything else is read from the cache when requested,
+ * so the values are always current. Exposed through JMX, and serialized as JSON by the cache status handler.
+ */
+public class CacheStatistics implements VisualizationCacheMXBean {
+    private final CachingRDFServiceExecutor<?> cache;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+
+    private final AtomicLong fullBuilds = new AtomicLong();
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private volatile long lastRefreshed = -1;
+    private volatile long lastRefreshDuration = -1;
+    private volatile String lastFailure = null;
+
+    CacheStatistics(CachingRDFServiceExecutor<?> cache) {
+        this.cache = cache;
+    }
+
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    void recordMiss(long waitTime) {
+        misses.incrementAndGet();
+        totalWaitTime.addAndGet(waitTime);
+    }
+
+    void recordWait(long waitTime) {
+        waits.incrementAndGet();
+        totalWaitTime.addAndGet(waitTime);
+    }
+
+    void recordBuild(boolean update, long duration) {
+        if (update) {
+            incrementalUpdates.incrementAndGet();
+        } else {
+            fullBuilds.incrementAndGet();
+        }
+
+        lastRefreshed = System.currentTimeMillis();
+        lastRefreshDuration = duration;
+    }
+
+    void recordFailure(Throwable cause) {
+        failures.incrementAndGet();
+        lastFailure = String.valueOf(cause);
+    }
+
+    @Override
+    public String getName() {
+        return cache.getName();
+    }
+
+    @Override
+    public boolean isCached() {
+        return cache.isCached();
+    }
+
+    @Override
+    public long getCacheTime() {
+        return cache.isCached() ? cache.cachedWhen().getTime() : -1;
+    }
+
+    @Override
+    public long getLastRefreshed() {
+        return lastRefreshed;
+    }
+
+    @Override
+    public long getLastRefreshDuration() {
+        return lastRefreshDuration;
+    }
+
+    @Override
+    public long getLastBuildTime() {
+        return cache.getResultBuilder().getExecutionTime();
+    }
+
+    @Override
+    public long getLastUpdateTime() {
+        return cache.getResultBuilder().getUpdateTime();
+    }
+
+    @Override
+    public long getFullBuilds() {
+        return fullBuilds.get();
+    }
+
+    @Override
+    public long getIncrementalUpdates() {
+        return incrementalUpdates.get();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public long getWaits() {
+        return waits.get();
+    }
+
+    @Override
+    public long getTotalWaitTime() {
+        return totalWaitTime.get();
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return cache.estimateSize();
+    }
+
+    @Override
+    public int getPendingChanges() {
+        return cache.pendingChangeCount();
+    }
+
+    @Override
+    public String getTaskState() {
+        TaskInfo task = cache.backgroundTaskInfo();
+        return task == null ? "IDLE" : task.getState().name();
+    }
+
+    @Override
+    public String getTaskPriority() {
+        TaskInfo task = cache.backgroundTaskInfo();
+        return task == null ? null : task.getPriority().name();
+    }
+
+    @Override
+    public boolean isTaskIncremental() {
+        return cache.isBackgroundTaskUpdate();
+    }
+
+    @Override
+    public long getTaskQueuedAt() {
+        TaskInfo task = cache.backgroundTaskInfo();
+        return task == null ? -1 : task.getQueuedAt();
+    }
+
+    @Override
+    public long getTaskStartedAt() {
+        TaskInfo task = cache.backgroundTaskInfo();
+        return task == null ? -1 : task.getStartedAt();
+    }
+
+    @Override
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+        waits.set(0);
+        totalWaitTime.set(0);
+        failures.set(0);
+        lastFailure = null;
+    }
+}
@@ -0,0 +1,161 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Helpers for applying incremental changes to the visualization caches.
+ *
+ * Cached results may be in use by request threads, so they are never modified - updates create a copy (see
+ * OverlayMap, which only copies the changes since the last full build), and only copy the value sets that are
+ * actually changed.
+ */
+public class CacheUpdateUtils {
+    // Maximum number of URIs to bind in a single VALUES clause
+    private static final int MAX_VALUES = 250;
+
+    /**
+     * Create VALUES clauses binding a query variable to the URIs, split into batches of a reasonable size
+     *
+     * @param variable name of the query variable (without the ?)
+     * @param uris URIs to bind
+     * @return A list of VALUES clauses, one per query to be run
+     */
+    public static List<String> valuesClauses(String variable, Collection<String> uris) {
+        List<String> clauses = new ArrayList<>();
+
+        StringBuilder clause = null;
+        int count = 0;
+        for (String uri : uris) {
+            // Don't risk breaking the query with an invalid URI
+            if (uri == null || uri.indexOf('>') > -1 || uri.indexOf(' ') > -1) {
+                continue;
+            }
+
+            if (clause == null) {
+                clause = new StringBuilder("  VALUES ?").append(variable).append(" {");
+            }
+
+            clause.append(" <").append(uri).append(">");
+
+            if (++count >= MAX_VALUES) {
+                clauses.add(clause.append(" }\n").toString());
+                clause = null;
+                count = 0;
+            }
+        }
+
+        if (clause != null) {
+            clauses.add(clause.append(" }\n").toString());
+        }
+
+        return clauses;
+    }
+
+    /**
+     * Add a value to the set held against the key, creating the set if necessary
+     */
+    public static void put(Map<String, Set<String>> map, String key, String value) {
+        Set<String> values = map.get(key);
+        if (values == null) {
+            values = new HashSet<String>();
+            values.add(value);
+            map.put(key, values);
+        } else {
+            values.add(value);
+        }
+    }
+
+    /**
+     * Copy a map, replacing the entries for the given keys
+     *
+     * @param map existing map
+     * @param keys keys to remove from the copy
+     * @param replacements new entries to add to the copy
+     * @return the updated copy
+     */
+    public static <V> Map<String, V> replaceKeys(Map<String, V> map, Collection<String> keys, Map<String, V> replacements) {
+        return OverlayMap.replace(map, keys, replacements);
+    }
+
+    /**
+     * Find the links in a map of sets, where either end of the link is one of the given URIs
+     *
+     * @param forward links from source to targets
+     * @param reverse links from target to sources (if null, the forward map will be scanned)
+     * @param uris URIs to find
+     * @return map of the matching links, from source to targets
+     */
+    public static Map<String, Set<String>> linksInvolving(Map<String, Set<String>> forward, Map<String, Set<String>> reverse, Collection<String> uris) {
+        Map<String, Set<String>> links = new HashMap<>();
+        Set<String> uriSet = uris instanceof Set ? (Set<String>) uris : new HashSet<String>(uris);
+
+        for (String uri : uriSet) {
+            Set<String> targets = forward.get(uri);
+            if (targets != null) {
+                links.put(uri, new HashSet<String>(targets));
+            }
+        }
+
+        if (reverse != null) {
+            for (String uri : uriSet) {
+                Set<String> sources = reverse.get(uri);
+                if (sources != null) {
+                    for (String source : sources) {
+                        put(links, source, uri);
+                    }
+                }
+            }
+        } else {
+            for (Map.Entry<String, Set<String>> entry : forward.entrySet()) {
+                for (String target : entry.getValue()) {
+                    if (uriSet.contains(target)) {
+                        put(links, entry.getKey(), target);
+                    }
+                }
+            }
+        }
+
+        return links;
+    }
+
+    /**
+     * Copy a map of sets, removing and adding values. Only the sets that change are copied.
+     *
+     * @param map existing map
+     * @param removals values to remove, by key
+     * @param additions values to add, by key
+     * @return the updated copy
+     */
+    public static Map<String, Set<String>> update(Map<String, Set<String>> map, Map<String, Set<String>> removals, Map<String, Set<String>> additions) {
+        Set<String> keys = new HashSet<>(removals.keySet());
+        keys.addAll(additions.keySet());
+
+        Map<String, Set<String>> replacements = new HashMap<>();
+        for (String key : keys) {
+            Set<String> values = map.get(key) == null ? new HashSet<String>() : new HashSet<String>(map.get(key));
+
+            if (removals.containsKey(key)) {
+                values.removeAll(removals.get(key));
+            }
+
+            if (additions.containsKey(key)) {
+                values.addAll(additions.get(key));
+            }
+
+            if (!values.isEmpty()) {
+                replacements.put(key, values);
+            }
+        }
+
+        // Keys left without values are removed
+        return OverlayMap.replace(map, keys, replacements);
+    }
+}
@@ -2,20 +2,20 @@
 
 package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
 
-import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
-import edu.cornell.mannlib.vitro.webapp.utils.threads.VitroBackgroundThread;
-import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptLabelMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CacheRefreshScheduler.Priority;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CacheRefreshScheduler.RefreshTask;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -23,38 +23,147 @@ import java.util.concurrent.TimeoutException;
  * Utility class that populates and returns a cache.
  * Once the cache is populated, it can return the cached results whilst refreshing in the background.
  *
+ * Background work is run by the shared CacheRefreshScheduler, rather than on a thread of its own.
+ *
+ * Reading the cached results does not take a lock - the results and the time they were generated are published
+ * together through a volatile reference. The lock is only taken to start, complete or abort a background task.
+ *
+ * Use of the cache, and the time taken to build it, are recorded in a CacheStatistics for monitoring.
+ *
  * @param <T>
  */
 public class CachingRDFServiceExecutor<T> {
+    private static final Log log = LogFactory.getLog(CachingRDFServiceExecutor.class);
+
     /**
      * Cache information
      */
-    private T cachedResults;
-    private long lastCacheTime;
+    private volatile CachedResults<T> cached = null;
 
+    private final String name;
     private final RDFServiceCallable<T> resultBuilder;
+    private final CacheStatistics statistics;
 
     /**
      * Background task tracker
      */
-    private FutureTask<T> backgroundTask = null;
-    private Thread backgroundCompletion = null;
+    private volatile RefreshTask<T> backgroundTask = null;
     private long backgroundTaskStartTime = -1;
+    private boolean backgroundTaskIsUpdate = false;
+
+    /**
+     * Resources that have changed in the triple store since the cache was last built or updated.
+     * Null if there have been too many changes to apply incrementally, and a full rebuild is required.
+     */
+    private Set<String> pendingChanges = new HashSet<>();
+
+    /**
+     * Whether there are changes to apply, so that readers can check without the lock
+     */
+    private volatile boolean changesPending = false;
+
+    /**
+     * Generation of the URI dictionary in which the cached results were last built in full, and in which the
+     * background task started
+     */
+    private volatile int dictionaryGeneration = -1;
+    private int backgroundTaskGeneration = -1;
+
+    /**
+     * Maximum number of changed resources to accumulate before giving up on an incremental update
+     */
+    private static final int MAX_PENDING_CHANGES = 10000;
 
     /**
      * RDF Service to be used by background threads
      */
-    private static RDFService backgroundRDFService = null;
+    private static volatile RDFService backgroundRDFService = null;
 
     public CachingRDFServiceExecutor(RDFServiceCallable<T> resultBuilder) {
+        this(resultBuilder.getClass().getName(), resultBuilder);
+    }
+
+    /**
+     * @param name name of the cache, used when reporting on the background tasks
+     * @param resultBuilder the task that generates the results
+     */
+    public CachingRDFServiceExecutor(String name, RDFServiceCallable<T> resultBuilder) {
+        this.name = name;
         this.resultBuilder = resultBuilder;
+        this.statistics = new CacheStatistics(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Usage and build statistics for the cache
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
     }
 
     public boolean isCached() {
-        return cachedResults != null;
+        return cached != null;
+    }
+
+    public Date cachedWhen() {
+        CachedResults<T> current = cached;
+        return new Date(current == null ? 0 : current.cacheTime);
+    }
+
+    /**
+     * Return the cached results without starting a refresh, or null if there are none
+     */
+    public T getCachedResults() {
+        CachedResults<T> current = cached;
+        return current == null ? null : current.results;
+    }
+
+    /**
+     * Populate the cache with previously saved results, if it has not already been populated.
+     * The saved results are returned immediately, but as the triple store may have changed since they were saved,
+     * a full rebuild is started in the background the first time they are requested.
+     *
+     * @param results the saved results
+     * @param cacheTime the time the saved results were generated
+     * @return true if the cache was populated
+     */
+    public synchronized boolean restore(T results, long cacheTime) {
+        return restore(results, cacheTime, -1);
     }
 
-    public Date cachedWhen() { return new Date(lastCacheTime); }
+    /**
+     * Populate the cache with previously saved results, if it has not already been populated
+     *
+     * @param results the saved results
+     * @param cacheTime the time the saved results were generated
+     * @param generation generation of the URI dictionary in which the results were read, or -1 if unknown
+     * @return true if the cache was populated
+     */
+    synchronized boolean restore(T results, long cacheTime, int generation) {
+        if (results == null || cached != null || backgroundTask != null) {
+            return false;
+        }
+
+        cached = new CachedResults<T>(results, cacheTime);
+        dictionaryGeneration = generation;
+
+        // We don't know what has changed, so the next refresh must be in full
+        setPendingChanges(null);
+        return true;
+    }
+
+    /**
+     * Discard the cached results, and any background task, so that the cache is built again when it is next requested
+     */
+    synchronized void clear() {
+        abortBackgroundTask();
+        cached = null;
+        dictionaryGeneration = -1;
+        setPendingChanges(new HashSet<String>());
+    }
 
     /**
      * Return the cached results if present, or start the task.
@@ -62,7 +171,7 @@ public class CachingRDFServiceExecutor<T> {
      *
      * @param rdfService an RDF service to use, in foreground mode, if the background service is missing
      */
-    public synchronized T get(RDFService rdfService) {
+    public T get(RDFService rdfService) {
         return get(rdfService, false);
     }
 
@@ -72,7 +181,7 @@ public class CachingRDFServiceExecutor<T> {
      *
      * @param rdfService an RDF service to use, in foreground mode, if the background service is missing
      */
-    public synchronized T getNoWait(RDFService rdfService) {
+    public T getNoWait(RDFService rdfService) {
         return get(rdfService, true);
     }
 
@@ -82,109 +191,97 @@ public class CachingRDFServiceExecutor<T> {
      *
      * @param rdfService an RDF service to use, in foreground mode, if the background service is missing
      */
-    public synchronized T get(RDFService rdfService, boolean allowWaits) {
-        // First, check if there are results from the previous background task, and update the cache
-        if (backgroundTask != null && backgroundTask.isDone()) {
-            completeBackgroundTask();
-        }
+    public T get(RDFService rdfService, boolean allowWaits) {
+        CachedResults<T> current = cached;
+        long requestedAt = System.currentTimeMillis();
+
         // If we have cached results
-        if (cachedResults != null) {
-            // If the background service exists, and the cache is considered invalid
+        if (current != null) {
+            boolean waited = false;
 
-        	if (backgroundRDFService != null && resultBuilder.invalidateCache(System.currentTimeMillis() - lastCacheTime)) {
+            // If the background service exists, and the cache is considered invalid or has changes to apply
+            boolean expired = resultBuilder.invalidateCache(System.currentTimeMillis() - current.cacheTime);
+            if (backgroundRDFService != null && (expired || changesPending)) {
                 // In most cases, only wait for half a second
                 long waitFor = 500;
 
-                if (backgroundTask == null) {
-                    // Start the background task to refresh the cache
-                    startBackgroundTask(backgroundRDFService);
+                RefreshTask<T> task = backgroundTask;
+                if (task == null) {
+                    // Start the background task to refresh the cache, only applying the changes if it hasn't expired
+                    task = startRefresh(!expired);
 
                     // As we've just started the background task, allow a wait time of 1 second
                     waitFor = 1000;
                 }
 
                 // See if we expect it to complete in time, and if so, wait for it
-                if (allowWaits && isExpectedToCompleteIn(waitFor)) {
-                    completeBackgroundTask(waitFor);
+                if (allowWaits && isExpectedToCompleteIn(task, waitFor)) {
+                    waited = true;
+                    awaitBackgroundTask(task, waitFor);
                 }
+            }
 
-        	}
-        } else {
-            // No cached results, so fetch the results using any available RDF service
-            if (rdfService != null) {
-                startBackgroundTask(rdfService);
-            } else if (backgroundRDFService != null) {
-                startBackgroundTask(backgroundRDFService);
+            if (waited) {
+                statistics.recordWait(System.currentTimeMillis() - requestedAt);
             } else {
-                throw new RuntimeException("Can't execute without an RDF Service");
+                statistics.recordHit();
             }
+        } else {
+            // No cached results, so fetch the results using any available RDF service
+            RefreshTask<T> task = startBuild(rdfService);
 
             // As there are no cached results, wait for an answer regardless of the RDF service used
-            completeBackgroundTask();
+            if (task != null) {
+                try {
+                    awaitBackgroundTask(task, -1);
+                } finally {
+                    statistics.recordMiss(System.currentTimeMillis() - requestedAt);
+                }
+            } else {
+                statistics.recordHit();
+            }
         }
-        return cachedResults;
-    }
-
-    public synchronized T get(RDFService rdfService, boolean allowWaits, boolean force) {
-    	/*
-    	 * UQAM-Bug-Correction
-    	 * Forces the regeneration of the result
-    	 */
-    	if (force) {
-    		try {
-        		String backLang = backgroundRDFService.getVitroRequest().getLocale().getLanguage();
-        		String srvLang = rdfService.getVitroRequest().getLocale().getLanguage();
-        		if (!backLang.equals(srvLang)) {
-        			backgroundRDFService.setVitroRequest(rdfService.getVitroRequest());
-            		startBackgroundTask(rdfService);
-            		completeBackgroundTask();
-        		}
-			} catch (Exception e) {
-    			backgroundRDFService.setVitroRequest(rdfService.getVitroRequest());
-	    		startBackgroundTask(rdfService);
-	    		completeBackgroundTask();
-			}
-    		return cachedResults;
-    	}
-        // First, check if there are results from the previous background task, and update the cache
-        if (backgroundTask != null && backgroundTask.isDone()) {
-            completeBackgroundTask();
+
+        return getCachedResults();
+    }
+
+    /**
+     * Start a refresh of the cached results, unless one is already running
+     *
+     * @param update true if the pending changes should be applied, rather than a full rebuild
+     * @return the background task
+     */
+    private synchronized RefreshTask<T> startRefresh(boolean update) {
+        if (backgroundTask == null) {
+            startBackgroundTask(backgroundRDFService, update, Priority.REFRESH);
         }
-        // If we have cached results
-        if (cachedResults != null) {
-            // If the background service exists, and the cache is considered invalid
-            if (backgroundRDFService != null && resultBuilder.invalidateCache(System.currentTimeMillis() - lastCacheTime)) {
-                // In most cases, only wait for half a second
-                long waitFor = 500;
 
-                if (backgroundTask == null) {
-                    // Start the background task to refresh the cache
-                    startBackgroundTask(backgroundRDFService);
+        return backgroundTask;
+    }
 
-                    // As we've just started the background task, allow a wait time of 1 second
-                    waitFor = 1000;
-                }
+    /**
+     * Start building the results for a request that is waiting for them
+     *
+     * @param rdfService an RDF service to use, if the background RDF service is not set
+     * @return the background task, or null if the results have been cached in the meantime
+     */
+    private synchronized RefreshTask<T> startBuild(RDFService rdfService) {
+        if (cached != null) {
+            return null;
+        }
 
-                // See if we expect it to complete in time, and if so, wait for it
-                if (allowWaits && isExpectedToCompleteIn(waitFor)) {
-                    completeBackgroundTask(waitFor);
-                }
-            }
+        if (backgroundTask != null) {
+            // Already being built (e.g. by rebuildAll), so make sure that it is run next
+            CacheRefreshScheduler.prioritize(backgroundTask, Priority.WAITING);
+        } else if (rdfService != null) {
+            startBackgroundTask(rdfService, false, Priority.WAITING);
+        } else if (backgroundRDFService != null) {
+            startBackgroundTask(backgroundRDFService, false, Priority.WAITING);
         } else {
-            // No cached results, so fetch the results using any available RDF service
-            if (rdfService != null) {
-                startBackgroundTask(rdfService);
-            } else if (backgroundRDFService != null) {
-                startBackgroundTask(backgroundRDFService);
-            } else {
-                throw new RuntimeException("Can't execute without an RDF Service");
-            }
-
-            // As there are no cached results, wait for an answer regardless of the RDF service used
-            completeBackgroundTask();
+            throw new RuntimeException("Can't execute without an RDF Service");
         }
 
-        return cachedResults;
+        return backgroundTask;
     }
 
     /**
@@ -194,9 +291,10 @@ public class CachingRDFServiceExecutor<T> {
      */
     public void build(RDFService rdfService) {
         // First, check if there are results from the previous background task, and update the cache
-        if (backgroundTask != null && backgroundTask.isDone()) {
+        RefreshTask<T> task = backgroundTask;
+        if (task != null && task.isDone()) {
             buildComplete();
-        } else if (backgroundTask == null) {
+        } else if (task == null) {
             buildStart(rdfService);
         }
     }
@@ -209,13 +307,12 @@ public class CachingRDFServiceExecutor<T> {
 
     private synchronized void buildStart(RDFService rdfService) {
         if (backgroundTask == null) {
-            // If we have a background RDF service, we can launch the task in the background and leave it
+            // If we have a background RDF service, we can queue the task and leave it to complete itself
             if (backgroundRDFService != null) {
-                startBackgroundTask(backgroundRDFService);
-                completeBackgroundTaskAsync();
+                startBackgroundTask(backgroundRDFService, false, Priority.REBUILD);
             } else if (rdfService != null) {
                 // No background service, so use the passed RDF service, and wait for completion
-                startBackgroundTask(rdfService);
+                startBackgroundTask(rdfService, false, Priority.WAITING);
                 completeBackgroundTask();
             }
         }
@@ -224,17 +321,18 @@ public class CachingRDFServiceExecutor<T> {
     /**
      * Determine if a task is likely to complete with the time frame specified
      *
+     * @param task - the task to check
      * @param interval - time in milliseconds that you want the task to complete in
      * @return true if the task is likely to complete
      */
-    private boolean isExpectedToCompleteIn(long interval) {
+    private boolean isExpectedToCompleteIn(RefreshTask<T> task, long interval) {
         // If there is no background task, there is nothing to complete
-        if (backgroundTask == null) {
+        if (task == null) {
             return false;
         }
 
         // If the task has already completed, then return true
-        if (backgroundTask.isDone()) {
+        if (task.isDone()) {
             return true;
         }
 
@@ -242,9 +340,11 @@ public class CachingRDFServiceExecutor<T> {
         long now = System.currentTimeMillis();
 
         // If the task has started, and has a previous execution time
-        if (resultBuilder.startedAt > -1 && resultBuilder.executionTime > -1) {
+        long startedAt = resultBuilder.startedAt;
+        long executionTime = resultBuilder.executionTime;
+        if (startedAt > -1 && executionTime > -1) {
             // Estimate a finish time, based on when the task started, and how long it last took
-            long expectedFinish = resultBuilder.startedAt + resultBuilder.executionTime;
+            long expectedFinish = startedAt + executionTime;
 
             // If we expect it to complete before the interval passes, return true
             if (expectedFinish < (now + interval)) {
@@ -258,24 +358,87 @@ public class CachingRDFServiceExecutor<T> {
     }
 
     /**
-     * Create and start a background thread using the configured task
+     * Queue the configured task with the scheduler
      * @param rdfService An RDFService
+     * @param update true if the pending changes should be applied to the cached results, rather than a full rebuild
+     * @param priority how urgently the results are needed
      */
-    private void startBackgroundTask(RDFService rdfService) {
+    private void startBackgroundTask(RDFService rdfService, boolean update, Priority priority) {
         // Ensure that there isn't already a task
         if (backgroundTask == null && rdfService != null) {
             // Set an RDF service to use
             resultBuilder.setRDFService(backgroundRDFService != null ? backgroundRDFService : rdfService);
 
-            // Create the background task, and record the time
-            backgroundTask = new FutureTask<T>(resultBuilder);
+            // Only update the existing results if we have them, and the changes are within limits
+            backgroundTaskIsUpdate = update && cached != null && pendingChanges != null && !pendingChanges.isEmpty();
+            if (backgroundTaskIsUpdate) {
+                resultBuilder.setChanges(cached.results, pendingChanges);
+            } else {
+                resultBuilder.setChanges(null, null);
+            }
+
+            // Any changes from now on will need to be applied after this task
+            setPendingChanges(new HashSet<String>());
+            backgroundTaskGeneration = UriDictionary.getInstance().getGeneration();
+
+            // Queue the background task, and record the time
             backgroundTaskStartTime = System.currentTimeMillis();
+            backgroundTask = CacheRefreshScheduler.submit(name, resultBuilder, priority, new CacheRefreshScheduler.CompletionListener<T>() {
+                @Override
+                public void done(RefreshTask<T> task) {
+                    backgroundTaskDone(task);
+                }
+            });
+        }
+    }
+
+    /**
+     * Called when a background task finishes, so that the results are available without waiting for the next request
+     */
+    private synchronized void backgroundTaskDone(RefreshTask<T> task) {
+        // Only complete the task if it is still current, and hasn't been aborted
+        if (task == backgroundTask && !task.isCancelled()) {
+            try {
+                completeBackgroundTask();
+            } catch (RuntimeException e) {
+                log.error("Unable to build cache " + name, e);
+            }
+        }
+    }
 
-            // Start a background thread, ensuring that it can be terminated by the host
-            Thread thread = new VitroBackgroundThread(backgroundTask, resultBuilder.getClass().getName());
-            thread.setDaemon(true);
-            thread.start();
+    /**
+     * Wait for a background task without holding the lock, so that other readers are not blocked
+     *
+     * @param task the task to wait for
+     * @param waitFor - maximum time to wait for the results, -1 if forever
+     */
+    private void awaitBackgroundTask(RefreshTask<T> task, long waitFor) {
+        try {
+            if (waitFor < 0) {
+                task.get();
+            } else {
+                task.get(waitFor, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            // The waiting thread was interrupted, not the task, so leave it to complete
+            Thread.currentThread().interrupt();
+            return;
+        } catch (CancellationException | TimeoutException e) {
+            // The task was aborted, or we didn't get the results in time
+            return;
+        } catch (ExecutionException e) {
+            // There was a problem inside the task, so abort and throw an exception
+            synchronized (this) {
+                if (task == backgroundTask) {
+                    statistics.recordFailure(e.getCause());
+                    abortBackgroundTask();
+                }
+            }
+            throw new RuntimeException("Background RDF thread through an exception", e.getCause());
         }
+
+        // Publish the results, if the task's completion hasn't already done so
+        backgroundTaskDone(task);
     }
 
     /**
@@ -285,25 +448,16 @@ public class CachingRDFServiceExecutor<T> {
         // Ensure that we have a background task
         if (backgroundTask != null) {
             // Cancel the background task and clear the start time
-            backgroundTask.cancel(true);
+            RefreshTask<T> task = backgroundTask;
             backgroundTask = null;
+            CacheRefreshScheduler.cancel(task);
             backgroundTaskStartTime = -1;
-        }
-    }
 
-    /**
-     * Complete the background task
-     */
-    private synchronized void completeBackgroundTaskAsync() {
-        if (backgroundCompletion == null) {
-            backgroundCompletion = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    completeBackgroundTask(-1);
-                }
-            });
-            backgroundCompletion.setDaemon(true);
-            backgroundCompletion.start();
+            // If we were applying changes, they have been lost, so the next refresh must be in full
+            if (backgroundTaskIsUpdate) {
+                setPendingChanges(null);
+                backgroundTaskIsUpdate = false;
+            }
         }
     }
 
@@ -323,26 +477,38 @@ public class CachingRDFServiceExecutor<T> {
             // If we have a background task
             if (backgroundTask != null) {
 
-                // Update the cached results
+                // Get the results
+                T results;
                 if (waitFor < 0) {
-                    cachedResults = backgroundTask.get();
+                    results = backgroundTask.get();
                 } else {
-                    cachedResults = backgroundTask.get(waitFor, TimeUnit.MILLISECONDS);
+                    results = backgroundTask.get(waitFor, TimeUnit.MILLISECONDS);
                 }
 
                 // Set the time of the cache equal to the start time of the task that generated the results
-                lastCacheTime = backgroundTaskStartTime;
+                // An incremental update does not reset the time, so that the periodic full rebuild still happens
+                long cacheTime = backgroundTaskIsUpdate && cached != null ? cached.cacheTime : backgroundTaskStartTime;
+
+                // Update the cached results
+                cached = new CachedResults<T>(results, cacheTime);
+                statistics.recordBuild(backgroundTaskIsUpdate, System.currentTimeMillis() - backgroundTaskStartTime);
+
+                if (!backgroundTaskIsUpdate) {
+                    dictionaryGeneration = backgroundTaskGeneration;
+                    VisualizationCaches.fullBuildComplete();
+                }
 
                 // Clear the background task information
                 backgroundTask = null;
                 backgroundTaskStartTime = -1;
-                backgroundCompletion = null;
+                backgroundTaskIsUpdate = false;
             }
-        } catch (InterruptedException e) {
-            // Task was interrupted, so abort it
+        } catch (InterruptedException | CancellationException e) {
+            // Task was interrupted or cancelled, so abort it
             abortBackgroundTask();
         } catch (ExecutionException e) {
             // There was a problem inside the task, so abort and throw an exception
+            statistics.recordFailure(e.getCause());
             abortBackgroundTask();
             throw new RuntimeException("Background RDF thread through an exception", e.getCause());
         } catch (TimeoutException e) {
@@ -350,6 +516,89 @@ public class CachingRDFServiceExecutor<T> {
         }
     }
 
+    /**
+     * Record resources that have been added, removed or modified in the triple store.
+     * If the task supports incremental updates, the changes will be applied to the cached results the next time
+     * they are requested, otherwise the changes are ignored and the cache refreshes when it expires.
+     *
+     * @param uris URIs of the changed resources
+     */
+    public synchronized void notifyChanges(Collection<String> uris) {
+        // Only track changes if we have (or are building) results that can be updated
+        if (!(resultBuilder instanceof IncrementalRDFServiceCallable) || (cached == null && backgroundTask == null)) {
+            return;
+        }
+
+        if (pendingChanges != null) {
+            pendingChanges.addAll(uris);
+
+            // Too many changes to apply incrementally (e.g. a bulk load), so fall back to a full rebuild
+            if (pendingChanges.size() > MAX_PENDING_CHANGES) {
+                setPendingChanges(null);
+            } else {
+                changesPending = !pendingChanges.isEmpty();
+            }
+        }
+    }
+
+    /**
+     * Replace the pending changes (null if a full rebuild is required)
+     */
+    private void setPendingChanges(Set<String> changes) {
+        pendingChanges = changes;
+        changesPending = changes == null || !changes.isEmpty();
+    }
+
+    /**
+     * Generation of the URI dictionary in which the cached results were last built in full, or -1 if not known
+     */
+    int getDictionaryGeneration() {
+        return dictionaryGeneration;
+    }
+
+    /**
+     * Approximate memory used by the cached results, in bytes (0 if there are none)
+     */
+    long estimateSize() {
+        CachedResults<T> current = cached;
+        if (current == null) {
+            return 0;
+        }
+
+        // Estimating is not free, so only do it once for each set of results
+        if (current.estimatedSize < 0) {
+            current.estimatedSize = CacheSizeEstimator.estimate(current.results);
+        }
+
+        return current.estimatedSize;
+    }
+
+    /**
+     * Number of changed resources waiting to be applied, or -1 if a full rebuild is required
+     */
+    synchronized int pendingChangeCount() {
+        return pendingChanges == null ? -1 : pendingChanges.size();
+    }
+
+    /**
+     * State of the current background task, or null if there isn't one
+     */
+    CacheRefreshScheduler.TaskInfo backgroundTaskInfo() {
+        RefreshTask<T> task = backgroundTask;
+        return task == null ? null : CacheRefreshScheduler.describe(task);
+    }
+
+    /**
+     * Whether the current background task is applying changes, rather than rebuilding in full
+     */
+    synchronized boolean isBackgroundTaskUpdate() {
+        return backgroundTask != null && backgroundTaskIsUpdate;
+    }
+
+    RDFServiceCallable<T> getResultBuilder() {
+        return resultBuilder;
+    }
+
     /**
      * Set the RDF service to be used for background threads (called from a startup servlet)
      * @param rdfService An RDFService
@@ -358,6 +607,22 @@ public class CachingRDFServiceExecutor<T> {
         backgroundRDFService = rdfService;
     }
 
+    /**
+     * Cached results, and the time they were generated, published together
+     */
+    private static final class CachedResults<T> {
+        final T results;
+        final long cacheTime;
+
+        // Lazily calculated - a race only means that it is estimated more than once
+        long estimatedSize = -1;
+
+        CachedResults(T results, long cacheTime) {
+            this.results = results;
+            this.cacheTime = cacheTime;
+        }
+    }
+
     /**
      * Class to be implemented by user to provide the means of generating the results
      * @param <T>
@@ -367,23 +632,19 @@ public class CachingRDFServiceExecutor<T> {
         private RDFService rdfService;
 
         // Start and execution times
-        private long startedAt = -1;
-        private long executionTime = -1;
+        private volatile long startedAt = -1;
+        private volatile long executionTime = -1;
+        private volatile long updateTime = -1;
 
-        // Affinity object to prevent tasks with the same affinity from running in parallel
-        private Affinity affinity = null;
+        // Existing results and changed resources, when applying an incremental update
+        private T previousResults = null;
+        private Set<String> changedUris = null;
 
         /**
          * Default constructor
          */
         public RDFServiceCallable() { }
 
-        /**
-         * Constructor that allows an affinity object to be supplied
-         * @param affinity Affinity
-         */
-        public RDFServiceCallable(Affinity affinity) { this.affinity = affinity; }
-
         /**
          * Set the RDF service to be used
          * @param rdfService An RDFService
@@ -392,6 +653,16 @@ public class CachingRDFServiceExecutor<T> {
             this.rdfService = rdfService;
         }
 
+        /**
+         * Set the existing results and the resources that have changed, for an incremental update
+         * @param previousResults The current results, or null to rebuild in full
+         * @param changedUris URIs of the changed resources, or null to rebuild in full
+         */
+        final void setChanges(T previousResults, Set<String> changedUris) {
+            this.previousResults = previousResults;
+            this.changedUris = changedUris;
+        }
+
         /**
          * Entry point for the background threads, ensuring the right start / cleanup is done
          * @throws Exception Any exception
@@ -399,20 +670,25 @@ public class CachingRDFServiceExecutor<T> {
         @Override
         final public T call() throws Exception {
             try {
-                // If we have an affinity object
-                if (affinity != null) {
-                    // Ask for permission to process processing
-                    affinity.requestStart(executionTime);
-                }
-
                 // Record the start time
                 startedAt = System.currentTimeMillis();
 
-                // Call the user implementation, passing the RDF service
-                T val = callWithService(rdfService);
+                // If we have been given changes, try to apply them to the existing results
+                T val = null;
+                if (previousResults != null && changedUris != null && this instanceof IncrementalRDFServiceCallable) {
+                    val = ((IncrementalRDFServiceCallable<T>) this).updateWithService(rdfService, previousResults, changedUris);
+                    if (val != null) {
+                        updateTime = System.currentTimeMillis() - startedAt;
+                    }
+                }
 
-                // Record how long it to to execute
-                executionTime = System.currentTimeMillis() - startedAt;
+                if (val == null) {
+                    // Call the user implementation, passing the RDF service
+                    val = callWithService(rdfService);
+
+                    // Record how long it to to execute (only for full builds, as it determines the cache lifetime)
+                    executionTime = System.currentTimeMillis() - startedAt;
+                }
 
                 // Return the results
                 return val;
@@ -420,13 +696,33 @@ public class CachingRDFServiceExecutor<T> {
                 // Ensure that we reset the start time
                 startedAt = -1;
 
-                // Tell any affinity object that we have completed
-                if (affinity != null) {
-                    affinity.complete();
-                }
+                // Don't hold on to the previous results
+                previousResults = null;
+                changedUris = null;
             }
         }
 
+        /**
+         * Time taken by the last full execution, or -1 if it has not completed
+         */
+        final long getExecutionTime() {
+            return executionTime;
+        }
+
+        /**
+         * Time taken by the last incremental update, or -1 if there has not been one
+         */
+        final long getUpdateTime() {
+            return updateTime;
+        }
+
+        /**
+         * Time the current execution started, or -1 if it is not running
+         */
+        final long getStartedAt() {
+            return startedAt;
+        }
+
         /**
          * Method for users to implement, to return the results
          * @param rdfService An RDFService
@@ -465,121 +761,39 @@ public class CachingRDFServiceExecutor<T> {
     }
 
     /**
-     * Affinity class that serializes background processing for tasks given the same affinity
+     * Class to be implemented by user when the results can be maintained incrementally.
+     * Changes recorded by notifyChanges are applied to the existing results, with a full rebuild
+     * only happening periodically, as a consistency check.
+     * @param <T>
      */
-    public static class Affinity {
-        private final int maxThreads = 1;
-
-        static class ThreadControl {
-            ThreadControl(long started, long expectedDuration) {
-                this.started = started;
-                this.expectedDuration = expectedDuration;
-            }
-
-            final long started;
-            final long expectedDuration;
-            final CountDownLatch latch = new CountDownLatch(1);
-        }
-
-        // Map of executing threads, and the time they expect to need to execute
-        private final Map<Thread, ThreadControl> threadToExecutionTime = new HashMap<>();
-        private final Set<Thread> executingThreads = new HashSet<>();
+    public static abstract class IncrementalRDFServiceCallable<T> extends RDFServiceCallable<T> {
+        // Interval between full rebuilds of incrementally maintained results (one day)
+        private static final long FULL_REBUILD_INTERVAL = 86400000;
 
         /**
-         * Called by a background thread to determine if it is allowed to start
-         * @param expectedExecutionTime time that the thread expects to take (usually the last execution time)
+         * Default constructor
          */
-        private void requestStart(long expectedExecutionTime) {
-            Thread executingThread = Thread.currentThread();
-
-            // Ask if the task needs to be queued
-            CountDownLatch latch = queueThis(executingThread, expectedExecutionTime);
-
-            // We got a latch from the queue, so wait for it to clear
-            if (latch != null) {
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                }
-            }
-        }
+        public IncrementalRDFServiceCallable() { }
 
         /**
-         * Adds a thread to the map, returns whether the thread needs to wait
-         * @param thread The thread to add
-         * @param time start time of the thread
-         * @return true if the thread needs to wait, false if it can continue
+         * Method for users to implement, to apply changes to the existing results.
+         * The previous results may be in use by other threads, so must not be modified - return a new object
+         * (sharing any unchanged parts) or null if the results should be rebuilt in full.
+         *
+         * @param rdfService An RDFService
+         * @param previousResults The current results
+         * @param changedUris URIs of resources that have been added, removed or modified
+         * @throws Exception Any exception
          */
-        private synchronized CountDownLatch queueThis(Thread thread, Long time) {
-            // If we have fewer that the max threads running
-            if (executingThreads.size() < maxThreads) {
-                // Add thread to executing set
-                executingThreads.add(thread);
-
-                // Not queued - we can continue
-                return null;
-            } else {
-                ThreadControl control = new ThreadControl(System.currentTimeMillis(), time);
-
-                // Add the thread to the map
-                threadToExecutionTime.put(thread, control);
-
-                // Give the caller a handle to the latch for the queued thread
-                return control.latch;
-            }
-        }
+        protected abstract T updateWithService(RDFService rdfService, T previousResults, Set<String> changedUris) throws Exception;
 
         /**
-         * Complete a thread
+         * Incrementally maintained results only need a full rebuild once a day
+         * @param timeCached The time of caching
          */
-        private synchronized void complete() {
-            // Check that we are tracking this thread
-            if (executingThreads.contains(Thread.currentThread())) {
-
-                // Remove the thread from the map
-                executingThreads.remove(Thread.currentThread());
-
-                // If there are still threads to execute, and we have not exhausted maximum threads
-                while (threadToExecutionTime.size() > 0 && executingThreads.size() < maxThreads) {
-                    Thread nextToRelease = null;
-                    ThreadControl nextToReleaseControl = null;
-                    long current = System.currentTimeMillis();
-                    boolean favourStartTime = false;
-
-                    // Find the thread that expects to take the least time
-                    for (Thread thread : threadToExecutionTime.keySet()) {
-                        ThreadControl threadControl = threadToExecutionTime.get(thread);
-
-                        // If there are threads that have been waiting over 2 seconds, favour the oldest thread
-                        if (threadControl.started + 2000 < current) {
-                            favourStartTime = true;
-                        }
-
-                        if (nextToRelease == null) {
-                            nextToRelease = thread;
-                            nextToReleaseControl = threadControl;
-                        } else {
-                            if (favourStartTime) {
-                                // Find the oldest thread
-                                if (threadControl.started < nextToReleaseControl.started) {
-                                    nextToRelease = thread;
-                                    nextToReleaseControl = threadControl;
-                                }
-                            } else if (threadControl.expectedDuration < nextToReleaseControl.expectedDuration) {
-                                nextToRelease = thread;
-                                nextToReleaseControl = threadControl;
-                            }
-                        }
-                    }
-
-                    // Notify the Thread we are releasing to continue
-                    if (nextToRelease != null) {
-                        threadToExecutionTime.remove(nextToRelease);
-                        executingThreads.add(nextToRelease);
-                        nextToReleaseControl.latch.countDown();
-                    }
-                }
-            }
+        @Override
+        boolean invalidateCache(long timeCached) {
+            return getExecutionTime() > -1 && timeCached > FULL_REBUILD_INTERVAL;
         }
     }
 }
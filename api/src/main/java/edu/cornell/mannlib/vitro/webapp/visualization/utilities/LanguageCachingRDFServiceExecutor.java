@@ -0,0 +1,185 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache whose results depend on the language of the request (e.g. labels).
+ *
+ * Holds a separate CachingRDFServiceExecutor for each language that has been requested, so that requests in
+ * different languages each get cached results, rather than forcing the cache to be rebuilt whenever the
+ * language changes. Each language is built, refreshed and updated independently.
+ *
+ * @param <T>
+ */
+public class LanguageCachingRDFServiceExecutor<T> {
+    private static final Log log = LogFactory.getLog(LanguageCachingRDFServiceExecutor.class);
+
+    /**
+     * Language used when the request doesn't have one
+     */
+    public static final Locale DEFAULT_LOCALE = Locale.US;
+
+    /**
+     * Maximum number of languages to hold caches for - any others are served from the default language
+     */
+    private static final int MAX_LANGUAGES = 16;
+
+    /**
+     * Creates the task that generates the results for a language
+     * @param <T>
+     */
+    public interface CallableFactory<T> {
+        CachingRDFServiceExecutor.RDFServiceCallable<T> create(Locale locale);
+    }
+
+    private final String name;
+    private final CallableFactory<T> factory;
+    private final Map<String, CachingRDFServiceExecutor<T>> caches = new ConcurrentHashMap<>();
+
+    public LanguageCachingRDFServiceExecutor(String name, CallableFactory<T> factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the cached results for the language of the request
+     */
+    public T get(VitroRequest vreq) {
+        return forLocale(vreq.getLocale()).get(vreq.getRDFService());
+    }
+
+    /**
+     * Return the cached results for the language of the request, allowing a short wait for a refresh
+     */
+    public T getNoWait(VitroRequest vreq) {
+        return forLocale(vreq.getLocale()).getNoWait(vreq.getRDFService());
+    }
+
+    /**
+     * Return the cached results for the language of the request associated with the RDF service, if any
+     */
+    public T get(RDFService rdfService) {
+        return forLocale(localeOf(rdfService)).get(rdfService);
+    }
+
+    /**
+     * Return the cached results for the language of the request associated with the RDF service, if any,
+     * allowing a short wait for a refresh
+     */
+    public T getNoWait(RDFService rdfService) {
+        return forLocale(localeOf(rdfService)).getNoWait(rdfService);
+    }
+
+    /**
+     * Get the cache for a language, creating it if necessary
+     *
+     * @param locale the language (null for the default)
+     */
+    public CachingRDFServiceExecutor<T> forLocale(Locale locale) {
+        String tag = languageTag(locale == null ? DEFAULT_LOCALE : locale);
+
+        CachingRDFServiceExecutor<T> cache = caches.get(tag);
+        if (cache == null) {
+            synchronized (caches) {
+                cache = caches.get(tag);
+                if (cache == null) {
+                    if (caches.size() >= MAX_LANGUAGES && !tag.equals(languageTag(DEFAULT_LOCALE))) {
+                        log.warn("Too many languages for " + name + ", using " + languageTag(DEFAULT_LOCALE) + " for " + tag);
+                        return forLocale(DEFAULT_LOCALE);
+                    }
+
+                    cache = new CachingRDFServiceExecutor<T>(name + "@" + tag, factory.create(Locale.forLanguageTag(tag)));
+                    caches.put(tag, cache);
+                    VisualizationCacheMonitor.cacheCreated(cache);
+                }
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * Get the cache for a language tag (as used in the cache names), creating it if necessary
+     */
+    public CachingRDFServiceExecutor<T> forLanguageTag(String tag) {
+        return forLocale(Locale.forLanguageTag(tag));
+    }
+
+    /**
+     * The caches for each language that has been requested
+     */
+    public Collection<CachingRDFServiceExecutor<T>> getCaches() {
+        return new ArrayList<>(caches.values());
+    }
+
+    /**
+     * Determine if the default language is cached
+     */
+    public boolean isCached() {
+        return forLocale(DEFAULT_LOCALE).isCached();
+    }
+
+    /**
+     * (Re)build the cache for each language in use, or the default language if none have been requested
+     *
+     * @param rdfService an RDF service to use, if the background RDF service is not set
+     */
+    public void build(RDFService rdfService) {
+        List<CachingRDFServiceExecutor<T>> toBuild = new ArrayList<>(caches.values());
+        if (toBuild.isEmpty()) {
+            toBuild.add(forLocale(DEFAULT_LOCALE));
+        }
+
+        for (CachingRDFServiceExecutor<T> cache : toBuild) {
+            cache.build(rdfService);
+        }
+    }
+
+    /**
+     * Record resources that have changed, for every language
+     */
+    public void notifyChanges(Collection<String> uris) {
+        for (CachingRDFServiceExecutor<T> cache : caches.values()) {
+            cache.notifyChanges(uris);
+        }
+    }
+
+    /**
+     * Language tag for a locale, e.g. en-US
+     */
+    public static String languageTag(Locale locale) {
+        String tag = locale.getLanguage();
+        if (!locale.getCountry().isEmpty()) {
+            tag += "-" + locale.getCountry();
+        }
+        return tag;
+    }
+
+    /**
+     * The locale of the request associated with an RDF service, or null if there isn't one
+     */
+    private static Locale localeOf(RDFService rdfService) {
+        try {
+            VitroRequest vreq = rdfService.getVitroRequest();
+            return vreq == null ? null : vreq.getLocale();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -2,9 +2,14 @@
 
 package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
 
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdSets;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationHierarchy;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -14,10 +19,9 @@ public class OrgUtils {
         Map<String, String> parentURIsToLabel = new TreeMap<>();
 
         if (!StringUtils.isEmpty(org)) {
-            for (Map.Entry<String, Set<String>> orgMapEntry : subOrgMap.entrySet()) {
-                Set<String> subOrgs = orgMapEntry.getValue();
-                if (subOrgs != null && subOrgs.contains(org) && orgLabelMap.containsKey(orgMapEntry.getKey())) {
-                    parentURIsToLabel.put(orgMapEntry.getKey(), orgLabelMap.get(orgMapEntry.getKey()));
+            for (String parent : IdSets.asUriSet(OrganizationHierarchy.of(subOrgMap).getParentIds(org))) {
+                if (orgLabelMap.containsKey(parent)) {
+                    parentURIsToLabel.put(parent, orgLabelMap.get(parent));
                 }
             }
         }
@@ -34,55 +38,47 @@ public class OrgUtils {
             Map<String, Set<String>> organisationToPeopleMap,
             Map<String, Set<String>> personToObjectMap
     ) {
+        // Work with the compact ids, so that the unions are over int arrays rather than sets of strings
+        OrganizationHierarchy hierarchy = OrganizationHierarchy.of(subOrgMap);
+        IdAdjacency orgToPeople = IdAdjacency.of(organisationToPeopleMap);
+        IdAdjacency personToObjects = IdAdjacency.of(personToObjectMap);
+
+        List<int[]> orgPeopleIds = new ArrayList<int[]>();
+        List<int[]> orgObjectIds = new ArrayList<int[]>();
+
         if (subOrgMap.containsKey(orgUri)) {
             for (String topSubOrg : subOrgMap.get(orgUri)) {
-                Set<String> subOrgPublications       = new HashSet<String>();
-                Set<String> subOrgPublicationsPeople = new HashSet<String>();
-
-                Set<String> fullSubOrgs  = OrgUtils.orgAndAllSubOrgs(new HashSet<String>(), topSubOrg, subOrgMap);
-
-                for (String subOrg : fullSubOrgs) {
-                    Set<String> peopleInSubOrg = organisationToPeopleMap.get(subOrg);
-                    if (peopleInSubOrg != null) {
-                        for (String person : peopleInSubOrg) {
-                            if (personToObjectMap.containsKey(person)) {
-                                if (subOrgPublicationsPeople.add(person)) {
-                                    subOrgPublications.addAll(personToObjectMap.get(person));
-
-                                    if (orgObjectsIncludesPeople.add(person)) {
-                                        orgObjects.addAll(personToObjectMap.get(person));
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+                int[] fullSubOrgs = hierarchy.getOrgAndAllSubOrgIds(topSubOrg);
 
-                subOrgObjectMap.put(topSubOrg, subOrgPublications);
-            }
-        }
+                // Only the people in the sub organizations that have objects are included
+                int[] subOrgPeople = withObjects(orgToPeople.getAll(fullSubOrgs), personToObjects);
+                int[] subOrgObjects = personToObjects.getAll(subOrgPeople);
 
-        Set<String> people = organisationToPeopleMap.get(orgUri);
-        if (people != null) {
-            for (String person : people) {
-                if (orgObjectsIncludesPeople.add(person)) {
-                    if (personToObjectMap.containsKey(person)) {
-                        orgObjects.addAll(personToObjectMap.get(person));
-                    }
-                }
+                orgPeopleIds.add(subOrgPeople);
+                orgObjectIds.add(subOrgObjects);
+
+                subOrgObjectMap.put(topSubOrg, IdSets.asUriSet(subOrgObjects));
             }
         }
+
+        // Everyone directly in the organization is included
+        int[] people = orgToPeople.get(orgUri);
+        orgPeopleIds.add(people);
+        orgObjectIds.add(personToObjects.getAll(people));
+
+        orgObjectsIncludesPeople.addAll(IdSets.asUriSet(IdSets.union(orgPeopleIds)));
+        orgObjects.addAll(IdSets.asUriSet(IdSets.union(orgObjectIds)));
     }
 
-    private static Set<String> orgAndAllSubOrgs(Set<String> allSubOrgs, String org, Map<String, Set<String>> subOrgMap) {
-        if (allSubOrgs.add(org)) {
-            if (subOrgMap.containsKey(org)) {
-                for (String subOrg : subOrgMap.get(org)) {
-                    orgAndAllSubOrgs(allSubOrgs, subOrg, subOrgMap);
-                }
+    private static int[] withObjects(int[] people, IdAdjacency personToObjects) {
+        int[] result = new int[people.length];
+        int count = 0;
+        for (int person : people) {
+            if (personToObjects.count(person) > 0) {
+                result[count++] = person;
             }
         }
 
-        return allSubOrgs;
+        return Arrays.copyOf(result, count);
     }
 }
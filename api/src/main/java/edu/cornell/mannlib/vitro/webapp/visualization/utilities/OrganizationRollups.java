@@ -0,0 +1,378 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdSets;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationHierarchy;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The activities (e.g. publications or grants) of each organization, including its sub-organizations.
+ *
+ * Rather than walking the sub-organizations and combining everyone's activities on each request, the rollup of an
+ * organization is calculated the first time it is requested and kept for as long as the cached maps it was
+ * calculated from. Counts derived from a rollup (e.g. by year, or by subdiscipline) are kept with it in the same way.
+ *
+ * When the activities of some people change (e.g. an incremental update of the cache), only the rollups of their
+ * organizations, and the organizations above them, are discarded.
+ */
+public final class OrganizationRollups {
+    /**
+     * The current rollups for each kind of activity
+     */
+    private static final Map<String, OrganizationRollups> current = new ConcurrentHashMap<>();
+
+    private static final String SUB_ORG_OVERLAPS = "subOrgOverlaps";
+
+    private final Map<String, Set<String>> subOrgMap;
+    private final Map<String, Set<String>> organisationToPeopleMap;
+    private final Map<String, Set<String>> personToObjectMap;
+
+    private final OrganizationHierarchy hierarchy;
+    private final IdAdjacency orgToPeople;
+    private final IdAdjacency personToObjects;
+
+    private final ConcurrentHashMap<String, Rollup> rollups = new ConcurrentHashMap<>();
+
+    private OrganizationRollups(Map<String, Set<String>> subOrgMap,
+                                Map<String, Set<String>> organisationToPeopleMap,
+                                Map<String, Set<String>> personToObjectMap) {
+        this.subOrgMap = subOrgMap;
+        this.organisationToPeopleMap = organisationToPeopleMap;
+        this.personToObjectMap = personToObjectMap;
+
+        this.hierarchy = OrganizationHierarchy.of(subOrgMap);
+        this.orgToPeople = IdAdjacency.of(organisationToPeopleMap);
+        this.personToObjects = IdAdjacency.of(personToObjectMap);
+    }
+
+    /**
+     * Get the rollups for a kind of activity, reusing the current rollups if they were calculated from the same maps
+     *
+     * @param name the kind of activity, e.g. publications
+     * @param subOrgMap organization to direct sub-organizations
+     * @param organisationToPeopleMap organization to the people directly in it
+     * @param personToObjectMap person to activities
+     */
+    public static OrganizationRollups of(String name,
+                                         Map<String, Set<String>> subOrgMap,
+                                         Map<String, Set<String>> organisationToPeopleMap,
+                                         Map<String, Set<String>> personToObjectMap) {
+        OrganizationRollups rollups = current.get(name);
+        if (rollups != null && rollups.isFor(subOrgMap, organisationToPeopleMap, personToObjectMap)) {
+            return rollups;
+        }
+
+        synchronized (current) {
+            OrganizationRollups previous = current.get(name);
+            if (previous != null && previous.isFor(subOrgMap, organisationToPeopleMap, personToObjectMap)) {
+                return previous;
+            }
+
+            rollups = new OrganizationRollups(subOrgMap, organisationToPeopleMap, personToObjectMap);
+            if (previous != null && previous.subOrgMap == subOrgMap && previous.organisationToPeopleMap == organisationToPeopleMap) {
+                // Only the activities have changed, so keep the rollups that are not affected
+                rollups.retainUnaffected(previous);
+            }
+
+            current.put(name, rollups);
+            return rollups;
+        }
+    }
+
+    /**
+     * Get the rollup of an organization
+     */
+    public Rollup get(String org) {
+        Rollup rollup = rollups.get(org);
+        if (rollup == null) {
+            rollup = calculate(org);
+
+            // If another thread calculated it at the same time, use theirs so that derived values are shared
+            Rollup existing = rollups.putIfAbsent(org, rollup);
+            if (existing != null) {
+                rollup = existing;
+            }
+        }
+
+        return rollup;
+    }
+
+    /**
+     * The direct sub-organizations of an organization
+     */
+    public Set<String> getSubOrgs(String org) {
+        Set<String> subOrgs = subOrgMap.get(org);
+        return subOrgs == null ? Collections.<String>emptySet() : subOrgs;
+    }
+
+    /**
+     * The activities of each direct sub-organization (including their sub-organizations)
+     */
+    public Map<String, Set<String>> getSubOrgObjects(String org) {
+        Map<String, Set<String>> subOrgObjects = new LinkedHashMap<>();
+        for (String subOrg : getSubOrgs(org)) {
+            subOrgObjects.put(subOrg, get(subOrg).getObjects());
+        }
+        return subOrgObjects;
+    }
+
+    /**
+     * The rollups of the direct sub-organizations, in the order of getSubOrgs, calculated in parallel for any
+     * that haven't been calculated already
+     */
+    public Map<String, Rollup> getSubOrgRollups(String org) {
+        final List<String> subOrgs = new ArrayList<>(getSubOrgs(org));
+
+        List<Callable<Rollup>> rollupTasks = new ArrayList<>(subOrgs.size());
+        for (final String subOrg : subOrgs) {
+            rollupTasks.add(new Callable<Rollup>() {
+                @Override
+                public Rollup call() {
+                    return get(subOrg);
+                }
+            });
+        }
+        List<Rollup> rollups = ParallelUtils.invokeAll(rollupTasks, "calculating organization rollups");
+
+        Map<String, Rollup> subOrgRollups = new LinkedHashMap<>();
+        for (int i = 0; i < subOrgs.size(); i++) {
+            subOrgRollups.put(subOrgs.get(i), rollups.get(i));
+        }
+        return subOrgRollups;
+    }
+
+    /**
+     * Number of activities shared by each pair of direct sub-organizations (including their sub-organizations),
+     * calculated once for each organization, with the sub-organizations shared between the available processors.
+     * The diagonal is the number of activities of each sub-organization.
+     */
+    public SubOrgOverlaps getSubOrgOverlaps(final String org) {
+        return get(org).derive(SUB_ORG_OVERLAPS, subOrgMap, new Derivation<SubOrgOverlaps>() {
+            @Override
+            public SubOrgOverlaps derive(Rollup rollup) {
+                return calculateOverlaps(org);
+            }
+        });
+    }
+
+    private SubOrgOverlaps calculateOverlaps(String org) {
+        // Roll up each sub-organization, then count the activities it shares with those after it
+        Map<String, Rollup> subOrgRollups = getSubOrgRollups(org);
+        final List<String> subOrgs = new ArrayList<>(subOrgRollups.keySet());
+        final int count = subOrgs.size();
+
+        final List<int[]> objects = new ArrayList<>(count);
+        for (Rollup rollup : subOrgRollups.values()) {
+            objects.add(rollup.getObjectIds());
+        }
+
+        List<Callable<int[]>> rowTasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int row = i;
+            rowTasks.add(new Callable<int[]>() {
+                @Override
+                public int[] call() {
+                    int[] shared = new int[count];
+                    shared[row] = objects.get(row).length;
+                    for (int column = row + 1; column < count; column++) {
+                        shared[column] = IdSets.intersectionSize(objects.get(row), objects.get(column));
+                    }
+                    return shared;
+                }
+            });
+        }
+        List<int[]> rows = ParallelUtils.invokeAll(rowTasks, "calculating organization rollups");
+
+        int[][] counts = new int[count][];
+        for (int i = 0; i < count; i++) {
+            counts[i] = rows.get(i);
+            for (int j = 0; j < i; j++) {
+                counts[i][j] = counts[j][i];
+            }
+        }
+
+        return new SubOrgOverlaps(Collections.unmodifiableList(subOrgs), counts);
+    }
+
+    private boolean isFor(Map<String, Set<String>> subOrgMap,
+                          Map<String, Set<String>> organisationToPeopleMap,
+                          Map<String, Set<String>> personToObjectMap) {
+        return this.subOrgMap == subOrgMap &&
+                this.organisationToPeopleMap == organisationToPeopleMap &&
+                this.personToObjectMap == personToObjectMap;
+    }
+
+    private Rollup calculate(String org) {
+        // Everyone in the organization and its sub-organizations who has an activity
+        int[] people = withObjects(orgToPeople.getAll(hierarchy.getOrgAndAllSubOrgIds(org)));
+
+        // As before, people directly in the organization are included even if they have no activities
+        return new Rollup(personToObjects.getAll(people), IdSets.union(orgToPeople.get(org), people));
+    }
+
+    private int[] withObjects(int[] people) {
+        int[] result = new int[people.length];
+        int count = 0;
+        for (int person : people) {
+            if (personToObjects.count(person) > 0) {
+                result[count++] = person;
+            }
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Copy the rollups of the previous generation that are not affected by the changed activities
+     */
+    private void retainUnaffected(OrganizationRollups previous) {
+        int[] changedPeople = personToObjects.changedKeys(previous.personToObjects);
+        if (changedPeople.length == 0) {
+            rollups.putAll(previous.rollups);
+            return;
+        }
+
+        // The organizations of the changed people, and every organization above them
+        int[] changedOrgs = orgToPeople.inverse().getAll(changedPeople);
+        int[] affected = hierarchy.getOrgsAndAllParentIds(changedOrgs);
+
+        UriDictionary dictionary = UriDictionary.getInstance();
+        for (Map.Entry<String, Rollup> entry : previous.rollups.entrySet()) {
+            if (!IdSets.contains(affected, dictionary.lookup(entry.getKey()))) {
+                rollups.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Calculates a value from the rollup of an organization
+     */
+    public interface Derivation<V> {
+        V derive(Rollup rollup);
+    }
+
+    /**
+     * Activities shared by the direct sub-organizations of an organization
+     */
+    public static final class SubOrgOverlaps {
+        private final List<String> subOrgs;
+        private final int[][] counts;
+
+        SubOrgOverlaps(List<String> subOrgs, int[][] counts) {
+            this.subOrgs = subOrgs;
+            this.counts = counts;
+        }
+
+        /**
+         * The sub-organizations, in the order of the rows and columns
+         */
+        public List<String> getSubOrgs() {
+            return subOrgs;
+        }
+
+        /**
+         * Number of activities shared by two sub-organizations, by position
+         */
+        public int getCount(int row, int column) {
+            return counts[row][column];
+        }
+    }
+
+    /**
+     * The activities of an organization and its sub-organizations, and values derived from them
+     */
+    public static final class Rollup {
+        private static final String COUNT_BY_YEAR = "countByYear";
+
+        private final int[] objects;
+        private final int[] people;
+
+        private final Map<String, Derived> derived = new ConcurrentHashMap<>();
+
+        Rollup(int[] objects, int[] people) {
+            this.objects = objects;
+            this.people = people;
+        }
+
+        /**
+         * The activities, as a sorted id array
+         */
+        public int[] getObjectIds() {
+            return objects;
+        }
+
+        public Set<String> getObjects() {
+            return IdSets.asUriSet(objects);
+        }
+
+        /**
+         * People in the organization, and people in the sub-organizations with activities
+         */
+        public Set<String> getPeople() {
+            return IdSets.asUriSet(people);
+        }
+
+        public int size() {
+            return objects.length;
+        }
+
+        public boolean isEmpty() {
+            return objects.length == 0;
+        }
+
+        /**
+         * Count of the activities for each year, as returned by CounterUtils.getObjectCountByYear
+         *
+         * @param objectToYearMap the cached map of activity to year
+         */
+        public List<List<Integer>> getCountByYear(final Map<String, String> objectToYearMap) {
+            return derive(COUNT_BY_YEAR, objectToYearMap, new Derivation<List<List<Integer>>>() {
+                @Override
+                public List<List<Integer>> derive(Rollup rollup) {
+                    return Collections.unmodifiableList(CounterUtils.getObjectCountByYear(rollup.getObjects(), objectToYearMap));
+                }
+            });
+        }
+
+        /**
+         * Get a value derived from the rollup, calculating it if it hasn't been calculated from the same input.
+         * The value is shared by all requests, so must not be modified.
+         *
+         * @param key name of the value
+         * @param input the cached map the value is calculated from (compared by identity)
+         * @param derivation calculates the value
+         */
+        @SuppressWarnings("unchecked")
+        public <V> V derive(String key, Object input, Derivation<V> derivation) {
+            Derived value = derived.get(key);
+            if (value == null || value.input != input) {
+                value = new Derived(input, derivation.derive(this));
+                derived.put(key, value);
+            }
+
+            return (V) value.value;
+        }
+    }
+
+    private static final class Derived {
+        final Object input;
+        final Object value;
+
+        Derived(Object input, Object value) {
+            this.input = input;
+            this.value = value;
+        }
+    }
+}
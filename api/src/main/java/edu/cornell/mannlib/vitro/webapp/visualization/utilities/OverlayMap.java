@@ -0,0 +1,178 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read only map of cached results that have been updated incrementally: the map from the last full build, which is
+ * never modified, with a small overlay of the entries replaced or removed since.
+ *
+ * An update copies the overlay rather than the whole map, so the cost of a batch of changes depends on the number
+ * of changes since the last full build, not the size of the map. Once the overlay has grown to a sixteenth of the
+ * base, it is folded into a new base, so lookups never go through more than two maps, and the copying amounts to a
+ * small constant for each changed entry. Values must not be null.
+ */
+final class OverlayMap<V> extends AbstractMap<String, V> {
+    /**
+     * Fewest changed entries worth folding into a new base
+     */
+    private static final int MIN_FOLD_SIZE = 1024;
+
+    private static final int FOLD_FRACTION = 16;
+
+    private final Map<String, V> base;
+
+    /**
+     * Entries added or replaced since the base was built, with null for the keys of the base that have been removed
+     */
+    private final Map<String, V> overlay;
+
+    private final int size;
+
+    private OverlayMap(Map<String, V> base, Map<String, V> overlay, int size) {
+        this.base = base;
+        this.overlay = overlay;
+        this.size = size;
+    }
+
+    /**
+     * Create an updated copy of a map, leaving the map unchanged
+     *
+     * @param map existing map
+     * @param keys keys to remove from the copy
+     * @param replacements new entries to add to the copy
+     * @return the updated copy
+     */
+    static <V> Map<String, V> replace(Map<String, V> map, Collection<String> keys, Map<String, V> replacements) {
+        Map<String, V> base;
+        Map<String, V> overlay;
+        int size;
+        if (map instanceof OverlayMap) {
+            OverlayMap<V> previous = (OverlayMap<V>) map;
+            base = previous.base;
+            overlay = new HashMap<>(previous.overlay);
+            size = previous.size;
+        } else {
+            base = map;
+            overlay = new HashMap<>();
+            size = map.size();
+        }
+
+        for (String key : keys) {
+            if (get(base, overlay, key) != null) {
+                size--;
+            }
+
+            if (base.containsKey(key)) {
+                overlay.put(key, null);
+            } else {
+                overlay.remove(key);
+            }
+        }
+
+        for (Map.Entry<String, V> entry : replacements.entrySet()) {
+            if (get(base, overlay, entry.getKey()) == null) {
+                size++;
+            }
+
+            overlay.put(entry.getKey(), entry.getValue());
+        }
+
+        OverlayMap<V> updated = new OverlayMap<>(base, overlay, size);
+        if (overlay.size() > Math.max(MIN_FOLD_SIZE, base.size() / FOLD_FRACTION)) {
+            return new HashMap<>(updated);
+        }
+
+        return updated;
+    }
+
+    private static <V> V get(Map<String, V> base, Map<String, V> overlay, Object key) {
+        return overlay.containsKey(key) ? overlay.get(key) : base.get(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return get(base, overlay, key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(base, overlay, key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        return new AbstractSet<Map.Entry<String, V>>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, V>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    /**
+     * The entries of the base that haven't been replaced or removed, then the entries added by the overlay
+     */
+    private final class EntryIterator implements Iterator<Map.Entry<String, V>> {
+        private final Iterator<Map.Entry<String, V>> baseEntries = base.entrySet().iterator();
+        private final Iterator<Map.Entry<String, V>> overlayEntries = overlay.entrySet().iterator();
+        private Map.Entry<String, V> next = advance();
+
+        private Map.Entry<String, V> advance() {
+            while (baseEntries.hasNext()) {
+                Map.Entry<String, V> entry = baseEntries.next();
+                if (!overlay.containsKey(entry.getKey())) {
+                    return new SimpleImmutableEntry<>(entry);
+                }
+            }
+
+            while (overlayEntries.hasNext()) {
+                Map.Entry<String, V> entry = overlayEntries.next();
+                if (entry.getValue() != null) {
+                    return new SimpleImmutableEntry<>(entry);
+                }
+            }
+
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            Map.Entry<String, V> entry = next;
+            next = advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
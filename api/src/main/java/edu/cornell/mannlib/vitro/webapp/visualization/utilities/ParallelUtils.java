@@ -0,0 +1,50 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers for sharing the work of a visualization request between the available processors
+ */
+public class ParallelUtils {
+    /**
+     * Number of tasks to share work between - one per processor, as long as each has a worthwhile amount of work
+     *
+     * @param size number of items of work
+     * @param minPerTask fewest items worth giving to a separate task
+     */
+    public static int partsFor(int size, int minPerTask) {
+        return Math.min(Runtime.getRuntime().availableProcessors(), size / minPerTask);
+    }
+
+    /**
+     * Run tasks in the common fork/join pool, returning their results in order
+     *
+     * @param tasks tasks to run
+     * @param activity what the tasks are doing, for the message of any exception, e.g. "calculating rollups"
+     */
+    public static <T> List<T> invokeAll(List<Callable<T>> tasks, String activity) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted " + activity, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Error " + activity, e.getCause());
+        }
+
+        return results;
+    }
+}
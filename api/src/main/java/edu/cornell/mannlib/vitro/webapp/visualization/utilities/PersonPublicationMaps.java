@@ -1,33 +1,34 @@
 /* $This file is distributed under the terms of the license in LICENSE$ */
 package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+
 import java.util.Map;
 import java.util.Set;
 
 public class PersonPublicationMaps {
-    public Map<String, Set<String>> personToPublication = new HashMap<String, Set<String>>();
-    public Map<String, Set<String>> publicationToPerson = new HashMap<String, Set<String>>();
-
-    public void put(String person, String document) {
-        Set<String> documentSet = personToPublication.get(person);
-        if (documentSet == null) {
-            documentSet = new HashSet<String>();
-            documentSet.add(document);
-            personToPublication.put(person, documentSet);
-        } else {
-            documentSet.add(document);
-        }
-
-        Set<String> personSet = publicationToPerson.get(document);
-        if (personSet == null) {
-            personSet = new HashSet<String>();
-            personSet.add(person);
-            publicationToPerson.put(document, personSet);
-        } else {
-            personSet.add(person);
-        }
+    public final Map<String, Set<String>> personToPublication;
+    public final Map<String, Set<String>> publicationToPerson;
+
+    private final IdAdjacency personToPublicationIds;
+    private final IdAdjacency publicationToPersonIds;
+
+    public PersonPublicationMaps() {
+        this(IdAdjacency.empty());
+    }
+
+    public PersonPublicationMaps(IdAdjacency personToPublicationIds) {
+        this.personToPublicationIds = personToPublicationIds;
+        this.publicationToPersonIds = personToPublicationIds.inverse();
+        this.personToPublication = this.personToPublicationIds.asMap();
+        this.publicationToPerson = this.publicationToPersonIds.asMap();
+    }
+
+    public IdAdjacency getPersonToPublicationIds() {
+        return personToPublicationIds;
     }
-}
 
+    public IdAdjacency getPublicationToPersonIds() {
+        return publicationToPersonIds;
+    }
+}
@@ -122,6 +122,18 @@ public class UtilitiesRequestHandler implements VisualizationRequestHandler {
 		} else if (VisualizationFrameworkConstants.ARE_PUBLICATIONS_AVAILABLE_UTILS_VIS_MODE
 						.equalsIgnoreCase(visMode)) {
 
+			ObjectMapper mapper = new ObjectMapper();
+
+			// Look up the count in the summaries of the cached publications, if they are available
+			if (VisualizationCaches.publicationSummariesCached()) {
+				GenericQueryMap queryResult = new GenericQueryMap();
+				queryResult.addEntry("numOfPublications", String.valueOf(
+						VisualizationCaches.publicationSummaries(vitroRequest.getRDFService())
+								.get(individualURI).getCount()));
+
+				return mapper.writeValueAsString(queryResult);
+			}
+
 			Map<String, String> fieldLabelToOutputFieldLabel = new HashMap<String, String>();
 
 			String aggregationRules = "(count(DISTINCT ?document) AS ?numOfPublications)";
@@ -145,13 +157,23 @@ public class UtilitiesRequestHandler implements VisualizationRequestHandler {
 			NumPubsForIndividualConsumer consumer = new NumPubsForIndividualConsumer();
 			numberOfPublicationsQueryHandler.sparqlSelectQuery(vitroRequest.getRDFService(), consumer);
 
-			ObjectMapper mapper = new ObjectMapper();
-
 			return mapper.writeValueAsString(consumer.getMap());
 
 		} else if (VisualizationFrameworkConstants.ARE_GRANTS_AVAILABLE_UTILS_VIS_MODE
 						.equalsIgnoreCase(visMode)) {
 
+			ObjectMapper mapper = new ObjectMapper();
+
+			// Look up the count in the cached investigator roles, if they are available
+			if (VisualizationCaches.personToInvestigatorGrant.isCached()) {
+				GenericQueryMap queryResult = new GenericQueryMap();
+				queryResult.addEntry("numOfGrants", String.valueOf(
+						VisualizationCaches.personToInvestigatorGrant.get(vitroRequest.getRDFService())
+								.getPersonToGrantIds().get(individualURI).length));
+
+				return mapper.writeValueAsString(queryResult);
+			}
+
 			Map<String, String> fieldLabelToOutputFieldLabel = new HashMap<String, String>();
 
 			String aggregationRules = "(count(DISTINCT ?Grant) AS ?numOfGrants)";
@@ -187,7 +209,6 @@ public class UtilitiesRequestHandler implements VisualizationRequestHandler {
 			NumGrantsForIndividualConsumer consumer = new NumGrantsForIndividualConsumer();
 			numberOfGrantsQueryHandler.sparqlSelectQuery(vitroRequest.getRDFService(), consumer);
 
-			ObjectMapper mapper = new ObjectMapper();
 			return mapper.writeValueAsString(consumer.getMap());
 
 		} else if (VisualizationFrameworkConstants.COAUTHOR_UTILS_VIS_MODE
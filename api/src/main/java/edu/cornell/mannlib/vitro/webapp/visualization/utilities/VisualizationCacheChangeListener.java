@@ -0,0 +1,127 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import org.apache.jena.rdf.listeners.StatementListener;
+import org.apache.jena.rdf.model.Statement;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Listens for changes to the triple store, and passes the resources affected by them to the visualization caches,
+ * so that they can be updated incrementally rather than rebuilt.
+ *
+ * Only statements using predicates that appear in the cache queries are of interest.
+ *
+ * The listener is called on the thread writing to the triple store, once for every statement, so it only records
+ * the resources. They are passed on to the caches in batches, by a task on the cache refresh threads.
+ */
+public class VisualizationCacheChangeListener extends StatementListener {
+    private static final String CORE   = "http://vivoweb.org/ontology/core#";
+    private static final String OBO    = "http://purl.obolibrary.org/obo/";
+    private static final String FOAF   = "http://xmlns.com/foaf/0.1/";
+    private static final String VCARD  = "http://www.w3.org/2006/vcard/ns#";
+    private static final String PUBLIC = "http://vitro.mannlib.cornell.edu/ns/vitro/public#";
+
+    private static final Set<String> RELEVANT_PREDICATES = new HashSet<>(Arrays.asList(
+            "http://www.w3.org/1999/02/22-rdf-syntax-ns#type",
+            "http://www.w3.org/2000/01/rdf-schema#label",
+            "http://vitro.mannlib.cornell.edu/ns/vitro/0.7#mostSpecificType",
+            CORE + "relatedBy",
+            CORE + "relates",
+            CORE + "dateTimeValue",
+            CORE + "dateTimeInterval",
+            CORE + "dateTime",
+            CORE + "start",
+            CORE + "hasPublicationVenue",
+            CORE + "publicationVenueFor",
+            CORE + "hasResearchArea",
+            CORE + "researchAreaOf",
+            OBO + "BFO_0000050",
+            OBO + "BFO_0000051",
+            OBO + "RO_0000052",
+            OBO + "RO_0000053",
+            OBO + "ARG_2000028",
+            FOAF + "firstName",
+            FOAF + "lastName",
+            VCARD + "hasName",
+            VCARD + "familyName",
+            VCARD + "givenName",
+            VCARD + "hasTitle",
+            VCARD + "title",
+            PUBLIC + "mainImage",
+            PUBLIC + "thumbnailImage",
+            PUBLIC + "downloadLocation",
+            PUBLIC + "directDownloadUrl"
+    ));
+
+    /**
+     * Resources changed since the last batch was passed to the caches
+     */
+    private final Set<String> changedUris = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Whether a task to pass on the changed resources is waiting to run
+     */
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    @Override
+    public void addedStatement(Statement stmt) {
+        notifyChange(stmt);
+    }
+
+    @Override
+    public void removedStatement(Statement stmt) {
+        notifyChange(stmt);
+    }
+
+    private void notifyChange(Statement stmt) {
+        if (!RELEVANT_PREDICATES.contains(stmt.getPredicate().getURI())) {
+            return;
+        }
+
+        if (stmt.getSubject().isURIResource()) {
+            changedUris.add(stmt.getSubject().getURI());
+        }
+
+        if (stmt.getObject().isURIResource()) {
+            changedUris.add(stmt.getObject().asResource().getURI());
+        }
+
+        if (!changedUris.isEmpty() && flushQueued.compareAndSet(false, true)) {
+            CacheRefreshScheduler.submit("Visualization cache changes", new Callable<Void>() {
+                @Override
+                public Void call() {
+                    flush();
+                    return null;
+                }
+            }, CacheRefreshScheduler.Priority.WAITING, null);
+        }
+    }
+
+    /**
+     * Pass the resources changed since the last batch to the caches
+     */
+    void flush() {
+        // Cleared first, so that a change recorded while the batch is being taken queues another task
+        flushQueued.set(false);
+
+        Set<String> batch = new HashSet<>();
+        Iterator<String> iterator = changedUris.iterator();
+        while (iterator.hasNext()) {
+            batch.add(iterator.next());
+            iterator.remove();
+        }
+
+        if (!batch.isEmpty()) {
+            VisualizationCaches.notifyChanges(batch);
+        }
+    }
+}
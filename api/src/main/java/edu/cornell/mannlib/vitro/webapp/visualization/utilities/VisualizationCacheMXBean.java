@@ -0,0 +1,73 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+/**
+ * Management interface for a visualization cache, reporting how it is used and how long it takes to build.
+ *
+ * Times are in milliseconds since the epoch, and durations in milliseconds; -1 where there is no value.
+ */
+public interface VisualizationCacheMXBean {
+    String getName();
+
+    /** Whether there are results in the cache */
+    boolean isCached();
+
+    /** When the cached results were generated (or last rebuilt in full, if they are updated incrementally) */
+    long getCacheTime();
+
+    /** When the cached results were last replaced */
+    long getLastRefreshed();
+
+    /** Time from queueing to completing the last refresh, including any wait for a thread */
+    long getLastRefreshDuration();
+
+    /** Time taken by the last full build (callWithService) */
+    long getLastBuildTime();
+
+    /** Time taken by the last incremental update */
+    long getLastUpdateTime();
+
+    long getFullBuilds();
+
+    long getIncrementalUpdates();
+
+    long getFailures();
+
+    /** The exception that caused the last failure, or null if it hasn't failed */
+    String getLastFailure();
+
+    /** Requests served from the cached results without waiting */
+    long getHits();
+
+    /** Requests that had to wait for the cache to be built, as there were no results */
+    long getMisses();
+
+    /** Requests that waited briefly for a refresh to complete */
+    long getWaits();
+
+    /** Total time requests have spent waiting, for misses and waits */
+    long getTotalWaitTime();
+
+    /** Approximate memory used by the cached results, in bytes */
+    long getEstimatedSize();
+
+    /** Number of changed resources waiting to be applied, or -1 if a full rebuild is required */
+    int getPendingChanges();
+
+    /** RUNNING or QUEUED if there is a background task, otherwise IDLE */
+    String getTaskState();
+
+    /** Priority of the background task, or null if there isn't one */
+    String getTaskPriority();
+
+    /** Whether the background task is applying changes, rather than rebuilding in full */
+    boolean isTaskIncremental();
+
+    long getTaskQueuedAt();
+
+    long getTaskStartedAt();
+
+    /** Reset the hit, miss, wait and failure counts */
+    void resetCounters();
+}
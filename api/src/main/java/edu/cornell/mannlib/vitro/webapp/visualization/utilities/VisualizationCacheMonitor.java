@@ -0,0 +1,137 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Publishes the statistics of the visualization caches, and the state of the refresh threads, as JMX MBeans.
+ *
+ * Each cache is registered as type=VisualizationCache, with its name as the key; caches for additional
+ * languages are registered as they are created.
+ */
+public final class VisualizationCacheMonitor {
+    private static final Log log = LogFactory.getLog(VisualizationCacheMonitor.class);
+
+    public static final String DOMAIN = "edu.cornell.mannlib.vitro.webapp.visualization";
+
+    private static MBeanServer server = null;
+    private static final List<ObjectName> registered = new ArrayList<>();
+
+    private VisualizationCacheMonitor() { }
+
+    /**
+     * Register the MBeans with the platform MBean server (called from a startup servlet)
+     */
+    public static synchronized void register() {
+        if (server != null) {
+            return;
+        }
+
+        server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(new ObjectName(DOMAIN + ":type=CacheRefreshScheduler"),
+                    new StandardMBean(new SchedulerMonitor(), CacheRefreshSchedulerMXBean.class, true));
+        } catch (JMException e) {
+            log.warn("Unable to register visualization cache scheduler MBean", e);
+        }
+
+        for (CachingRDFServiceExecutor<?> cache : VisualizationCaches.getCaches()) {
+            registerCache(cache);
+        }
+    }
+
+    /**
+     * Register a cache that has been created after startup
+     */
+    static synchronized void cacheCreated(CachingRDFServiceExecutor<?> cache) {
+        if (server != null) {
+            registerCache(cache);
+        }
+    }
+
+    /**
+     * Remove all of the MBeans, so that they don't outlive the application
+     */
+    public static synchronized void unregister() {
+        if (server == null) {
+            return;
+        }
+
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                log.warn("Unable to unregister " + name, e);
+            }
+        }
+
+        registered.clear();
+        server = null;
+    }
+
+    private static void registerCache(CachingRDFServiceExecutor<?> cache) {
+        try {
+            register(new ObjectName(DOMAIN + ":type=VisualizationCache,name=" + ObjectName.quote(cache.getName())),
+                    new StandardMBean(cache.getStatistics(), VisualizationCacheMXBean.class, true));
+        } catch (JMException e) {
+            log.warn("Unable to register MBean for visualization cache " + cache.getName(), e);
+        }
+    }
+
+    private static void register(ObjectName name, Object mbean) throws JMException {
+        if (!registered.contains(name)) {
+            server.registerMBean(mbean, name);
+            registered.add(name);
+        }
+    }
+
+    /**
+     * Exposes the static CacheRefreshScheduler as an MBean
+     */
+    private static final class SchedulerMonitor implements CacheRefreshSchedulerMXBean {
+        @Override
+        public int getMaxThreads() {
+            return CacheRefreshScheduler.getMaxThreads();
+        }
+
+        @Override
+        public void setMaxThreads(int threads) {
+            CacheRefreshScheduler.setMaxThreads(threads);
+        }
+
+        @Override
+        public int getRunningTasks() {
+            return count(CacheRefreshScheduler.State.RUNNING);
+        }
+
+        @Override
+        public int getQueuedTasks() {
+            return count(CacheRefreshScheduler.State.QUEUED);
+        }
+
+        @Override
+        public List<CacheRefreshScheduler.TaskInfo> getTasks() {
+            return CacheRefreshScheduler.getTasks();
+        }
+
+        private int count(CacheRefreshScheduler.State state) {
+            int count = 0;
+            for (CacheRefreshScheduler.TaskInfo task : CacheRefreshScheduler.getTasks()) {
+                if (task.getState() == state) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,707 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptLabelMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptPeopleMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationPeopleMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.Person;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.PersonDirectory;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.PersonGrantRoles;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Saves the visualization caches to a snapshot file, and restores them from it, so that after a restart
+ * the visualizations can be served immediately, rather than waiting for the caches to be rebuilt.
+ *
+ * Restored caches are rebuilt in the background the first time they are used, as the triple store
+ * may have changed whilst the application was not running.
+ *
+ * The snapshot is a binary file containing a section for each cache, holding the time the cache was built
+ * and its contents. Within a section, each distinct string is written once, and referred to by index after that.
+ * Sections for caches that are not recognised, or that can't be read, are skipped.
+ *
+ * Once a snapshot file has been set, it is loaded by the cache refresh threads, and saved again after caches have
+ * been rebuilt in full (at most once every SAVE_INTERVAL), so that an unclean shutdown only loses recent changes.
+ */
+public final class VisualizationCacheStore {
+    private static final Log log = LogFactory.getLog(VisualizationCacheStore.class);
+
+    private static final int MAGIC = 0x56495343;
+    private static final int VERSION = 1;
+
+    /**
+     * Minimum time between saving the snapshot after caches have been rebuilt (one hour)
+     */
+    private static final long SAVE_INTERVAL = 3600000;
+
+    private static final Map<String, Entry<?>> entries = new LinkedHashMap<>();
+    private static final Map<String, LanguageEntry<?>> languageEntries = new LinkedHashMap<>();
+
+    private static volatile Path snapshotFile = null;
+    private static volatile long lastSaved = 0;
+    private static final AtomicBoolean saveQueued = new AtomicBoolean();
+
+    private VisualizationCacheStore() { }
+
+    /**
+     * Set the snapshot file, and queue a task to restore the caches from it, so that startup isn't held up
+     *
+     * @param file the snapshot file
+     */
+    public static void setSnapshotFile(final Path file) {
+        snapshotFile = file;
+        lastSaved = System.currentTimeMillis();
+
+        CacheRefreshScheduler.submit("Load visualization cache snapshot", new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return load(file);
+            }
+        }, CacheRefreshScheduler.Priority.WAITING, null);
+    }
+
+    /**
+     * Called when a cache has been rebuilt in full, to queue a save of the snapshot if it is due
+     */
+    static void fullBuildComplete() {
+        final Path file = snapshotFile;
+        if (file != null && System.currentTimeMillis() - lastSaved > SAVE_INTERVAL && saveQueued.compareAndSet(false, true)) {
+            CacheRefreshScheduler.submit("Save visualization cache snapshot", new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    saveQueued.set(false);
+                    lastSaved = System.currentTimeMillis();
+                    return save(file);
+                }
+            }, CacheRefreshScheduler.Priority.REBUILD, null);
+        }
+    }
+
+    /**
+     * Populate any empty caches from a snapshot file
+     *
+     * @param file the snapshot file
+     * @return the number of caches restored
+     */
+    public static synchronized int load(Path file) {
+        if (!Files.isReadable(file)) {
+            return 0;
+        }
+
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 65536))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.info("Ignoring visualization cache snapshot in an unknown format: " + file);
+                return 0;
+            }
+
+            long savedAt = in.readLong();
+            int sections = in.readInt();
+            for (int i = 0; i < sections; i++) {
+                String name = in.readUTF();
+                long cacheTime = in.readLong();
+                SectionInputStream section = new SectionInputStream(in, in.readInt());
+
+                Entry<?> entry = findEntry(name);
+                if (entry == null) {
+                    log.debug("Skipping unknown visualization cache in snapshot: " + name);
+                } else {
+                    try {
+                        if (entry.restore(new SnapshotInput(section), cacheTime)) {
+                            restored++;
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Unable to restore visualization cache " + name + " from snapshot", e);
+                    }
+                }
+
+                // Move on to the next section, whether or not this one was read
+                section.skipRemaining();
+            }
+
+            log.info("Restored " + restored + " visualization caches from snapshot saved " + new Date(savedAt));
+        } catch (EOFException e) {
+            log.warn("Visualization cache snapshot is truncated, restored " + restored + " caches: " + file);
+        } catch (IOException e) {
+            log.warn("Unable to read visualization cache snapshot: " + file, e);
+        }
+
+        return restored;
+    }
+
+    /**
+     * Write the populated caches to a snapshot file, replacing any previous snapshot
+     *
+     * @param file the snapshot file
+     * @return the number of caches saved
+     */
+    public static synchronized int save(Path file) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        int saved = 0;
+        try {
+            Files.createDirectories(file.getParent());
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 65536))) {
+                Map<String, Entry<?>> current = currentEntries();
+                List<String> names = new ArrayList<>();
+                for (Map.Entry<String, Entry<?>> entry : current.entrySet()) {
+                    if (entry.getValue().cache.isCached()) {
+                        names.add(entry.getKey());
+                    }
+                }
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(names.size());
+
+                for (String name : names) {
+                    // The section is written straight to the file, and its time and length filled in afterwards
+                    out.writeUTF(name);
+                    out.flush();
+                    long headerAt = channel.position();
+                    out.writeLong(0);
+                    out.writeInt(0);
+                    out.flush();
+
+                    long start = channel.position();
+                    long cacheTime = current.get(name).save(new SnapshotOutput(out));
+                    out.flush();
+
+                    long length = channel.position() - start;
+                    if (length > Integer.MAX_VALUE) {
+                        throw new IOException("Visualization cache " + name + " is too large to save");
+                    }
+
+                    ByteBuffer header = ByteBuffer.allocate(12);
+                    header.putLong(cacheTime).putInt((int) length).flip();
+                    while (header.hasRemaining()) {
+                        channel.write(header, headerAt + header.position());
+                    }
+                    saved++;
+                }
+            }
+
+            if (saved == 0) {
+                // Nothing was cached, so keep any previous snapshot
+                Files.delete(temp);
+                return 0;
+            }
+
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            log.info("Saved " + saved + " visualization caches to " + file);
+        } catch (IOException e) {
+            log.warn("Unable to write visualization cache snapshot: " + file, e);
+            saved = 0;
+        }
+
+        return saved;
+    }
+
+    private static <T> void register(CachingRDFServiceExecutor<T> cache, Codec<T> codec) {
+        entries.put(cache.getName(), new Entry<T>(cache, codec));
+    }
+
+    private static <T> void register(LanguageCachingRDFServiceExecutor<T> caches, Codec<T> codec) {
+        languageEntries.put(caches.getName(), new LanguageEntry<T>(caches, codec));
+    }
+
+    /**
+     * All of the caches that can be saved, including the cache for each language in use
+     */
+    private static Map<String, Entry<?>> currentEntries() {
+        Map<String, Entry<?>> current = new LinkedHashMap<>(entries);
+        for (LanguageEntry<?> entry : languageEntries.values()) {
+            entry.addTo(current);
+        }
+        return current;
+    }
+
+    /**
+     * Find the cache for a section of the snapshot - language specific caches are named cache@language
+     */
+    private static Entry<?> findEntry(String name) {
+        Entry<?> entry = entries.get(name);
+
+        int separator = name.indexOf('@');
+        if (entry == null && separator > 0) {
+            LanguageEntry<?> languageEntry = languageEntries.get(name.substring(0, separator));
+            if (languageEntry != null) {
+                entry = languageEntry.forLanguageTag(name.substring(separator + 1));
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * A cache, and how to write its contents to a snapshot
+     */
+    private static final class Entry<T> {
+        final CachingRDFServiceExecutor<T> cache;
+        final Codec<T> codec;
+
+        Entry(CachingRDFServiceExecutor<T> cache, Codec<T> codec) {
+            this.cache = cache;
+            this.codec = codec;
+        }
+
+        long save(SnapshotOutput out) throws IOException {
+            long cacheTime = cache.cachedWhen().getTime();
+            T results = cache.getCachedResults();
+            if (results != null) {
+                codec.write(out, results);
+            }
+            out.flush();
+            return cacheTime;
+        }
+
+        boolean restore(SnapshotInput in, long cacheTime) throws IOException {
+            // Don't spend time reading the data if the cache has already been populated
+            // The ids are obtained in the generation that is current before reading
+            int generation = UriDictionary.getInstance().getGeneration();
+            return !cache.isCached() && cache.restore(codec.read(in), cacheTime, generation);
+        }
+    }
+
+    /**
+     * A set of per-language caches, and how to write their contents to a snapshot
+     */
+    private static final class LanguageEntry<T> {
+        final LanguageCachingRDFServiceExecutor<T> caches;
+        final Codec<T> codec;
+
+        LanguageEntry(LanguageCachingRDFServiceExecutor<T> caches, Codec<T> codec) {
+            this.caches = caches;
+            this.codec = codec;
+        }
+
+        void addTo(Map<String, Entry<?>> map) {
+            for (CachingRDFServiceExecutor<T> cache : caches.getCaches()) {
+                map.put(cache.getName(), new Entry<T>(cache, codec));
+            }
+        }
+
+        Entry<T> forLanguageTag(String tag) {
+            return new Entry<T>(caches.forLanguageTag(tag), codec);
+        }
+    }
+
+    private interface Codec<T> {
+        void write(SnapshotOutput out, T value) throws IOException;
+        T read(SnapshotInput in) throws IOException;
+    }
+
+    private static final Codec<Map<String, String>> STRING_MAP = new Codec<Map<String, String>>() {
+        @Override
+        public void write(SnapshotOutput out, Map<String, String> value) throws IOException {
+            out.writeStringMap(value);
+        }
+
+        @Override
+        public Map<String, String> read(SnapshotInput in) throws IOException {
+            return in.readStringMap();
+        }
+    };
+
+    private static final Codec<Map<String, Set<String>>> LINK_MAP = new Codec<Map<String, Set<String>>>() {
+        @Override
+        public void write(SnapshotOutput out, Map<String, Set<String>> value) throws IOException {
+            out.writeLinks(value);
+        }
+
+        @Override
+        public Map<String, Set<String>> read(SnapshotInput in) throws IOException {
+            return in.readLinks().asMap();
+        }
+    };
+
+    private static final Codec<OrganizationPeopleMap> ORGANIZATION_PEOPLE = new Codec<OrganizationPeopleMap>() {
+        @Override
+        public void write(SnapshotOutput out, OrganizationPeopleMap value) throws IOException {
+            out.writeLinks(value.organizationToPeople);
+        }
+
+        @Override
+        public OrganizationPeopleMap read(SnapshotInput in) throws IOException {
+            return new OrganizationPeopleMap(in.readLinks());
+        }
+    };
+
+    private static final Codec<ConceptPeopleMap> CONCEPT_PEOPLE = new Codec<ConceptPeopleMap>() {
+        @Override
+        public void write(SnapshotOutput out, ConceptPeopleMap value) throws IOException {
+            out.writeLinks(value.conceptToPeople);
+        }
+
+        @Override
+        public ConceptPeopleMap read(SnapshotInput in) throws IOException {
+            return new ConceptPeopleMap(in.readLinks());
+        }
+    };
+
+    private static final Codec<PersonPublicationMaps> PERSON_PUBLICATIONS = new Codec<PersonPublicationMaps>() {
+        @Override
+        public void write(SnapshotOutput out, PersonPublicationMaps value) throws IOException {
+            out.writeLinks(value.personToPublication);
+        }
+
+        @Override
+        public PersonPublicationMaps read(SnapshotInput in) throws IOException {
+            return new PersonPublicationMaps(in.readLinks());
+        }
+    };
+
+    private static final Codec<PersonGrantRoles> PERSON_GRANT_ROLES = new Codec<PersonGrantRoles>() {
+        @Override
+        public void write(SnapshotOutput out, PersonGrantRoles value) throws IOException {
+            UriDictionary dictionary = UriDictionary.getInstance();
+            IdAdjacency personToGrants = value.getPersonToGrantIds();
+            int[] people = personToGrants.keys();
+
+            out.writeCount(people.length);
+            for (int person : people) {
+                int[] grants = personToGrants.get(person);
+                out.writeString(dictionary.getUri(person));
+                out.writeCount(grants.length);
+                for (int grant : grants) {
+                    out.writeString(dictionary.getUri(grant));
+                    out.writeCount(value.getYear(person, grant));
+                }
+            }
+        }
+
+        @Override
+        public PersonGrantRoles read(SnapshotInput in) throws IOException {
+            PersonGrantRoles.Builder builder = new PersonGrantRoles.Builder();
+            int size = in.readCount();
+            for (int i = 0; i < size; i++) {
+                String person = in.readString();
+                int count = in.readCount();
+                for (int j = 0; j < count; j++) {
+                    String grant = in.readString();
+                    builder.add(person, grant, in.readCount());
+                }
+            }
+            return builder.build();
+        }
+    };
+
+    private static final Codec<ConceptLabelMap> CONCEPT_LABELS = new Codec<ConceptLabelMap>() {
+        @Override
+        public void write(SnapshotOutput out, ConceptLabelMap value) throws IOException {
+            out.writeStringMap(value.conceptToLabel);
+            out.writeLinks(value.lowerLabelToConcepts);
+        }
+
+        @Override
+        public ConceptLabelMap read(SnapshotInput in) throws IOException {
+            Map<String, String> conceptToLabel = in.readStringMap();
+
+            // Labels are not URIs, so these are held as plain sets rather than in the URI dictionary
+            Map<String, Set<String>> lowerLabelToConcepts = new HashMap<>();
+            int size = in.readCount();
+            for (int i = 0; i < size; i++) {
+                String label = in.readString();
+                int count = in.readCount();
+                for (int j = 0; j < count; j++) {
+                    CacheUpdateUtils.put(lowerLabelToConcepts, label, in.readString());
+                }
+            }
+
+            return new ConceptLabelMap(conceptToLabel, lowerLabelToConcepts);
+        }
+    };
+
+    private static final Codec<PersonDirectory> PEOPLE = new Codec<PersonDirectory>() {
+        @Override
+        public void write(SnapshotOutput out, PersonDirectory value) throws IOException {
+            UriDictionary dictionary = UriDictionary.getInstance();
+            int[] people = value.keys();
+
+            out.writeCount(people.length);
+            for (int id : people) {
+                Person person = value.get(dictionary.getUri(id));
+                out.writeString(person.uri);
+                out.writeString(person.lastName);
+                out.writeString(person.firstName);
+                out.writeString(person.preferredTitle);
+                out.writeString(person.thumbnailUrl);
+            }
+        }
+
+        @Override
+        public PersonDirectory read(SnapshotInput in) throws IOException {
+            PersonDirectory.Builder builder = new PersonDirectory.Builder();
+            int size = in.readCount();
+            for (int i = 0; i < size; i++) {
+                String uri = in.readString();
+                String lastName = in.readString();
+                String firstName = in.readString();
+                String preferredTitle = in.readString();
+                String thumbnailUrl = in.readString();
+                builder.add(uri, lastName, null, firstName, null, preferredTitle, thumbnailUrl);
+            }
+            return builder.build();
+        }
+    };
+
+    static {
+        register(VisualizationCaches.organizationLabels, STRING_MAP);
+        register(VisualizationCaches.organizationSubOrgs, LINK_MAP);
+        register(VisualizationCaches.organizationToMostSpecificLabel, STRING_MAP);
+        register(VisualizationCaches.organisationToPeopleMap, ORGANIZATION_PEOPLE);
+        register(VisualizationCaches.conceptToLabel, CONCEPT_LABELS);
+        register(VisualizationCaches.conceptToPeopleMap, CONCEPT_PEOPLE);
+        register(VisualizationCaches.personLabels, STRING_MAP);
+        register(VisualizationCaches.personToMostSpecificLabel, STRING_MAP);
+        register(VisualizationCaches.personToPublication, PERSON_PUBLICATIONS);
+        register(VisualizationCaches.personToDocument, PERSON_PUBLICATIONS);
+        register(VisualizationCaches.publicationToJournal, STRING_MAP);
+        register(VisualizationCaches.publicationToYear, STRING_MAP);
+        register(VisualizationCaches.personToGrant, LINK_MAP);
+        register(VisualizationCaches.personToGrantRole, PERSON_GRANT_ROLES);
+        register(VisualizationCaches.personToInvestigatorGrant, PERSON_GRANT_ROLES);
+        register(VisualizationCaches.grantToYear, STRING_MAP);
+        register(VisualizationCaches.grantToRoleYear, STRING_MAP);
+        register(VisualizationCaches.people, PEOPLE);
+    }
+
+    /**
+     * Writes a section of the snapshot, replacing repeated strings with a reference to their first occurrence
+     */
+    private static final class SnapshotOutput {
+        private final DataOutputStream out;
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        SnapshotOutput(OutputStream out) {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 65536));
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+
+            Integer ref = strings.get(value);
+            if (ref != null) {
+                out.writeInt(ref);
+            } else {
+                // A reference one past the known strings introduces a new string
+                out.writeInt(strings.size());
+                strings.put(value, strings.size());
+
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        void writeCount(int count) throws IOException {
+            out.writeInt(count);
+        }
+
+        void writeStringMap(Map<String, String> map) throws IOException {
+            out.writeInt(map.size());
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+
+        void writeLinks(Map<String, Set<String>> map) throws IOException {
+            out.writeInt(map.size());
+            for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+                writeString(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String value : entry.getValue()) {
+                    writeString(value);
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Limits reading to a section of the snapshot, so that the section can be read straight from the file
+     */
+    private static final class SectionInputStream extends FilterInputStream {
+        private long remaining;
+
+        SectionInputStream(InputStream in, int length) throws IOException {
+            super(in);
+            if (length < 0) {
+                throw new IOException("Invalid section length in snapshot: " + length);
+            }
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int value = in.read();
+            if (value > -1) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+
+            int count = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = in.skip(Math.min(count, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // The snapshot is closed as a whole
+        }
+
+        /**
+         * Skip whatever has not been read from the section
+         */
+        void skipRemaining() throws IOException {
+            while (remaining > 0) {
+                if (skip(remaining) <= 0) {
+                    if (read() < 0) {
+                        throw new EOFException();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a section of the snapshot
+     */
+    private static final class SnapshotInput {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+
+        SnapshotInput(InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        int readCount() throws IOException {
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Invalid count in snapshot: " + count);
+            }
+            return count;
+        }
+
+        String readString() throws IOException {
+            int ref = in.readInt();
+            if (ref == -1) {
+                return null;
+            }
+
+            if (ref == strings.size()) {
+                byte[] bytes = new byte[readCount()];
+                in.readFully(bytes);
+                String value = new String(bytes, StandardCharsets.UTF_8).intern();
+                strings.add(value);
+                return value;
+            }
+
+            if (ref < 0 || ref > strings.size()) {
+                throw new IOException("Invalid string reference in snapshot: " + ref);
+            }
+
+            return strings.get(ref);
+        }
+
+        Map<String, String> readStringMap() throws IOException {
+            int size = readCount();
+            Map<String, String> map = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                map.put(key, readString());
+            }
+            return map;
+        }
+
+        IdAdjacency readLinks() throws IOException {
+            IdAdjacency.Builder builder = new IdAdjacency.Builder();
+            int size = readCount();
+            for (int i = 0; i < size; i++) {
+                String key = readString();
+                int count = readCount();
+                for (int j = 0; j < count; j++) {
+                    builder.add(key, readString());
+                }
+            }
+            return builder.build();
+        }
+    }
+}
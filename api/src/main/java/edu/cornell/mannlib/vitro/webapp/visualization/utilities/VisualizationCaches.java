@@ -2,29 +2,40 @@
 
 package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
 
-import org.apache.jena.query.QueryExecution;
-import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.rdf.model.Literal;
-import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
 
-import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFService;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
+import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaborationDataCache;
 import edu.cornell.mannlib.vitro.webapp.visualization.constants.QueryConstants;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.ActivitySummaries;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.CollaborationGraph;
 import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptLabelMap;
 import edu.cornell.mannlib.vitro.webapp.visualization.model.ConceptPeopleMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationHierarchy;
 import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationPeopleMap;
-import edu.cornell.mannlib.vitro.webapp.visualization.model.Person;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.PersonDirectory;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.PersonGrantRoles;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UtilityFunctions;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.joda.time.DateTime;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Holder for the caches we are using in the visualizations
@@ -35,8 +46,14 @@ import java.util.Set;
  * http://java-performance.info/string-intern-in-java-6-7-8/
  */
 final public class VisualizationCaches {
-    // Affinity object to ensure that only one background thread can be running at once when updating the caches
-    private static final CachingRDFServiceExecutor.Affinity visualizationAffinity = new CachingRDFServiceExecutor.Affinity();
+    private static final Log log = LogFactory.getLog(VisualizationCaches.class);
+
+    /**
+     * Minimum number of URIs added to the dictionary before it is worth compacting
+     */
+    private static final int MIN_DICTIONARY_GROWTH = 10000;
+
+    private static final AtomicBoolean compactionQueued = new AtomicBoolean();
 
     /**
      * Rebuild all the caches
@@ -57,11 +74,15 @@ final public class VisualizationCaches {
         personLabels.build(rdfService);
         personToMostSpecificLabel.build(rdfService);
         personToPublication.build(rdfService);
+        personToDocument.build(rdfService);
         publicationToJournal.build(rdfService);
         publicationToYear.build(rdfService);
         personToGrant.build(rdfService);
+        personToGrantRole.build(rdfService);
+        personToInvestigatorGrant.build(rdfService);
         grantToYear.build(rdfService);
-//        people.build(rdfService);
+        grantToRoleYear.build(rdfService);
+        people.build(rdfService);
     }
 
     public static void buildMissing() {
@@ -74,11 +95,15 @@ final public class VisualizationCaches {
         if (!personLabels.isCached())                    { personLabels.build(null); }
         if (!personToMostSpecificLabel.isCached())       { personToMostSpecificLabel.build(null); }
         if (!personToPublication.isCached())             { personToPublication.build(null); }
+        if (!personToDocument.isCached())                { personToDocument.build(null); }
         if (!publicationToJournal.isCached())            { publicationToJournal.build(null); }
         if (!publicationToYear.isCached())               { publicationToYear.build(null); }
         if (!personToGrant.isCached())                   { personToGrant.build(null); }
+        if (!personToGrantRole.isCached())               { personToGrantRole.build(null); }
+        if (!personToInvestigatorGrant.isCached())       { personToInvestigatorGrant.build(null); }
         if (!grantToYear.isCached())                     { grantToYear.build(null); }
-//        if (!people.isCached())                          { people.build(null); }
+        if (!grantToRoleYear.isCached())                 { grantToRoleYear.build(null); }
+        if (!people.isCached())                          { people.build(null); }
     }
 
     /**
@@ -94,134 +119,527 @@ final public class VisualizationCaches {
     }
 
     /**
-     * Cache of people
+     * Pass resources that have changed in the triple store to the caches, so that they can be updated incrementally
+     * @param uris URIs of the changed resources
+     */
+    public static void notifyChanges(Collection<String> uris) {
+        for (CachingRDFServiceExecutor<?> e : allCaches()) {
+            e.notifyChanges(uris);
+        }
+
+        for (LanguageCachingRDFServiceExecutor<?> e : allLanguageCaches()) {
+            e.notifyChanges(uris);
+        }
+
+        // Ego networks are built from the same data, so drop any that include the changed resources
+        CollaborationDataCache.notifyChanges(uris);
+    }
+
+    /**
+     * Called when a cache has been rebuilt in full, so that the snapshot can be saved. Once the URIs added to the dictionary since it was last compacted
+     * amount to a quarter of it, a task is queued to compact it.
+     */
+    static void fullBuildComplete() {
+        VisualizationCacheStore.fullBuildComplete();
+
+        UriDictionary dictionary = UriDictionary.getInstance();
+        int added = dictionary.getAssignedSinceCompaction();
+        if (added > MIN_DICTIONARY_GROWTH && added > dictionary.size() / 4 && compactionQueued.compareAndSet(false, true)) {
+            CacheRefreshScheduler.submit("Compact URI dictionary", new Callable<Void>() {
+                @Override
+                public Void call() {
+                    compactDictionary();
+                    return null;
+                }
+            }, CacheRefreshScheduler.Priority.REBUILD, null);
+        }
+    }
+
+    /**
+     * Release the URIs that are no longer in any cache. The dictionary can only be compacted once all of the caches
+     * holding ids have been rebuilt in full in its current generation, so any that haven't are rebuilt first, and
+     * this is tried again when they complete.
+     */
+    private static void compactDictionary() {
+        compactionQueued.set(false);
+
+        UriDictionary dictionary = UriDictionary.getInstance();
+        int generation = dictionary.getGeneration();
+
+        boolean ready = true;
+        for (CachingRDFServiceExecutor<?> cache : dictionaryCaches()) {
+            if (cache.backgroundTaskInfo() != null) {
+                // Will try again if it is a full rebuild, otherwise wait for the next one
+                ready = false;
+            } else if (cache.isCached() && cache.getDictionaryGeneration() < generation) {
+                cache.build(null);
+                ready = false;
+            }
+        }
+
+        if (ready) {
+            int released = dictionary.compact();
+
+            // Cached networks record their dependencies by id
+            CollaborationDataCache.clearAll();
+
+            log.info("Compacted the visualization URI dictionary, released " + released + " URIs, " + dictionary.size() + " remain");
+        }
+    }
+
+    /**
+     * The caches whose results hold ids from the URI dictionary
+     */
+    private static CachingRDFServiceExecutor<?>[] dictionaryCaches() {
+        return new CachingRDFServiceExecutor<?>[] {
+                people,
+                organizationSubOrgs,
+                organisationToPeopleMap,
+                conceptToPeopleMap,
+                personToPublication,
+                personToDocument,
+                personToGrant,
+                personToGrantRole,
+                personToInvestigatorGrant
+        };
+    }
+
+    private static LanguageCachingRDFServiceExecutor<?>[] allLanguageCaches() {
+        return new LanguageCachingRDFServiceExecutor<?>[] {
+                organizationLabels,
+                organizationToMostSpecificLabel,
+                conceptToLabel,
+                personLabels,
+                personToMostSpecificLabel
+        };
+    }
+
+    /**
+     * Cache of the publications each person is an author of
+     *
+     * @param name name of the cache
+     * @param documentType the type of the publications in the query
+     */
+    private static CachingRDFServiceExecutor<PersonPublicationMaps> personPublications(String name, final String documentType) {
+        return new CachingRDFServiceExecutor<PersonPublicationMaps>(name,
+                new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<PersonPublicationMaps>() {
+                    @Override
+                    protected PersonPublicationMaps callWithService(RDFService rdfService) throws Exception {
+                        final IdAdjacency.Builder builder = new IdAdjacency.Builder();
+                        query(rdfService, "", builder);
+                        return new PersonPublicationMaps(builder.build());
+                    }
+
+                    @Override
+                    protected PersonPublicationMaps updateWithService(RDFService rdfService, PersonPublicationMaps previousResults, Set<String> changedUris) throws Exception {
+                        // Replace every authorship of a changed person or document with the authorships that exist now
+                        final IdAdjacency.Builder links = new IdAdjacency.Builder();
+                        for (String values : CacheUpdateUtils.valuesClauses("person", changedUris)) {
+                            query(rdfService, values, links);
+                        }
+                        for (String values : CacheUpdateUtils.valuesClauses("document", changedUris)) {
+                            query(rdfService, values, links);
+                        }
+
+                        Map<String, Set<String>> removals = CacheUpdateUtils.linksInvolving(
+                                previousResults.personToPublication, previousResults.publicationToPerson, changedUris);
+
+                        return new PersonPublicationMaps(
+                                previousResults.getPersonToPublicationIds().update(removals, links.build().asMap()));
+                    }
+
+                    private void query(RDFService rdfService, String values, final IdAdjacency.Builder builder) throws Exception {
+                        String query = QueryConstants.getSparqlPrefixQuery() +
+                                "SELECT ?person ?document\n" +
+                                "WHERE\n" +
+                                "{\n" +
+                                values +
+                                "  ?person a foaf:Person .\n" +
+                                "  ?person core:relatedBy ?authorship .\n" +
+                                "  ?authorship a core:Authorship .\n" +
+                                "  ?authorship core:relates ?document .\n" +
+                                "  ?document a " + documentType + " .\n" +
+                                "}\n";
+
+                        rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                            @Override
+                            protected void processQuerySolution(QuerySolution qs) {
+                                Resource person   = qs.getResource("person");
+                                Resource document = qs.getResource("document");
+
+                                if (person != null && document != null) {
+                                    builder.add(person.getURI(), document.getURI());
+                                }
+                            }
+                        });
+                    }
+                }
+        );
+    }
+
+    /**
+     * Cache of the grants each person has a role on, with the year each role started
+     *
+     * @param name name of the cache
+     * @param roleTypes query pattern restricting the ?role to some types of role, or empty for any role
      */
-    public static final CachingRDFServiceExecutor<Map<String, Person>> people =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, Person>>(visualizationAffinity) {
+    private static CachingRDFServiceExecutor<PersonGrantRoles> personGrantRoles(String name, final String roleTypes) {
+        return new CachingRDFServiceExecutor<PersonGrantRoles>(name,
+                new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<PersonGrantRoles>() {
+                    @Override
+                    protected PersonGrantRoles callWithService(RDFService rdfService) throws Exception {
+                        PersonGrantRoles.Builder builder = new PersonGrantRoles.Builder();
+                        query(rdfService, "", builder);
+                        return builder.build();
+                    }
+
+                    @Override
+                    protected PersonGrantRoles updateWithService(RDFService rdfService, PersonGrantRoles previousResults, Set<String> changedUris) throws Exception {
+                        // A changed role, date interval or start date affects the grant the role is on, so the
+                        // roles on that grant are replaced, as well as those of any changed person or grant
+                        Set<String> changedGrants = new HashSet<>(changedUris);
+                        for (String values : CacheUpdateUtils.valuesClauses("changed", changedUris)) {
+                            findGrants(rdfService, values, changedGrants);
+                        }
+
+                        PersonGrantRoles.Builder roles = new PersonGrantRoles.Builder();
+                        for (String values : CacheUpdateUtils.valuesClauses("person", changedUris)) {
+                            query(rdfService, values, roles);
+                        }
+                        for (String values : CacheUpdateUtils.valuesClauses("grant", changedGrants)) {
+                            query(rdfService, values, roles);
+                        }
+
+                        Map<String, Set<String>> removals = CacheUpdateUtils.linksInvolving(
+                                previousResults.getPersonToGrantIds().asMap(),
+                                previousResults.getGrantToPersonIds().asMap(),
+                                changedGrants);
+                        return previousResults.update(removals, roles.build());
+                    }
+
+                    /**
+                     * Find the grants with a role that is, or has a date interval or start date that is, one of the
+                     * ?changed resources
+                     */
+                    private void findGrants(RDFService rdfService, String values, final Set<String> grants) throws Exception {
+                        String query = QueryConstants.getSparqlPrefixQuery() +
+                                "SELECT DISTINCT ?grant\n" +
+                                "WHERE\n" +
+                                "{\n" +
+                                values +
+                                "  { \n" +
+                                "    ?grant core:relates ?changed .\n" +
+                                "  } UNION { \n" +
+                                "    ?grant core:relates ?role .\n" +
+                                "    ?role core:dateTimeInterval ?changed .\n" +
+                                "  } UNION { \n" +
+                                "    ?grant core:relates ?role .\n" +
+                                "    ?role core:dateTimeInterval ?dateTimeIntervalValue .\n" +
+                                "    ?dateTimeIntervalValue core:start ?changed .\n" +
+                                "  } \n" +
+                                "  ?grant a core:Grant .\n" +
+                                "}\n";
+
+                        rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                            @Override
+                            protected void processQuerySolution(QuerySolution qs) {
+                                grants.add(qs.getResource("grant").getURI());
+                            }
+                        });
+                    }
+
+                    private void query(RDFService rdfService, String values, final PersonGrantRoles.Builder builder) throws Exception {
+                        String query = QueryConstants.getSparqlPrefixQuery() +
+                                "SELECT ?person ?grant ?startDateTimeValue\n" +
+                                "WHERE\n" +
+                                "{\n" +
+                                values +
+                                "  ?person a foaf:Person .\n" +
+                                "  ?person <http://purl.obolibrary.org/obo/RO_0000053> ?role .\n" +
+                                roleTypes +
+                                "  ?role core:relatedBy ?grant .\n" +
+                                "  ?grant a core:Grant .\n" +
+                                "  OPTIONAL {\n" +
+                                "    ?role core:dateTimeInterval ?dateTimeIntervalValue . \n" +
+                                "    ?dateTimeIntervalValue core:start ?startDate . \n" +
+                                "    ?startDate core:dateTime ?startDateTimeValue . \n" +
+                                "  }\n" +
+                                "}\n";
+
+                        rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                            @Override
+                            protected void processQuerySolution(QuerySolution qs) {
+                                Resource person = qs.getResource("person");
+                                Resource grant  = qs.getResource("grant");
+                                Literal startDate = qs.getLiteral("startDateTimeValue");
+
+                                if (person != null && grant != null) {
+                                    int year = PersonGrantRoles.UNKNOWN_YEAR;
+                                    if (startDate != null) {
+                                        DateTime validParsedDateTimeObject = UtilityFunctions
+                                                .getValidParsedDateTimeObject(startDate.getString());
+
+                                        if (validParsedDateTimeObject != null) {
+                                            year = validParsedDateTimeObject.getYear();
+                                        }
+                                    }
+
+                                    builder.add(person.getURI(), grant.getURI(), year);
+                                }
+                            }
+                        });
+                    }
+                }
+        );
+    }
+
+    /**
+     * Query pattern binding ?{label}_ to the best label of ?{subject} for a language:
+     * a label in the language and country, then the language, then any variant of the language, then any other label
+     */
+    private static String preferredLabel(String subject, String label, Locale locale) {
+        String langCtx = LanguageCachingRDFServiceExecutor.languageTag(locale);
+        String language = locale.getLanguage();
+
+        return "  OPTIONAL { ?" + subject + " rdfs:label ?" + label + "Primary . \n" +
+                "       FILTER (LANG(?" + label + "Primary) = '" + langCtx + "') \n" +
+                "} \n" +
+                "  OPTIONAL { ?" + subject + " rdfs:label ?" + label + "Secondary . \n" +
+                "       FILTER (LANG(?" + label + "Secondary) = '" + language + "') \n" +
+                "} \n" +
+                "  OPTIONAL { ?" + subject + " rdfs:label ?" + label + "Tertiary .\n" +
+                "       FILTER (STRBEFORE(STR(LANG(?" + label + "Tertiary)), '-') = '" + language + "') \n" +
+                "} \n" +
+                "  OPTIONAL { ?" + subject + " rdfs:label ?" + label + "Fallback .\n" +
+                "       FILTER (LANG(?" + label + "Fallback) != '" + langCtx + "' \n" +
+                "           && LANG(?" + label + "Fallback) != '" + language + "' ) \n" +
+                "} \n" +
+                "BIND(COALESCE(?" + label + "Primary, ?" + label + "Secondary, ?" + label + "Tertiary, ?" + label + "Fallback) AS ?" + label + "_) \n";
+    }
+
+    /**
+     * Index of the sub-organizations (at any depth) of each organization, for the current cached map
+     * @param rdfService an RDF service to use, if the cache has to be built
+     */
+    public static OrganizationHierarchy organizationHierarchy(RDFService rdfService) {
+        return OrganizationHierarchy.of(organizationSubOrgs.get(rdfService));
+    }
+
+    /**
+     * Rollups of the publications of each organization, for the current cached maps
+     * @param rdfService an RDF service to use, if the caches have to be built
+     */
+    public static OrganizationRollups publicationRollups(RDFService rdfService) {
+        return OrganizationRollups.of("publications",
+                organizationSubOrgs.get(rdfService),
+                organisationToPeopleMap.get(rdfService).organizationToPeople,
+                personToPublication.get(rdfService).personToPublication);
+    }
+
+    /**
+     * Rollups of the grants of each organization, for the current cached maps
+     * @param rdfService an RDF service to use, if the caches have to be built
+     */
+    public static OrganizationRollups grantRollups(RDFService rdfService) {
+        return OrganizationRollups.of("grants",
+                organizationSubOrgs.get(rdfService),
+                organisationToPeopleMap.get(rdfService).organizationToPeople,
+                personToGrant.get(rdfService));
+    }
+
+    /**
+     * Co-authorship graph of everyone in the institution, for the current cached maps
+     * @param rdfService an RDF service to use, if the caches have to be built
+     */
+    public static CollaborationGraph coAuthorshipGraph(RDFService rdfService) {
+        return CollaborationGraph.of("coAuthorship",
+                personToPublication.get(rdfService).getPersonToPublicationIds(),
+                publicationToYear.get(rdfService));
+    }
+
+    /**
+     * Publications (documents) of each person by year, for the current cached maps
+     * @param rdfService an RDF service to use, if the caches have to be built
+     */
+    public static ActivitySummaries publicationSummaries(RDFService rdfService) {
+        return ActivitySummaries.of("publications",
+                personToDocument.get(rdfService).getPersonToPublicationIds(),
+                publicationToYear.get(rdfService));
+    }
+
+    /**
+     * Grants of each person by year (of the start of the role, or else of the grant), for the current cached maps
+     * @param rdfService an RDF service to use, if the caches have to be built
+     */
+    public static ActivitySummaries grantSummaries(RDFService rdfService) {
+        return ActivitySummaries.of("grants",
+                personToGrantRole.get(rdfService),
+                grantToYear.get(rdfService));
+    }
+
+    /**
+     * Determine if the publication summaries can be provided without building any caches
+     */
+    public static boolean publicationSummariesCached() {
+        return personToDocument.isCached() && publicationToYear.isCached();
+    }
+
+    /**
+     * Determine if the grant summaries can be provided without building any caches
+     */
+    public static boolean grantSummariesCached() {
+        return personToGrantRole.isCached() && grantToYear.isCached();
+    }
+
+    /**
+     * All of the caches, including those for each language that has been requested
+     */
+    public static List<CachingRDFServiceExecutor<?>> getCaches() {
+        List<CachingRDFServiceExecutor<?>> caches = new ArrayList<>(Arrays.asList(allCaches()));
+        for (LanguageCachingRDFServiceExecutor<?> e : allLanguageCaches()) {
+            caches.addAll(e.getCaches());
+        }
+        return caches;
+    }
+
+    private static CachingRDFServiceExecutor<?>[] allCaches() {
+        return new CachingRDFServiceExecutor<?>[] {
+                people,
+                organizationSubOrgs,
+                organisationToPeopleMap,
+                conceptToPeopleMap,
+                personToPublication,
+                personToDocument,
+                publicationToJournal,
+                publicationToYear,
+                personToGrant,
+                personToGrantRole,
+                personToInvestigatorGrant,
+                grantToYear,
+                grantToRoleYear
+        };
+    }
+
+    /**
+     * Directory of the names, titles and thumbnails of people
+     */
+    public static final CachingRDFServiceExecutor<PersonDirectory> people =
+            new CachingRDFServiceExecutor<>("people",
+                    new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<PersonDirectory>() {
+                        @Override
+                        protected PersonDirectory callWithService(RDFService rdfService) throws Exception {
+                            PersonDirectory.Builder builder = new PersonDirectory.Builder();
+                            query(rdfService, "", builder);
+                            return builder.build();
+                        }
+
                         @Override
-                        protected Map<String, Person> callWithService(RDFService rdfService) throws Exception {
-                            final Map<String, Person> map = new HashMap<String, Person>();
+                        protected PersonDirectory updateWithService(RDFService rdfService, PersonDirectory previousResults, Set<String> changedUris) throws Exception {
+                            // A change to a person's contact details or image is reported against that resource, not the person
+                            Set<String> changedPeople = new HashSet<>(changedUris);
+                            for (String values : CacheUpdateUtils.valuesClauses("changed", changedUris)) {
+                                findPeople(rdfService, values, changedPeople);
+                            }
+
+                            PersonDirectory.Builder changes = new PersonDirectory.Builder();
+                            for (String values : CacheUpdateUtils.valuesClauses("person", changedPeople)) {
+                                query(rdfService, values, changes);
+                            }
+
+                            return previousResults.update(changedPeople, changes.build());
+                        }
 
-                            String construct = QueryConstants.getSparqlPrefixQuery() +
-                                    "CONSTRUCT {\n" +
+                        /**
+                         * Each detail is matched by a separate branch of the union, so that people aren't multiplied
+                         * by every combination of their details, and the results are streamed into the builder
+                         */
+                        private void query(RDFService rdfService, String values, final PersonDirectory.Builder builder) throws Exception {
+                            String query = QueryConstants.getSparqlPrefixQuery() +
+                                    "SELECT ?person ?familyName ?givenName ?lastName ?firstName ?title ?thumbnailUrl\n" +
+                                    "WHERE\n" +
+                                    "{\n" +
+                                    values +
                                     "  ?person a foaf:Person .\n" +
-                                    "  ?person foaf:lastName ?lastName .\n" +
-                                    "  ?person foaf:firstName ?firstName .\n" +
-                                    "  ?person obo:ARG_2000028 ?contactInfo .\n" +
-                                    "  ?contactInfo vcard:hasName ?contactName .\n" +
-                                    "  ?contactName vcard:familyName ?familyName .\n" +
-                                    "  ?contactName vcard:givenName ?givenName .\n" +
-                                    "  ?contactInfo vcard:hasTitle ?contactTitle .\n" +
-                                    "  ?contactTitle vcard:title ?contactTitleLabel  .\n" +
-                                    "  ?person public:thumbnailImage ?directDownloadUrl .\n" +
-                                    "} WHERE {\n" +
                                     "  { \n" +
-                                    "    ?person a foaf:Person .\n" +
                                     "  } UNION { \n" +
-                                    "    ?person a foaf:Person .\n" +
                                     "    ?person foaf:lastName ?lastName .\n" +
                                     "  } UNION { \n" +
-                                    "    ?person a foaf:Person .\n" +
                                     "    ?person foaf:firstName ?firstName .\n" +
                                     "  } UNION { \n" +
-                                    "    ?person a foaf:Person .\n" +
                                     "    ?person obo:ARG_2000028 ?contactInfo .\n" +
                                     "    ?contactInfo vcard:hasName ?contactName .\n" +
                                     "    ?contactName vcard:familyName ?familyName .\n" +
                                     "  } UNION { \n" +
-                                    "    ?person a foaf:Person .\n" +
                                     "    ?person obo:ARG_2000028 ?contactInfo .\n" +
                                     "    ?contactInfo vcard:hasName ?contactName .\n" +
                                     "    ?contactName vcard:givenName ?givenName .\n" +
                                     "  } UNION { \n" +
-                                    "    ?person a foaf:Person .\n" +
                                     "    ?person obo:ARG_2000028 ?contactInfo .\n" +
                                     "    ?contactInfo vcard:hasTitle ?contactTitle .\n" +
-                                    "    ?contactTitle vcard:title ?contactTitleLabel .\n" +
+                                    "    ?contactTitle vcard:title ?title .\n" +
                                     "  } UNION { \n" +
-                                    "    ?person a foaf:Person .\n" +
                                     "    ?person public:mainImage ?mainImage .\n" +
                                     "    ?mainImage public:thumbnailImage ?thumbnailImage .\n" +
                                     "    ?thumbnailImage public:downloadLocation ?downloadLocation .\n" +
-                                    "    ?downloadLocation public:directDownloadUrl ?directDownloadUrl .\n" +
+                                    "    ?downloadLocation public:directDownloadUrl ?thumbnailUrl .\n" +
                                     "  } \n" +
                                     "}\n";
 
-                            Model constructedModel = ModelFactory.createDefaultModel();
-                            rdfService.sparqlConstructQuery(construct, constructedModel);
+                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                @Override
+                                protected void processQuerySolution(QuerySolution qs) {
+                                    builder.add(qs.getResource("person").getURI(),
+                                            getString(qs, "familyName"),
+                                            getString(qs, "lastName"),
+                                            getString(qs, "givenName"),
+                                            getString(qs, "firstName"),
+                                            getString(qs, "title"),
+                                            getString(qs, "thumbnailUrl"));
+                                }
+                            });
+                        }
 
-                            String nameQuery = QueryConstants.getSparqlPrefixQuery() +
-                                    "SELECT ?person ?familyName ?givenName ?lastName ?firstName ?title ?thumbnailUrl\n" +
+                        /**
+                         * Find the people whose contact details or images include the ?changed resources
+                         */
+                        private void findPeople(RDFService rdfService, String values, final Set<String> people) throws Exception {
+                            String query = QueryConstants.getSparqlPrefixQuery() +
+                                    "SELECT DISTINCT ?person\n" +
                                     "WHERE\n" +
                                     "{\n" +
-                                    "  ?person a foaf:Person .\n" +
-                                    "  OPTIONAL {\n" +
+                                    values +
+                                    "  { \n" +
+                                    "    ?person obo:ARG_2000028 ?changed .\n" +
+                                    "  } UNION { \n" +
                                     "    ?person obo:ARG_2000028 ?contactInfo .\n" +
-                                    "    ?contactInfo vcard:hasName ?contactName .\n" +
-                                    "    OPTIONAL { ?contactName vcard:familyName ?familyName . }\n" +
-                                    "    OPTIONAL { ?contactName vcard:givenName  ?givenName . }\n" +
-                                    "  }\n" +
-                                    "  OPTIONAL {\n" +
+                                    "    ?contactInfo vcard:hasName ?changed .\n" +
+                                    "  } UNION { \n" +
                                     "    ?person obo:ARG_2000028 ?contactInfo .\n" +
-                                    "    ?contactInfo vcard:hasTitle ?contactTitle .\n" +
-                                    "    ?contactTitle vcard:title ?title .\n" +
-                                    "  }\n" +
-                                    "  OPTIONAL { ?person foaf:lastName ?lastName . }\n" +
-                                    "  OPTIONAL { ?person foaf:firstName  ?firstName . }\n" +
-                                    "  OPTIONAL { ?person public:thumbnailImage ?thumbnailUrl . }\n" +
+                                    "    ?contactInfo vcard:hasTitle ?changed .\n" +
+                                    "  } UNION { \n" +
+                                    "    ?person public:mainImage ?changed .\n" +
+                                    "  } UNION { \n" +
+                                    "    ?person public:mainImage ?mainImage .\n" +
+                                    "    ?mainImage public:thumbnailImage ?changed .\n" +
+                                    "  } UNION { \n" +
+                                    "    ?person public:mainImage ?mainImage .\n" +
+                                    "    ?mainImage public:thumbnailImage ?thumbnailImage .\n" +
+                                    "    ?thumbnailImage public:downloadLocation ?changed .\n" +
+                                    "  } \n" +
+                                    "  ?person a foaf:Person .\n" +
                                     "}\n";
 
-                            QueryExecution qe = QueryExecutionFactory.create(nameQuery, constructedModel);
-                            try {
-                                new ResultSetConsumer() {
-                                    @Override
-                                    protected void processQuerySolution(QuerySolution qs) {
-                                        String personUri = qs.getResource("person").getURI();
-                                        String familyName = null;
-                                        String givenName = null;
-                                        String thumbnailUrl = null;
-                                        String title = null;
-
-                                        Literal familyNameNode = qs.getLiteral("familyName");
-                                        if (familyNameNode != null) {
-                                            familyName = familyNameNode.getString();
-                                        } else {
-                                            Literal lastNameNode = qs.getLiteral("lastName");
-                                            familyName = lastNameNode == null ? null : lastNameNode.getString();
-                                        }
-
-                                        Literal givenNameNode = qs.getLiteral("givenName");
-                                        if (givenNameNode != null) {
-                                            givenName = givenNameNode.getString();
-                                        } else {
-                                            Literal firstNameNode = qs.getLiteral("firstName");
-                                            givenName = firstNameNode == null ? null : firstNameNode.getString();
-                                        }
-
-                                        Literal thumbnailUrlNode = qs.getLiteral("thumbnailUrl");
-                                        thumbnailUrl = thumbnailUrlNode == null ? null : thumbnailUrlNode.getString();
-
-                                        Literal titleNode = qs.getLiteral("title");
-                                        title = titleNode == null ? null : titleNode.getString();
-
-                                        Person person = map.get(personUri);
-                                        if (person == null) {
-                                            person = new Person();
-                                            map.put(personUri.intern(), person);
-                                        }
-
-                                        person.firstName = givenName == null ? null : givenName.intern();
-                                        person.lastName  = familyName == null ? null : familyName.intern();
-                                        person.preferredTitle = title == null ? null : title.intern();
-                                        person.thumbnailUrl = thumbnailUrl;
-                                    }
-                                }.processResultSet(qe.execSelect());
-                            } finally {
-                                qe.close();
-                            }
+                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                @Override
+                                protected void processQuerySolution(QuerySolution qs) {
+                                    people.add(qs.getResource("person").getURI());
+                                }
+                            });
+                        }
 
-                            return map;
+                        private String getString(QuerySolution qs, String variable) {
+                            Literal literal = qs.getLiteral(variable);
+                            return literal == null ? null : literal.getString();
                         }
                     }
             );
@@ -229,56 +647,55 @@ final public class VisualizationCaches {
     /**
      * Cache of organization labels (uri -> label)
      */
-    public static final CachingRDFServiceExecutor<Map<String, String>> organizationLabels =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>>(visualizationAffinity) {
+    public static final LanguageCachingRDFServiceExecutor<Map<String, String>> organizationLabels =
+            new LanguageCachingRDFServiceExecutor<>("organizationLabels",
+                    new LanguageCachingRDFServiceExecutor.CallableFactory<Map<String, String>>() {
                         @Override
-                        protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
-                            // get current selected language tag
-                            VitroRequest vreq = rdfService.getVitroRequest();
-                            String langCtx = "en-US"; // set default
-                            String language = "en"; // set fallback language
-                            try {
-                                langCtx = language = vreq.getLocale().getLanguage();
-                                if (!vreq.getLocale().getCountry().isEmpty()) {
-                                    langCtx += "-" + vreq.getLocale().getCountry();
+                        public CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>> create(final Locale locale) {
+                            return new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, String>>() {
+                                @Override
+                                protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
+                                    final Map<String, String> map = new HashMap<>();
+                                    query(rdfService, "", map);
+                                    return map;
                                 }
-                            } catch (Exception e) { }
-
-                            String query = QueryConstants.getSparqlPrefixQuery() +
-                                    "SELECT ?org (Min(?orgLabel_) AS ?orgLabel) \n" +
-                                    "WHERE\n" +
-                                    "{\n" +
-                                    "  ?org a foaf:Organization \n" +
-                                    "  OPTIONAL { ?org rdfs:label ?orgLabelPrimary . \n" +
-                                    "       FILTER (LANG(?orgLabelPrimary) = '" + langCtx + "') \n" +
-                                    "} \n" +
-                                    "  OPTIONAL { ?org rdfs:label ?orgLabelSecondary . \n" +
-                                    "       FILTER (LANG(?orgLabelSecondary) = '" + language + "') \n" +
-                                    "} \n" +
-                                    "  OPTIONAL { ?org rdfs:label ?orgLabelTertiary .\n" +
-                                    "       FILTER (STRBEFORE(STR(LANG(?orgLabelTertiary)), '-') = '" + language + "') \n" +
-                                    "} \n" +
-                                    "  OPTIONAL { ?org rdfs:label ?orgLabelFallback .\n" +
-                                    "       FILTER (LANG(?orgLabelFallback) != '" + langCtx + "' \n" + 
-                                    "           && LANG(?orgLabelFallback) != '" + language + "' ) \n" +
-                                    "} \n" +
-                                    "BIND(COALESCE(?orgLabelPrimary, ?orgLabelSecondary, ?orgLabelTertiary, ?orgLabelFallback) AS ?orgLabel_) \n" +
-                                    "} GROUP BY ?org \n";
 
-                            final Map<String, String> map = new HashMap<>();
-
-                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
-                                protected void processQuerySolution(QuerySolution qs) {
-                                    String org      = qs.getResource("org").getURI();
-                                    String orgLabel = qs.getLiteral("orgLabel").getString();
+                                protected Map<String, String> updateWithService(RDFService rdfService, Map<String, String> previousResults, Set<String> changedUris) throws Exception {
+                                    final Map<String, String> changes = new HashMap<>();
+                                    for (String values : CacheUpdateUtils.valuesClauses("org", changedUris)) {
+                                        query(rdfService, values, changes);
+                                    }
 
-                                    map.put(org.intern(), orgLabel.intern());
+                                    return CacheUpdateUtils.replaceKeys(previousResults, changedUris, changes);
                                 }
-                            });
 
-                            return map;
+                                private void query(RDFService rdfService, String values, final Map<String, String> map) throws Exception {
+                                    String query = QueryConstants.getSparqlPrefixQuery() +
+                                            "SELECT ?org (Min(?orgLabel_) AS ?orgLabel) \n" +
+                                            "WHERE\n" +
+                                            "{\n" +
+                                            values +
+                                            "  ?org a foaf:Organization \n" +
+                                            preferredLabel("org", "orgLabel", locale) +
+                                            "} GROUP BY ?org \n";
+
+                                    rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                        @Override
+                                        protected void processQuerySolution(QuerySolution qs) {
+                                            Literal label = qs.getLiteral("orgLabel");
+                                            if (label == null) {
+                                                return;
+                                            }
+
+                                            String org      = qs.getResource("org").getURI();
+                                            String orgLabel = label.getString();
+
+                                            map.put(org.intern(), orgLabel.intern());
+                                        }
+                                    });
+                                }
+                            };
                         }
                     }
             );
@@ -287,38 +704,51 @@ final public class VisualizationCaches {
      * Cache of organization to sub organizations (uri -> list of uris)
      */
     public static final CachingRDFServiceExecutor<Map<String, Set<String>>> organizationSubOrgs =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, Set<String>>>(visualizationAffinity) {
+            new CachingRDFServiceExecutor<>("organizationSubOrgs",
+                    new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, Set<String>>>() {
                         @Override
                         protected Map<String, Set<String>> callWithService(RDFService rdfService) throws Exception {
+                            final IdAdjacency.Builder builder = new IdAdjacency.Builder();
+                            query(rdfService, "", builder);
+                            return builder.build().asMap();
+                        }
+
+                        @Override
+                        protected Map<String, Set<String>> updateWithService(RDFService rdfService, Map<String, Set<String>> previousResults, Set<String> changedUris) throws Exception {
+                            // Replace every link to or from a changed organization with the links that exist now
+                            final IdAdjacency.Builder links = new IdAdjacency.Builder();
+                            for (String values : CacheUpdateUtils.valuesClauses("org", changedUris)) {
+                                query(rdfService, values, links);
+                            }
+                            for (String values : CacheUpdateUtils.valuesClauses("subOrg", changedUris)) {
+                                query(rdfService, values, links);
+                            }
+
+                            IdAdjacency previous = IdAdjacency.of(previousResults);
+                            Map<String, Set<String>> removals = CacheUpdateUtils.linksInvolving(
+                                    previousResults, previous.inverse().asMap(), changedUris);
+                            return previous.update(removals, links.build().asMap()).asMap();
+                        }
+
+                        private void query(RDFService rdfService, String values, final IdAdjacency.Builder builder) throws Exception {
                             String query = QueryConstants.getSparqlPrefixQuery() +
                                     "SELECT ?org ?subOrg\n" +
                                     "WHERE\n" +
                                     "{\n" +
+                                    values +
                                     "  ?org a foaf:Organization .\n" +
                                     "  ?org <http://purl.obolibrary.org/obo/BFO_0000051> ?subOrg .\n" +
                                     "}\n";
 
-                            final Map<String, Set<String>> map = new HashMap<>();
-
                             rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
                                 protected void processQuerySolution(QuerySolution qs) {
                                     String org    = qs.getResource("org").getURI();
                                     String subOrg = qs.getResource("subOrg").getURI();
 
-                                    Set<String> subOrgs = map.get(org);
-                                    if (subOrgs == null) {
-                                        subOrgs = new HashSet<String>();
-                                        subOrgs.add(subOrg.intern());
-                                        map.put(org.intern(), subOrgs);
-                                    } else {
-                                        subOrgs.add(subOrg.intern());
-                                    }
+                                    builder.add(org, subOrg);
                                 }
                             });
-
-                            return map;
                         }
                     }
             );
@@ -326,32 +756,54 @@ final public class VisualizationCaches {
     /**
      * Organization most specific type label (uri -> string)
      */
-    public static final CachingRDFServiceExecutor<Map<String, String>> organizationToMostSpecificLabel =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>>() {
+    public static final LanguageCachingRDFServiceExecutor<Map<String, String>> organizationToMostSpecificLabel =
+            new LanguageCachingRDFServiceExecutor<>("organizationToMostSpecificLabel",
+                    new LanguageCachingRDFServiceExecutor.CallableFactory<Map<String, String>>() {
                         @Override
-                        protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
-                            String query = QueryConstants.getSparqlPrefixQuery() +
-                                    "SELECT ?org ?typeLabel\n" +
-                                    "WHERE\n" +
-                                    "{\n" +
-                                    "    ?org a foaf:Organization .\n" +
-                                    "    ?org vitro:mostSpecificType ?type .\n" +
-                                    "    ?type rdfs:label ?typeLabel .\n" +
-                                    "}\n";
-
-                            final Map<String, String> map = new HashMap<>();
+                        public CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>> create(final Locale locale) {
+                            return new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, String>>() {
+                                @Override
+                                protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
+                                    final Map<String, String> map = new HashMap<>();
+                                    query(rdfService, "", map);
+                                    return map;
+                                }
 
-                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
-                                protected void processQuerySolution(QuerySolution qs) {
-                                    String org = qs.getResource("org").getURI();
-                                    String typeLabel  = qs.getLiteral("typeLabel").getString();
-                                    map.put(org.intern(), typeLabel.intern());
+                                protected Map<String, String> updateWithService(RDFService rdfService, Map<String, String> previousResults, Set<String> changedUris) throws Exception {
+                                    final Map<String, String> changes = new HashMap<>();
+                                    for (String values : CacheUpdateUtils.valuesClauses("org", changedUris)) {
+                                        query(rdfService, values, changes);
+                                    }
+
+                                    return CacheUpdateUtils.replaceKeys(previousResults, changedUris, changes);
                                 }
-                            });
 
-                            return map;
+                                private void query(RDFService rdfService, String values, final Map<String, String> map) throws Exception {
+                                    String query = QueryConstants.getSparqlPrefixQuery() +
+                                            "SELECT ?org (MIN(?typeLabel_) AS ?typeLabel)\n" +
+                                            "WHERE\n" +
+                                            "{\n" +
+                                            values +
+                                            "    ?org a foaf:Organization .\n" +
+                                            "    ?org vitro:mostSpecificType ?type .\n" +
+                                            preferredLabel("type", "typeLabel", locale) +
+                                            "} GROUP BY ?org\n";
+
+                                    rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                        @Override
+                                        protected void processQuerySolution(QuerySolution qs) {
+                                            if (qs.getLiteral("typeLabel") == null) {
+                                                return;
+                                            }
+
+                                            String org = qs.getResource("org").getURI();
+                                            String typeLabel  = qs.getLiteral("typeLabel").getString();
+                                            map.put(org.intern(), typeLabel.intern());
+                                        }
+                                    });
+                                }
+                            };
                         }
                     }
             );
@@ -360,14 +812,39 @@ final public class VisualizationCaches {
      * Map of people within an organisation (org uri -> list of person uri)
      */
     public static final CachingRDFServiceExecutor<OrganizationPeopleMap> organisationToPeopleMap =
-            new CachingRDFServiceExecutor<OrganizationPeopleMap>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<OrganizationPeopleMap>(visualizationAffinity) {
+            new CachingRDFServiceExecutor<OrganizationPeopleMap>("organisationToPeopleMap",
+                    new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<OrganizationPeopleMap>() {
                         @Override
                         protected OrganizationPeopleMap callWithService(RDFService rdfService) throws Exception {
+                            final IdAdjacency.Builder builder = new IdAdjacency.Builder();
+                            query(rdfService, "", builder);
+                            return new OrganizationPeopleMap(builder.build());
+                        }
+
+                        @Override
+                        protected OrganizationPeopleMap updateWithService(RDFService rdfService, OrganizationPeopleMap previousResults, Set<String> changedUris) throws Exception {
+                            // Replace every position linking a changed organization or person with the positions that exist now
+                            final IdAdjacency.Builder links = new IdAdjacency.Builder();
+                            for (String values : CacheUpdateUtils.valuesClauses("organisation", changedUris)) {
+                                query(rdfService, values, links);
+                            }
+                            for (String values : CacheUpdateUtils.valuesClauses("person", changedUris)) {
+                                query(rdfService, values, links);
+                            }
+
+                            Map<String, Set<String>> removals = CacheUpdateUtils.linksInvolving(
+                                    previousResults.organizationToPeople, previousResults.personToOrganizations, changedUris);
+
+                            return new OrganizationPeopleMap(
+                                    previousResults.getOrganizationToPeopleIds().update(removals, links.build().asMap()));
+                        }
+
+                        private void query(RDFService rdfService, String values, final IdAdjacency.Builder builder) throws Exception {
                             String query = QueryConstants.getSparqlPrefixQuery() +
                                     "SELECT ?organisation ?person\n" +
                                     "WHERE\n" +
                                     "{\n" +
+                                    values +
                                     "  ?organisation a foaf:Organization .\n" +
                                     "  ?organisation core:relatedBy ?position .\n" +
                                     "  ?position a core:Position .\n" +
@@ -375,35 +852,15 @@ final public class VisualizationCaches {
                                     "  ?person a foaf:Person .\n" +
                                     "}\n";
 
-                            final OrganizationPeopleMap orgToPeopleMap = new OrganizationPeopleMap();
-
                             rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
                                 protected void processQuerySolution(QuerySolution qs) {
-                                    String org    = qs.getResource("organisation").getURI().intern();
-                                    String person = qs.getResource("person").getURI().intern();
-
-                                    Set<String> people = orgToPeopleMap.organizationToPeople.get(org);
-                                    if (people == null) {
-                                        people = new HashSet<String>();
-                                        people.add(person);
-                                        orgToPeopleMap.organizationToPeople.put(org, people);
-                                    } else {
-                                        people.add(person);
-                                    }
+                                    String org    = qs.getResource("organisation").getURI();
+                                    String person = qs.getResource("person").getURI();
 
-                                    Set<String> organizations = orgToPeopleMap.personToOrganizations.get(org);
-                                    if (organizations == null) {
-                                        organizations = new HashSet<String>();
-                                        organizations.add(org);
-                                        orgToPeopleMap.organizationToPeople.put(person, organizations);
-                                    } else {
-                                        organizations.add(org);
-                                    }
+                                    builder.add(org, person);
                                 }
                             });
-
-                            return orgToPeopleMap;
                         }
                     }
             );
@@ -411,56 +868,80 @@ final public class VisualizationCaches {
     /**
      * Concept to label
      */
-    public static final CachingRDFServiceExecutor<ConceptLabelMap> conceptToLabel =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<ConceptLabelMap>() {
+    public static final LanguageCachingRDFServiceExecutor<ConceptLabelMap> conceptToLabel =
+            new LanguageCachingRDFServiceExecutor<>("conceptToLabel",
+                    new LanguageCachingRDFServiceExecutor.CallableFactory<ConceptLabelMap>() {
                         @Override
-                        protected ConceptLabelMap callWithService(RDFService rdfService) throws Exception {
-                            VitroRequest vreq = rdfService.getVitroRequest();
-                            String langCtx = "en-US";
-                            // UQAM-Optimization Adjust to linguistic context
-                            try {
-                                langCtx  = vreq.getLocale().getLanguage();
-                                if (!vreq.getLocale().getCountry().isEmpty()) {
-                                    langCtx += "-" + vreq.getLocale().getCountry();
+                        public CachingRDFServiceExecutor.RDFServiceCallable<ConceptLabelMap> create(final Locale locale) {
+                            return new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<ConceptLabelMap>() {
+                                @Override
+                                protected ConceptLabelMap callWithService(RDFService rdfService) throws Exception {
+                                    final ConceptLabelMap map = new ConceptLabelMap();
+                                    query(rdfService, "", map);
+                                    return map;
                                 }
-                            } catch (Exception e) {
-                            }
-                            String query = QueryConstants.getSparqlPrefixQuery() +
-                                    "SELECT ?concept ?label\n" +
-                                    "WHERE\n" +
-                                    "{\n" +
-                                    "    ?person a foaf:Person .\n" +
-                                    "    ?person core:hasResearchArea ?concept .\n" +
-                                    "    ?concept a skos:Concept .\n" +
-                                    "    ?concept rdfs:label ?label .\n" +
-                                    "    FILTER (lang(?label) = '" + langCtx+"' )  \n" +
-                                    "}\n";
 
-//                            final Map<String, String> map = new HashMap<>();
-                            final ConceptLabelMap map = new ConceptLabelMap();
-                            
-                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
-                                protected void processQuerySolution(QuerySolution qs) {
-                                    String conceptURI = qs.getResource("concept").getURI().intern();
-                                    String label  = qs.getLiteral("label").getString().intern();
-                                    String labelLower = label.toLowerCase().intern();
-
-                                    map.conceptToLabel.put(conceptURI, label);
-
-                                    Set<String> conceptSet = map.lowerLabelToConcepts.get(labelLower);
-                                    if (conceptSet == null) {
-                                        conceptSet = new HashSet<String>();
-                                        conceptSet.add(conceptURI);
-                                        map.lowerLabelToConcepts.put(labelLower, conceptSet);
-                                    } else {
-                                        conceptSet.add(conceptURI);
+                                @Override
+                                protected ConceptLabelMap updateWithService(RDFService rdfService, ConceptLabelMap previousResults, Set<String> changedUris) throws Exception {
+                                    final ConceptLabelMap changes = new ConceptLabelMap();
+                                    for (String values : CacheUpdateUtils.valuesClauses("concept", changedUris)) {
+                                        query(rdfService, values, changes);
                                     }
 
+                                    // Remove the existing labels of the changed concepts from the lookup - a concept
+                                    // can have more labels in the language than the one kept in conceptToLabel, so
+                                    // every label is checked
+                                    Map<String, Set<String>> removals = new HashMap<>();
+                                    for (Map.Entry<String, Set<String>> entry : previousResults.lowerLabelToConcepts.entrySet()) {
+                                        for (String conceptURI : entry.getValue()) {
+                                            if (changedUris.contains(conceptURI)) {
+                                                CacheUpdateUtils.put(removals, entry.getKey(), conceptURI);
+                                            }
+                                        }
+                                    }
+
+                                    return new ConceptLabelMap(
+                                            CacheUpdateUtils.replaceKeys(previousResults.conceptToLabel, changedUris, changes.conceptToLabel),
+                                            CacheUpdateUtils.update(previousResults.lowerLabelToConcepts, removals, changes.lowerLabelToConcepts)
+                                    );
                                 }
-                            });
 
-                            return map;
+                                private void query(RDFService rdfService, String values, final ConceptLabelMap map) throws Exception {
+                                    // UQAM-Optimization Adjust to linguistic context
+                                    String langCtx = LanguageCachingRDFServiceExecutor.languageTag(locale);
+                                    String query = QueryConstants.getSparqlPrefixQuery() +
+                                            "SELECT ?concept ?label\n" +
+                                            "WHERE\n" +
+                                            "{\n" +
+                                            values +
+                                            "    ?person a foaf:Person .\n" +
+                                            "    ?person core:hasResearchArea ?concept .\n" +
+                                            "    ?concept a skos:Concept .\n" +
+                                            "    ?concept rdfs:label ?label .\n" +
+                                            "    FILTER (lang(?label) = '" + langCtx+"' )  \n" +
+                                            "}\n";
+
+                                    rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                        protected void processQuerySolution(QuerySolution qs) {
+                                            String conceptURI = qs.getResource("concept").getURI().intern();
+                                            String label  = qs.getLiteral("label").getString().intern();
+                                            String labelLower = label.toLowerCase().intern();
+
+                                            map.conceptToLabel.put(conceptURI, label);
+
+                                            Set<String> conceptSet = map.lowerLabelToConcepts.get(labelLower);
+                                            if (conceptSet == null) {
+                                                conceptSet = new HashSet<String>();
+                                                conceptSet.add(conceptURI);
+                                                map.lowerLabelToConcepts.put(labelLower, conceptSet);
+                                            } else {
+                                                conceptSet.add(conceptURI);
+                                            }
+
+                                        }
+                                    });
+                                }
+                            };
                         }
                     }
             );
@@ -469,48 +950,53 @@ final public class VisualizationCaches {
      * Map of people associated with a concept
      */
     public static final CachingRDFServiceExecutor<ConceptPeopleMap> conceptToPeopleMap =
-            new CachingRDFServiceExecutor<ConceptPeopleMap>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<ConceptPeopleMap>(visualizationAffinity) {
+            new CachingRDFServiceExecutor<ConceptPeopleMap>("conceptToPeopleMap",
+                    new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<ConceptPeopleMap>() {
                         @Override
                         protected ConceptPeopleMap callWithService(RDFService rdfService) throws Exception {
+                            final IdAdjacency.Builder builder = new IdAdjacency.Builder();
+                            query(rdfService, "", builder);
+                            return new ConceptPeopleMap(builder.build());
+                        }
+
+                        @Override
+                        protected ConceptPeopleMap updateWithService(RDFService rdfService, ConceptPeopleMap previousResults, Set<String> changedUris) throws Exception {
+                            // Replace every research area link of a changed concept or person with the links that exist now
+                            final IdAdjacency.Builder links = new IdAdjacency.Builder();
+                            for (String values : CacheUpdateUtils.valuesClauses("concept", changedUris)) {
+                                query(rdfService, values, links);
+                            }
+                            for (String values : CacheUpdateUtils.valuesClauses("person", changedUris)) {
+                                query(rdfService, values, links);
+                            }
+
+                            Map<String, Set<String>> removals = CacheUpdateUtils.linksInvolving(
+                                    previousResults.conceptToPeople, previousResults.personToConcepts, changedUris);
+
+                            return new ConceptPeopleMap(
+                                    previousResults.getConceptToPeopleIds().update(removals, links.build().asMap()));
+                        }
+
+                        private void query(RDFService rdfService, String values, final IdAdjacency.Builder builder) throws Exception {
                             String query = QueryConstants.getSparqlPrefixQuery() +
                                     "SELECT ?person ?concept\n" +
                                     "WHERE\n" +
                                     "{\n" +
+                                    values +
                                     "  ?person a foaf:Person .\n" +
                                     "  ?person core:hasResearchArea ?concept .\n" +
                                     "  ?concept a skos:Concept .\n" +
                                     "}\n";
 
-                            final ConceptPeopleMap conceptPeopleMap = new ConceptPeopleMap();
-
                             rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
                                 protected void processQuerySolution(QuerySolution qs) {
-                                    String concept = qs.getResource("concept").getURI().intern();
-                                    String person  = qs.getResource("person").getURI().intern();
-
-                                    Set<String> people = conceptPeopleMap.conceptToPeople.get(concept);
-                                    if (people == null) {
-                                        people = new HashSet<String>();
-                                        people.add(person);
-                                        conceptPeopleMap.conceptToPeople.put(concept, people);
-                                    } else {
-                                        people.add(person);
-                                    }
+                                    String concept = qs.getResource("concept").getURI();
+                                    String person  = qs.getResource("person").getURI();
 
-                                    Set<String> concepts = conceptPeopleMap.personToConcepts.get(person);
-                                    if (concepts == null) {
-                                        concepts = new HashSet<String>();
-                                        concepts.add(concept);
-                                        conceptPeopleMap.personToConcepts.put(person, concepts);
-                                    } else {
-                                        concepts.add(concept);
-                                    }
+                                    builder.add(concept, person);
                                 }
                             });
-
-                            return conceptPeopleMap;
                         }
                     }
             );
@@ -518,32 +1004,54 @@ final public class VisualizationCaches {
     /**
      * Display labels for people (uri -> label)
      */
-    public static final CachingRDFServiceExecutor<Map<String, String>> personLabels =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>>(visualizationAffinity) {
+    public static final LanguageCachingRDFServiceExecutor<Map<String, String>> personLabels =
+            new LanguageCachingRDFServiceExecutor<>("personLabels",
+                    new LanguageCachingRDFServiceExecutor.CallableFactory<Map<String, String>>() {
                         @Override
-                        protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
-                            String query = QueryConstants.getSparqlPrefixQuery() +
-                                    "SELECT ?person ?personLabel\n" +
-                                    "WHERE\n" +
-                                    "{\n" +
-                                    "  ?person a foaf:Person .\n" +
-                                    "  ?person rdfs:label ?personLabel .\n" +
-                                    "}\n";
-
-                            final Map<String, String> map = new HashMap<>();
+                        public CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>> create(final Locale locale) {
+                            return new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, String>>() {
+                                @Override
+                                protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
+                                    final Map<String, String> map = new HashMap<>();
+                                    query(rdfService, "", map);
+                                    return map;
+                                }
 
-                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
-                                protected void processQuerySolution(QuerySolution qs) {
-                                    String person      = qs.getResource("person").getURI();
-                                    String personLabel = qs.getLiteral("personLabel").getString();
+                                protected Map<String, String> updateWithService(RDFService rdfService, Map<String, String> previousResults, Set<String> changedUris) throws Exception {
+                                    final Map<String, String> changes = new HashMap<>();
+                                    for (String values : CacheUpdateUtils.valuesClauses("person", changedUris)) {
+                                        query(rdfService, values, changes);
+                                    }
 
-                                    map.put(person.intern(), personLabel.intern());
+                                    return CacheUpdateUtils.replaceKeys(previousResults, changedUris, changes);
                                 }
-                            });
 
-                            return map;
+                                private void query(RDFService rdfService, String values, final Map<String, String> map) throws Exception {
+                                    String query = QueryConstants.getSparqlPrefixQuery() +
+                                            "SELECT ?person (MIN(?personLabel_) AS ?personLabel)\n" +
+                                            "WHERE\n" +
+                                            "{\n" +
+                                            values +
+                                            "  ?person a foaf:Person .\n" +
+                                            preferredLabel("person", "personLabel", locale) +
+                                            "} GROUP BY ?person\n";
+
+                                    rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                        @Override
+                                        protected void processQuerySolution(QuerySolution qs) {
+                                            if (qs.getLiteral("personLabel") == null) {
+                                                return;
+                                            }
+
+                                            String person      = qs.getResource("person").getURI();
+                                            String personLabel = qs.getLiteral("personLabel").getString();
+
+                                            map.put(person.intern(), personLabel.intern());
+                                        }
+                                    });
+                                }
+                            };
                         }
                     }
             );
@@ -551,32 +1059,54 @@ final public class VisualizationCaches {
     /**
      * Most specific type for person (uri -> label)
      */
-    public static final CachingRDFServiceExecutor<Map<String, String>> personToMostSpecificLabel =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>>(visualizationAffinity) {
+    public static final LanguageCachingRDFServiceExecutor<Map<String, String>> personToMostSpecificLabel =
+            new LanguageCachingRDFServiceExecutor<>("personToMostSpecificLabel",
+                    new LanguageCachingRDFServiceExecutor.CallableFactory<Map<String, String>>() {
                         @Override
-                        protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
-                            String query = QueryConstants.getSparqlPrefixQuery() +
-                                    "SELECT ?person ?typeLabel\n" +
-                                    "WHERE\n" +
-                                    "{\n" +
-                                    "    ?person a foaf:Person .\n" +
-                                    "    ?person vitro:mostSpecificType ?type .\n" +
-                                    "    ?type rdfs:label ?typeLabel .\n" +
-                                    "}\n";
-
-                            final Map<String, String> map = new HashMap<>();
+                        public CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>> create(final Locale locale) {
+                            return new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, String>>() {
+                                @Override
+                                protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
+                                    final Map<String, String> map = new HashMap<>();
+                                    query(rdfService, "", map);
+                                    return map;
+                                }
 
-                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
-                                protected void processQuerySolution(QuerySolution qs) {
-                                    String person = qs.getResource("person").getURI();
-                                    String typeLabel  = qs.getLiteral("typeLabel").getString();
-                                    map.put(person.intern(), String.valueOf(typeLabel).intern());
+                                protected Map<String, String> updateWithService(RDFService rdfService, Map<String, String> previousResults, Set<String> changedUris) throws Exception {
+                                    final Map<String, String> changes = new HashMap<>();
+                                    for (String values : CacheUpdateUtils.valuesClauses("person", changedUris)) {
+                                        query(rdfService, values, changes);
+                                    }
+
+                                    return CacheUpdateUtils.replaceKeys(previousResults, changedUris, changes);
                                 }
-                            });
 
-                            return map;
+                                private void query(RDFService rdfService, String values, final Map<String, String> map) throws Exception {
+                                    String query = QueryConstants.getSparqlPrefixQuery() +
+                                            "SELECT ?person (MIN(?typeLabel_) AS ?typeLabel)\n" +
+                                            "WHERE\n" +
+                                            "{\n" +
+                                            values +
+                                            "    ?person a foaf:Person .\n" +
+                                            "    ?person vitro:mostSpecificType ?type .\n" +
+                                            preferredLabel("type", "typeLabel", locale) +
+                                            "} GROUP BY ?person\n";
+
+                                    rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                        @Override
+                                        protected void processQuerySolution(QuerySolution qs) {
+                                            if (qs.getLiteral("typeLabel") == null) {
+                                                return;
+                                            }
+
+                                            String person = qs.getResource("person").getURI();
+                                            String typeLabel  = qs.getLiteral("typeLabel").getString();
+                                            map.put(person.intern(), String.valueOf(typeLabel).intern());
+                                        }
+                                    });
+                                }
+                            };
                         }
                     }
             );
@@ -585,62 +1115,77 @@ final public class VisualizationCaches {
      * Person to publication Map (person uri -> list of publication uri)
      */
     public static final CachingRDFServiceExecutor<PersonPublicationMaps> personToPublication =
-            new CachingRDFServiceExecutor<PersonPublicationMaps>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<PersonPublicationMaps>(visualizationAffinity) {
+            personPublications("personToPublication", "<http://purl.obolibrary.org/obo/IAO_0000030>");
+
+    /**
+     * Person to the documents they are an author of (person uri -> list of document uri), as counted by the
+     * publication count visualization
+     */
+    public static final CachingRDFServiceExecutor<PersonPublicationMaps> personToDocument =
+            personPublications("personToDocument", "bibo:Document");
+
+    /**
+     * Publication to journal (publication uri -> journal label)
+     */
+    public static final CachingRDFServiceExecutor<Map<String, String>> publicationToJournal =
+            new CachingRDFServiceExecutor<>("publicationToJournal",
+                    new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, String>>() {
                         @Override
-                        protected PersonPublicationMaps callWithService(RDFService rdfService) throws Exception {
+                        protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
+                            final Map<String, String> map = new HashMap<>();
+                            query(rdfService, "", map);
+                            return map;
+                        }
+
+                        @Override
+                        protected Map<String, String> updateWithService(RDFService rdfService, Map<String, String> previousResults, Set<String> changedUris) throws Exception {
+                            // A changed journal affects all of the documents published in it, and the documents
+                            // must be replaced even if the journal no longer has a label
+                            Set<String> changedDocuments = new HashSet<>(changedUris);
+                            for (String values : CacheUpdateUtils.valuesClauses("changed", changedUris)) {
+                                findDocuments(rdfService, values, changedDocuments);
+                            }
+
+                            final Map<String, String> changes = new HashMap<>();
+                            for (String values : CacheUpdateUtils.valuesClauses("document", changedDocuments)) {
+                                query(rdfService, values, changes);
+                            }
+
+                            return CacheUpdateUtils.replaceKeys(previousResults, changedDocuments, changes);
+                        }
+
+                        /**
+                         * Find the documents published in one of the ?changed resources
+                         */
+                        private void findDocuments(RDFService rdfService, String values, final Set<String> documents) throws Exception {
                             String query = QueryConstants.getSparqlPrefixQuery() +
-                                    "SELECT ?person ?document\n" +
+                                    "SELECT DISTINCT ?document\n" +
                                     "WHERE\n" +
                                     "{\n" +
-                                    "  ?person a foaf:Person .\n" +
-                                    "  ?person core:relatedBy ?authorship .\n" +
-                                    "  ?authorship a core:Authorship .\n" +
-                                    "  ?authorship core:relates ?document .\n" +
+                                    values +
+                                    "  ?document core:hasPublicationVenue ?changed . \n" +
                                     "  ?document a <http://purl.obolibrary.org/obo/IAO_0000030> .\n" +
                                     "}\n";
 
-                            final PersonPublicationMaps map = new PersonPublicationMaps();
-
                             rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
                                 protected void processQuerySolution(QuerySolution qs) {
-                                    Resource person   = qs.getResource("person");
-                                    Resource document = qs.getResource("document");
-
-                                    if (person != null && document != null) {
-                                        String personURI = person.getURI();
-                                        String documentURI = document.getURI();
-
-                                        map.put(personURI.intern(), documentURI.intern());
-                                    }
+                                    documents.add(qs.getResource("document").getURI());
                                 }
                             });
-
-                            return map;
                         }
-                    }
-            );
 
-    /**
-     * Publication to journal (publication uri -> journal label)
-     */
-    public static final CachingRDFServiceExecutor<Map<String, String>> publicationToJournal =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>>(visualizationAffinity) {
-                        @Override
-                        protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
+                        private void query(RDFService rdfService, String values, final Map<String, String> map) throws Exception {
                             String query = QueryConstants.getSparqlPrefixQuery() +
                                     "SELECT ?document ?journalLabel\n" +
                                     "WHERE\n" +
                                     "{\n" +
+                                    values +
                                     "  ?document a <http://purl.obolibrary.org/obo/IAO_0000030> .\n" +
                                     "  ?document core:hasPublicationVenue ?journal . \n" +
                                     "  ?journal rdfs:label ?journalLabel . \n" +
                                     "}\n";
 
-                            final Map<String, String> map = new HashMap<>();
-
                             rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
                                 protected void processQuerySolution(QuerySolution qs) {
@@ -650,8 +1195,6 @@ final public class VisualizationCaches {
                                     map.put(document.intern(), journalLabel.intern());
                                 }
                             });
-
-                            return map;
                         }
                     }
             );
@@ -660,21 +1203,64 @@ final public class VisualizationCaches {
      * Publication to year (publication uri -> year)
      */
     public static final CachingRDFServiceExecutor<Map<String, String>> publicationToYear =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>>(visualizationAffinity) {
+            new CachingRDFServiceExecutor<>("publicationToYear",
+                    new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, String>>() {
                         @Override
                         protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
+                            final Map<String, String> map = new HashMap<>();
+                            query(rdfService, "", map);
+                            return map;
+                        }
+
+                        @Override
+                        protected Map<String, String> updateWithService(RDFService rdfService, Map<String, String> previousResults, Set<String> changedUris) throws Exception {
+                            // A changed date value affects the document it is attached to, and the document must be
+                            // replaced even if it no longer has a date
+                            Set<String> changedDocuments = new HashSet<>(changedUris);
+                            for (String values : CacheUpdateUtils.valuesClauses("changed", changedUris)) {
+                                findDocuments(rdfService, values, changedDocuments);
+                            }
+
+                            final Map<String, String> changes = new HashMap<>();
+                            for (String values : CacheUpdateUtils.valuesClauses("document", changedDocuments)) {
+                                query(rdfService, values, changes);
+                            }
+
+                            return CacheUpdateUtils.replaceKeys(previousResults, changedDocuments, changes);
+                        }
+
+                        /**
+                         * Find the documents whose date value is one of the ?changed resources
+                         */
+                        private void findDocuments(RDFService rdfService, String values, final Set<String> documents) throws Exception {
+                            String query = QueryConstants.getSparqlPrefixQuery() +
+                                    "SELECT DISTINCT ?document\n" +
+                                    "WHERE\n" +
+                                    "{\n" +
+                                    values +
+                                    "  ?document core:dateTimeValue ?changed . \n" +
+                                    "  ?document a <http://purl.obolibrary.org/obo/IAO_0000030> .\n" +
+                                    "}\n";
+
+                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                @Override
+                                protected void processQuerySolution(QuerySolution qs) {
+                                    documents.add(qs.getResource("document").getURI());
+                                }
+                            });
+                        }
+
+                        private void query(RDFService rdfService, String values, final Map<String, String> map) throws Exception {
                             String query = QueryConstants.getSparqlPrefixQuery() +
                                     "SELECT ?document ?publicationDate\n" +
                                     "WHERE\n" +
                                     "{\n" +
+                                    values +
                                     "  ?document a <http://purl.obolibrary.org/obo/IAO_0000030> .\n" +
                                     "  ?document core:dateTimeValue ?dateTimeValue . \n" +
                                     "  ?dateTimeValue core:dateTime ?publicationDate . \n" +
                                     "}\n";
 
-                            final Map<String, String> map = new HashMap<>();
-
                             rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
                                 protected void processQuerySolution(QuerySolution qs) {
@@ -690,8 +1276,6 @@ final public class VisualizationCaches {
                                     }
                                 }
                             });
-
-                            return map;
                         }
                     }
             );
@@ -700,14 +1284,38 @@ final public class VisualizationCaches {
      * Person to grant (person uri -> grant uri)
      */
     public static final CachingRDFServiceExecutor<Map<String, Set<String>>> personToGrant =
-            new CachingRDFServiceExecutor<Map<String, Set<String>>>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, Set<String>>>(visualizationAffinity) {
+            new CachingRDFServiceExecutor<Map<String, Set<String>>>("personToGrant",
+                    new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, Set<String>>>() {
                         @Override
                         protected Map<String, Set<String>> callWithService(RDFService rdfService) throws Exception {
+                            final IdAdjacency.Builder builder = new IdAdjacency.Builder();
+                            query(rdfService, "", builder);
+                            return builder.build().asMap();
+                        }
+
+                        @Override
+                        protected Map<String, Set<String>> updateWithService(RDFService rdfService, Map<String, Set<String>> previousResults, Set<String> changedUris) throws Exception {
+                            // Replace every investigator role of a changed person or grant with the roles that exist now
+                            final IdAdjacency.Builder links = new IdAdjacency.Builder();
+                            for (String values : CacheUpdateUtils.valuesClauses("person", changedUris)) {
+                                query(rdfService, values, links);
+                            }
+                            for (String values : CacheUpdateUtils.valuesClauses("grant", changedUris)) {
+                                query(rdfService, values, links);
+                            }
+
+                            IdAdjacency previous = IdAdjacency.of(previousResults);
+                            Map<String, Set<String>> removals = CacheUpdateUtils.linksInvolving(
+                                    previousResults, previous.inverse().asMap(), changedUris);
+                            return previous.update(removals, links.build().asMap()).asMap();
+                        }
+
+                        private void query(RDFService rdfService, String values, final IdAdjacency.Builder builder) throws Exception {
                             String query = QueryConstants.getSparqlPrefixQuery() +
                                     "SELECT ?person ?grant\n" +
                                     "WHERE\n" +
                                     "{\n" +
+                                    values +
                                     "  ?person a foaf:Person .\n" +
                                     "  ?person <http://purl.obolibrary.org/obo/RO_0000053> ?role .\n" +
                                     "  { ?role a core:PrincipalInvestigatorRole . } UNION { ?role a core:CoPrincipalInvestigatorRole . } \n" +
@@ -715,8 +1323,6 @@ final public class VisualizationCaches {
                                     "  ?grant a core:Grant .\n" +
                                     "}\n";
 
-                            final Map<String, Set<String>> map = new HashMap<String, Set<String>>();
-
                             rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
                                 protected void processQuerySolution(QuerySolution qs) {
@@ -724,45 +1330,96 @@ final public class VisualizationCaches {
                                     Resource grant  = qs.getResource("grant");
 
                                     if (person != null && grant != null) {
-                                        String personURI = person.getURI();
-
-                                        Set<String> documents = map.get(personURI);
-                                        if (documents == null) {
-                                            documents = new HashSet<String>();
-                                            documents.add(grant.getURI().intern());
-                                            map.put(personURI.intern(), documents);
-                                        } else {
-                                            documents.add(grant.getURI().intern());
-                                        }
+                                        builder.add(person.getURI(), grant.getURI());
                                     }
                                 }
                             });
-
-                            return map;
                         }
                     }
             );
 
+    /**
+     * Person to the grants they have any role on, with the year each role started
+     */
+    public static final CachingRDFServiceExecutor<PersonGrantRoles> personToGrantRole =
+            personGrantRoles("personToGrantRole", "");
+
+    /**
+     * Person to the grants they have an investigator role on (principal investigator, co-principal investigator or
+     * investigator), with the year each role started
+     */
+    public static final CachingRDFServiceExecutor<PersonGrantRoles> personToInvestigatorGrant =
+            personGrantRoles("personToInvestigatorGrant",
+                    "  { ?role a core:PrincipalInvestigatorRole . } UNION { ?role a core:CoPrincipalInvestigatorRole . } UNION { ?role a core:InvestigatorRole . } \n");
+
     /**
      * Grant to year (grant uri -> year)
      */
     public static final CachingRDFServiceExecutor<Map<String, String>> grantToYear =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>>(visualizationAffinity) {
+            new CachingRDFServiceExecutor<>("grantToYear",
+                    new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, String>>() {
                         @Override
                         protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
+                            final Map<String, String> map = new HashMap<>();
+                            query(rdfService, "", map);
+                            return map;
+                        }
+
+                        @Override
+                        protected Map<String, String> updateWithService(RDFService rdfService, Map<String, String> previousResults, Set<String> changedUris) throws Exception {
+                            // A changed date interval or start date affects the grant it is attached to, and the grant
+                            // must be replaced even if it no longer has a date
+                            Set<String> changedGrants = new HashSet<>(changedUris);
+                            for (String values : CacheUpdateUtils.valuesClauses("changed", changedUris)) {
+                                findGrants(rdfService, values, changedGrants);
+                            }
+
+                            final Map<String, String> changes = new HashMap<>();
+                            for (String values : CacheUpdateUtils.valuesClauses("grant", changedGrants)) {
+                                query(rdfService, values, changes);
+                            }
+
+                            return CacheUpdateUtils.replaceKeys(previousResults, changedGrants, changes);
+                        }
+
+                        /**
+                         * Find the grants whose date interval is, or starts with, one of the ?changed resources
+                         */
+                        private void findGrants(RDFService rdfService, String values, final Set<String> grants) throws Exception {
+                            String query = QueryConstants.getSparqlPrefixQuery() +
+                                    "SELECT DISTINCT ?grant\n" +
+                                    "WHERE\n" +
+                                    "{\n" +
+                                    values +
+                                    "  { \n" +
+                                    "    ?grant core:dateTimeInterval ?changed .\n" +
+                                    "  } UNION { \n" +
+                                    "    ?grant core:dateTimeInterval ?dateTimeIntervalValue .\n" +
+                                    "    ?dateTimeIntervalValue core:start ?changed .\n" +
+                                    "  } \n" +
+                                    "  ?grant a core:Grant .\n" +
+                                    "}\n";
+
+                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                @Override
+                                protected void processQuerySolution(QuerySolution qs) {
+                                    grants.add(qs.getResource("grant").getURI());
+                                }
+                            });
+                        }
+
+                        private void query(RDFService rdfService, String values, final Map<String, String> map) throws Exception {
                             String query = QueryConstants.getSparqlPrefixQuery() +
                                     "SELECT ?grant ?startDateTimeValue\n" +
                                     "WHERE\n" +
                                     "{\n" +
+                                    values +
                                     "  ?grant a core:Grant .\n" +
                                     "  ?grant core:dateTimeInterval ?dateTimeIntervalValue . \n" +
                                     "  ?dateTimeIntervalValue core:start ?startDate . \n" +
                                     "  ?startDate core:dateTime ?startDateTimeValue . \n" +
                                     "}\n";
 
-                            final Map<String, String> map = new HashMap<>();
-
                             rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
                                 protected void processQuerySolution(QuerySolution qs) {
@@ -778,8 +1435,6 @@ final public class VisualizationCaches {
                                     }
                                 }
                             });
-
-                            return map;
                         }
                     }
             );
@@ -788,14 +1443,69 @@ final public class VisualizationCaches {
      * Grant to year of start in role (grant uri -> year)
      */
     public static final CachingRDFServiceExecutor<Map<String, String>> grantToRoleYear =
-            new CachingRDFServiceExecutor<>(
-                    new CachingRDFServiceExecutor.RDFServiceCallable<Map<String, String>>(visualizationAffinity) {
+            new CachingRDFServiceExecutor<>("grantToRoleYear",
+                    new CachingRDFServiceExecutor.IncrementalRDFServiceCallable<Map<String, String>>() {
                         @Override
                         protected Map<String, String> callWithService(RDFService rdfService) throws Exception {
+                            final Map<String, String> map = new HashMap<>();
+                            query(rdfService, "", map);
+                            return map;
+                        }
+
+                        @Override
+                        protected Map<String, String> updateWithService(RDFService rdfService, Map<String, String> previousResults, Set<String> changedUris) throws Exception {
+                            // A changed role, date interval or start date affects the grant it is attached to, and the
+                            // grant must be replaced even if none of its roles has a date any more
+                            Set<String> changedGrants = new HashSet<>(changedUris);
+                            for (String values : CacheUpdateUtils.valuesClauses("changed", changedUris)) {
+                                findGrants(rdfService, values, changedGrants);
+                            }
+
+                            final Map<String, String> changes = new HashMap<>();
+                            for (String values : CacheUpdateUtils.valuesClauses("grant", changedGrants)) {
+                                query(rdfService, values, changes);
+                            }
+
+                            return CacheUpdateUtils.replaceKeys(previousResults, changedGrants, changes);
+                        }
+
+                        /**
+                         * Find the grants with a role that is, or has a date interval or start date that is, one of the
+                         * ?changed resources
+                         */
+                        private void findGrants(RDFService rdfService, String values, final Set<String> grants) throws Exception {
+                            String query = QueryConstants.getSparqlPrefixQuery() +
+                                    "SELECT DISTINCT ?grant\n" +
+                                    "WHERE\n" +
+                                    "{\n" +
+                                    values +
+                                    "  { \n" +
+                                    "    ?grant core:relates ?changed .\n" +
+                                    "  } UNION { \n" +
+                                    "    ?grant core:relates ?role .\n" +
+                                    "    ?role core:dateTimeInterval ?changed .\n" +
+                                    "  } UNION { \n" +
+                                    "    ?grant core:relates ?role .\n" +
+                                    "    ?role core:dateTimeInterval ?dateTimeIntervalValue .\n" +
+                                    "    ?dateTimeIntervalValue core:start ?changed .\n" +
+                                    "  } \n" +
+                                    "  ?grant a core:Grant .\n" +
+                                    "}\n";
+
+                            rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
+                                @Override
+                                protected void processQuerySolution(QuerySolution qs) {
+                                    grants.add(qs.getResource("grant").getURI());
+                                }
+                            });
+                        }
+
+                        private void query(RDFService rdfService, String values, final Map<String, String> map) throws Exception {
                             String query = QueryConstants.getSparqlPrefixQuery() +
                                     "SELECT ?grant ?startDateTimeValue\n" +
                                     "WHERE\n" +
                                     "{\n" +
+                                    values +
                                     "  ?grant a core:Grant .\n" +
                                     "  ?grant core:relates ?role .\n" +
                                     "  ?role core:dateTimeInterval ?dateTimeIntervalValue . \n" +
@@ -803,8 +1513,6 @@ final public class VisualizationCaches {
                                     "  ?startDate core:dateTime ?startDateTimeValue . \n" +
                                     "}\n";
 
-                            final Map<String, String> map = new HashMap<>();
-
                             rdfService.sparqlSelectQuery(query, new ResultSetConsumer() {
                                 @Override
                                 protected void processQuerySolution(QuerySolution qs) {
@@ -820,8 +1528,6 @@ final public class VisualizationCaches {
                                     }
                                 }
                             });
-
-                            return map;
                         }
                     }
             );
@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import edu.cornell.mannlib.vitro.webapp.visualization.constants.VOConstants;
 import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UniqueIDGenerator;
@@ -21,12 +22,25 @@ import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UtilityFunctions;
  */
 public class Collaboration {
 
+	/**
+	 * Year of activities without a known year, in counted collaborations
+	 */
+	public static final int UNKNOWN_YEAR = Integer.MIN_VALUE;
+
 	private int collaborationID;
 	private Map<String, Integer> yearToActivityCount;
 	private Set<Activity> activities = new HashSet<Activity>();
 	private Collaborator sourceCollaborator;
 	private Collaborator targetCollaborator;
 
+	/*
+	 * For counted collaborations, the years of the activities in ascending order (unknown first), and the number
+	 * of activities in each year.
+	 * */
+	private int[] activityYears;
+	private int[] activityYearCounts;
+	private int numOfCounted;
+
 	public Collaboration(Collaborator sourceCollaborator,
 						 Collaborator  targetCollaborator,
 						 Activity seedActivity,
@@ -37,6 +51,28 @@ public class Collaboration {
 		this.activities.add(seedActivity);
 	}
 
+	/**
+	 * A collaboration made from the number of shared activities in each year, rather than from the activities,
+	 * which are not kept - getCollaborationActivities is empty.
+	 *
+	 * @param activityYears the years of the activities, in ascending order, with UNKNOWN_YEAR for those without one
+	 * @param activityYearCounts the number of activities in each year
+	 */
+	public Collaboration(Collaborator sourceCollaborator,
+						 Collaborator targetCollaborator,
+						 int[] activityYears,
+						 int[] activityYearCounts,
+						 UniqueIDGenerator uniqueIDGenerator) {
+		collaborationID = uniqueIDGenerator.getNextNumericID();
+		this.sourceCollaborator = sourceCollaborator;
+		this.targetCollaborator = targetCollaborator;
+		this.activityYears = activityYears;
+		this.activityYearCounts = activityYearCounts;
+		for (int count : activityYearCounts) {
+			numOfCounted += count;
+		}
+	}
+
 	public int getCollaborationID() {
 		return collaborationID;
 	}
@@ -54,7 +90,7 @@ public class Collaboration {
 	}
 
 	public int getNumOfCollaborations() {
-		return activities.size();
+		return activityYears != null ? numOfCounted : activities.size();
 	}
 
 	public void addActivity(Activity activity) {
@@ -63,7 +99,14 @@ public class Collaboration {
 
 	public Map<String, Integer> getYearToActivityCount() {
 		if (yearToActivityCount == null) {
-			yearToActivityCount = UtilityFunctions.getYearToActivityCount(activities);
+			if (activityYears != null) {
+				yearToActivityCount = new TreeMap<String, Integer>();
+				for (int i = 0; i < activityYears.length; i++) {
+					yearToActivityCount.put(getYearLabel(activityYears[i]), activityYearCounts[i]);
+				}
+			} else {
+				yearToActivityCount = UtilityFunctions.getYearToActivityCount(activities);
+			}
 		}
 		return yearToActivityCount;
 	}
@@ -76,6 +119,11 @@ public class Collaboration {
 	@SuppressWarnings("serial")
 	public Map<String, Integer> getEarliestCollaborationYearCount() {
 
+		if (activityYears != null) {
+			int first = activityYears.length > 0 && activityYears[0] == UNKNOWN_YEAR ? 1 : 0;
+			return first < activityYears.length ? yearCount(first) : null;
+		}
+
 		/*
 		 * We do not want to consider the default Activity year when we are checking
 		 * for the min or max Activity year.
@@ -107,6 +155,11 @@ public class Collaboration {
 	@SuppressWarnings("serial")
 	public Map<String, Integer> getLatestCollaborationYearCount() {
 
+		if (activityYears != null) {
+			int last = activityYears.length - 1;
+			return last > -1 && activityYears[last] != UNKNOWN_YEAR ? yearCount(last) : null;
+		}
+
 		/*
 		 * We do not want to consider the default Activity year when we are checking
 		 * for the min or max Activity year.
@@ -136,6 +189,10 @@ public class Collaboration {
 
 	public Integer getUnknownCollaborationYearCount() {
 
+		if (activityYears != null) {
+			return activityYears.length > 0 && activityYears[0] == UNKNOWN_YEAR ? activityYearCounts[0] : null;
+		}
+
 		Integer unknownYearActivityCount = this.getYearToActivityCount()
 										.get(VOConstants.DEFAULT_ACTIVITY_YEAR);
 
@@ -149,5 +206,13 @@ public class Collaboration {
 		}
 	}
 
+	private Map<String, Integer> yearCount(int index) {
+		Map<String, Integer> yearCount = new HashMap<String, Integer>(2);
+		yearCount.put(getYearLabel(activityYears[index]), activityYearCounts[index]);
+		return yearCount;
+	}
 
+	private static String getYearLabel(int year) {
+		return year == UNKNOWN_YEAR ? VOConstants.DEFAULT_ACTIVITY_YEAR : String.valueOf(year);
+	}
 }
@@ -0,0 +1,39 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+package edu.cornell.mannlib.vitro.webapp.visualization.visutils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A data response that is written straight to the response stream, rather than being
+ * returned as a String. Used for responses that may be large, such as network files.
+ */
+public abstract class StreamingDataResponse {
+
+	private final String contentType;
+
+	private final String fileName;
+
+	/**
+	 * @param contentType content type of the response
+	 * @param fileName file name to download the response as, or null to show it inline
+	 */
+	public StreamingDataResponse(String contentType, String fileName) {
+		this.contentType = contentType;
+		this.fileName = fileName;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Write the content to the stream. The stream must not be closed.
+	 */
+	public abstract void writeTo(OutputStream out) throws IOException;
+
+}
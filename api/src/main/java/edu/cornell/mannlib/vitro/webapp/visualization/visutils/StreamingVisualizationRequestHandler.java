@@ -0,0 +1,26 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+package edu.cornell.mannlib.vitro.webapp.visualization.visutils;
+
+import org.apache.commons.logging.Log;
+
+import org.apache.jena.query.Dataset;
+
+import edu.cornell.mannlib.vitro.webapp.controller.VitroRequest;
+import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
+
+/**
+ * Implemented by visualization request handlers that can write some of their data responses
+ * straight to the response stream. The DataVisualizationController asks for a streaming
+ * response first, and uses generateDataVisualization when there isn't one.
+ */
+public interface StreamingVisualizationRequestHandler extends VisualizationRequestHandler {
+
+	/**
+	 * @return the response to stream, or null if the request should be served by
+	 * generateDataVisualization
+	 */
+	StreamingDataResponse generateStreamingDataVisualization(VitroRequest vitroRequest,
+										   	 Log log,
+										   	 Dataset dataset) throws MalformedQueryParametersException;
+
+}
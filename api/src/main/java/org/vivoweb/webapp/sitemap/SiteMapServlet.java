@@ -10,6 +10,8 @@ import edu.cornell.mannlib.vitro.webapp.controller.freemarker.UrlBuilder;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.RDFServiceException;
 import edu.cornell.mannlib.vitro.webapp.rdfservice.ResultSetConsumer;
 import edu.cornell.mannlib.vitro.webapp.visualization.constants.QueryConstants;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.VisualizationCaches;
 import org.apache.commons.io.IOUtils;
 
 import javax.servlet.ServletException;
@@ -68,26 +70,22 @@ public class SiteMapServlet extends VitroHttpServlet {
                 out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
                 out.println("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">");
 
-                try {
-                    vreq.getRDFService().sparqlSelectQuery(query, new ResultSetConsumer() {
-                        @Override
-                        protected void processQuerySolution(QuerySolution qs) {
-                            String person = qs.getResource("person").getURI();
-
-                            String profileUrl = UrlBuilder.getIndividualProfileUrl(person, vreq);
-
-                            if (!StringUtils.isEmpty(profileUrl)) {
-                                try {
-                                    out.println("  <url>");
-                                    out.println("    <loc>" + schemeAndServer + profileUrl + "</loc>");
-                                    out.println("    <changefreq>weekly</changefreq>");
-                                    out.println("  </url>");
-                                } catch (Exception e) {
-                                }
+                // Use the cached directory of people if it is available, rather than querying for everyone
+                if (VisualizationCaches.people.isCached()) {
+                    UriDictionary dictionary = UriDictionary.getInstance();
+                    for (int person : VisualizationCaches.people.getNoWait(vreq.getRDFService()).keys()) {
+                        writeUrl(out, schemeAndServer, dictionary.getUri(person), vreq);
+                    }
+                } else {
+                    try {
+                        vreq.getRDFService().sparqlSelectQuery(query, new ResultSetConsumer() {
+                            @Override
+                            protected void processQuerySolution(QuerySolution qs) {
+                                writeUrl(out, schemeAndServer, qs.getResource("person").getURI(), vreq);
                             }
-                        }
-                    });
-                } catch (RDFServiceException rse) {
+                        });
+                    } catch (RDFServiceException rse) {
+                    }
                 }
 
                 out.println("</urlset>");
@@ -96,6 +94,20 @@ public class SiteMapServlet extends VitroHttpServlet {
         super.doGet(request, response);
     }
 
+    private void writeUrl(ServletOutputStream out, String schemeAndServer, String person, VitroRequest vreq) {
+        String profileUrl = UrlBuilder.getIndividualProfileUrl(person, vreq);
+
+        if (!StringUtils.isEmpty(profileUrl)) {
+            try {
+                out.println("  <url>");
+                out.println("    <loc>" + schemeAndServer + profileUrl + "</loc>");
+                out.println("    <changefreq>weekly</changefreq>");
+                out.println("  </url>");
+            } catch (Exception e) {
+            }
+        }
+    }
+
     private String getSchemeAndServer(HttpServletRequest request) {
         String serverName  = request.getServerName();
         int serverPort     = request.getServerPort();
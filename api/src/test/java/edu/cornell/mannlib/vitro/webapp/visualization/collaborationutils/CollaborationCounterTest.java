@@ -0,0 +1,143 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Activity;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaboration;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UniqueIDGenerator;
+
+public class CollaborationCounterTest {
+	private static final String NS = "http://example.org/counter/";
+
+	@Test
+	public void countsPairsByYear() {
+		UniqueIDGenerator nodeIds = new UniqueIDGenerator();
+		Collaborator a = new Collaborator(NS + "a", nodeIds);
+		Collaborator b = new Collaborator(NS + "b", nodeIds);
+		Collaborator c = new Collaborator(NS + "c", nodeIds);
+
+		CollaborationCounter counter = new CollaborationCounter();
+		counter.add(a, b, 2001);
+		counter.add(b, a, 2001);
+		counter.add(a, b, Collaboration.UNKNOWN_YEAR);
+		counter.add(a, b, 1999);
+		counter.add(b, c, 2005);
+		assertEquals(2, counter.size());
+
+		List<Collaboration> collaborations = counter.getCollaborations(new UniqueIDGenerator());
+		assertEquals(2, collaborations.size());
+
+		Collaboration ab = collaborations.get(0);
+		assertSame(a, ab.getSourceCollaborator());
+		assertSame(b, ab.getTargetCollaborator());
+		assertEquals(4, ab.getNumOfCollaborations());
+		assertEquals(Integer.valueOf(2), ab.getYearToActivityCount().get("2001"));
+		assertEquals(Integer.valueOf(1), ab.getEarliestCollaborationYearCount().get("1999"));
+		assertEquals(Integer.valueOf(2), ab.getLatestCollaborationYearCount().get("2001"));
+		assertEquals(Integer.valueOf(1), ab.getUnknownCollaborationYearCount());
+
+		Collaboration bc = collaborations.get(1);
+		assertSame(b, bc.getSourceCollaborator());
+		assertEquals(1, bc.getNumOfCollaborations());
+		assertNull(bc.getUnknownCollaborationYearCount());
+	}
+
+	/**
+	 * The collaborations must be the same as those created by finding each edge through a "id1*id2" string key,
+	 * and adding each shared activity to it, as the query runners used to.
+	 */
+	@Test
+	public void matchesStringKeyedEdges() {
+		Random random = new Random(42);
+		for (int round = 0; round < 20; round++) {
+			UniqueIDGenerator nodeIds = new UniqueIDGenerator();
+			List<Collaborator> people = new ArrayList<Collaborator>();
+			for (int i = 0, count = 2 + random.nextInt(40); i < count; i++) {
+				people.add(new Collaborator(NS + "person" + i, nodeIds));
+			}
+
+			// The collaborators of each activity, in the order the edges between them are made
+			List<Activity> activities = new ArrayList<Activity>();
+			List<List<Collaborator>> activityPeople = new ArrayList<List<Collaborator>>();
+			for (int i = 0, count = 1 + random.nextInt(200); i < count; i++) {
+				Activity activity = new Activity(NS + "activity" + i);
+				if (random.nextInt(5) > 0) {
+					activity.setActivityDate((1990 + random.nextInt(25)) + "-01-01T00:00:00");
+				}
+
+				List<Collaborator> members = new ArrayList<Collaborator>();
+				for (Collaborator person : people) {
+					if (random.nextInt(people.size()) < 3) {
+						members.add(person);
+					}
+				}
+
+				activities.add(activity);
+				activityPeople.add(members);
+			}
+
+			Map<String, Collaboration> stringKeyed = new HashMap<String, Collaboration>();
+			List<Collaboration> expected = new ArrayList<Collaboration>();
+			UniqueIDGenerator expectedEdgeIds = new UniqueIDGenerator();
+			CollaborationCounter counter = new CollaborationCounter();
+
+			for (int i = 0; i < activities.size(); i++) {
+				Activity activity = activities.get(i);
+				List<Collaborator> members = activityPeople.get(i);
+				int year = CollaborationCounter.getYear(activity);
+
+				for (int ii = 0; ii < members.size() - 1; ii++) {
+					for (int jj = ii + 1; jj < members.size(); jj++) {
+						Collaborator source = members.get(ii);
+						Collaborator target = members.get(jj);
+
+						String key = edgeKey(source.getCollaboratorID(), target.getCollaboratorID());
+						Collaboration edge = stringKeyed.get(key);
+						if (edge == null) {
+							edge = new Collaboration(source, target, activity, expectedEdgeIds);
+							stringKeyed.put(key, edge);
+							expected.add(edge);
+						} else {
+							edge.addActivity(activity);
+						}
+
+						counter.add(source, target, year);
+					}
+				}
+			}
+
+			List<Collaboration> actual = counter.getCollaborations(new UniqueIDGenerator());
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				Collaboration expectedEdge = expected.get(i);
+				Collaboration actualEdge = actual.get(i);
+
+				assertEquals(expectedEdge.getCollaborationID(), actualEdge.getCollaborationID());
+				assertSame(expectedEdge.getSourceCollaborator(), actualEdge.getSourceCollaborator());
+				assertSame(expectedEdge.getTargetCollaborator(), actualEdge.getTargetCollaborator());
+				assertEquals(expectedEdge.getNumOfCollaborations(), actualEdge.getNumOfCollaborations());
+				assertEquals(expectedEdge.getYearToActivityCount(), actualEdge.getYearToActivityCount());
+				assertEquals(expectedEdge.getEarliestCollaborationYearCount(), actualEdge.getEarliestCollaborationYearCount());
+				assertEquals(expectedEdge.getLatestCollaborationYearCount(), actualEdge.getLatestCollaborationYearCount());
+				assertEquals(expectedEdge.getUnknownCollaborationYearCount(), actualEdge.getUnknownCollaborationYearCount());
+			}
+		}
+	}
+
+	private static String edgeKey(int id1, int id2) {
+		return id1 < id2 ? id1 + "*" + id2 : id2 + "*" + id1;
+	}
+}
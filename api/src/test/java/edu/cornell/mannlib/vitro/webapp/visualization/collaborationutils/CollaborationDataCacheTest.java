@@ -0,0 +1,251 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.exceptions.MalformedQueryParametersException;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Activity;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaboration;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UniqueIDGenerator;
+
+public class CollaborationDataCacheTest {
+	private static final String NS = "http://example.org/network/";
+
+	private CollaborationDataCache<CoAuthorshipData> cache;
+
+	@Before
+	public void setUp() {
+		cache = new CollaborationDataCache<CoAuthorshipData>("test");
+	}
+
+	@After
+	public void tearDown() {
+		CollaborationDataCache.setLimits(CollaborationDataCache.DEFAULT_MAX_ENTRIES, CollaborationDataCache.DEFAULT_MAX_WEIGHT);
+		CollaborationDataCache.setExpiry(CollaborationDataCache.DEFAULT_EXPIRE_AFTER_WRITE, CollaborationDataCache.DEFAULT_EXPIRE_AFTER_ACCESS);
+		CollaborationDataCache.clearAll();
+	}
+
+	@Test
+	public void cachesNetworks() {
+		CoAuthorshipData data = network("ego", 2, "doc1");
+		cache.put(NS + "ego", data);
+
+		assertSame(data, cache.get(NS + "ego"));
+		assertNull(cache.get(NS + "other"));
+		assertEquals(1, cache.size());
+		assertEquals(5, cache.getTotalWeight());
+	}
+
+	@Test
+	public void coalescesConcurrentLoads() throws Exception {
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CoAuthorshipData data = network("ego", 1, "doc1");
+
+		final CollaborationDataCache.Loader<CoAuthorshipData> loader = new CollaborationDataCache.Loader<CoAuthorshipData>() {
+			@Override
+			public CoAuthorshipData load() {
+				loads.incrementAndGet();
+				loading.countDown();
+				await(release);
+				return data;
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<CoAuthorshipData>> results = new ArrayList<Future<CoAuthorshipData>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(new Callable<CoAuthorshipData>() {
+					@Override
+					public CoAuthorshipData call() throws Exception {
+						return cache.get(NS + "ego", loader);
+					}
+				}));
+			}
+
+			// Let the other requests reach the cache while the first is still loading
+			await(loading);
+			Thread.sleep(100);
+			release.countDown();
+
+			for (Future<CoAuthorshipData> result : results) {
+				assertSame(data, result.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(1, loads.get());
+		assertSame(data, cache.get(NS + "ego"));
+	}
+
+	@Test
+	public void loadFailuresAreNotCached() throws Exception {
+		try {
+			cache.get(NS + "ego", new CollaborationDataCache.Loader<CoAuthorshipData>() {
+				@Override
+				public CoAuthorshipData load() throws MalformedQueryParametersException {
+					throw new MalformedQueryParametersException("bad ego");
+				}
+			});
+			fail("Expected the loader's exception");
+		} catch (MalformedQueryParametersException e) {
+			assertEquals("bad ego", e.getMessage());
+		}
+
+		CoAuthorshipData data = network("ego", 1, "doc1");
+		assertSame(data, cache.get(NS + "ego", loaderOf(data)));
+	}
+
+	@Test
+	public void changesDropDependentNetworks() {
+		cache.put(NS + "ego1", network("ego1", 2, "doc1"));
+		cache.put(NS + "ego2", network("ego2", 2, "doc2"));
+
+		CollaborationDataCache.notifyChanges(Collections.singleton(NS + "unrelated"));
+		assertEquals(2, cache.size());
+
+		// An activity of one network
+		CollaborationDataCache.notifyChanges(Collections.singleton(NS + "doc1"));
+		assertNull(cache.get(NS + "ego1"));
+		assertNotNull(cache.get(NS + "ego2"));
+
+		// A collaborator of the other
+		CollaborationDataCache.notifyChanges(Collections.singleton(NS + "ego2-collaborator1"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getTotalWeight());
+	}
+
+	@Test
+	public void networkChangedWhileLoadingIsNotCached() throws Exception {
+		final CoAuthorshipData data = network("ego", 1, "doc1");
+
+		CoAuthorshipData loaded = cache.get(NS + "ego", new CollaborationDataCache.Loader<CoAuthorshipData>() {
+			@Override
+			public CoAuthorshipData load() {
+				CollaborationDataCache.notifyChanges(Collections.singleton(NS + "doc1"));
+				return data;
+			}
+		});
+
+		assertSame(data, loaded);
+		assertNull(cache.get(NS + "ego"));
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		CollaborationDataCache.setLimits(2, CollaborationDataCache.DEFAULT_MAX_WEIGHT);
+
+		cache.put(NS + "ego1", network("ego1", 1, "doc1"));
+		cache.put(NS + "ego2", network("ego2", 1, "doc2"));
+		assertNotNull(cache.get(NS + "ego1"));
+		cache.put(NS + "ego3", network("ego3", 1, "doc3"));
+
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get(NS + "ego1"));
+		assertNull(cache.get(NS + "ego2"));
+		assertNotNull(cache.get(NS + "ego3"));
+	}
+
+	@Test
+	public void evictsByWeight() {
+		// Each network weighs 1 + 3 collaborators + 3 collaborations
+		CollaborationDataCache.setLimits(100, 15);
+
+		cache.put(NS + "ego1", network("ego1", 3, "doc1"));
+		cache.put(NS + "ego2", network("ego2", 3, "doc2"));
+		assertEquals(14, cache.getTotalWeight());
+
+		cache.put(NS + "ego3", network("ego3", 3, "doc3"));
+		assertEquals(2, cache.size());
+		assertEquals(14, cache.getTotalWeight());
+		assertNull(cache.get(NS + "ego1"));
+
+		// Too heavy to keep at all
+		cache.put(NS + "ego4", network("ego4", 8, "doc4"));
+		assertNull(cache.get(NS + "ego4"));
+		assertEquals(2, cache.size());
+
+		// Lowering the limits evicts straight away
+		CollaborationDataCache.setLimits(100, 10);
+		assertEquals(1, cache.size());
+		assertNotNull(cache.get(NS + "ego3"));
+	}
+
+	@Test
+	public void expiredNetworksAreDropped() {
+		cache.put(NS + "ego", network("ego", 1, "doc1"));
+
+		CollaborationDataCache.setExpiry(-1, CollaborationDataCache.DEFAULT_EXPIRE_AFTER_ACCESS);
+		assertNull(cache.get(NS + "ego"));
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * A network of the ego and a number of collaborators, all with the same activity
+	 */
+	private static CoAuthorshipData network(String ego, int collaborators, String activityName) {
+		UniqueIDGenerator nodeIds = new UniqueIDGenerator();
+		UniqueIDGenerator edgeIds = new UniqueIDGenerator();
+		Activity activity = new Activity(NS + activityName);
+
+		Collaborator egoCollaborator = new Collaborator(NS + ego, nodeIds);
+		egoCollaborator.addActivity(activity);
+
+		Set<Collaborator> nodes = new HashSet<Collaborator>();
+		Set<Collaboration> edges = new HashSet<Collaboration>();
+		for (int i = 1; i <= collaborators; i++) {
+			Collaborator collaborator = new Collaborator(NS + ego + "-collaborator" + i, nodeIds);
+			collaborator.addActivity(activity);
+			nodes.add(collaborator);
+			edges.add(new Collaboration(egoCollaborator, collaborator, activity, edgeIds));
+		}
+
+		return new CoAuthorshipData(egoCollaborator, nodes, edges, new HashMap<String, Activity>());
+	}
+
+	private static CollaborationDataCache.Loader<CoAuthorshipData> loaderOf(final CoAuthorshipData data) {
+		return new CollaborationDataCache.Loader<CoAuthorshipData>() {
+			@Override
+			public CoAuthorshipData load() {
+				return data;
+			}
+		};
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			if (!latch.await(10, TimeUnit.SECONDS)) {
+				throw new IllegalStateException("Timed out");
+			}
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,373 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.coauthorship.CoAuthorshipGraphMLWriter;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.LongIntHashMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Activity;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaboration;
+import edu.cornell.mannlib.vitro.webapp.visualization.valueobjects.Collaborator;
+import edu.cornell.mannlib.vitro.webapp.visualization.visutils.UniqueIDGenerator;
+
+public class CollaborationNetworkBuilderTest {
+	private static final String NS = "http://example.org/builder/";
+
+	private static final int MAX_AUTHORS_PER_PAPER_ALLOWED = 100;
+
+	@Test
+	public void graphMLMatchesPreviousCoAuthorNetworks() throws IOException {
+		assertSameGraphML(0);
+	}
+
+	@Test
+	public void graphMLMatchesPreviousLimitedCoAuthorNetworks() throws IOException {
+		assertSameGraphML(10);
+	}
+
+	/**
+	 * The GraphML of networks from the builder must be byte-identical to that of the networks the co-author query
+	 * runner built itself, before the builder was shared with the co-PI query runner.
+	 */
+	private void assertSameGraphML(int maxCollaborators) throws IOException {
+		Random random = new Random(42);
+		boolean truncated = false;
+
+		for (int round = 0; round < 30; round++) {
+			List<String[]> rows = randomRows(random);
+
+			PreviousCoAuthorshipNetwork previous = new PreviousCoAuthorshipNetwork(maxCollaborators);
+			CollaborationNetworkBuilder builder = new CollaborationNetworkBuilder(MAX_AUTHORS_PER_PAPER_ALLOWED, maxCollaborators);
+			for (String[] row : rows) {
+				previous.processEntry(row[0], row[1], row[2], row[3], row[4], row[5]);
+				builder.addEntry(row[0], row[1], row[2], row[3], row[4], row[5]);
+			}
+			previous.endProcessing();
+			builder.build();
+
+			CoAuthorshipData expected = previous.getCollaborationData();
+			CoAuthorshipData actual = builder.setTruncation(new CoAuthorshipData(builder.getEgoCollaborator(),
+					builder.getCollaborators(), builder.getCollaborations(), builder.getActivities()));
+
+			assertEquals(expected.isTruncated(), actual.isTruncated());
+			assertEquals(graphML(expected), graphML(actual));
+			truncated |= actual.isTruncated();
+		}
+
+		assertEquals(maxCollaborators > 0, truncated);
+	}
+
+	/**
+	 * The rows of a co-author query for an ego: each document with each of its authors, including the ego
+	 */
+	private static List<String[]> randomRows(Random random) {
+		String ego = NS + "ego";
+		int people = 2 + random.nextInt(150);
+
+		List<String[]> rows = new ArrayList<String[]>();
+		for (int document = 0, documents = 1 + random.nextInt(80); document < documents; document++) {
+			String documentURI = NS + "document" + document;
+
+			String date = null;
+			if (random.nextInt(5) > 0) {
+				date = random.nextBoolean()
+						? String.valueOf(1990 + random.nextInt(25))
+						: (1990 + random.nextInt(25)) + "-06-01T00:00:00";
+			}
+
+			// Now and then, a document with more authors than are allowed
+			int chance = random.nextInt(20) == 0 ? people : 4;
+
+			rows.add(new String[] { ego, "Ego", documentURI, date, ego, "Ego" });
+			for (int person = 0; person < people; person++) {
+				if (random.nextInt(people) < chance) {
+					String personURI = NS + "person" + person;
+					rows.add(new String[] { ego, "Ego", documentURI, date, personURI, person % 7 == 0 ? null : "Person " + person });
+				}
+			}
+		}
+
+		return rows;
+	}
+
+	private static String graphML(CollaborationData data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new CoAuthorshipGraphMLWriter(data).writeTo(out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void addFromCachesPrefersFirstYearMap() {
+		IdAdjacency.Builder links = new IdAdjacency.Builder();
+		links.add(NS + "ego", NS + "grant1");
+		links.add(NS + "ego", NS + "grant2");
+		links.add(NS + "person1", NS + "grant1");
+		IdAdjacency personToGrants = links.build();
+
+		// The year of the ego's role on each grant, then the year of each grant
+		Map<String, String> roleYears = new HashMap<String, String>();
+		roleYears.put(NS + "grant1", "2004");
+		Map<String, String> grantYears = new HashMap<String, String>();
+		grantYears.put(NS + "grant1", "2001");
+		grantYears.put(NS + "grant2", "2002");
+
+		Map<String, String> labels = new HashMap<String, String>();
+		labels.put(NS + "ego", "Ego");
+		labels.put(NS + "person1", "Person 1");
+
+		CollaborationNetworkBuilder builder = new CollaborationNetworkBuilder(MAX_AUTHORS_PER_PAPER_ALLOWED, 0);
+		builder.addFromCaches(NS + "ego", labels, personToGrants, personToGrants.inverse(), roleYears, grantYears);
+		builder.build();
+
+		assertEquals("2004", builder.getActivities().get(NS + "grant1").getActivityDate());
+		assertEquals("2002", builder.getActivities().get(NS + "grant2").getActivityDate());
+		assertEquals("Ego", builder.getEgoCollaborator().getCollaboratorName());
+		assertEquals(2, builder.getCollaborators().size());
+		assertEquals(1, builder.getCollaborations().size());
+	}
+
+	/**
+	 * The co-author network as CoAuthorshipQueryRunner.QueryResultConsumer built it, before that code was moved to
+	 * CollaborationNetworkBuilder
+	 */
+	private static class PreviousCoAuthorshipNetwork {
+		private final int maxCollaborators;
+
+		private boolean truncated = false;
+		private int collaboratorCount = 0;
+
+		private Set<Collaborator> nodes = new HashSet<Collaborator>();
+
+		private Map<String, Activity> biboDocumentURLToVO = new HashMap<String, Activity>();
+		private Map<String, Set<Collaborator>> biboDocumentURLToCoAuthors = new HashMap<String, Set<Collaborator>>();
+		private Map<String, Collaborator> nodeURLToVO = new HashMap<String, Collaborator>();
+
+		private LongIntHashMap egoEdgeIndex = new LongIntHashMap();
+		private List<Collaboration> egoEdges = new ArrayList<Collaboration>();
+
+		private Collaborator egoNode = null;
+
+		private Set<Collaboration> edges = new HashSet<Collaboration>();
+
+		private UniqueIDGenerator nodeIDGenerator = new UniqueIDGenerator();
+		private UniqueIDGenerator edgeIDGenerator = new UniqueIDGenerator();
+
+		PreviousCoAuthorshipNetwork(int maxCollaborators) {
+			this.maxCollaborators = maxCollaborators;
+		}
+
+		void processEntry(String authorURI, String authorName, String documentURI, String documentDate, String coAuthorURI, String coAuthorName) {
+			if (nodeURLToVO.containsKey(authorURI)) {
+				egoNode = nodeURLToVO.get(authorURI);
+			} else {
+				egoNode = new Collaborator(authorURI, nodeIDGenerator);
+				nodes.add(egoNode);
+				nodeURLToVO.put(authorURI, egoNode);
+
+				if (authorName != null) {
+					egoNode.setCollaboratorName(authorName);
+				}
+			}
+
+			Activity biboDocument;
+
+			if (biboDocumentURLToVO.containsKey(documentURI)) {
+				biboDocument = biboDocumentURLToVO.get(documentURI);
+			} else {
+				biboDocument = new Activity(documentURI);
+				if (documentDate != null) {
+					biboDocument.setActivityDate(documentDate);
+				}
+				biboDocumentURLToVO.put(documentURI, biboDocument);
+			}
+
+			egoNode.addActivity(biboDocument);
+
+			if (authorURI.equalsIgnoreCase(coAuthorURI)) {
+				return;
+			}
+
+			Collaborator coAuthorNode;
+
+			if (nodeURLToVO.containsKey(coAuthorURI)) {
+				coAuthorNode = nodeURLToVO.get(coAuthorURI);
+			} else {
+				coAuthorNode = new Collaborator(coAuthorURI, nodeIDGenerator);
+				nodes.add(coAuthorNode);
+				nodeURLToVO.put(coAuthorURI, coAuthorNode);
+
+				if (coAuthorName != null) {
+					coAuthorNode.setCollaboratorName(coAuthorName);
+				}
+			}
+
+			coAuthorNode.addActivity(biboDocument);
+
+			Set<Collaborator> coAuthorsForCurrentBiboDocument = biboDocumentURLToCoAuthors.get(biboDocument.getActivityURI());
+			if (coAuthorsForCurrentBiboDocument == null) {
+				coAuthorsForCurrentBiboDocument = new HashSet<Collaborator>();
+				biboDocumentURLToCoAuthors.put(biboDocument.getActivityURI(), coAuthorsForCurrentBiboDocument);
+			}
+
+			coAuthorsForCurrentBiboDocument.add(coAuthorNode);
+
+			long edgeKey = LongIntHashMap.pairKey(egoNode.getCollaboratorID(), coAuthorNode.getCollaboratorID());
+			int egoCoAuthorEdgeIndex = egoEdgeIndex.get(edgeKey);
+
+			if (egoCoAuthorEdgeIndex > -1) {
+				egoEdges.get(egoCoAuthorEdgeIndex).addActivity(biboDocument);
+			} else {
+				Collaboration egoCoAuthorEdge = new Collaboration(egoNode, coAuthorNode, biboDocument, edgeIDGenerator);
+				edges.add(egoCoAuthorEdge);
+				egoEdgeIndex.putIfAbsent(edgeKey, egoEdges.size());
+				egoEdges.add(egoCoAuthorEdge);
+			}
+		}
+
+		void endProcessing() {
+			removeLowQualityNodesAndEdges();
+
+			if (maxCollaborators > 0) {
+				retainTopCollaborators(maxCollaborators);
+			}
+
+			createCoAuthorEdges();
+		}
+
+		CoAuthorshipData getCollaborationData() {
+			CoAuthorshipData data = new CoAuthorshipData(egoNode, nodes, edges, biboDocumentURLToVO);
+			if (truncated) {
+				data.setTruncated(collaboratorCount);
+			}
+			return data;
+		}
+
+		private void retainTopCollaborators(int limit) {
+			collaboratorCount = edges.size();
+			if (collaboratorCount <= limit) {
+				return;
+			}
+
+			final Map<Collaboration, Integer> latestYears = new HashMap<Collaboration, Integer>();
+			for (Collaboration edge : edges) {
+				latestYears.put(edge, getLatestYear(edge));
+			}
+
+			List<Collaboration> sortedEgoEdges = new ArrayList<Collaboration>(edges);
+			sortedEgoEdges.sort(new Comparator<Collaboration>() {
+				@Override
+				public int compare(Collaboration edge1, Collaboration edge2) {
+					if (edge1.getNumOfCollaborations() != edge2.getNumOfCollaborations()) {
+						return edge2.getNumOfCollaborations() - edge1.getNumOfCollaborations();
+					}
+
+					int latestYear1 = latestYears.get(edge1);
+					int latestYear2 = latestYears.get(edge2);
+					if (latestYear1 != latestYear2) {
+						return latestYear2 - latestYear1;
+					}
+
+					return edge1.getTargetCollaborator().getCollaboratorID() - edge2.getTargetCollaborator().getCollaboratorID();
+				}
+			});
+
+			Set<Collaborator> nodesToBeRemoved = new HashSet<Collaborator>();
+			for (Collaboration edge : sortedEgoEdges.subList(limit, sortedEgoEdges.size())) {
+				nodesToBeRemoved.add(edge.getTargetCollaborator());
+				edges.remove(edge);
+			}
+
+			nodes.removeAll(nodesToBeRemoved);
+			truncated = true;
+		}
+
+		private int getLatestYear(Collaboration edge) {
+			Map<String, Integer> latest = edge.getLatestCollaborationYearCount();
+			if (latest != null) {
+				for (String year : latest.keySet()) {
+					try {
+						return Integer.parseInt(year);
+					} catch (NumberFormatException e) {
+						return 0;
+					}
+				}
+			}
+
+			return 0;
+		}
+
+		private void createCoAuthorEdges() {
+			CollaborationCounter coAuthorCounter = new CollaborationCounter();
+
+			for (Map.Entry<String, Set<Collaborator>> currentBiboDocumentEntry : biboDocumentURLToCoAuthors.entrySet()) {
+				if (currentBiboDocumentEntry.getValue().size() > 1
+						&& currentBiboDocumentEntry.getValue().size() <= MAX_AUTHORS_PER_PAPER_ALLOWED) {
+
+					List<Collaborator> coAuthorNodes = new ArrayList<Collaborator>(currentBiboDocumentEntry.getValue());
+					if (truncated) {
+						coAuthorNodes.retainAll(nodes);
+					}
+
+					coAuthorNodes.sort(new CollaboratorComparator());
+
+					int numOfCoAuthors = coAuthorNodes.size();
+					int documentYear = CollaborationCounter.getYear(biboDocumentURLToVO.get(currentBiboDocumentEntry.getKey()));
+
+					for (int ii = 0; ii < numOfCoAuthors - 1; ii++) {
+						for (int jj = ii + 1; jj < numOfCoAuthors; jj++) {
+							coAuthorCounter.add(coAuthorNodes.get(ii), coAuthorNodes.get(jj), documentYear);
+						}
+					}
+				}
+			}
+
+			edges.addAll(coAuthorCounter.getCollaborations(edgeIDGenerator));
+		}
+
+		private void removeLowQualityNodesAndEdges() {
+			Set<Collaborator> nodesToBeRemoved = new HashSet<Collaborator>();
+			for (Map.Entry<String, Set<Collaborator>> currentBiboDocumentEntry : biboDocumentURLToCoAuthors.entrySet()) {
+				if (currentBiboDocumentEntry.getValue().size() > MAX_AUTHORS_PER_PAPER_ALLOWED) {
+					Activity currentBiboDocument = biboDocumentURLToVO.get(currentBiboDocumentEntry.getKey());
+
+					Set<Collaboration> edgesToBeRemoved = new HashSet<Collaboration>();
+					for (Collaboration currentEdge : edges) {
+						Set<Activity> currentCollaboratorDocuments = currentEdge.getCollaborationActivities();
+						if (currentCollaboratorDocuments.contains(currentBiboDocument)) {
+							currentCollaboratorDocuments.remove(currentBiboDocument);
+							if (currentCollaboratorDocuments.isEmpty()) {
+								edgesToBeRemoved.add(currentEdge);
+							}
+						}
+					}
+
+					edges.removeAll(edgesToBeRemoved);
+
+					for (Collaborator currentCoAuthor : currentBiboDocumentEntry.getValue()) {
+						currentCoAuthor.getCollaboratorActivities().remove(currentBiboDocument);
+						if (currentCoAuthor.getCollaboratorActivities().isEmpty()) {
+							nodesToBeRemoved.add(currentCoAuthor);
+						}
+					}
+				}
+			}
+			nodes.removeAll(nodesToBeRemoved);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.mapofscience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class JournalClassificationsTest {
+	private static final String[] JOURNALS = {
+		"Nature",
+		"Science",
+		"Cell",
+		"The Lancet",
+		"PLoS ONE",
+		"Physical Review Letters",
+		"Journal of the American Chemical Society",
+		"Proceedings of the National Academy of Sciences of the United States of America",
+		"Journal of Biological Chemistry",
+		"New England Journal of Medicine",
+		"Not A Journal In The Map Of Science"
+	};
+
+	/**
+	 * Sharing the journals between processors must give the same activity as mapping them all in one task
+	 */
+	@Test
+	public void parallelMatchesSerial() {
+		Random random = new Random(42);
+		Map<String, Integer> journalToPublicationCount = new HashMap<String, Integer>();
+		int publications = 0;
+		while (journalToPublicationCount.size() < 500) {
+			// The same journals under names differing in case and spacing, which share a classification
+			String name = variant(JOURNALS[random.nextInt(JOURNALS.length)], random);
+			if (!journalToPublicationCount.containsKey(name)) {
+				int count = 1 + random.nextInt(20);
+				journalToPublicationCount.put(name, count);
+				publications += count;
+			}
+		}
+
+		JournalClassifications.Result serial = JournalClassifications.map(journalToPublicationCount, Integer.MAX_VALUE);
+		JournalClassifications.Result parallel = JournalClassifications.map(journalToPublicationCount, 10);
+
+		assertClose(publications, serial.getMappedPublications() + serial.getUnMappedPublications());
+		assertClose(serial.getMappedPublications(), parallel.getMappedPublications());
+		assertClose(serial.getUnMappedPublications(), parallel.getUnMappedPublications());
+
+		assertEquals(serial.getMappedResult().keySet(), parallel.getMappedResult().keySet());
+		for (Map.Entry<Integer, Float> entry : serial.getMappedResult().entrySet()) {
+			assertClose(entry.getValue(), parallel.getMappedResult().get(entry.getKey()));
+		}
+
+		assertEquals(serial.getUnmappedResult().keySet(), parallel.getUnmappedResult().keySet());
+		for (Map.Entry<String, Float> entry : serial.getUnmappedResult().entrySet()) {
+			Float unmapped = parallel.getUnmappedResult().get(entry.getKey());
+			assertNotNull(unmapped);
+			assertClose(entry.getValue(), unmapped);
+		}
+	}
+
+	/**
+	 * The sums are of floats added in a different order, so only compare them to within rounding
+	 */
+	private static void assertClose(float expected, float actual) {
+		assertEquals(expected, actual, Math.abs(expected) * 1e-4f + 1e-3f);
+	}
+
+	/**
+	 * A journal name with the case of each letter, and the number of spaces between words, chosen at random
+	 */
+	private static String variant(String journal, Random random) {
+		StringBuilder name = new StringBuilder();
+		for (char c : journal.toCharArray()) {
+			if (c == ' ') {
+				name.append(random.nextBoolean() ? " " : "  ");
+			} else {
+				name.append(random.nextBoolean() ? Character.toUpperCase(c) : Character.toLowerCase(c));
+			}
+		}
+
+		return name.toString();
+	}
+}
@@ -0,0 +1,143 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ActivitySummariesTest {
+    private static final String NS = "http://example.org/summaries/";
+
+    @Test
+    public void countsActivitiesByYear() {
+        IdAdjacency.Builder builder = new IdAdjacency.Builder();
+        builder.add(NS + "person1", NS + "document1");
+        builder.add(NS + "person1", NS + "document2");
+        builder.add(NS + "person1", NS + "document3");
+        builder.add(NS + "person2", NS + "document1");
+        IdAdjacency personToDocuments = builder.build();
+
+        Map<String, String> documentToYear = new HashMap<>();
+        documentToYear.put(NS + "document1", "2004");
+        documentToYear.put(NS + "document2", "2004");
+
+        ActivitySummaries summaries = ActivitySummaries.of("test-documents", personToDocuments, documentToYear);
+        ActivitySummaries.Summary summary = summaries.get(NS + "person1");
+        assertEquals(3, summary.getCount());
+        assertEquals(1, summary.getUnknownCount());
+        assertEquals(2, summary.getCount(2004));
+        assertEquals(2004, summary.getFirstYear());
+        assertEquals(0, summaries.get(NS + "never-seen-anywhere").getCount());
+
+        assertSame(summaries, ActivitySummaries.of("test-documents", personToDocuments, documentToYear));
+        assertNotSame(summaries, ActivitySummaries.of("test-documents", personToDocuments, new HashMap<String, String>()));
+    }
+
+    @Test
+    public void datesActivitiesByRoleThenActivity() {
+        PersonGrantRoles.Builder builder = new PersonGrantRoles.Builder();
+        builder.add(NS + "person3", NS + "grant1", 2001);
+        builder.add(NS + "person3", NS + "grant2", PersonGrantRoles.UNKNOWN_YEAR);
+        builder.add(NS + "person3", NS + "grant3", PersonGrantRoles.UNKNOWN_YEAR);
+        builder.add(NS + "person4", NS + "grant1", PersonGrantRoles.UNKNOWN_YEAR);
+        PersonGrantRoles roles = builder.build();
+
+        Map<String, String> grantToYear = new HashMap<>();
+        grantToYear.put(NS + "grant1", "1999");
+        grantToYear.put(NS + "grant2", "2003");
+
+        ActivitySummaries summaries = ActivitySummaries.of("test-grants", roles, grantToYear);
+
+        // person3's role on grant1 started after the grant, and the other roles fall back to the grant's year
+        ActivitySummaries.Summary summary = summaries.get(NS + "person3");
+        assertEquals(3, summary.getCount());
+        assertEquals(1, summary.getUnknownCount());
+        assertEquals(1, summary.getCount(2001));
+        assertEquals(0, summary.getCount(1999));
+        assertEquals(2003, summary.getLastYear());
+
+        assertEquals(1, summaries.get(NS + "person4").getCount(1999));
+
+        assertSame(summaries, ActivitySummaries.of("test-grants", roles, grantToYear));
+        assertNotSame(summaries, ActivitySummaries.of("test-grants", roles.getPersonToGrantIds(), grantToYear));
+    }
+
+    @Test
+    public void buildsOneSummaryForConcurrentRequests() throws Exception {
+        final IdAdjacency personToDocuments = personToDocuments();
+        final Map<String, String> documentToYear = new HashMap<>();
+        documentToYear.put(NS + "document1", "2010");
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ActivitySummaries>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<ActivitySummaries>() {
+                    @Override
+                    public ActivitySummaries call() throws Exception {
+                        start.await();
+                        return ActivitySummaries.of("test-concurrent", personToDocuments, documentToYear);
+                    }
+                }));
+            }
+            start.countDown();
+
+            ActivitySummaries summaries = futures.get(0).get();
+            for (Future<ActivitySummaries> future : futures) {
+                assertSame(summaries, future.get());
+            }
+
+            assertEquals(1, summaries.get(NS + "person1").getCount(2010));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void retriesAfterFailedBuild() {
+        IdAdjacency personToDocuments = personToDocuments();
+        final boolean[] failed = { false };
+        Map<String, String> documentToYear = new HashMap<String, String>() {
+            @Override
+            public String get(Object key) {
+                if (!failed[0]) {
+                    failed[0] = true;
+                    throw new IllegalStateException("test failure");
+                }
+                return super.get(key);
+            }
+        };
+
+        try {
+            ActivitySummaries.of("test-failure", personToDocuments, documentToYear);
+            fail("Expected the failure of the build");
+        } catch (IllegalStateException e) {
+            assertEquals("test failure", e.getMessage());
+        }
+
+        assertEquals(3, ActivitySummaries.of("test-failure", personToDocuments, documentToYear).get(NS + "person1").getCount());
+    }
+
+    private IdAdjacency personToDocuments() {
+        IdAdjacency.Builder builder = new IdAdjacency.Builder();
+        builder.add(NS + "person1", NS + "document1");
+        builder.add(NS + "person1", NS + "document2");
+        builder.add(NS + "person1", NS + "document3");
+        return builder.build();
+    }
+}
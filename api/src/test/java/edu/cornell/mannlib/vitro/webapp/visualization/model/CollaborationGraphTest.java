@@ -0,0 +1,302 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * The graph used by these tests:
+ *
+ * person1 - person2: 2 documents (2005 and 2008)
+ * person1 - person3, person1 - person6: 1 document each (2008)
+ * person1 - person5: 1 document (2010)
+ * person2 - person3: 1 document (2001)
+ * person3 - person4: 1 document (2003)
+ * person4 - person7: 1 document (2000)
+ * person1: 1 document without collaborators
+ */
+public class CollaborationGraphTest {
+    private static final String NS = "http://example.org/graph/";
+
+    private final UriDictionary dictionary = UriDictionary.getInstance();
+
+    @Test
+    public void linksPeopleWhoShareActivities() {
+        CollaborationGraph graph = graph();
+
+        assertEquals(7, graph.size());
+        assertEquals(7, graph.collaborationCount());
+        assertArrayEquals(ids("person2", "person3", "person5", "person6"), graph.getCollaboratorIds(NS + "person1"));
+        assertEquals(4, graph.getCollaboratorCount(NS + "person1"));
+        assertEquals(6, graph.getActivityCount(NS + "person1"));
+        assertEquals(2, graph.getCollaborationCount(NS + "person1", NS + "person2"));
+        assertEquals(2, graph.getCollaborationCount(NS + "person2", NS + "person1"));
+        assertEquals(0, graph.getCollaborationCount(NS + "person1", NS + "person4"));
+        assertEquals(0, graph.getCollaboratorCount(NS + "never-seen-anywhere"));
+    }
+
+    @Test
+    public void egoNetworkHasEachCollaborationOnce() {
+        CollaborationGraph.Network network = graph().getEgoNetwork(NS + "person1");
+
+        assertEquals(NS + "person1", network.getNodeUri(0));
+        assertEquals(uris("person1", "person2", "person3", "person5", "person6"), nodes(network));
+        assertEquals(6, network.getNodeActivityCount(0));
+
+        // person2 - person3 is in both of their rows, but is only one edge
+        assertEquals(edges("person1-person2", "person1-person3", "person1-person5", "person1-person6",
+                "person2-person3"), edges(network));
+        assertEquals(5, network.getEdgeCount());
+
+        int edge = edgeIndex(network, "person1", "person2");
+        assertEquals(2, network.getWeight(edge));
+        assertEquals(2005, network.getFirstYear(edge));
+        assertEquals(2008, network.getLastYear(edge));
+
+        assertEquals(0, graph().getEgoNetwork(NS + "never-seen-anywhere").getNodeCount());
+    }
+
+    @Test
+    public void twoHopNetworkLeavesOutCollaborationsBetweenOuterPeople() {
+        CollaborationGraph.Network network = graph().getTwoHopNetwork(NS + "person1");
+
+        assertEquals(NS + "person1", network.getNodeUri(0));
+        assertEquals(uris("person1", "person2", "person3", "person4", "person5", "person6"), nodes(network));
+
+        // person4 - person7 is between people two steps away, so neither the edge nor person7 are included
+        assertEquals(edges("person1-person2", "person1-person3", "person1-person5", "person1-person6",
+                "person2-person3", "person3-person4"), edges(network));
+        assertEquals(6, network.getEdgeCount());
+    }
+
+    @Test
+    public void ranksTopCollaboratorsByWeightThenYearThenId() {
+        CollaborationGraph graph = graph();
+
+        // person3 and person6 share one document from 2008, so the lower id comes first
+        int[] tied = ids("person3", "person6");
+        int[] expected = { id("person2"), id("person5"), tied[0], tied[1] };
+
+        assertArrayEquals(expected, graph.getTopCollaboratorIds(NS + "person1", 10));
+        assertArrayEquals(expected, graph.getTopCollaboratorIds(NS + "person1", 4));
+        assertArrayEquals(Arrays.copyOf(expected, 3), graph.getTopCollaboratorIds(NS + "person1", 3));
+        assertArrayEquals(Arrays.copyOf(expected, 1), graph.getTopCollaboratorIds(NS + "person1", 1));
+        assertEquals(0, graph.getTopCollaboratorIds(NS + "person1", 0).length);
+    }
+
+    @Test
+    public void countsCollaborationsBetweenGroups() {
+        // person2 is in both of the first two groups
+        List<int[]> groups = Arrays.asList(
+                ids("person1", "person2"),
+                ids("person2", "person3"),
+                ids("person5"));
+
+        long[][] matrix = graph().getCollaborationMatrix(groups);
+
+        // Each pair within a group once: person1 - person2, then person2 - person3
+        assertEquals(2, matrix[0][0]);
+        assertEquals(1, matrix[1][1]);
+        assertEquals(0, matrix[2][2]);
+
+        // Pairs with one in each group: person1 - person2, person1 - person3 and person2 - person3
+        assertEquals(4, matrix[0][1]);
+        assertEquals(1, matrix[0][2]);
+        assertEquals(0, matrix[1][2]);
+
+        for (int row = 0; row < matrix.length; row++) {
+            for (int column = 0; column < matrix.length; column++) {
+                assertEquals(matrix[row][column], matrix[column][row]);
+            }
+        }
+    }
+
+    @Test
+    public void countsCollaborationsBetweenOrganizations() {
+        Map<String, Set<String>> subOrgMap = new HashMap<>();
+        subOrgMap.put(NS + "org1", Collections.singleton(NS + "org2"));
+
+        IdAdjacency.Builder builder = new IdAdjacency.Builder();
+        builder.add(NS + "org1", NS + "person1");
+        builder.add(NS + "org2", NS + "person2");
+        builder.add(NS + "org3", NS + "person3");
+
+        long[][] matrix = graph().getOrganizationMatrix(Arrays.asList(NS + "org1", NS + "org3"),
+                OrganizationHierarchy.of(subOrgMap), builder.build());
+
+        // org1 includes person2, through org2
+        assertEquals(2, matrix[0][0]);
+        assertEquals(2, matrix[0][1]);
+        assertEquals(2, matrix[1][0]);
+        assertEquals(0, matrix[1][1]);
+    }
+
+    @Test
+    public void ignoresActivitiesWithTooManyPeople() {
+        IdAdjacency.Builder builder = new IdAdjacency.Builder();
+        for (int i = 0; i < CollaborationGraph.MAX_PEOPLE_PER_ACTIVITY; i++) {
+            builder.add(NS + "crowd" + i, NS + "large-document");
+            builder.add(NS + "crowd" + i, NS + "too-large-document");
+        }
+        builder.add(NS + "person8", NS + "large-document");
+        builder.add(NS + "person9", NS + "too-large-document");
+        builder.add(NS + "person10", NS + "too-large-document");
+
+        CollaborationGraph graph = CollaborationGraph.of("test-crowd", builder.build(), null);
+
+        // Exactly MAX_PEOPLE_PER_ACTIVITY others still link a person to them
+        assertEquals(CollaborationGraph.MAX_PEOPLE_PER_ACTIVITY, graph.getCollaboratorCount(NS + "person8"));
+
+        // One more, and nobody is linked by the activity, though it is still counted
+        assertEquals(0, graph.getCollaboratorCount(NS + "person9"));
+        assertEquals(1, graph.getActivityCount(NS + "person9"));
+        assertEquals(CollaborationGraph.MAX_PEOPLE_PER_ACTIVITY, graph.getCollaboratorCount(NS + "crowd0"));
+        assertEquals(2, graph.getActivityCount(NS + "crowd0"));
+        assertEquals(0, graph.getCollaborationCount(NS + "crowd0", NS + "person9"));
+    }
+
+    @Test
+    public void buildsOneGraphForConcurrentRequests() throws Exception {
+        final IdAdjacency personToDocuments = personToDocuments();
+        final Map<String, String> documentToYear = documentToYear();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CollaborationGraph>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<CollaborationGraph>() {
+                    @Override
+                    public CollaborationGraph call() throws Exception {
+                        start.await();
+                        return CollaborationGraph.of("test-concurrent", personToDocuments, documentToYear);
+                    }
+                }));
+            }
+            start.countDown();
+
+            CollaborationGraph graph = futures.get(0).get();
+            for (Future<CollaborationGraph> future : futures) {
+                assertSame(graph, future.get());
+            }
+
+            assertSame(graph, CollaborationGraph.of("test-concurrent", personToDocuments, documentToYear));
+            assertTrue(graph != CollaborationGraph.of("test-concurrent", personToDocuments, null));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private CollaborationGraph graph() {
+        return CollaborationGraph.of("test-graph", personToDocuments(), documentToYear());
+    }
+
+    private IdAdjacency personToDocuments() {
+        IdAdjacency.Builder builder = new IdAdjacency.Builder();
+        link(builder, "document1", "person1", "person2");
+        link(builder, "document2", "person1", "person2");
+        link(builder, "document3", "person1", "person3");
+        link(builder, "document4", "person2", "person3");
+        link(builder, "document5", "person3", "person4");
+        link(builder, "document6", "person1", "person5");
+        link(builder, "document7", "person1", "person6");
+        link(builder, "document8", "person4", "person7");
+        builder.add(NS + "person1", NS + "document9");
+        return builder.build();
+    }
+
+    private Map<String, String> documentToYear() {
+        Map<String, String> documentToYear = new HashMap<>();
+        documentToYear.put(NS + "document1", "2005");
+        documentToYear.put(NS + "document2", "2008");
+        documentToYear.put(NS + "document3", "2008");
+        documentToYear.put(NS + "document4", "2001");
+        documentToYear.put(NS + "document5", "2003");
+        documentToYear.put(NS + "document6", "2010");
+        documentToYear.put(NS + "document7", "2008");
+        documentToYear.put(NS + "document8", "2000");
+        return documentToYear;
+    }
+
+    private static void link(IdAdjacency.Builder builder, String document, String... people) {
+        for (String person : people) {
+            builder.add(NS + person, NS + document);
+        }
+    }
+
+    private static Set<String> nodes(CollaborationGraph.Network network) {
+        Set<String> nodes = new HashSet<>();
+        for (int node = 0; node < network.getNodeCount(); node++) {
+            nodes.add(network.getNodeUri(node));
+        }
+        return nodes;
+    }
+
+    /**
+     * The edges of a network, as "source-target" with the names in order - failing if any edge is repeated
+     */
+    private static Set<String> edges(CollaborationGraph.Network network) {
+        Set<String> edges = new HashSet<>();
+        for (int edge = 0; edge < network.getEdgeCount(); edge++) {
+            String source = network.getNodeUri(network.getSource(edge)).substring(NS.length());
+            String target = network.getNodeUri(network.getTarget(edge)).substring(NS.length());
+            String name = source.compareTo(target) < 0 ? source + "-" + target : target + "-" + source;
+            assertTrue("Repeated edge " + name, edges.add(name));
+        }
+        return edges;
+    }
+
+    private static int edgeIndex(CollaborationGraph.Network network, String source, String target) {
+        Set<String> people = uris(source, target);
+        for (int edge = 0; edge < network.getEdgeCount(); edge++) {
+            if (people.equals(uris(network.getNodeUri(network.getSource(edge)).substring(NS.length()),
+                    network.getNodeUri(network.getTarget(edge)).substring(NS.length())))) {
+                return edge;
+            }
+        }
+        throw new AssertionError("No edge " + source + "-" + target);
+    }
+
+    private static Set<String> edges(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private static Set<String> uris(String... names) {
+        Set<String> uris = new HashSet<>();
+        for (String name : names) {
+            uris.add(NS + name);
+        }
+        return uris;
+    }
+
+    private int id(String name) {
+        return dictionary.getId(NS + name);
+    }
+
+    private int[] ids(String... names) {
+        int[] ids = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = id(names[i]);
+        }
+        return IdSets.sortedUnique(ids, ids.length);
+    }
+}
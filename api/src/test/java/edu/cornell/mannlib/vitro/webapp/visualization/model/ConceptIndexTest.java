@@ -0,0 +1,127 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ConceptIndexTest {
+    private static final String NS = "http://example.org/concepts/";
+
+    private final UriDictionary dictionary = UriDictionary.getInstance();
+
+    @Test
+    public void findsLabelsIgnoringCase() {
+        ConceptIndex index = index();
+
+        int label = index.indexOf("MACHINE learning");
+        assertEquals("Machine Learning", index.getLabel(label));
+        assertArrayEquals(ids("concept1", "concept2"), index.getConcepts(label));
+        assertArrayEquals(ids("person1", "person2", "person3"), index.getPeople(label));
+
+        assertEquals(-1, index.indexOf("machine"));
+        assertEquals(-1, index.indexOf(null));
+
+        // Concepts that nobody has are not indexed
+        assertEquals(-1, index.indexOf("Unused"));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void suggestsPrefixesThenWordsThenContents() {
+        ConceptIndex index = index();
+
+        assertEquals(Arrays.asList("Machine Learning", "Machine Translation"), index.suggest("mach", 10));
+        // Labels starting with the term come before those with a word starting with it, then by the number of people
+        assertEquals(Arrays.asList("Learning Theory", "Machine Learning", "Deep Learning"), index.suggest("learn", 10));
+        assertEquals(Collections.singletonList("Learning Theory"), index.suggest("learn", 1));
+        assertEquals(Collections.singletonList("Machine Translation"), index.suggest("translat", 10));
+        assertEquals(Arrays.asList("Machine Learning", "Learning Theory", "Deep Learning"), index.suggest("earn", 10));
+        assertEquals(Collections.emptyList(), index.suggest("  ", 10));
+        assertEquals(Collections.emptyList(), index.suggest("learn", 0));
+    }
+
+    @Test
+    public void buildsOneIndexForConcurrentRequests() throws Exception {
+        final ConceptLabelMap labels = labels();
+        final ConceptPeopleMap people = people();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ConceptIndex>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<ConceptIndex>() {
+                    @Override
+                    public ConceptIndex call() throws Exception {
+                        start.await();
+                        return ConceptIndex.of(labels, people);
+                    }
+                }));
+            }
+            start.countDown();
+
+            ConceptIndex index = futures.get(0).get();
+            for (Future<ConceptIndex> future : futures) {
+                assertSame(index, future.get());
+            }
+
+            assertSame(index, ConceptIndex.of(labels, people));
+            assertNotSame(index, ConceptIndex.of(labels, people()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private ConceptIndex index() {
+        return ConceptIndex.of(labels(), people());
+    }
+
+    private ConceptLabelMap labels() {
+        Map<String, String> conceptToLabel = new HashMap<>();
+        conceptToLabel.put(NS + "concept1", "Machine Learning");
+        conceptToLabel.put(NS + "concept2", "machine learning");
+        conceptToLabel.put(NS + "concept3", "Machine Translation");
+        conceptToLabel.put(NS + "concept4", "Learning Theory");
+        conceptToLabel.put(NS + "concept5", "Deep Learning");
+        conceptToLabel.put(NS + "concept6", "Unused");
+        return new ConceptLabelMap(conceptToLabel, new HashMap<String, Set<String>>());
+    }
+
+    private ConceptPeopleMap people() {
+        IdAdjacency.Builder builder = new IdAdjacency.Builder();
+        builder.add(NS + "concept1", NS + "person1");
+        builder.add(NS + "concept1", NS + "person2");
+        builder.add(NS + "concept2", NS + "person3");
+        builder.add(NS + "concept3", NS + "person1");
+        builder.add(NS + "concept4", NS + "person2");
+        builder.add(NS + "concept4", NS + "person3");
+        builder.add(NS + "concept5", NS + "person4");
+        return new ConceptPeopleMap(builder.build());
+    }
+
+    private int[] ids(String... names) {
+        int[] ids = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = dictionary.getId(NS + names[i]);
+        }
+        return IdSets.sortedUnique(ids, ids.length);
+    }
+}
@@ -0,0 +1,234 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IdAdjacencyTest {
+    private static final String NS = "http://example.org/adjacency/";
+
+    private final UriDictionary dictionary = UriDictionary.getInstance();
+
+    @Test
+    public void buildsSortedTargets() {
+        IdAdjacency adjacency = build(
+                "p1", "d3",
+                "p1", "d1",
+                "p2", "d1",
+                "p1", "d3");
+
+        assertEquals(2, adjacency.size());
+        assertEquals(3, adjacency.linkCount());
+        assertArrayEquals(ids("d1", "d3"), adjacency.get(NS + "p1"));
+        assertArrayEquals(ids("d1"), adjacency.get(NS + "p2"));
+        assertArrayEquals(IdSets.EMPTY, adjacency.get(NS + "unknown"));
+        assertEquals(2, adjacency.count(id("p1")));
+        assertTrue(adjacency.contains(id("p2"), id("d1")));
+        assertFalse(adjacency.contains(id("p2"), id("d3")));
+        assertArrayEquals(ids("d1", "d3"), adjacency.getAll(ids("p1", "p2")));
+    }
+
+    @Test
+    public void linkIndexFollowsLinkOrder() {
+        IdAdjacency adjacency = build(
+                "p1", "d3",
+                "p1", "d1",
+                "p2", "d1");
+
+        int link = 0;
+        for (int key : adjacency.keys()) {
+            for (int value : adjacency.get(key)) {
+                assertEquals(link++, adjacency.linkIndex(key, value));
+            }
+        }
+        assertEquals(adjacency.linkCount(), link);
+
+        assertEquals(-1, adjacency.linkIndex(id("p2"), id("d3")));
+        assertEquals(-1, adjacency.linkIndex(id("d1"), id("p1")));
+    }
+
+    @Test
+    public void inverse() {
+        IdAdjacency adjacency = build(
+                "p1", "d1",
+                "p1", "d2",
+                "p2", "d2");
+
+        IdAdjacency inverse = adjacency.inverse();
+        assertArrayEquals(ids("p1"), inverse.get(NS + "d1"));
+        assertArrayEquals(ids("p1", "p2"), inverse.get(NS + "d2"));
+        assertSame(inverse, adjacency.inverse());
+        assertSame(adjacency, inverse.inverse());
+        assertSame(IdAdjacency.empty(), IdAdjacency.empty().inverse());
+    }
+
+    @Test
+    public void mapView() {
+        IdAdjacency adjacency = build(
+                "p1", "d1",
+                "p1", "d2");
+
+        Map<String, Set<String>> map = adjacency.asMap();
+        assertEquals(1, map.size());
+        assertEquals(new HashSet<>(Arrays.asList(NS + "d1", NS + "d2")), map.get(NS + "p1"));
+        assertNull(map.get(NS + "d1"));
+        assertSame(adjacency, IdAdjacency.backing(map));
+        assertSame(adjacency, IdAdjacency.of(map));
+        assertNull(IdAdjacency.backing(new HashMap<String, Set<String>>()));
+
+        Map<String, Set<String>> copy = new HashMap<>(map);
+        assertEquals(copy, IdAdjacency.of(copy).asMap());
+    }
+
+    @Test
+    public void update() {
+        IdAdjacency adjacency = build(
+                "p1", "d1",
+                "p1", "d2",
+                "p2", "d2",
+                "p3", "d3");
+        adjacency.inverse();
+
+        Map<String, Set<String>> removals = new HashMap<>();
+        removals.put(NS + "p1", uris("d2"));
+        removals.put(NS + "p3", uris("d3"));
+        removals.put(NS + "unknown", uris("d1"));
+
+        Map<String, Set<String>> additions = new HashMap<>();
+        additions.put(NS + "p2", uris("d1", "d2"));
+        additions.put(NS + "p4", uris("d4"));
+
+        IdAdjacency updated = adjacency.update(removals, additions);
+        assertArrayEquals(ids("d1"), updated.get(NS + "p1"));
+        assertArrayEquals(ids("d1", "d2"), updated.get(NS + "p2"));
+        assertArrayEquals(IdSets.EMPTY, updated.get(NS + "p3"));
+        assertArrayEquals(ids("d4"), updated.get(NS + "p4"));
+        assertEquals(3, updated.size());
+
+        // The existing inverse is updated along with the relationship
+        assertArrayEquals(ids("p1", "p2"), updated.inverse().get(NS + "d1"));
+        assertArrayEquals(ids("p2"), updated.inverse().get(NS + "d2"));
+        assertArrayEquals(IdSets.EMPTY, updated.inverse().get(NS + "d3"));
+        assertSame(updated, updated.inverse().inverse());
+
+        // The original is unchanged
+        assertArrayEquals(ids("d1", "d2"), adjacency.get(NS + "p1"));
+
+        Map<String, Set<String>> none = Collections.emptyMap();
+        assertSame(adjacency, adjacency.update(none, none));
+    }
+
+    @Test
+    public void updateMatchesRebuild() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            Map<String, Set<String>> expected = new HashMap<>();
+            IdAdjacency.Builder builder = new IdAdjacency.Builder();
+            for (int i = random.nextInt(60); i > 0; i--) {
+                String key = NS + "k" + random.nextInt(12);
+                String value = NS + "v" + random.nextInt(30);
+                builder.add(key, value);
+                add(expected, key, value);
+            }
+            IdAdjacency adjacency = builder.build();
+            if (random.nextBoolean()) {
+                adjacency.inverse();
+            }
+
+            Map<String, Set<String>> removals = new HashMap<>();
+            for (int i = random.nextInt(10); i > 0; i--) {
+                add(removals, NS + "k" + random.nextInt(12), NS + "v" + random.nextInt(30));
+            }
+            Map<String, Set<String>> additions = new HashMap<>();
+            for (int i = random.nextInt(10); i > 0; i--) {
+                add(additions, NS + "k" + random.nextInt(14), NS + "v" + random.nextInt(34));
+            }
+
+            for (Map.Entry<String, Set<String>> entry : removals.entrySet()) {
+                Set<String> values = expected.get(entry.getKey());
+                if (values != null) {
+                    values.removeAll(entry.getValue());
+                    if (values.isEmpty()) {
+                        expected.remove(entry.getKey());
+                    }
+                }
+            }
+            for (Map.Entry<String, Set<String>> entry : additions.entrySet()) {
+                for (String value : entry.getValue()) {
+                    add(expected, entry.getKey(), value);
+                }
+            }
+
+            IdAdjacency updated = adjacency.update(removals, additions);
+            assertEquals(expected, new HashMap<>(updated.asMap()));
+            assertEquals(new HashMap<>(IdAdjacency.of(expected).inverse().asMap()), new HashMap<>(updated.inverse().asMap()));
+        }
+    }
+
+    @Test
+    public void changedKeys() {
+        IdAdjacency before = build(
+                "p1", "d1",
+                "p2", "d2",
+                "p3", "d3");
+        IdAdjacency after = build(
+                "p1", "d1",
+                "p2", "d1",
+                "p4", "d4");
+
+        assertArrayEquals(ids("p2", "p3", "p4"), before.changedKeys(after));
+        assertArrayEquals(IdSets.EMPTY, before.changedKeys(before));
+    }
+
+    private IdAdjacency build(String... links) {
+        IdAdjacency.Builder builder = new IdAdjacency.Builder();
+        for (int i = 0; i < links.length; i += 2) {
+            builder.add(NS + links[i], NS + links[i + 1]);
+        }
+        return builder.build();
+    }
+
+    private int id(String name) {
+        return dictionary.getId(NS + name);
+    }
+
+    private int[] ids(String... names) {
+        int[] ids = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = id(names[i]);
+        }
+        return IdSets.sortedUnique(ids, ids.length);
+    }
+
+    private static Set<String> uris(String... names) {
+        Set<String> uris = new HashSet<>();
+        for (String name : names) {
+            uris.add(NS + name);
+        }
+        return uris;
+    }
+
+    private static void add(Map<String, Set<String>> map, String key, String value) {
+        Set<String> values = map.get(key);
+        if (values == null) {
+            values = new HashSet<>();
+            map.put(key, values);
+        }
+        values.add(value);
+    }
+}
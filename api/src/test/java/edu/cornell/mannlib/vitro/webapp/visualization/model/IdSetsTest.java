@@ -0,0 +1,84 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class IdSetsTest {
+    private static final int[] A = { 1, 3, 5, 7, 9 };
+    private static final int[] B = { 2, 3, 4, 9, 10 };
+
+    @Test
+    public void union() {
+        assertArrayEquals(new int[] { 1, 2, 3, 4, 5, 7, 9, 10 }, IdSets.union(A, B));
+        assertArrayEquals(A, IdSets.union(A, IdSets.EMPTY));
+        assertArrayEquals(B, IdSets.union(IdSets.EMPTY, B));
+    }
+
+    @Test
+    public void unionOfMany() {
+        int[] union = IdSets.union(Arrays.asList(A, B, new int[] { 0, 5, 11 }));
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5, 7, 9, 10, 11 }, union);
+    }
+
+    @Test
+    public void intersect() {
+        assertArrayEquals(new int[] { 3, 9 }, IdSets.intersect(A, B));
+        assertArrayEquals(IdSets.EMPTY, IdSets.intersect(A, IdSets.EMPTY));
+        assertEquals(2, IdSets.intersectionSize(A, B));
+        assertEquals(0, IdSets.intersectionSize(A, new int[] { 2, 4 }));
+    }
+
+    @Test
+    public void difference() {
+        assertArrayEquals(new int[] { 1, 5, 7 }, IdSets.difference(A, B));
+        assertArrayEquals(new int[] { 2, 4, 10 }, IdSets.difference(B, A));
+        assertArrayEquals(A, IdSets.difference(A, IdSets.EMPTY));
+    }
+
+    @Test
+    public void contains() {
+        assertTrue(IdSets.contains(A, 7));
+        assertFalse(IdSets.contains(A, 8));
+        assertFalse(IdSets.contains(IdSets.EMPTY, 0));
+    }
+
+    @Test
+    public void sortedUnique() {
+        int[] ids = { 5, 1, 5, 3, 1, 99, 99 };
+        assertArrayEquals(new int[] { 1, 3, 5 }, IdSets.sortedUnique(ids, 5));
+        assertArrayEquals(new int[] { 1, 3, 5, 99 }, IdSets.sortedUnique(ids, ids.length));
+        assertArrayEquals(IdSets.EMPTY, IdSets.sortedUnique(ids, 0));
+    }
+
+    @Test
+    public void uriSet() {
+        UriDictionary dictionary = UriDictionary.getInstance();
+        Set<String> uris = new HashSet<>(Arrays.asList("http://example.org/idSets/a", "http://example.org/idSets/b"));
+        int[] ids = IdSets.idsOf(uris);
+        assertEquals(0, ids.length);
+
+        for (String uri : uris) {
+            dictionary.getId(uri);
+        }
+        ids = IdSets.idsOf(uris);
+        assertEquals(2, ids.length);
+
+        Set<String> view = IdSets.asUriSet(ids);
+        assertEquals(uris, view);
+        assertTrue(view.contains("http://example.org/idSets/a"));
+        assertFalse(view.contains("http://example.org/idSets/c"));
+
+        // A set backed by ids gives them back directly
+        assertArrayEquals(ids, IdSets.idsOf(view));
+    }
+}
@@ -0,0 +1,84 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongIntHashMapTest {
+    @Test
+    public void pairKeyIgnoresOrder() {
+        assertEquals(LongIntHashMap.pairKey(3, 17), LongIntHashMap.pairKey(17, 3));
+        assertNotEquals(LongIntHashMap.pairKey(3, 17), LongIntHashMap.pairKey(3, 18));
+        assertNotEquals(LongIntHashMap.pairKey(1, 2), LongIntHashMap.pairKey(2, 2));
+        assertEquals(LongIntHashMap.pairKey(Integer.MAX_VALUE, 0), LongIntHashMap.pairKey(0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void putIfAbsentKeepsFirstValue() {
+        LongIntHashMap map = new LongIntHashMap();
+
+        assertEquals(-1, map.get(42L));
+        assertEquals(-1, map.putIfAbsent(42L, 0));
+        assertEquals(0, map.putIfAbsent(42L, 7));
+        assertEquals(0, map.get(42L));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(42L));
+        assertEquals(-1, map.putIfAbsent(42L, 7));
+        assertEquals(7, map.get(42L));
+    }
+
+    @Test
+    public void putReplacesValue() {
+        LongIntHashMap map = new LongIntHashMap();
+
+        assertEquals(-1, map.put(42L, 7));
+        assertEquals(7, map.put(42L, 3));
+        assertEquals(3, map.get(42L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void rejectsNegativeValues() {
+        try {
+            new LongIntHashMap().putIfAbsent(1L, -1);
+            fail("Expected a negative value to be rejected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void matchesHashMapWhileGrowing() {
+        Random random = new Random(42);
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+
+        for (int i = 0; i < 100000; i++) {
+            // Pair keys of a small range of ids, so that keys are repeated, and the low bits of keys are alike
+            long key = LongIntHashMap.pairKey(random.nextInt(500), random.nextInt(500));
+            Integer existing = expected.get(key);
+            if (existing == null) {
+                expected.put(key, i);
+            }
+
+            assertEquals(existing == null ? -1 : existing.intValue(), map.putIfAbsent(key, i));
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().intValue(), map.get(entry.getKey()));
+        }
+        assertEquals(-1, map.get(LongIntHashMap.pairKey(500, 501)));
+    }
+}
@@ -0,0 +1,206 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class OrganizationHierarchyTest {
+    private static final String NS = "http://example.org/hierarchy/";
+
+    private final UriDictionary dictionary = UriDictionary.getInstance();
+
+    @Test
+    public void tree() {
+        OrganizationHierarchy hierarchy = OrganizationHierarchy.of(subOrgs(
+                "university", "college1",
+                "university", "college2",
+                "college1", "dept1",
+                "college1", "dept2",
+                "college2", "dept3"));
+
+        assertEquals(uris("university", "college1", "college2", "dept1", "dept2", "dept3"),
+                hierarchy.getOrgAndAllSubOrgs(NS + "university"));
+        assertEquals(uris("college1", "dept1", "dept2"), hierarchy.getOrgAndAllSubOrgs(NS + "college1"));
+        assertEquals(uris("dept3"), hierarchy.getOrgAndAllSubOrgs(NS + "dept3"));
+
+        assertTrue(hierarchy.isSubOrgOf(NS + "dept2", NS + "university"));
+        assertTrue(hierarchy.isSubOrgOf(NS + "dept2", NS + "college1"));
+        assertTrue(hierarchy.isSubOrgOf(NS + "college1", NS + "college1"));
+        assertFalse(hierarchy.isSubOrgOf(NS + "dept2", NS + "college2"));
+        assertFalse(hierarchy.isSubOrgOf(NS + "university", NS + "college1"));
+
+        assertArrayEquals(ids("college1"), hierarchy.getParentIds(NS + "dept1"));
+        assertArrayEquals(ids("university", "college1", "dept1"), hierarchy.getOrgsAndAllParentIds(ids("dept1")));
+    }
+
+    @Test
+    public void multipleParents() {
+        // The shared center is reached through both colleges, so each college has more than one interval
+        OrganizationHierarchy hierarchy = OrganizationHierarchy.of(subOrgs(
+                "university", "college1",
+                "university", "college2",
+                "college1", "dept1",
+                "college2", "dept2",
+                "college1", "center",
+                "college2", "center",
+                "center", "lab"));
+
+        assertEquals(uris("college1", "dept1", "center", "lab"), hierarchy.getOrgAndAllSubOrgs(NS + "college1"));
+        assertEquals(uris("college2", "dept2", "center", "lab"), hierarchy.getOrgAndAllSubOrgs(NS + "college2"));
+        assertEquals(7, hierarchy.getOrgAndAllSubOrgIds(NS + "university").length);
+
+        assertTrue(hierarchy.isSubOrgOf(NS + "lab", NS + "college1"));
+        assertTrue(hierarchy.isSubOrgOf(NS + "lab", NS + "college2"));
+        assertFalse(hierarchy.isSubOrgOf(NS + "dept1", NS + "college2"));
+        assertFalse(hierarchy.isSubOrgOf(NS + "dept2", NS + "college1"));
+
+        assertArrayEquals(ids("college1", "college2"), hierarchy.getParentIds(NS + "center"));
+        assertArrayEquals(ids("university", "college1", "college2", "center", "lab"),
+                hierarchy.getOrgsAndAllParentIds(ids("lab")));
+    }
+
+    @Test
+    public void cycles() {
+        // college1 and college2 are, by mistake, each other's sub-organization
+        OrganizationHierarchy hierarchy = OrganizationHierarchy.of(subOrgs(
+                "university", "college1",
+                "college1", "college2",
+                "college2", "college1",
+                "college1", "dept1",
+                "college2", "dept2",
+                "self", "self"));
+
+        Set<String> colleges = uris("college1", "college2", "dept1", "dept2");
+        assertEquals(colleges, hierarchy.getOrgAndAllSubOrgs(NS + "college1"));
+        assertEquals(colleges, hierarchy.getOrgAndAllSubOrgs(NS + "college2"));
+        assertTrue(hierarchy.isSubOrgOf(NS + "college1", NS + "college2"));
+        assertTrue(hierarchy.isSubOrgOf(NS + "dept1", NS + "college2"));
+        assertTrue(hierarchy.isSubOrgOf(NS + "dept2", NS + "university"));
+        assertFalse(hierarchy.isSubOrgOf(NS + "university", NS + "college1"));
+
+        assertEquals(uris("self"), hierarchy.getOrgAndAllSubOrgs(NS + "self"));
+        assertArrayEquals(ids("university", "college1", "college2", "dept1"), hierarchy.getOrgsAndAllParentIds(ids("dept1")));
+    }
+
+    @Test
+    public void unknownOrganizations() {
+        OrganizationHierarchy hierarchy = OrganizationHierarchy.of(subOrgs("university", "college1"));
+
+        assertArrayEquals(IdSets.EMPTY, hierarchy.getOrgAndAllSubOrgIds(NS + "never-seen-anywhere"));
+        assertFalse(hierarchy.isSubOrgOf(NS + "never-seen-anywhere", NS + "university"));
+
+        // Known to the dictionary, but not in the hierarchy
+        assertArrayEquals(ids("outside"), hierarchy.getOrgAndAllSubOrgIds(NS + "outside"));
+        assertTrue(hierarchy.isSubOrgOf(NS + "outside", NS + "outside"));
+        assertFalse(hierarchy.isSubOrgOf(NS + "outside", NS + "university"));
+    }
+
+    @Test
+    public void deepHierarchy() {
+        Map<String, Set<String>> map = new HashMap<String, Set<String>>();
+        for (int i = 0; i < 100000; i++) {
+            add(map, "level" + i, "level" + (i + 1));
+        }
+
+        OrganizationHierarchy hierarchy = OrganizationHierarchy.of(map);
+        assertEquals(100001, hierarchy.getOrgAndAllSubOrgIds(NS + "level0").length);
+        assertEquals(2, hierarchy.getOrgAndAllSubOrgIds(NS + "level99999").length);
+        assertTrue(hierarchy.isSubOrgOf(NS + "level100000", NS + "level0"));
+        assertFalse(hierarchy.isSubOrgOf(NS + "level0", NS + "level1"));
+    }
+
+    @Test
+    public void matchesWalkOfRandomHierarchies() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            int orgs = 5 + random.nextInt(60);
+            Map<String, Set<String>> map = new HashMap<String, Set<String>>();
+            for (int link = random.nextInt(orgs * 2); link > 0; link--) {
+                add(map, "random" + random.nextInt(orgs), "random" + random.nextInt(orgs));
+            }
+
+            OrganizationHierarchy hierarchy = OrganizationHierarchy.of(map);
+            for (int org = 0; org < orgs; org++) {
+                dictionary.getId(NS + "random" + org);
+            }
+            for (int org = 0; org < orgs; org++) {
+                Set<String> expected = walk(map, NS + "random" + org);
+                assertEquals(expected, hierarchy.getOrgAndAllSubOrgs(NS + "random" + org));
+
+                for (int other = 0; other < orgs; other++) {
+                    assertEquals(expected.contains(NS + "random" + other),
+                            hierarchy.isSubOrgOf(NS + "random" + other, NS + "random" + org));
+                }
+            }
+        }
+    }
+
+    /**
+     * The organization and everything reachable from it
+     */
+    private static Set<String> walk(Map<String, Set<String>> map, String org) {
+        Set<String> found = new HashSet<String>();
+        Deque<String> pending = new ArrayDeque<String>();
+        found.add(org);
+        pending.add(org);
+        while (!pending.isEmpty()) {
+            Set<String> children = map.get(pending.poll());
+            if (children != null) {
+                for (String child : children) {
+                    if (found.add(child)) {
+                        pending.add(child);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private Map<String, Set<String>> subOrgs(String... pairs) {
+        Map<String, Set<String>> map = new HashMap<String, Set<String>>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            add(map, pairs[i], pairs[i + 1]);
+        }
+        return map;
+    }
+
+    private void add(Map<String, Set<String>> map, String org, String subOrg) {
+        Set<String> children = map.get(NS + org);
+        if (children == null) {
+            children = new HashSet<String>();
+            map.put(NS + org, children);
+        }
+        children.add(NS + subOrg);
+        dictionary.getId(NS + org);
+        dictionary.getId(NS + subOrg);
+    }
+
+    private static Set<String> uris(String... names) {
+        Set<String> uris = new HashSet<String>();
+        for (String name : names) {
+            uris.add(NS + name);
+        }
+        return uris;
+    }
+
+    private int[] ids(String... names) {
+        int[] ids = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = dictionary.getId(NS + names[i]);
+        }
+        return IdSets.sortedUnique(ids, ids.length);
+    }
+}
@@ -0,0 +1,86 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PersonGrantRolesTest {
+    private static final String NS = "http://example.org/roles/";
+
+    private final UriDictionary dictionary = UriDictionary.getInstance();
+
+    @Test
+    public void keepsEarliestYearOfEachPersonAndGrant() {
+        PersonGrantRoles.Builder builder = new PersonGrantRoles.Builder();
+        builder.add(NS + "person1", NS + "grant1", 2005);
+        builder.add(NS + "person1", NS + "grant1", 2003);
+        builder.add(NS + "person1", NS + "grant1", PersonGrantRoles.UNKNOWN_YEAR);
+        builder.add(NS + "person1", NS + "grant2", PersonGrantRoles.UNKNOWN_YEAR);
+        builder.add(NS + "person2", NS + "grant1", 2010);
+        PersonGrantRoles roles = builder.build();
+
+        assertArrayEquals(ids("grant1", "grant2"), roles.getPersonToGrantIds().get(NS + "person1"));
+        assertArrayEquals(ids("person1", "person2"), roles.getGrantToPersonIds().get(NS + "grant1"));
+
+        // The year belongs to the person's role, not to the grant
+        assertEquals(2003, roles.getYear(id("person1"), id("grant1")));
+        assertEquals(2010, roles.getYear(id("person2"), id("grant1")));
+        assertEquals(PersonGrantRoles.UNKNOWN_YEAR, roles.getYear(id("person1"), id("grant2")));
+        assertEquals(PersonGrantRoles.UNKNOWN_YEAR, roles.getYear(id("person2"), id("grant2")));
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put(NS + "grant1", "2003");
+        assertEquals(expected, roles.getGrantYears(NS + "person1"));
+        assertEquals(Collections.emptyMap(), roles.getGrantYears(NS + "never-seen-anywhere"));
+    }
+
+    @Test
+    public void updateReplacesRolesOfChangedLinks() {
+        PersonGrantRoles.Builder builder = new PersonGrantRoles.Builder();
+        builder.add(NS + "person3", NS + "grant3", 2001);
+        builder.add(NS + "person3", NS + "grant4", 2002);
+        builder.add(NS + "person4", NS + "grant4", 2004);
+        PersonGrantRoles roles = builder.build();
+
+        // grant4 has changed - person4 no longer has a role on it, and person3's role now has no start
+        Map<String, Set<String>> removals = new HashMap<>();
+        removals.put(NS + "person3", Collections.singleton(NS + "grant4"));
+        removals.put(NS + "person4", Collections.singleton(NS + "grant4"));
+
+        PersonGrantRoles.Builder additions = new PersonGrantRoles.Builder();
+        additions.add(NS + "person3", NS + "grant4", PersonGrantRoles.UNKNOWN_YEAR);
+        additions.add(NS + "person5", NS + "grant4", 2008);
+
+        PersonGrantRoles updated = roles.update(removals, additions.build());
+
+        assertArrayEquals(ids("person3", "person5"), updated.getGrantToPersonIds().get(NS + "grant4"));
+        assertEquals(2001, updated.getYear(id("person3"), id("grant3")));
+        assertEquals(PersonGrantRoles.UNKNOWN_YEAR, updated.getYear(id("person3"), id("grant4")));
+        assertEquals(PersonGrantRoles.UNKNOWN_YEAR, updated.getYear(id("person4"), id("grant4")));
+        assertEquals(2008, updated.getYear(id("person5"), id("grant4")));
+
+        // The original is unchanged
+        assertEquals(2002, roles.getYear(id("person3"), id("grant4")));
+        assertEquals(2004, roles.getYear(id("person4"), id("grant4")));
+    }
+
+    private int id(String name) {
+        return dictionary.getId(NS + name);
+    }
+
+    private int[] ids(String... names) {
+        int[] ids = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            ids[i] = id(names[i]);
+        }
+        return IdSets.sortedUnique(ids, ids.length);
+    }
+}
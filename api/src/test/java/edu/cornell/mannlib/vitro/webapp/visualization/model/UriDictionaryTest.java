@@ -0,0 +1,91 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class UriDictionaryTest {
+    private final UriDictionary dictionary = UriDictionary.getInstance();
+
+    @Test
+    public void assignsIds() {
+        String uri = "http://example.org/dictionary/assigns";
+        assertEquals(-1, dictionary.lookup(uri));
+        assertEquals(-1, dictionary.lookup(null));
+
+        int id = dictionary.getId(uri);
+        assertEquals(id, dictionary.getId(uri));
+        assertEquals(id, dictionary.lookup(uri));
+        assertEquals(uri, dictionary.getUri(id));
+        assertNotEquals(id, dictionary.getId(uri + "/other"));
+    }
+
+    @Test
+    public void growsWithoutLosingIds() {
+        List<String> uris = new ArrayList<>();
+        int[] ids = new int[5000];
+        for (int i = 0; i < ids.length; i++) {
+            uris.add("http://example.org/dictionary/grow" + i);
+            ids[i] = dictionary.getId(uris.get(i));
+        }
+
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], dictionary.lookup(uris.get(i)));
+            assertEquals(uris.get(i), dictionary.getUri(ids[i]));
+        }
+    }
+
+    @Test
+    public void lookupAllIsSortedAndIgnoresUnknown() {
+        int second = dictionary.getId("http://example.org/dictionary/all2");
+        int first = dictionary.getId("http://example.org/dictionary/all1");
+
+        int[] ids = dictionary.lookupAll(Arrays.asList(
+                "http://example.org/dictionary/all1",
+                "http://example.org/dictionary/unknown",
+                "http://example.org/dictionary/all2",
+                "http://example.org/dictionary/all1"));
+
+        assertArrayEquals(new int[] { Math.min(first, second), Math.max(first, second) }, ids);
+    }
+
+    @Test
+    public void compactReleasesUnusedIds() {
+        String kept = "http://example.org/dictionary/kept";
+        String dropped = "http://example.org/dictionary/dropped";
+        dictionary.getId(dropped);
+
+        // Start a generation in which only the kept URI is used
+        dictionary.compact();
+        int keptId = dictionary.getId(kept);
+        int droppedId = dictionary.lookup(dropped);
+        int size = dictionary.size();
+
+        int released = dictionary.compact();
+        assertTrue(released > 0);
+        assertEquals(size - released, dictionary.size());
+        assertEquals(keptId, dictionary.lookup(kept));
+        assertEquals(-1, dictionary.lookup(dropped));
+
+        // The URI is kept for requests holding the old id, until the next compaction
+        assertEquals(dropped, dictionary.getUri(droppedId));
+        dictionary.getId(kept);
+        dictionary.compact();
+        assertNull(dictionary.getUri(droppedId));
+
+        // Ids are then reused, and a released URI gets a new one if it comes back
+        int reused = dictionary.getId(dropped);
+        assertEquals(dropped, dictionary.getUri(reused));
+        assertEquals(kept, dictionary.getUri(keptId));
+    }
+}
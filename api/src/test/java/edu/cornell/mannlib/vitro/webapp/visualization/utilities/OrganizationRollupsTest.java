@@ -0,0 +1,147 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * The organizations used by these tests:
+ *
+ * root (person6), with:
+ *   deptA (person3), with labA1 (person1) and labA2 (person2)
+ *   deptB (person5), with labB1 (person4)
+ */
+public class OrganizationRollupsTest {
+    private static final String NS = "http://example.org/rollups/";
+
+    private static final List<String> ORGS = Arrays.asList("root", "deptA", "deptB", "labA1", "labA2", "labB1");
+
+    private final Map<String, Set<String>> subOrgMap = subOrgMap();
+    private final Map<String, Set<String>> orgToPeople = orgToPeople();
+
+    @Test
+    public void recalculatesOnlyTheOrganizationsOfChangedPeople() {
+        Map<String, Set<String>> personToDocuments = personToDocuments();
+        OrganizationRollups rollups = OrganizationRollups.of("test-changes", subOrgMap, orgToPeople, personToDocuments);
+        Map<String, OrganizationRollups.Rollup> before = new HashMap<>();
+        for (String org : ORGS) {
+            before.put(org, rollups.get(NS + org));
+        }
+        assertEquals(uris("document1", "document2", "document3", "document4"), before.get("deptA").getObjects());
+
+        // person1, in labA1, has a new publication
+        Map<String, Set<String>> changed = personToDocuments();
+        changed.get(NS + "person1").add(NS + "document7");
+        OrganizationRollups updated = OrganizationRollups.of("test-changes", subOrgMap, orgToPeople, changed);
+        assertNotSame(rollups, updated);
+
+        // labA1 and every organization above it are recalculated
+        for (String org : Arrays.asList("labA1", "deptA", "root")) {
+            OrganizationRollups.Rollup rollup = updated.get(NS + org);
+            assertNotSame(org, before.get(org), rollup);
+            assertTrue(org, rollup.getObjects().contains(NS + "document7"));
+        }
+
+        // The other organizations keep their rollups, and anything derived from them
+        for (String org : Arrays.asList("labA2", "deptB", "labB1")) {
+            assertSame(org, before.get(org), updated.get(NS + org));
+        }
+    }
+
+    @Test
+    public void countsActivitiesSharedBySubOrganizations() {
+        OrganizationRollups rollups = OrganizationRollups.of("test-overlaps", subOrgMap, orgToPeople, personToDocuments());
+
+        OrganizationRollups.SubOrgOverlaps overlaps = rollups.getSubOrgOverlaps(NS + "root");
+        assertEquals(uris("deptA", "deptB"), new HashSet<>(overlaps.getSubOrgs()));
+        assertSame(overlaps, rollups.getSubOrgOverlaps(NS + "root"));
+
+        // deptA and deptB share document1
+        assertEquals(1, overlaps.getCount(0, 1));
+        assertOverlaps(rollups, NS + "root");
+
+        // labA1 and labA2 share document2
+        assertEquals(1, rollups.getSubOrgOverlaps(NS + "deptA").getCount(0, 1));
+        assertOverlaps(rollups, NS + "deptA");
+
+        assertEquals(0, rollups.getSubOrgOverlaps(NS + "labA1").getSubOrgs().size());
+    }
+
+    @Test
+    public void rollsUpSubOrganizationsInOrder() {
+        OrganizationRollups rollups = OrganizationRollups.of("test-sub-orgs", subOrgMap, orgToPeople, personToDocuments());
+
+        Map<String, OrganizationRollups.Rollup> subOrgRollups = rollups.getSubOrgRollups(NS + "root");
+        assertEquals(new ArrayList<>(rollups.getSubOrgs(NS + "root")), new ArrayList<>(subOrgRollups.keySet()));
+        for (Map.Entry<String, OrganizationRollups.Rollup> entry : subOrgRollups.entrySet()) {
+            assertSame(rollups.get(entry.getKey()), entry.getValue());
+        }
+
+        assertEquals(uris("document1", "document5", "document6"), subOrgRollups.get(NS + "deptB").getObjects());
+        assertEquals(uris("person4", "person5"), subOrgRollups.get(NS + "deptB").getPeople());
+    }
+
+    /**
+     * The overlaps must be symmetric, with the number of activities of each sub-organization on the diagonal
+     */
+    private static void assertOverlaps(OrganizationRollups rollups, String org) {
+        OrganizationRollups.SubOrgOverlaps overlaps = rollups.getSubOrgOverlaps(org);
+        List<String> subOrgs = overlaps.getSubOrgs();
+        for (int row = 0; row < subOrgs.size(); row++) {
+            assertEquals(rollups.get(subOrgs.get(row)).size(), overlaps.getCount(row, row));
+            for (int column = 0; column < subOrgs.size(); column++) {
+                assertEquals(overlaps.getCount(row, column), overlaps.getCount(column, row));
+            }
+        }
+    }
+
+    private static Map<String, Set<String>> subOrgMap() {
+        Map<String, Set<String>> subOrgMap = new HashMap<>();
+        subOrgMap.put(NS + "root", uris("deptA", "deptB"));
+        subOrgMap.put(NS + "deptA", uris("labA1", "labA2"));
+        subOrgMap.put(NS + "deptB", uris("labB1"));
+        return subOrgMap;
+    }
+
+    private static Map<String, Set<String>> orgToPeople() {
+        Map<String, Set<String>> orgToPeople = new HashMap<>();
+        orgToPeople.put(NS + "root", uris("person6"));
+        orgToPeople.put(NS + "deptA", uris("person3"));
+        orgToPeople.put(NS + "deptB", uris("person5"));
+        orgToPeople.put(NS + "labA1", uris("person1"));
+        orgToPeople.put(NS + "labA2", uris("person2"));
+        orgToPeople.put(NS + "labB1", uris("person4"));
+        return orgToPeople;
+    }
+
+    private static Map<String, Set<String>> personToDocuments() {
+        Map<String, Set<String>> personToDocuments = new HashMap<>();
+        personToDocuments.put(NS + "person1", uris("document1", "document2"));
+        personToDocuments.put(NS + "person2", uris("document2", "document3"));
+        personToDocuments.put(NS + "person3", uris("document4"));
+        personToDocuments.put(NS + "person4", uris("document1", "document5"));
+        personToDocuments.put(NS + "person5", uris("document6"));
+        return personToDocuments;
+    }
+
+    private static Set<String> uris(String... names) {
+        Set<String> uris = new HashSet<>();
+        for (String name : names) {
+            uris.add(NS + name);
+        }
+        return uris;
+    }
+}
@@ -0,0 +1,99 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class OverlayMapTest {
+    private static final String NS = "http://example.org/overlay/";
+
+    @Test
+    public void replacesAndRemovesWithoutChangingTheOriginal() {
+        Map<String, String> base = new HashMap<>();
+        base.put(NS + "a", "1");
+        base.put(NS + "b", "2");
+
+        Map<String, String> replacements = new HashMap<>();
+        replacements.put(NS + "b", "3");
+        replacements.put(NS + "c", "4");
+        Map<String, String> updated = OverlayMap.replace(base, set(NS + "a", NS + "b", NS + "d"), replacements);
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put(NS + "b", "3");
+        expected.put(NS + "c", "4");
+        assertEquals(expected, updated);
+        assertEquals(2, updated.size());
+        assertNull(updated.get(NS + "a"));
+        assertFalse(updated.containsKey(NS + "a"));
+        assertTrue(updated.containsKey(NS + "c"));
+
+        assertEquals("2", base.get(NS + "b"));
+        assertEquals(2, base.size());
+
+        // A later update starts from the overlay, and leaves the earlier copy unchanged
+        Map<String, String> restored = OverlayMap.replace(updated, set(NS + "c"), Collections.singletonMap(NS + "a", "5"));
+        assertEquals("5", restored.get(NS + "a"));
+        assertFalse(restored.containsKey(NS + "c"));
+        assertEquals(2, restored.size());
+        assertEquals(expected, updated);
+    }
+
+    /**
+     * A series of updates must give the same map as copying and changing a HashMap, including across folds
+     */
+    @Test
+    public void matchesHashMapAcrossUpdates() {
+        Random random = new Random(42);
+
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            expected.put(NS + i, i);
+        }
+
+        Map<String, Integer> map = new HashMap<>(expected);
+        for (int batch = 0; batch < 200; batch++) {
+            Set<String> keys = new HashSet<>();
+            Map<String, Integer> replacements = new HashMap<>();
+            for (int i = 0, count = random.nextInt(50); i < count; i++) {
+                String key = NS + random.nextInt(6000);
+                if (random.nextBoolean()) {
+                    keys.add(key);
+                } else {
+                    replacements.put(key, random.nextInt());
+                }
+            }
+
+            Map<String, Integer> previous = map;
+            Map<String, Integer> previousCopy = new HashMap<>(previous);
+            map = OverlayMap.replace(map, keys, replacements);
+
+            for (String key : keys) {
+                expected.remove(key);
+            }
+            expected.putAll(replacements);
+
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected, map);
+            assertEquals(expected.size(), map.entrySet().size());
+            assertEquals(previousCopy, previous);
+        }
+    }
+
+    private static Set<String> set(String... values) {
+        Set<String> set = new HashSet<>();
+        Collections.addAll(set, values);
+        return set;
+    }
+}
@@ -0,0 +1,134 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.webapp.rdfservice.impl.jena.model.RDFServiceModel;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.Person;
+
+public class VisualizationCacheChangeListenerTest {
+    private static final String NS = "http://example.org/listener/";
+    private static final String CORE = "http://vivoweb.org/ontology/core#";
+    private static final String VCARD = "http://www.w3.org/2006/vcard/ns#";
+
+    /**
+     * Longest time to wait for a background task to apply the changes
+     */
+    private static final long TIMEOUT = 10000;
+
+    private Model model;
+    private VisualizationCacheChangeListener listener;
+
+    @Before
+    public void setUp() {
+        model = ModelFactory.createDefaultModel();
+
+        Resource person = model.createResource(NS + "person1");
+        Resource contactInfo = model.createResource(NS + "contactInfo1");
+        Resource name = model.createResource(NS + "name1");
+        model.add(person, RDF.type, model.createResource("http://xmlns.com/foaf/0.1/Person"));
+        model.add(person, model.createProperty("http://purl.obolibrary.org/obo/ARG_2000028"), contactInfo);
+        model.add(contactInfo, model.createProperty(VCARD + "hasName"), name);
+        model.add(name, model.createProperty(VCARD + "familyName"), "Smith");
+        model.add(name, model.createProperty(VCARD + "givenName"), "Jane");
+
+        Resource document = model.createResource(NS + "document1");
+        Resource dateTimeValue = model.createResource(NS + "dateTimeValue1");
+        Resource journal = model.createResource(NS + "journal1");
+        model.add(document, RDF.type, model.createResource("http://purl.obolibrary.org/obo/IAO_0000030"));
+        model.add(document, model.createProperty(CORE + "dateTimeValue"), dateTimeValue);
+        model.add(dateTimeValue, model.createProperty(CORE + "dateTime"), "2005-01-01T00:00:00");
+        model.add(document, model.createProperty(CORE + "hasPublicationVenue"), journal);
+        model.add(journal, RDFS.label, "Journal of Examples");
+
+        listener = new VisualizationCacheChangeListener();
+        model.register(listener);
+        CachingRDFServiceExecutor.setBackgroundRDFService(new RDFServiceModel(model));
+    }
+
+    @After
+    public void tearDown() {
+        model.unregister(listener);
+        CachingRDFServiceExecutor.setBackgroundRDFService(null);
+        VisualizationCaches.people.clear();
+        VisualizationCaches.publicationToYear.clear();
+        VisualizationCaches.publicationToJournal.clear();
+    }
+
+    @Test
+    public void vcardNameChangeReachesPersonDirectory() throws Exception {
+        assertEquals("Smith", VisualizationCaches.people.get(null).get(NS + "person1").lastName);
+
+        // The change is to the name, not the person, so the cache has to find the person it belongs to
+        Resource name = model.getResource(NS + "name1");
+        Property familyName = model.getProperty(VCARD + "familyName");
+        model.removeAll(name, familyName, null);
+        model.add(name, familyName, "Jones");
+        listener.flush();
+
+        assertTrue(VisualizationCaches.people.pendingChangeCount() > 0);
+
+        // The changes are applied by a background task, started by the next request
+        Person person = VisualizationCaches.people.get(null).get(NS + "person1");
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!"Jones".equals(person.lastName) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            person = VisualizationCaches.people.get(null).get(NS + "person1");
+        }
+
+        assertEquals("Jones", person.lastName);
+        assertEquals("Jane", person.firstName);
+    }
+
+    @Test
+    public void removedDateReachesPublicationYears() throws Exception {
+        assertEquals("2005", VisualizationCaches.publicationToYear.get(null).get(NS + "document1"));
+
+        // Only the date of the date value is removed, so the change is reported against the date value
+        model.removeAll(model.getResource(NS + "dateTimeValue1"), model.getProperty(CORE + "dateTime"), null);
+        listener.flush();
+
+        assertTrue(VisualizationCaches.publicationToYear.pendingChangeCount() > 0);
+        assertFalse(awaitRemoval(VisualizationCaches.publicationToYear, NS + "document1").containsKey(NS + "document1"));
+    }
+
+    @Test
+    public void removedJournalLabelReachesPublicationJournals() throws Exception {
+        assertEquals("Journal of Examples", VisualizationCaches.publicationToJournal.get(null).get(NS + "document1"));
+
+        model.removeAll(model.getResource(NS + "journal1"), RDFS.label, null);
+        listener.flush();
+
+        assertTrue(VisualizationCaches.publicationToJournal.pendingChangeCount() > 0);
+        assertFalse(awaitRemoval(VisualizationCaches.publicationToJournal, NS + "document1").containsKey(NS + "document1"));
+    }
+
+    /**
+     * Get the cached map until the key has been removed from it, or the changes have had time to be applied
+     */
+    private Map<String, String> awaitRemoval(CachingRDFServiceExecutor<Map<String, String>> cache, String key) throws InterruptedException {
+        Map<String, String> map = cache.get(null);
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (map.containsKey(key) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            map = cache.get(null);
+        }
+
+        return map;
+    }
+}
@@ -0,0 +1,170 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.Person;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.PersonDirectory;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.PersonGrantRoles;
+
+public class VisualizationCacheStoreTest {
+    private static final String NS = "http://example.org/store/";
+
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("visualization");
+        file = directory.resolve("caches.snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        VisualizationCaches.publicationToYear.clear();
+        VisualizationCaches.personToGrant.clear();
+        VisualizationCaches.personToInvestigatorGrant.clear();
+        VisualizationCaches.people.clear();
+
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void roundTrip() {
+        Map<String, String> years = new HashMap<>();
+        years.put(NS + "document1", "2001");
+        years.put(NS + "document2", "2002");
+        years.put(NS + "document3", "2001");
+
+        IdAdjacency.Builder links = new IdAdjacency.Builder();
+        links.add(NS + "person1", NS + "grant1");
+        links.add(NS + "person1", NS + "grant2");
+        links.add(NS + "person2", NS + "grant2");
+        Map<String, Set<String>> grants = links.build().asMap();
+
+        PersonDirectory.Builder builder = new PersonDirectory.Builder();
+        builder.add(NS + "person1", "Smith", null, "Jane", null, "Professor", "/thumbnails/jane.jpg");
+        builder.add(NS + "person2", null, "Jones", null, "Bob", null, null);
+        PersonDirectory people = builder.build();
+
+        assertTrue(VisualizationCaches.publicationToYear.restore(years, 1000));
+        assertTrue(VisualizationCaches.personToGrant.restore(grants, 2000));
+        assertTrue(VisualizationCaches.people.restore(people, 3000));
+
+        assertEquals(3, VisualizationCacheStore.save(file));
+
+        VisualizationCaches.publicationToYear.clear();
+        VisualizationCaches.personToGrant.clear();
+        VisualizationCaches.people.clear();
+        assertFalse(VisualizationCaches.people.isCached());
+
+        assertEquals(3, VisualizationCacheStore.load(file));
+
+        assertEquals(years, VisualizationCaches.publicationToYear.getCachedResults());
+        assertEquals(1000, VisualizationCaches.publicationToYear.cachedWhen().getTime());
+        assertEquals(grants, new HashMap<>(VisualizationCaches.personToGrant.getCachedResults()));
+        assertEquals(2000, VisualizationCaches.personToGrant.cachedWhen().getTime());
+
+        PersonDirectory restored = VisualizationCaches.people.getCachedResults();
+        assertEquals(2, restored.size());
+        assertPerson(people.get(NS + "person1"), restored.get(NS + "person1"));
+        assertPerson(people.get(NS + "person2"), restored.get(NS + "person2"));
+        assertEquals(3000, VisualizationCaches.people.cachedWhen().getTime());
+    }
+
+    @Test
+    public void roundTripsGrantRoleYears() {
+        PersonGrantRoles.Builder builder = new PersonGrantRoles.Builder();
+        builder.add(NS + "person1", NS + "grant1", 2001);
+        builder.add(NS + "person1", NS + "grant2", PersonGrantRoles.UNKNOWN_YEAR);
+        builder.add(NS + "person2", NS + "grant2", 2005);
+        PersonGrantRoles roles = builder.build();
+
+        assertTrue(VisualizationCaches.personToInvestigatorGrant.restore(roles, 4000));
+        assertEquals(1, VisualizationCacheStore.save(file));
+
+        VisualizationCaches.personToInvestigatorGrant.clear();
+        assertEquals(1, VisualizationCacheStore.load(file));
+
+        PersonGrantRoles restored = VisualizationCaches.personToInvestigatorGrant.getCachedResults();
+        assertEquals(new HashMap<>(roles.getPersonToGrantIds().asMap()), new HashMap<>(restored.getPersonToGrantIds().asMap()));
+        assertEquals(roles.getGrantYears(NS + "person1"), restored.getGrantYears(NS + "person1"));
+        assertEquals(roles.getGrantYears(NS + "person2"), restored.getGrantYears(NS + "person2"));
+        assertEquals(4000, VisualizationCaches.personToInvestigatorGrant.cachedWhen().getTime());
+    }
+
+    @Test
+    public void populatedCachesAreNotReplaced() {
+        Map<String, String> saved = new HashMap<>();
+        saved.put(NS + "document1", "2001");
+        assertTrue(VisualizationCaches.publicationToYear.restore(saved, 1000));
+        assertEquals(1, VisualizationCacheStore.save(file));
+
+        VisualizationCaches.publicationToYear.clear();
+        Map<String, String> current = new HashMap<>();
+        current.put(NS + "document1", "2011");
+        assertTrue(VisualizationCaches.publicationToYear.restore(current, 5000));
+
+        assertEquals(0, VisualizationCacheStore.load(file));
+        assertEquals(current, VisualizationCaches.publicationToYear.getCachedResults());
+    }
+
+    @Test
+    public void truncatedSnapshotRestoresCompleteSections() throws IOException {
+        Map<String, String> years = new HashMap<>();
+        years.put(NS + "document1", "2001");
+        assertTrue(VisualizationCaches.publicationToYear.restore(years, 1000));
+
+        IdAdjacency.Builder links = new IdAdjacency.Builder();
+        for (int i = 0; i < 1000; i++) {
+            links.add(NS + "person" + i, NS + "grant" + i);
+        }
+        assertTrue(VisualizationCaches.personToGrant.restore(links.build().asMap(), 2000));
+
+        assertEquals(2, VisualizationCacheStore.save(file));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 100);
+        }
+
+        VisualizationCaches.publicationToYear.clear();
+        VisualizationCaches.personToGrant.clear();
+
+        assertEquals(1, VisualizationCacheStore.load(file));
+        assertEquals(years, VisualizationCaches.publicationToYear.getCachedResults());
+        assertNull(VisualizationCaches.personToGrant.getCachedResults());
+    }
+
+    @Test
+    public void missingSnapshot() {
+        assertEquals(0, VisualizationCacheStore.load(file));
+        assertEquals(0, VisualizationCacheStore.save(file));
+        assertFalse(Files.exists(file));
+    }
+
+    private static void assertPerson(Person expected, Person actual) {
+        assertEquals(expected.uri, actual.uri);
+        assertEquals(expected.firstName, actual.firstName);
+        assertEquals(expected.lastName, actual.lastName);
+        assertEquals(expected.preferredTitle, actual.preferredTitle);
+        assertEquals(expected.thumbnailUrl, actual.thumbnailUrl);
+    }
+}
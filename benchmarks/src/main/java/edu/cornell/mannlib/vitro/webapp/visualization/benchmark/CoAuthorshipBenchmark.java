@@ -0,0 +1,109 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.benchmark;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CoAuthorshipData;
+import edu.cornell.mannlib.vitro.webapp.visualization.collaborationutils.CollaborationNetworkBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the co-authorship network of the busiest author, with the CollaborationNetworkBuilder that
+ * CoAuthorshipQueryRunner passes its query results to.
+ *
+ * egoNetwork measures the whole build; coAuthorEdges measures only the end of the build, where the
+ * edges between the co-authors are created.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class CoAuthorshipBenchmark {
+    /**
+     * As CoAuthorshipQueryRunner.MAX_AUTHORS_PER_PAPER_ALLOWED
+     */
+    private static final int MAX_AUTHORS_PER_PAPER = 100;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int people;
+
+    /**
+     * The rows that the query runner passes to the builder: author, author name, document, date, co-author, co-author name
+     */
+    private final List<String[]> entries = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SyntheticVivoData data = SyntheticVivoData.forPeople(people);
+
+        Map<String, Set<String>> personToPublicationMap = data.personPublications.personToPublication;
+        Map<String, Set<String>> publicationToPersonMap = data.personPublications.publicationToPerson;
+
+        String authorURI = data.busiestAuthor;
+        String authorName = data.personLabels.get(authorURI);
+        for (String documentURI : personToPublicationMap.get(authorURI)) {
+            String documentDate = data.publicationToYear.get(documentURI);
+            for (String coAuthorURI : publicationToPersonMap.get(documentURI)) {
+                entries.add(new String[] { authorURI, authorName, documentURI, documentDate, coAuthorURI, data.personLabels.get(coAuthorURI) });
+            }
+        }
+    }
+
+    /**
+     * A builder that has been passed all of the entries, ready to build
+     */
+    @State(Scope.Thread)
+    public static class PreparedBuilder {
+        CollaborationNetworkBuilder builder;
+
+        @Setup(Level.Invocation)
+        public void setup(CoAuthorshipBenchmark benchmark) {
+            builder = benchmark.addEntries();
+        }
+    }
+
+    @Benchmark
+    public CoAuthorshipData egoNetwork() {
+        return build(addEntries());
+    }
+
+    @Benchmark
+    public CoAuthorshipData coAuthorEdges(PreparedBuilder prepared) {
+        return build(prepared.builder);
+    }
+
+    private CollaborationNetworkBuilder addEntries() {
+        CollaborationNetworkBuilder builder = new CollaborationNetworkBuilder(MAX_AUTHORS_PER_PAPER, 0);
+        for (String[] entry : entries) {
+            builder.addEntry(entry[0], entry[1], entry[2], entry[3], entry[4], entry[5]);
+        }
+        return builder;
+    }
+
+    /**
+     * Finish the network as CoAuthorshipQueryRunner does at the end of processing
+     */
+    private static CoAuthorshipData build(CollaborationNetworkBuilder builder) {
+        builder.build();
+        return builder.setTruncation(new CoAuthorshipData(builder.getEgoCollaborator(),
+                builder.getCollaborators(), builder.getCollaborations(), builder.getActivities()));
+    }
+}
@@ -0,0 +1,75 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.benchmark;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.model.CollaborationGraph;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationHierarchy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries of the institution-wide co-authorship graph, once it has been built for the current caches
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class CollaborationGraphBenchmark {
+    @Param({ "10000", "100000", "1000000" })
+    public int people;
+
+    private SyntheticVivoData data;
+    private CollaborationGraph graph;
+    private List<String> colleges;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = SyntheticVivoData.forPeople(people);
+        graph = build();
+        colleges = new ArrayList<>(data.subOrgs.get(data.university));
+    }
+
+    private CollaborationGraph build() {
+        return CollaborationGraph.of("coAuthorship",
+                data.personPublications.getPersonToPublicationIds(),
+                data.publicationToYear);
+    }
+
+    @Benchmark
+    public CollaborationGraph.Network egoNetwork() {
+        return graph.getEgoNetwork(data.busiestAuthor);
+    }
+
+    @Benchmark
+    public CollaborationGraph.Network twoHopNetwork() {
+        return graph.getTwoHopNetwork(data.busiestAuthor);
+    }
+
+    @Benchmark
+    public int[] topCollaborators() {
+        return graph.getTopCollaboratorIds(data.busiestAuthor, 10);
+    }
+
+    @Benchmark
+    public long[][] collegeMatrix() {
+        return graph.getOrganizationMatrix(colleges,
+                OrganizationHierarchy.of(data.subOrgs),
+                data.organizationPeople.getOrganizationToPeopleIds());
+    }
+}
@@ -0,0 +1,52 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.benchmark;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.CounterUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting the publications of an organization by year, as done by the temporal graph visualization
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class CounterUtilsBenchmark {
+    @Param({ "10000", "100000", "1000000" })
+    public int people;
+
+    @Param({ "university", "college", "department" })
+    public String level;
+
+    private SyntheticVivoData data;
+    private Set<String> publications;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = SyntheticVivoData.forPeople(people);
+        publications = data.publicationsOf(data.organization(level));
+    }
+
+    @Benchmark
+    public List<List<Integer>> countByYear() {
+        return CounterUtils.getObjectCountByYear(publications, data.publicationToYear);
+    }
+}
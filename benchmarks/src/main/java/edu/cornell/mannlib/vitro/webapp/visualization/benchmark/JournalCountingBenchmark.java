@@ -0,0 +1,80 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.benchmark;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.mapofscience.MapOfScienceSupport;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.UriDictionary;
+import mapping.ScienceMapping;
+import mapping.ScienceMappingResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting the publications of an organization by journal, and mapping the journals to subdisciplines,
+ * through the entry points that MapOfScienceSupport gives to MapOfScienceVisualizationRequestHandler.
+ *
+ * The synthetic journal names are not in the map of science, so mapping measures the cost of the lookups
+ * rather than of the subdiscipline weights.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class JournalCountingBenchmark {
+    @Param({ "10000", "100000", "1000000" })
+    public int people;
+
+    @Param({ "university", "college", "department" })
+    public String level;
+
+    private SyntheticVivoData data;
+    private Set<String> publications;
+    private int[] publicationIds;
+    private Map<String, Integer> journalCounts;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = SyntheticVivoData.forPeople(people);
+        publications = data.publicationsOf(data.organization(level));
+        publicationIds = UriDictionary.getInstance().lookupAll(publications);
+        journalCounts = countJournals();
+    }
+
+    /**
+     * Counting as the handler does for organizations, with the publications shared between the available processors
+     */
+    @Benchmark
+    public Map<String, Integer> countJournals() {
+        return MapOfScienceSupport.countJournals(publicationIds, data.publicationToJournal);
+    }
+
+    @Benchmark
+    public ScienceMappingResult mapJournals() throws IOException {
+        return new ScienceMapping().generateScienceMappingResult(journalCounts);
+    }
+
+    /**
+     * Mapping with the classification of each journal kept from earlier requests (after the first iteration)
+     */
+    @Benchmark
+    public Map<Integer, Float> mapClassifiedJournals() {
+        return MapOfScienceSupport.mapJournals(journalCounts);
+    }
+}
@@ -0,0 +1,114 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.benchmark;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrgUtils;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrganizationRollups;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathering the publications and grants of an organization and its sub-organizations,
+ * as done by the temporal graph and map of science visualizations
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+public class OrgRollupBenchmark {
+    @Param({ "10000", "100000", "1000000" })
+    public int people;
+
+    @Param({ "university", "college", "department" })
+    public String level;
+
+    private SyntheticVivoData data;
+    private String org;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = SyntheticVivoData.forPeople(people);
+        org = data.organization(level);
+    }
+
+    @Benchmark
+    public void publications(Blackhole blackhole) {
+        Set<String> orgPublications = new HashSet<String>();
+        Set<String> orgPublicationsPeople = new HashSet<String>();
+        Map<String, Set<String>> subOrgPublicationsMap = new HashMap<String, Set<String>>();
+
+        OrgUtils.getObjectMappingsForOrgAndSubOrgs(
+                org,
+                orgPublications,
+                orgPublicationsPeople,
+                subOrgPublicationsMap,
+                data.subOrgs,
+                data.organizationPeople.organizationToPeople,
+                data.personPublications.personToPublication
+        );
+
+        blackhole.consume(orgPublications);
+        blackhole.consume(orgPublicationsPeople);
+        blackhole.consume(subOrgPublicationsMap);
+    }
+
+    @Benchmark
+    public void grants(Blackhole blackhole) {
+        Set<String> orgGrants = new HashSet<String>();
+        Set<String> orgGrantsPeople = new HashSet<String>();
+        Map<String, Set<String>> subOrgGrantsMap = new HashMap<String, Set<String>>();
+
+        OrgUtils.getObjectMappingsForOrgAndSubOrgs(
+                org,
+                orgGrants,
+                orgGrantsPeople,
+                subOrgGrantsMap,
+                data.subOrgs,
+                data.organizationPeople.organizationToPeople,
+                data.personToGrant
+        );
+
+        blackhole.consume(orgGrants);
+        blackhole.consume(orgGrantsPeople);
+        blackhole.consume(subOrgGrantsMap);
+    }
+
+    /**
+     * The same data from the rollups, once they have been calculated for the current caches
+     */
+    @Benchmark
+    public void publicationRollups(Blackhole blackhole) {
+        OrganizationRollups rollups = OrganizationRollups.of(
+                "publications",
+                data.subOrgs,
+                data.organizationPeople.organizationToPeople,
+                data.personPublications.personToPublication
+        );
+
+        OrganizationRollups.Rollup rollup = rollups.get(org);
+        blackhole.consume(rollup.getCountByYear(data.publicationToYear));
+        blackhole.consume(rollup.getPeople());
+        for (String subOrg : rollups.getSubOrgs(org)) {
+            blackhole.consume(rollups.get(subOrg).getCountByYear(data.publicationToYear));
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/* $This file is distributed under the terms of the license in LICENSE$ */
+
+package edu.cornell.mannlib.vitro.webapp.visualization.benchmark;
+
+import edu.cornell.mannlib.vitro.webapp.visualization.model.IdAdjacency;
+import edu.cornell.mannlib.vitro.webapp.visualization.model.OrganizationPeopleMap;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.OrgUtils;
+import edu.cornell.mannlib.vitro.webapp.visualization.utilities.PersonPublicationMaps;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates a synthetic institution, held in the same structures as the visualization caches.
+ *
+ * The institution is a university, divided into colleges and then departments (with some departments shared
+ * between colleges). Each person has a position in a department, and some in a second department or a college.
+ * There are four publications per person - mostly with a few authors from the same department, but some with
+ * hundreds - spread over forty years and a skewed selection of journals. There is one grant for every two people.
+ *
+ * The data depends only on the number of people, so runs are comparable. It can also be written as N-Triples,
+ * to load into a triple store and measure the cache queries.
+ */
+public final class SyntheticVivoData {
+    public static final String NAMESPACE = "http://vivo.example.org/individual/";
+
+    private static final int PUBLICATIONS_PER_PERSON = 4;
+    private static final int PEOPLE_PER_DEPARTMENT = 200;
+    private static final int DEPARTMENTS_PER_COLLEGE = 10;
+    private static final int FIRST_YEAR = 1980;
+    private static final int YEARS = 41;
+
+    private static SyntheticVivoData lastGenerated = null;
+
+    private final int peopleCount;
+
+    /** The top level organization */
+    public final String university;
+
+    /** A college, part way down the hierarchy */
+    public final String college;
+
+    /** A department, at the bottom of the hierarchy */
+    public final String department;
+
+    /** The person with the most publications */
+    public final String busiestAuthor;
+
+    public final Map<String, String> personLabels = new HashMap<>();
+    public final Map<String, String> organizationLabels = new HashMap<>();
+    public final Map<String, Set<String>> subOrgs = new HashMap<>();
+    public final OrganizationPeopleMap organizationPeople;
+    public final PersonPublicationMaps personPublications;
+    public final Map<String, String> publicationToYear = new HashMap<>();
+    public final Map<String, String> publicationToJournal = new HashMap<>();
+    public final Map<String, Set<String>> personToGrant;
+    public final Map<String, String> grantToYear = new HashMap<>();
+
+    /**
+     * Get the data for a number of people, reusing the last data generated if it is the same size
+     */
+    public static synchronized SyntheticVivoData forPeople(int people) {
+        if (lastGenerated == null || lastGenerated.peopleCount != people) {
+            // Release the previous data before generating more
+            lastGenerated = null;
+            lastGenerated = new SyntheticVivoData(people);
+        }
+
+        return lastGenerated;
+    }
+
+    public SyntheticVivoData(int peopleCount) {
+        this.peopleCount = peopleCount;
+        Random random = new Random(42L + peopleCount);
+
+        // Organizations
+        int departments = Math.max(4, peopleCount / PEOPLE_PER_DEPARTMENT);
+        int colleges = Math.max(2, departments / DEPARTMENTS_PER_COLLEGE);
+
+        university = addOrganization("university", "Synthetic University");
+        for (int c = 0; c < colleges; c++) {
+            link(subOrgs, university, addOrganization("college" + c, "College " + c));
+        }
+        for (int d = 0; d < departments; d++) {
+            String dept = addOrganization("department" + d, "Department " + d);
+            link(subOrgs, uri("college" + (d % colleges)), dept);
+
+            // Some departments are shared with a second college
+            if (d % 20 == 0) {
+                link(subOrgs, uri("college" + ((d + 1) % colleges)), dept);
+            }
+        }
+        college = uri("college0");
+        department = uri("department0");
+
+        // People, in contiguous blocks for each department
+        IdAdjacency.Builder orgToPeople = new IdAdjacency.Builder();
+        for (int p = 0; p < peopleCount; p++) {
+            String person = uri("person" + p);
+            personLabels.put(person, "Person " + p);
+
+            int dept = Math.min(p / PEOPLE_PER_DEPARTMENT, departments - 1);
+            orgToPeople.add(uri("department" + dept), person);
+            if (random.nextInt(10) == 0) {
+                orgToPeople.add(uri("department" + random.nextInt(departments)), person);
+            }
+            if (random.nextInt(20) == 0) {
+                orgToPeople.add(uri("college" + (dept % colleges)), person);
+            }
+        }
+        organizationPeople = new OrganizationPeopleMap(orgToPeople.build());
+
+        // Publications
+        int journals = Math.max(500, peopleCount / 20);
+        int[] publicationCounts = new int[peopleCount];
+        IdAdjacency.Builder personToPublication = new IdAdjacency.Builder();
+        for (int n = 0; n < peopleCount * PUBLICATIONS_PER_PERSON; n++) {
+            String publication = uri("publication" + n);
+
+            if (random.nextInt(30) > 0) {
+                publicationToYear.put(publication, Integer.toString(FIRST_YEAR + random.nextInt(YEARS)));
+            }
+            if (random.nextInt(10) > 0) {
+                // Skewed towards the first journals, as a few journals carry most publications
+                double r = random.nextDouble();
+                publicationToJournal.put(publication, "Journal of Synthetic Studies " + (int) (journals * r * r));
+            }
+
+            int first = random.nextInt(peopleCount);
+            int authors = authorCount(random);
+            Set<Integer> authorIds = new HashSet<>();
+            authorIds.add(first);
+            while (authorIds.size() < Math.min(authors, peopleCount)) {
+                if (random.nextInt(10) < 7) {
+                    // Mostly collaborators from the same department
+                    int block = first - first % PEOPLE_PER_DEPARTMENT;
+                    authorIds.add(Math.min(peopleCount - 1, block + random.nextInt(PEOPLE_PER_DEPARTMENT)));
+                } else {
+                    authorIds.add(random.nextInt(peopleCount));
+                }
+            }
+
+            for (int author : authorIds) {
+                String person = uri("person" + author);
+                personToPublication.add(person, publication);
+                publicationCounts[author]++;
+            }
+        }
+        personPublications = new PersonPublicationMaps(personToPublication.build());
+
+        int busiest = 0;
+        for (int p = 1; p < peopleCount; p++) {
+            if (publicationCounts[p] > publicationCounts[busiest]) {
+                busiest = p;
+            }
+        }
+        busiestAuthor = uri("person" + busiest);
+
+        // Grants
+        IdAdjacency.Builder personToGrantBuilder = new IdAdjacency.Builder();
+        for (int g = 0; g < peopleCount / 2; g++) {
+            String grant = uri("grant" + g);
+            grantToYear.put(grant, Integer.toString(FIRST_YEAR + random.nextInt(YEARS)));
+
+            int investigatorCount = 1 + random.nextInt(4);
+            for (int i = 0; i < investigatorCount; i++) {
+                String person = uri("person" + random.nextInt(peopleCount));
+                personToGrantBuilder.add(person, grant);
+            }
+        }
+        personToGrant = personToGrantBuilder.build().asMap();
+    }
+
+    public int getPeopleCount() {
+        return peopleCount;
+    }
+
+    /**
+     * An organization at a level of the hierarchy
+     *
+     * @param level university, college or department
+     */
+    public String organization(String level) {
+        switch (level) {
+            case "university":
+                return university;
+            case "college":
+                return college;
+            case "department":
+                return department;
+            default:
+                throw new IllegalArgumentException("Unknown organization level: " + level);
+        }
+    }
+
+    /**
+     * The publications of an organization and its sub-organizations
+     */
+    public Set<String> publicationsOf(String org) {
+        Set<String> publications = new HashSet<>();
+        OrgUtils.getObjectMappingsForOrgAndSubOrgs(org, publications, new HashSet<String>(),
+                new HashMap<String, Set<String>>(), subOrgs, organizationPeople.organizationToPeople,
+                personPublications.personToPublication);
+        return publications;
+    }
+
+    /**
+     * Write the data as N-Triples, in the shape queried by the visualization caches
+     */
+    public void writeNTriples(Writer out) throws IOException {
+        for (Map.Entry<String, String> org : organizationLabels.entrySet()) {
+            triple(out, org.getKey(), RDF_TYPE, FOAF + "Organization");
+            literal(out, org.getKey(), RDFS_LABEL, org.getValue());
+        }
+        for (Map.Entry<String, Set<String>> entry : subOrgs.entrySet()) {
+            for (String subOrg : entry.getValue()) {
+                triple(out, entry.getKey(), OBO + "BFO_0000051", subOrg);
+                triple(out, subOrg, OBO + "BFO_0000050", entry.getKey());
+            }
+        }
+
+        for (Map.Entry<String, String> person : personLabels.entrySet()) {
+            triple(out, person.getKey(), RDF_TYPE, FOAF + "Person");
+            literal(out, person.getKey(), RDFS_LABEL, person.getValue());
+        }
+
+        int count = 0;
+        for (Map.Entry<String, Set<String>> entry : organizationPeople.organizationToPeople.entrySet()) {
+            for (String person : entry.getValue()) {
+                relate(out, uri("position" + count++), CORE + "Position", person, entry.getKey());
+            }
+        }
+
+        Set<String> journals = new HashSet<>();
+        for (String publication : personPublications.publicationToPerson.keySet()) {
+            triple(out, publication, RDF_TYPE, OBO + "IAO_0000030");
+            triple(out, publication, RDF_TYPE, "http://purl.org/ontology/bibo/AcademicArticle");
+
+            String year = publicationToYear.get(publication);
+            if (year != null) {
+                triple(out, publication, CORE + "dateTimeValue", publication + "-date");
+                dateTime(out, publication + "-date", year);
+            }
+
+            String journal = publicationToJournal.get(publication);
+            if (journal != null) {
+                String journalUri = uri("journal" + journal.hashCode());
+                triple(out, publication, CORE + "hasPublicationVenue", journalUri);
+                if (journals.add(journalUri)) {
+                    triple(out, journalUri, RDF_TYPE, "http://purl.org/ontology/bibo/Journal");
+                    literal(out, journalUri, RDFS_LABEL, journal);
+                }
+            }
+        }
+
+        count = 0;
+        for (Map.Entry<String, Set<String>> entry : personPublications.personToPublication.entrySet()) {
+            for (String publication : entry.getValue()) {
+                relate(out, uri("authorship" + count++), CORE + "Authorship", entry.getKey(), publication);
+            }
+        }
+
+        for (Map.Entry<String, String> grant : grantToYear.entrySet()) {
+            triple(out, grant.getKey(), RDF_TYPE, CORE + "Grant");
+            triple(out, grant.getKey(), CORE + "dateTimeInterval", grant.getKey() + "-interval");
+            triple(out, grant.getKey() + "-interval", CORE + "start", grant.getKey() + "-start");
+            dateTime(out, grant.getKey() + "-start", grant.getValue());
+        }
+
+        count = 0;
+        for (Map.Entry<String, Set<String>> entry : personToGrant.entrySet()) {
+            for (String grant : entry.getValue()) {
+                String node = uri("role" + count++);
+                triple(out, node, RDF_TYPE, CORE + "PrincipalInvestigatorRole");
+                triple(out, entry.getKey(), OBO + "RO_0000053", node);
+                triple(out, node, OBO + "RO_0000052", entry.getKey());
+                triple(out, node, CORE + "relatedBy", grant);
+                triple(out, grant, CORE + "relates", node);
+            }
+        }
+    }
+
+    /**
+     * Write the data for a number of people to a gzipped N-Triples file
+     *
+     * Usage: SyntheticVivoData people file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SyntheticVivoData <people> <file.nt.gz>");
+            System.exit(1);
+        }
+
+        SyntheticVivoData data = new SyntheticVivoData(Integer.parseInt(args[0]));
+
+        Path file = Paths.get(args[1]);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8))) {
+            data.writeNTriples(out);
+        }
+    }
+
+    /**
+     * Number of authors of a publication - usually a few, occasionally hundreds
+     */
+    private static int authorCount(Random random) {
+        if (random.nextInt(200) == 0) {
+            return 50 + random.nextInt(250);
+        }
+
+        int authors = 1;
+        while (authors < 12 && random.nextInt(3) > 0) {
+            authors++;
+        }
+        return authors;
+    }
+
+    private String addOrganization(String localName, String label) {
+        String org = uri(localName);
+        organizationLabels.put(org, label);
+        return org;
+    }
+
+    private static void link(Map<String, Set<String>> map, String from, String to) {
+        Set<String> values = map.get(from);
+        if (values == null) {
+            values = new HashSet<>();
+            map.put(from, values);
+        }
+        values.add(to);
+    }
+
+    private static String uri(String localName) {
+        return NAMESPACE + localName;
+    }
+
+    private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+    private static final String RDFS_LABEL = "http://www.w3.org/2000/01/rdf-schema#label";
+    private static final String FOAF = "http://xmlns.com/foaf/0.1/";
+    private static final String OBO = "http://purl.obolibrary.org/obo/";
+    private static final String CORE = "http://vivoweb.org/ontology/core#";
+
+    private static void triple(Writer out, String subject, String predicate, String object) throws IOException {
+        out.write("<" + subject + "> <" + predicate + "> <" + object + "> .\n");
+    }
+
+    /**
+     * A node (e.g. a position) relating a person to something else
+     */
+    private static void relate(Writer out, String node, String type, String person, String other) throws IOException {
+        triple(out, node, RDF_TYPE, type);
+        triple(out, node, CORE + "relates", person);
+        triple(out, node, CORE + "relates", other);
+        triple(out, person, CORE + "relatedBy", node);
+        triple(out, other, CORE + "relatedBy", node);
+    }
+
+    private static void literal(Writer out, String subject, String predicate, String value) throws IOException {
+        out.write("<" + subject + "> <" + predicate + "> \"" + value + "\"@en-US .\n");
+    }
+
+    private static void dateTime(Writer out, String node, String year) throws IOException {
+        triple(out, node, RDF_TYPE, CORE + "DateTimeValue");
+        out.write("<" + node + "> <" + CORE + "dateTime> \"" + year +
+                "-01-01T00:00:00\"^^<http://www.w3.org/2001/XMLSchema#dateTime> .\n");
+    }
+}
@@ -4,6 +4,7 @@
 var g; // global graph variable
 var queryQueue = [];
 var fullResultsQueue = [];
+var fullResultsBatchSize = 20; // people whose full results are retrieved in one request
 var updatedPeople = [];
 var hidden = true;
 var detailsPane;
@@ -370,10 +371,7 @@ var FullResultQueryUnit = function(capabilities, person) {
     this.person = person;
 }
 FullResultQueryUnit.prototype.fetch = function() {
-    var jsonurl = contextPath + "/visualizationAjax?vis=capabilitymap&person=" + encodeURI(this.person.id)  + "&callback=ipretFullResults";
-    var request = new JSONscriptRequest(jsonurl);
-    request.buildScriptTag();
-    request.addScriptTag();
+    FullResultQueryUnit.fetchAll([this]);
 
 /*
     TODO - create a new endpoint
@@ -385,6 +383,17 @@ FullResultQueryUnit.prototype.fetch = function() {
     request.addScriptTag();
 */
 }
+/**
+ * Retrieve the full results for a number of queued units in a single request.
+ */
+FullResultQueryUnit.fetchAll = function(units) {
+    var jsonurl = contextPath + "/visualizationAjax?vis=capabilitymap";
+    $.each(units, function(i, unit) { jsonurl += "&person=" + encodeURIComponent(unit.person.id); });
+    jsonurl += "&callback=ipretFullResults";
+    var request = new JSONscriptRequest(jsonurl);
+    request.buildScriptTag();
+    request.addScriptTag();
+}
 
 var showPanel = function(name) {
     $(".titles li").removeClass("activeTab");
@@ -986,14 +995,20 @@ var finish = function() {
 }
 
 var retrieveFullResults = function() {
-    if (fullResultsQueue.length) fullResultsQueue.pop().fetch();
+    if (fullResultsQueue.length) FullResultQueryUnit.fetchAll(fullResultsQueue.splice(-fullResultsBatchSize, fullResultsBatchSize));
 }
 var ipretFullResults = function(result) {
-    if (g.people[result["results"][0]["md_1"]] != undefined) { // otherwise reset
-        g.people[result["results"][0]["md_1"]].setInfo(result["results"][0]);
-        g.people[result["results"][0]["md_1"]].fullInfo = result["results"][0];
-        progressBar.progress(1, retrieveFullResults, g.people[result["results"][0]["md_1"]].info["md_B"]);
-    }
+    var loaded = 0;
+    var lastName;
+    $.each(result["results"], function(i, info) {
+        if (g.people[info["md_1"]] != undefined) { // otherwise reset
+            g.people[info["md_1"]].setInfo(info);
+            g.people[info["md_1"]].fullInfo = info;
+            lastName = g.people[info["md_1"]].info["md_B"];
+            loaded++;
+        }
+    });
+    if (loaded) progressBar.progress(loaded, retrieveFullResults, lastName);
 }
 
 var reset = function() {
@@ -32,17 +32,9 @@ ${stylesheets.add(
     var contextPath = "${urls.base}";
     $(document).ready(function() {
         document.title = "${i18n().capability_map?js_string}";
-        var loadedConcepts = $.ajax({
-            url: contextPath + "/visualizationAjax?vis=capabilitymap&data=concepts",
-            type: "GET",
-            async: false,
-            success: function(result) {
-                return result;
-            }
-        });
-        var conceptArray = $.parseJSON(loadedConcepts.responseText);
         $("#query").autocomplete({
-            source: conceptArray
+            source: contextPath + "/visualizationAjax?vis=capabilitymap&data=suggest",
+            minLength: 2
         });
     });
 </script>